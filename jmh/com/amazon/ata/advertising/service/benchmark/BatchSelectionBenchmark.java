@@ -0,0 +1,214 @@
+package com.amazon.ata.advertising.service.benchmark;
+
+import com.amazon.ata.advertising.service.businesslogic.AdvertisementSelectionLogic;
+import com.amazon.ata.advertising.service.businesslogic.SelectionMetrics;
+import com.amazon.ata.advertising.service.businesslogic.SelectionMode;
+import com.amazon.ata.advertising.service.dao.BulkReadableDao;
+import com.amazon.ata.advertising.service.dao.ReadableDao;
+import com.amazon.ata.advertising.service.dependency.ExecutorModule;
+import com.amazon.ata.advertising.service.index.AdSelectionIndex;
+import com.amazon.ata.advertising.service.model.AdvertisementContent;
+import com.amazon.ata.advertising.service.model.GeneratedAdvertisement;
+import com.amazon.ata.advertising.service.model.RequestContext;
+import com.amazon.ata.advertising.service.targeting.CustomerSignalsFactory;
+import com.amazon.ata.advertising.service.targeting.PredicateResultMemo;
+import com.amazon.ata.advertising.service.targeting.PredicateStatistics;
+import com.amazon.ata.advertising.service.targeting.TargetingEvaluatorFactory;
+import com.amazon.ata.advertising.service.targeting.TargetingGroup;
+import com.amazon.ata.advertising.service.targeting.predicate.AgeTargetingPredicate;
+import com.amazon.ata.advertising.service.targeting.predicate.PrimeBenefitTargetingPredicate;
+import com.amazon.ata.advertising.service.targeting.predicate.TargetingPredicate;
+import com.amazon.ata.customerservice.AgeRange;
+import com.amazon.ata.customerservice.CustomerProfile;
+import com.amazon.ata.customerservice.Spend;
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.lang.management.ManagementFactory;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Compares serving a page's worth of GenerateAdvertisement requests as one batch against making the same requests one
+ * at a time. Requests are spread over a few marketplaces and repeat customers, like sessions on one page-assembly host.
+ * Every customer and prime service call burns serviceCallCost tokens of CPU, standing in for the client's request
+ * serialization and response parsing.
+ *
+ * Run with ./gradlew jmh. Throughput per core is items divided by cpuMillis; dependencyCalls shows how many customer
+ * and prime service calls the batch coalesced away.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class BatchSelectionBenchmark {
+    private static final CustomerProfile PROFILE = CustomerProfile.builder()
+            .withAgeRange(AgeRange.AGE_18_TO_21)
+            .build();
+    private static final Duration DEADLINE = Duration.ofSeconds(10);
+
+    @Param({"200"})
+    public int batchSize;
+
+    @Param({"20", "200"})
+    public int distinctCustomers;
+
+    @Param({"4"})
+    public int marketplaces;
+
+    @Param({"50"})
+    public int contentsPerMarketplace;
+
+    @Param({"2000", "20000"})
+    public long serviceCallCost;
+
+    private final LongAdder dependencyCalls = new LongAdder();
+    private ExecutorService customerSignalsExecutor;
+    private ExecutorService evaluationExecutor;
+    private ScheduledExecutorService deadlineScheduler;
+    private AdvertisementSelectionLogic selectionLogic;
+    private List<RequestContext> batch;
+
+    /**
+     * Work done per invocation, reported next to the timing results.
+     */
+    @State(Scope.Thread)
+    @AuxCounters(AuxCounters.Type.EVENTS)
+    public static class WorkCounters {
+        public long items;
+        public long cpuMillis;
+        public long dependencyCalls;
+    }
+
+    @Setup(Level.Trial)
+    public void setup() {
+        Random random = new Random(42);
+        Map<String, List<AdvertisementContent>> contents = new HashMap<>();
+        Map<String, List<TargetingGroup>> targetingGroups = new HashMap<>();
+        for (int marketplace = 0; marketplace < marketplaces; marketplace++) {
+            List<AdvertisementContent> marketplaceContents = new ArrayList<>();
+            for (int i = 0; i < contentsPerMarketplace; i++) {
+                String contentId = marketplace + "-" + i;
+                marketplaceContents.add(AdvertisementContent.builder().withContentId(contentId).build());
+                targetingGroups.put(contentId, Arrays.asList(
+                        group(contentId, random.nextDouble(), new AgeTargetingPredicate(AgeRange.UNDER_18)),
+                        group(contentId, random.nextDouble(), new PrimeBenefitTargetingPredicate("FREE_SHIPPING"))));
+            }
+            contents.put(String.valueOf(marketplace), marketplaceContents);
+        }
+        ReadableDao<String, List<AdvertisementContent>> contentDao = contents::get;
+        BulkReadableDao<String, List<TargetingGroup>> targetingGroupDao =
+                new BulkReadableDao<String, List<TargetingGroup>>() {
+                    @Override
+                    public List<TargetingGroup> get(String contentId) {
+                        return targetingGroups.get(contentId);
+                    }
+
+                    @Override
+                    public Map<String, List<TargetingGroup>> getAll(Collection<String> contentIds) {
+                        Map<String, List<TargetingGroup>> groups = new HashMap<>();
+                        contentIds.forEach(contentId -> groups.put(contentId, targetingGroups.get(contentId)));
+                        return groups;
+                    }
+                };
+
+        ExecutorModule executorModule = new ExecutorModule();
+        customerSignalsExecutor = executorModule.provideCustomerSignalsExecutor();
+        evaluationExecutor = executorModule.provideEvaluationExecutorService(executorModule::provideEvaluationExecutor);
+        deadlineScheduler = executorModule.provideDeadlineScheduler();
+        CustomerSignalsFactory customerSignalsFactory = new CustomerSignalsFactory(
+                customerId -> serviceCall(PROFILE),
+                requestContext -> serviceCall(Collections.<String, Spend>emptyMap()),
+                requestContext -> serviceCall(Collections.singletonList("FREE_SHIPPING")),
+                customerSignalsExecutor);
+        selectionLogic = new AdvertisementSelectionLogic(new AdSelectionIndex(contentDao, targetingGroupDao),
+                new TargetingEvaluatorFactory(customerSignalsFactory, evaluationExecutor, new PredicateStatistics(),
+                        new PredicateResultMemo(0, Duration.ZERO)),
+                SelectionMode.BEST_FIRST, new SelectionMetrics(), deadlineScheduler);
+
+        batch = new ArrayList<>(batchSize);
+        for (int i = 0; i < batchSize; i++) {
+            batch.add(new RequestContext("customer" + random.nextInt(distinctCustomers),
+                    String.valueOf(random.nextInt(marketplaces))));
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        customerSignalsExecutor.shutdownNow();
+        evaluationExecutor.shutdownNow();
+        deadlineScheduler.shutdownNow();
+    }
+
+    @Benchmark
+    public void singleCalls(WorkCounters counters, Blackhole blackhole) {
+        long cpuBefore = processCpuNanos();
+        long callsBefore = dependencyCalls.sum();
+        for (RequestContext request : batch) {
+            blackhole.consume(selectionLogic.selectAdvertisement(request.getCustomerId(), request.getMarketplaceId()));
+        }
+        count(counters, cpuBefore, callsBefore);
+    }
+
+    @Benchmark
+    public void batch(WorkCounters counters, Blackhole blackhole) {
+        long cpuBefore = processCpuNanos();
+        long callsBefore = dependencyCalls.sum();
+        for (CompletableFuture<GeneratedAdvertisement> ad : selectionLogic.selectAdvertisementsAsync(batch, DEADLINE)) {
+            blackhole.consume(ad.join());
+        }
+        count(counters, cpuBefore, callsBefore);
+    }
+
+    private void count(WorkCounters counters, long cpuBefore, long callsBefore) {
+        counters.items += batchSize;
+        counters.cpuMillis += TimeUnit.NANOSECONDS.toMillis(processCpuNanos() - cpuBefore);
+        counters.dependencyCalls += dependencyCalls.sum() - callsBefore;
+    }
+
+    private <T> T serviceCall(T response) {
+        dependencyCalls.increment();
+        Blackhole.consumeCPU(serviceCallCost);
+        return response;
+    }
+
+    private static TargetingGroup group(String contentId, double clickThroughRate, TargetingPredicate predicate) {
+        return TargetingGroup.builder()
+                .withContentId(contentId)
+                .withClickThroughRate(clickThroughRate)
+                .withTargetingPredicates(Collections.singletonList(predicate))
+                .build();
+    }
+
+    private static long processCpuNanos() {
+        return ((com.sun.management.OperatingSystemMXBean) ManagementFactory.getOperatingSystemMXBean())
+                .getProcessCpuTime();
+    }
+}
@@ -0,0 +1,133 @@
+package com.amazon.ata.advertising.service.benchmark;
+
+import com.amazon.ata.advertising.service.dao.CustomerSnapshot;
+import com.amazon.ata.advertising.service.dao.CustomerSnapshotWriter;
+import com.amazon.ata.advertising.service.model.RequestContext;
+import com.amazon.ata.customerservice.AgeRange;
+import com.amazon.ata.customerservice.Category;
+import com.amazon.ata.customerservice.CustomerProfile;
+import com.amazon.ata.customerservice.Spend;
+import com.amazon.ata.primeclubservice.Benefit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Clock;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Looks customers up in a memory-mapped CustomerSnapshot of 10 million customers, about 1.2GB, which is written to a
+ * temporary file before the benchmark starts. Run with the gc profiler to confirm that finding a customer allocates
+ * nothing: profile and prime benefit lookups return shared values, and only spend lookups allocate their result.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgs = "-Xmx1g")
+public class CustomerSnapshotBenchmark {
+    private static final String MARKETPLACE_ID = "ATVPDKIKX0DER";
+    private static final int LOOKUP_KEYS = 1 << 12;
+
+    @Param({"10000000"})
+    public int customers;
+
+    private Path file;
+    private CustomerSnapshot snapshot;
+    private String[] customerIds;
+    private RequestContext[] requestContexts;
+    private String[] missingCustomerIds;
+    private int next;
+
+    @Setup
+    public void setup() throws IOException {
+        Random random = new Random(42);
+        file = Files.createTempFile("customers", ".snapshot");
+        String[] categories = Category.values();
+        String[] states = com.amazon.ata.customerservice.State.values();
+        String[] ageRanges = AgeRange.values();
+        String[] benefits = Benefit.values();
+        try (CustomerSnapshotWriter writer = new CustomerSnapshotWriter(file, 11,
+                Collections.singleton(MARKETPLACE_ID), Clock.systemUTC())) {
+            for (int customer = 0; customer < customers; customer++) {
+                Map<String, Spend> spend = new HashMap<>();
+                for (int i = random.nextInt(4); i > 0; i--) {
+                    spend.put(categories[random.nextInt(categories.length)], Spend.builder()
+                            .withNumberOfPurchases(random.nextInt(50))
+                            .withUsdSpent(random.nextInt(5_000))
+                            .build());
+                }
+                List<String> primeBenefits = random.nextBoolean() ?
+                        Collections.emptyList() : Collections.singletonList(benefits[random.nextInt(benefits.length)]);
+                writer.write(customerId(customer), MARKETPLACE_ID, CustomerProfile.builder()
+                        .withHomeState(states[random.nextInt(states.length)])
+                        .withAgeRange(ageRanges[random.nextInt(ageRanges.length)])
+                        .withParent(random.nextBoolean())
+                        .build(), spend, primeBenefits);
+            }
+        }
+        snapshot = CustomerSnapshot.open(file);
+
+        customerIds = new String[LOOKUP_KEYS];
+        requestContexts = new RequestContext[LOOKUP_KEYS];
+        missingCustomerIds = new String[LOOKUP_KEYS];
+        for (int i = 0; i < LOOKUP_KEYS; i++) {
+            customerIds[i] = customerId(random.nextInt(customers));
+            requestContexts[i] = new RequestContext(customerIds[i], MARKETPLACE_ID);
+            missingCustomerIds[i] = customerIds[i].substring(0, 10) + "x";
+        }
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        snapshot = null;
+        Files.deleteIfExists(file);
+    }
+
+    @Benchmark
+    public CustomerProfile customerProfile() {
+        return snapshot.getCustomerProfile(customerIds[nextKey()]);
+    }
+
+    @Benchmark
+    public Map<String, Spend> customerSpend() {
+        return snapshot.getCustomerSpend(requestContexts[nextKey()]);
+    }
+
+    @Benchmark
+    public List<String> primeBenefits() {
+        return snapshot.getPrimeBenefits(requestContexts[nextKey()]);
+    }
+
+    @Benchmark
+    public CustomerProfile customerNotInSnapshot() {
+        return snapshot.getCustomerProfile(missingCustomerIds[nextKey()]);
+    }
+
+    private int nextKey() {
+        next = next + 1 & LOOKUP_KEYS - 1;
+        return next;
+    }
+
+    private static String customerId(int customer) {
+        return String.format("C%010d", customer);
+    }
+}
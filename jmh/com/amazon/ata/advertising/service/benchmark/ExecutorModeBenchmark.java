@@ -0,0 +1,131 @@
+package com.amazon.ata.advertising.service.benchmark;
+
+import com.amazon.ata.advertising.service.dependency.ExecutorModule;
+import com.amazon.ata.advertising.service.model.RequestContext;
+import com.amazon.ata.advertising.service.targeting.CustomerSignals;
+import com.amazon.ata.advertising.service.targeting.predicate.AgeTargetingPredicate;
+import com.amazon.ata.advertising.service.targeting.predicate.TargetingPredicate;
+import com.amazon.ata.advertising.service.targeting.predicate.TargetingPredicateResult;
+import com.amazon.ata.customerservice.AgeRange;
+import com.amazon.ata.customerservice.CustomerProfile;
+import com.amazon.ata.customerservice.Spend;
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+/**
+ * Compares the PLATFORM and VIRTUAL executor modes on a burst of concurrent GenerateAdvertisement requests. Each
+ * request prefetches its customer signals, where every call blocks for serviceLatencyMillis like the customer and prime
+ * services do, and then evaluates an age predicate against them.
+ *
+ * Run with ./gradlew jmh. The gc profiler reports allocation; peakPlatformThreads shows how many platform threads
+ * (each with its own stack) the burst needed. PLATFORM runs at 50k requests take several minutes per iteration, so
+ * narrow the parameters with JMH's -p option when iterating.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 1)
+@Measurement(iterations = 3)
+@Fork(1)
+public class ExecutorModeBenchmark {
+    private static final CustomerProfile PROFILE = CustomerProfile.builder()
+            .withAgeRange(AgeRange.AGE_18_TO_21)
+            .build();
+    private static final Map<String, Spend> SPEND = Collections.emptyMap();
+    private static final List<String> PRIME_BENEFITS = Collections.emptyList();
+
+    @Param({"1000", "10000", "50000"})
+    public int concurrentRequests;
+
+    @Param({"PLATFORM", "VIRTUAL"})
+    public String executorMode;
+
+    @Param({"200"})
+    public long serviceLatencyMillis;
+
+    private final TargetingPredicate predicate = new AgeTargetingPredicate(AgeRange.AGE_18_TO_21);
+    private ExecutorService customerSignalsExecutor;
+    private ExecutorService evaluationExecutor;
+
+    /**
+     * Platform threads started during each burst, reported next to the timing results.
+     */
+    @State(Scope.Thread)
+    @AuxCounters(AuxCounters.Type.EVENTS)
+    public static class ThreadCounters {
+        public long peakPlatformThreads;
+    }
+
+    @Setup(Level.Trial)
+    public void setup() {
+        System.setProperty(ExecutorModule.EXECUTOR_MODE, executorMode);
+        ExecutorModule executorModule = new ExecutorModule();
+        customerSignalsExecutor = executorModule.provideCustomerSignalsExecutor();
+        evaluationExecutor = executorModule.provideEvaluationExecutorService(
+                executorModule::provideEvaluationExecutor);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        customerSignalsExecutor.shutdownNow();
+        evaluationExecutor.shutdownNow();
+        System.clearProperty(ExecutorModule.EXECUTOR_MODE);
+    }
+
+    @Benchmark
+    public void concurrentRequests(ThreadCounters counters, Blackhole blackhole) throws Exception {
+        ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+        threads.resetPeakThreadCount();
+        int threadsBefore = threads.getThreadCount();
+
+        List<Future<TargetingPredicateResult>> results = new ArrayList<>(concurrentRequests);
+        for (int i = 0; i < concurrentRequests; i++) {
+            CustomerSignals customerSignals = new CustomerSignals(
+                    serviceCall(PROFILE), serviceCall(SPEND), serviceCall(PRIME_BENEFITS), customerSignalsExecutor);
+            RequestContext context = new RequestContext("customer" + i, "1")
+                    .withCustomerSignals(customerSignals.prefetch());
+            results.add(evaluationExecutor.submit(() -> predicate.evaluate(context)));
+        }
+        for (Future<TargetingPredicateResult> result : results) {
+            blackhole.consume(result.get());
+        }
+
+        counters.peakPlatformThreads = threads.getPeakThreadCount() - threadsBefore;
+    }
+
+    private <T> Supplier<T> serviceCall(T response) {
+        return () -> {
+            try {
+                Thread.sleep(serviceLatencyMillis);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IllegalStateException(e);
+            }
+            return response;
+        };
+    }
+}
@@ -0,0 +1,106 @@
+package com.amazon.ata.advertising.service.benchmark;
+
+import com.amazon.ata.advertising.service.targeting.Comparison;
+import com.amazon.ata.advertising.service.targeting.predicate.AgeTargetingPredicate;
+import com.amazon.ata.advertising.service.targeting.predicate.CategorySpendFrequencyTargetingPredicate;
+import com.amazon.ata.advertising.service.targeting.predicate.CategorySpendValueTargetingPredicate;
+import com.amazon.ata.advertising.service.targeting.predicate.ParentPredicate;
+import com.amazon.ata.advertising.service.targeting.predicate.PrimeBenefitTargetingPredicate;
+import com.amazon.ata.advertising.service.targeting.predicate.TargetingPredicate;
+import com.amazon.ata.advertising.service.targeting.predicate.TargetingPredicateCodec;
+import com.amazon.ata.customerservice.AgeRange;
+import com.amazon.ata.customerservice.Category;
+import com.amazon.ata.primeclubservice.Benefit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Encoding and decoding a targeting group's predicates as the JSON the service used to store, against the binary
+ * form of TargetingPredicateCodec. Neither side injects the predicates' dependencies, which costs the same for both.
+ *
+ * The stored size of each form is printed when each trial starts.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class TargetingPredicateFormatBenchmark {
+    @Param({"1", "10", "100"})
+    public int predicatesPerGroup;
+
+    private List<TargetingPredicate> predicates;
+    private String json;
+    private byte[] binary;
+
+    @Setup
+    public void setup() throws IOException {
+        Random random = new Random(42);
+        predicates = new ArrayList<>();
+        for (int i = 0; i < predicatesPerGroup; i++) {
+            switch (random.nextInt(5)) {
+                case 0:
+                    predicates.add(new AgeTargetingPredicate(
+                            AgeRange.values()[random.nextInt(AgeRange.values().length)], random.nextBoolean()));
+                    break;
+                case 1:
+                    predicates.add(new CategorySpendValueTargetingPredicate(
+                            Category.values()[random.nextInt(Category.values().length)], Comparison.GT,
+                            random.nextInt(1000), random.nextBoolean()));
+                    break;
+                case 2:
+                    predicates.add(new CategorySpendFrequencyTargetingPredicate(
+                            Category.values()[random.nextInt(Category.values().length)], Comparison.LT,
+                            random.nextInt(20), random.nextBoolean()));
+                    break;
+                case 3:
+                    predicates.add(new PrimeBenefitTargetingPredicate(
+                            Benefit.values()[random.nextInt(Benefit.values().length)], random.nextBoolean()));
+                    break;
+                default:
+                    predicates.add(new ParentPredicate(random.nextBoolean()));
+            }
+        }
+        json = TargetingPredicateCodec.toJson(predicates);
+        binary = TargetingPredicateCodec.encode(predicates);
+        System.out.printf("%n%d predicates: JSON %d bytes, binary %d bytes%n", predicatesPerGroup,
+                json.getBytes(StandardCharsets.UTF_8).length, binary.length);
+    }
+
+    @Benchmark
+    public String encodeJson() throws IOException {
+        return TargetingPredicateCodec.toJson(predicates);
+    }
+
+    @Benchmark
+    public byte[] encodeBinary() {
+        return TargetingPredicateCodec.encode(predicates);
+    }
+
+    @Benchmark
+    public List<TargetingPredicate> decodeJson() throws IOException {
+        return TargetingPredicateCodec.fromJson(json);
+    }
+
+    @Benchmark
+    public List<TargetingPredicate> decodeBinary() {
+        return TargetingPredicateCodec.decode(binary);
+    }
+}
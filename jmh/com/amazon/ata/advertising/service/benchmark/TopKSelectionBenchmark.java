@@ -0,0 +1,90 @@
+package com.amazon.ata.advertising.service.benchmark;
+
+import com.amazon.ata.advertising.service.util.TopK;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+import java.util.TreeMap;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares selecting the k best ads with the bounded heap in TopK against sorting every candidate into a TreeMap keyed
+ * by click through rate, which is how AdvertisementSelectionLogic used to pick a single ad. Click through rates are
+ * rounded to three decimal places, so many candidates tie; the TreeMap silently drops all but one of each tie.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class TopKSelectionBenchmark {
+    private static final Comparator<Candidate> BY_CLICK_THROUGH_RATE =
+            Comparator.comparingDouble((Candidate candidate) -> candidate.clickThroughRate)
+                    .thenComparing(candidate -> candidate.contentId, Comparator.reverseOrder());
+
+    @Param({"100", "1000", "100000"})
+    public int candidates;
+
+    @Param({"1", "5", "20"})
+    public int k;
+
+    private List<Candidate> eligible;
+
+    /**
+     * An eligible piece of content and its click through rate.
+     */
+    private static final class Candidate {
+        private final String contentId;
+        private final double clickThroughRate;
+
+        private Candidate(String contentId, double clickThroughRate) {
+            this.contentId = contentId;
+            this.clickThroughRate = clickThroughRate;
+        }
+    }
+
+    @Setup
+    public void setup() {
+        Random random = new Random(42);
+        eligible = new ArrayList<>(candidates);
+        for (int i = 0; i < candidates; i++) {
+            eligible.add(new Candidate(UUID.randomUUID().toString(), Math.round(random.nextDouble() * 1000) / 1000.0));
+        }
+    }
+
+    @Benchmark
+    public List<Candidate> boundedHeap() {
+        return TopK.greatest(eligible, k, BY_CLICK_THROUGH_RATE);
+    }
+
+    @Benchmark
+    public List<Candidate> treeMap() {
+        TreeMap<Double, Candidate> byClickThroughRate = new TreeMap<>();
+        for (Candidate candidate : eligible) {
+            byClickThroughRate.put(candidate.clickThroughRate, candidate);
+        }
+        List<Candidate> best = new ArrayList<>(k);
+        for (Candidate candidate : byClickThroughRate.descendingMap().values()) {
+            if (best.size() == k) {
+                break;
+            }
+            best.add(candidate);
+        }
+        return best;
+    }
+}
@@ -28,8 +28,10 @@ public class DeleteContentActivity {
     }
 
     /**
-     * Deletes a piece of advertising content. The targeting groups associated with the content will also be deleted.
-     * If the provided contentId does not match any existing content an AdvertisementClientException will be thrown.
+     * Deletes a piece of advertising content. The targeting groups associated with the content will also be deleted,
+     * in the same transaction as the content if it has at most 99; see ContentDao.delete for content with more. If the
+     * provided contentId does not match any existing content an AdvertisementClientException will be thrown, and
+     * nothing is deleted.
      *
      * @param request A piece of advertising content to delete.
      * @return an empty DeleteContentResponse object
@@ -38,8 +40,7 @@ public class DeleteContentActivity {
         String contentId = request.getContentId();
         LOG.info(String.format("Deleting content with id: %s.", contentId));
 
-        targetingGroupDao.delete(contentId);
-        contentDao.delete(contentId);
+        contentDao.delete(contentId, targetingGroupDao.get(contentId));
 
         return DeleteContentResponse.builder().build();
     }
@@ -1,7 +1,10 @@
 package com.amazon.ata.advertising.service.activity;
 
+import com.amazon.ata.advertising.service.exceptions.AdvertisementClientException;
 import com.amazon.ata.advertising.service.model.requests.GenerateAdvertisementRequest;
+import com.amazon.ata.advertising.service.model.requests.GenerateAdvertisementsRequest;
 import com.amazon.ata.advertising.service.model.responses.GenerateAdvertisementResponse;
+import com.amazon.ata.advertising.service.model.responses.GenerateAdvertisementsResponse;
 import com.amazon.ata.advertising.service.businesslogic.AdvertisementSelectionLogic;
 import com.amazon.ata.advertising.service.model.EmptyGeneratedAdvertisement;
 import com.amazon.ata.advertising.service.model.GeneratedAdvertisement;
@@ -10,15 +13,21 @@ import com.amazon.ata.advertising.service.model.translator.AdvertisementTranslat
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 
+import java.time.Duration;
+import java.util.Collections;
+import java.util.function.Supplier;
+import java.util.stream.Collectors;
 import javax.inject.Inject;
 
 /**
  *
- * Activity class for generate ad operation.
+ * Activity class for generate ad operations.
  *
  */
 public class GenerateAdActivity {
     private static final Logger LOG = LogManager.getLogger(GenerateAdActivity.class);
+    private static final int MAX_ADVERTISEMENTS = 100;
+    private static final Duration RESPONSE_RESERVE = Duration.ofMillis(50);
 
     private final AdvertisementSelectionLogic adSelector;
 
@@ -40,14 +49,35 @@ public class GenerateAdActivity {
      *      advertisement could be generated.
      */
     public GenerateAdvertisementResponse generateAd(GenerateAdvertisementRequest request) {
+        return generateAd(request, () -> adSelector.selectAdvertisement(request.getCustomerId(),
+            request.getMarketplaceId()));
+    }
+
+    /**
+     * Decides on the ad most likely to be clicked on by the provided customer within the caller's time budget. A
+     * little of the budget is kept back to build the response; if selection has not finished by then, the best ad
+     * already known to be eligible is returned.
+     * @param request Contains the customerId to generate an advertisement for, and the marketplace id where the ad
+     *                will be rendered
+     * @param remainingTime How long the caller has left to respond
+     * @return the response will contain the generated advertisement. It's content will be an empty String if no
+     *      advertisement could be generated in time.
+     */
+    public GenerateAdvertisementResponse generateAd(GenerateAdvertisementRequest request, Duration remainingTime) {
+        Duration deadline = remainingTime.minus(RESPONSE_RESERVE);
+        return generateAd(request, () -> adSelector.selectAdvertisementAsync(request.getCustomerId(),
+            request.getMarketplaceId(), deadline.isNegative() ? Duration.ZERO : deadline).join());
+    }
+
+    private GenerateAdvertisementResponse generateAd(GenerateAdvertisementRequest request,
+                                                     Supplier<GeneratedAdvertisement> selection) {
         String customerId = request.getCustomerId();
         String marketplaceId = request.getMarketplaceId();
         LOG.info(String.format("Generating ad for customerId: %s in marketplace: %s", customerId, marketplaceId));
 
         GenerateAdvertisementResponse response;
         try {
-            final GeneratedAdvertisement generatedAd = adSelector.selectAdvertisement(customerId,
-                marketplaceId);
+            final GeneratedAdvertisement generatedAd = selection.get();
 
             response = GenerateAdvertisementResponse.builder()
                     .withAdvertisement(AdvertisementTranslator.toCoral(generatedAd))
@@ -64,4 +94,45 @@ public class GenerateAdActivity {
 
         return response;
     }
+
+    /**
+     * Decides on the ads most likely to be clicked on by the provided customer, for pages that render several ad slots.
+     * @param request Contains the customerId to generate advertisements for, the marketplace id where the ads will be
+     *                rendered, and how many ads to generate
+     * @return the response will contain up to numberOfAdvertisements generated advertisements, most likely to be
+     *      clicked first. It will be empty if no advertisement could be generated.
+     */
+    public GenerateAdvertisementsResponse generateAds(GenerateAdvertisementsRequest request) {
+        String customerId = request.getCustomerId();
+        String marketplaceId = request.getMarketplaceId();
+        int numberOfAdvertisements = request.getNumberOfAdvertisements();
+        if (numberOfAdvertisements < 1 || numberOfAdvertisements > MAX_ADVERTISEMENTS) {
+            throw new AdvertisementClientException(String.format(
+                "The number of advertisements must be between 1 and %d, but was %d.",
+                MAX_ADVERTISEMENTS,
+                numberOfAdvertisements));
+        }
+        LOG.info(String.format("Generating %d ads for customerId: %s in marketplace: %s", numberOfAdvertisements,
+            customerId, marketplaceId));
+
+        GenerateAdvertisementsResponse response;
+        try {
+            response = GenerateAdvertisementsResponse.builder()
+                    .withAdvertisements(adSelector.selectAdvertisements(customerId, marketplaceId,
+                        numberOfAdvertisements).stream()
+                        .map(AdvertisementTranslator::toCoral)
+                        .collect(Collectors.toList()))
+                    .build();
+        } catch (Exception e) {
+            LOG.error(String.format(
+                "Something unexpected happened when calling GenerateAdvertisements for customer, %s, in marketplace %s.",
+                customerId,
+                marketplaceId), e);
+            response = GenerateAdvertisementsResponse.builder()
+                    .withAdvertisements(Collections.emptyList())
+                    .build();
+        }
+
+        return response;
+    }
 }
@@ -0,0 +1,111 @@
+package com.amazon.ata.advertising.service.activity;
+
+import com.amazon.ata.advertising.service.businesslogic.AdvertisementSelectionLogic;
+import com.amazon.ata.advertising.service.exceptions.AdvertisementClientException;
+import com.amazon.ata.advertising.service.model.EmptyGeneratedAdvertisement;
+import com.amazon.ata.advertising.service.model.GeneratedAdvertisement;
+import com.amazon.ata.advertising.service.model.RequestContext;
+import com.amazon.ata.advertising.service.model.requests.GenerateAdvertisementBatchRequest;
+import com.amazon.ata.advertising.service.model.requests.GenerateAdvertisementRequest;
+import com.amazon.ata.advertising.service.model.responses.GenerateAdvertisementBatchResponse;
+import com.amazon.ata.advertising.service.model.responses.GenerateAdvertisementBatchResult;
+import com.amazon.ata.advertising.service.model.translator.AdvertisementTranslator;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.stream.Collectors;
+import javax.inject.Inject;
+
+/**
+ *
+ * Activity class for generating ads for many customers in one call.
+ *
+ */
+public class GenerateAdBatchActivity {
+    private static final Logger LOG = LogManager.getLogger(GenerateAdBatchActivity.class);
+    private static final int MAX_BATCH_SIZE = 500;
+    private static final Duration RESPONSE_RESERVE = Duration.ofMillis(50);
+
+    private final AdvertisementSelectionLogic adSelector;
+
+    /**
+     * A Coral activity for the GenerateAdvertisementBatch API.
+     * @param advertisementSelector The business logic to select ads.
+     */
+    @Inject
+    public GenerateAdBatchActivity(AdvertisementSelectionLogic advertisementSelector) {
+        this.adSelector = advertisementSelector;
+    }
+
+    /**
+     * Decides on the ad most likely to be clicked on for each customer in the batch. Content is loaded once per
+     * marketplace and customer data once per customer, and the customers are evaluated in parallel. A little of the
+     * time budget is kept back to build the response; requests still being evaluated by then get the best ad already
+     * known to be eligible.
+     * @param request Contains the customerId and marketplace id of each advertisement to generate
+     * @param remainingTime How long the caller has left to respond
+     * @return the response will contain one result per request, in the same order. A failed or null request's result
+     *      has an empty advertisement and an error, without failing the rest of the batch.
+     */
+    public GenerateAdvertisementBatchResponse generateAdBatch(GenerateAdvertisementBatchRequest request,
+                                                              Duration remainingTime) {
+        final List<GenerateAdvertisementRequest> requests = request.getRequests();
+        if (requests == null || requests.size() > MAX_BATCH_SIZE) {
+            throw new AdvertisementClientException(String.format(
+                "A batch must contain at most %d requests, but had %s.",
+                MAX_BATCH_SIZE,
+                requests == null ? "none" : requests.size()));
+        }
+        LOG.info(String.format("Generating ads for a batch of %d requests", requests.size()));
+
+        final Duration deadline = remainingTime.minus(RESPONSE_RESERVE);
+        final List<CompletableFuture<GeneratedAdvertisement>> advertisements = adSelector.selectAdvertisementsAsync(
+            requests.stream()
+                .filter(Objects::nonNull)
+                .map(item -> new RequestContext(item.getCustomerId(), item.getMarketplaceId()))
+                .collect(Collectors.toList()),
+            deadline.isNegative() ? Duration.ZERO : deadline);
+
+        final List<GenerateAdvertisementBatchResult> results = new ArrayList<>(requests.size());
+        int next = 0;
+        for (GenerateAdvertisementRequest item : requests) {
+            results.add(item == null ? nullRequestResult() : toResult(item, advertisements.get(next++)));
+        }
+        return GenerateAdvertisementBatchResponse.builder()
+                .withResults(results)
+                .build();
+    }
+
+    private GenerateAdvertisementBatchResult nullRequestResult() {
+        LOG.warn("Skipping a null request in an ad batch.");
+        return GenerateAdvertisementBatchResult.builder()
+                .withAdvertisement(AdvertisementTranslator.toCoral(new EmptyGeneratedAdvertisement()))
+                .withError("A batched request must not be null.")
+                .build();
+    }
+
+    private GenerateAdvertisementBatchResult toResult(GenerateAdvertisementRequest request,
+                                                      CompletableFuture<GeneratedAdvertisement> advertisement) {
+        final GenerateAdvertisementBatchResult.Builder result = GenerateAdvertisementBatchResult.builder()
+                .withCustomerId(request.getCustomerId())
+                .withMarketplaceId(request.getMarketplaceId());
+        try {
+            return result.withAdvertisement(AdvertisementTranslator.toCoral(advertisement.join())).build();
+        } catch (CompletionException e) {
+            LOG.error(String.format(
+                "Something unexpected happened when generating a batched ad for customer, %s, in marketplace %s.",
+                request.getCustomerId(),
+                request.getMarketplaceId()), e.getCause());
+            return result.withAdvertisement(AdvertisementTranslator.toCoral(new EmptyGeneratedAdvertisement()))
+                    .withError(String.valueOf(e.getCause().getMessage()))
+                    .build();
+        }
+    }
+}
@@ -0,0 +1,71 @@
+package com.amazon.ata.advertising.service.activity;
+
+import com.amazon.ata.advertising.service.businesslogic.ClickThroughRateAggregator;
+import com.amazon.ata.advertising.service.exceptions.AdvertisementClientException;
+import com.amazon.ata.advertising.service.model.AdEvent;
+import com.amazon.ata.advertising.service.model.requests.RecordAdEventsRequest;
+import com.amazon.ata.advertising.service.model.responses.RecordAdEventsResponse;
+
+import org.apache.commons.lang3.StringUtils;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.util.Collections;
+import java.util.List;
+import javax.inject.Inject;
+
+/**
+ * Records the impressions and clicks of served ads, from which each targeting group's click through rate is learned.
+ */
+public class RecordAdEventsActivity {
+    private static final Logger LOG = LogManager.getLogger(RecordAdEventsActivity.class);
+
+    private final ClickThroughRateAggregator clickThroughRateAggregator;
+
+    /**
+     * Instantiates a RecordAdEventsActivity.
+     * @param clickThroughRateAggregator aggregates the events into each targeting group's click through rate
+     */
+    @Inject
+    public RecordAdEventsActivity(ClickThroughRateAggregator clickThroughRateAggregator) {
+        this.clickThroughRateAggregator = clickThroughRateAggregator;
+    }
+
+    /**
+     * Records a batch of impression and click events, which are written to their targeting groups, and update their
+     * click through rates, in the background. Events are dropped rather than waited on if they arrive faster than
+     * they can be aggregated. If a flush is due, it is started before returning, without waiting for its writes, since
+     * the ingest thread may be frozen along with the environment between requests.
+     * @param request The events to record
+     * @return How many of the events were recorded and how many were dropped
+     */
+    public RecordAdEventsResponse recordAdEvents(RecordAdEventsRequest request) {
+        List<AdEvent> events = request.getEvents() == null ? Collections.emptyList() : request.getEvents();
+        for (AdEvent event : events) {
+            if (event == null || StringUtils.isBlank(event.getTargetingGroupId()) || event.getEventType() == null) {
+                throw new AdvertisementClientException("Every ad event needs a targetingGroupId and an eventType");
+            }
+        }
+
+        int accepted = 0;
+        for (AdEvent event : events) {
+            if (clickThroughRateAggregator.record(event.getTargetingGroupId(), event.getEventType())) {
+                accepted++;
+            }
+        }
+        if (accepted < events.size()) {
+            LOG.warn(String.format("Dropped %d of %d ad events because the event buffer is full",
+                    events.size() - accepted, events.size()));
+        }
+        try {
+            clickThroughRateAggregator.flushIfDue();
+        } catch (RuntimeException e) {
+            LOG.warn("Unable to flush ad events.", e);
+        }
+
+        return RecordAdEventsResponse.builder()
+                .withAcceptedCount(accepted)
+                .withDroppedCount(events.size() - accepted)
+                .build();
+    }
+}
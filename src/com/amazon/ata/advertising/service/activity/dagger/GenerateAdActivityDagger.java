@@ -8,11 +8,17 @@ import com.amazon.ata.advertising.service.dependency.LambdaComponent;
 import com.amazonaws.services.lambda.runtime.Context;
 import com.amazonaws.services.lambda.runtime.RequestHandler;
 
+import java.time.Duration;
+
 public class GenerateAdActivityDagger implements RequestHandler<GenerateAdvertisementRequest, GenerateAdvertisementResponse> {
     private static final LambdaComponent dagger = DaggerLambdaComponent.create();
 
     @Override
     public GenerateAdvertisementResponse handleRequest(GenerateAdvertisementRequest generateAdvertisementRequest, Context context) {
-        return dagger.provideGenerateAdActivity().generateAd(generateAdvertisementRequest);
+        if (context == null) {
+            return dagger.provideGenerateAdActivity().generateAd(generateAdvertisementRequest);
+        }
+        return dagger.provideGenerateAdActivity().generateAd(generateAdvertisementRequest,
+                Duration.ofMillis(context.getRemainingTimeInMillis()));
     }
 }
@@ -0,0 +1,25 @@
+package com.amazon.ata.advertising.service.activity.dagger;
+
+import com.amazon.ata.advertising.service.dependency.DaggerLambdaComponent;
+import com.amazon.ata.advertising.service.model.requests.GenerateAdvertisementBatchRequest;
+import com.amazon.ata.advertising.service.model.responses.GenerateAdvertisementBatchResponse;
+
+import com.amazon.ata.advertising.service.dependency.LambdaComponent;
+import com.amazonaws.services.lambda.runtime.Context;
+import com.amazonaws.services.lambda.runtime.RequestHandler;
+
+import java.time.Duration;
+
+public class GenerateAdBatchActivityDagger implements RequestHandler<GenerateAdvertisementBatchRequest, GenerateAdvertisementBatchResponse> {
+    private static final LambdaComponent dagger = DaggerLambdaComponent.create();
+    // The default Lambda timeout, for invocations without a Context.
+    private static final Duration DEFAULT_REMAINING_TIME = Duration.ofSeconds(3);
+
+    @Override
+    public GenerateAdvertisementBatchResponse handleRequest(GenerateAdvertisementBatchRequest generateAdvertisementBatchRequest, Context context) {
+        Duration remainingTime = context == null ?
+                DEFAULT_REMAINING_TIME : Duration.ofMillis(context.getRemainingTimeInMillis());
+        return dagger.provideGenerateAdBatchActivity().generateAdBatch(generateAdvertisementBatchRequest,
+                remainingTime);
+    }
+}
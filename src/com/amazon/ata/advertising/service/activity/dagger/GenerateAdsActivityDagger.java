@@ -0,0 +1,18 @@
+package com.amazon.ata.advertising.service.activity.dagger;
+
+import com.amazon.ata.advertising.service.dependency.DaggerLambdaComponent;
+import com.amazon.ata.advertising.service.model.requests.GenerateAdvertisementsRequest;
+import com.amazon.ata.advertising.service.model.responses.GenerateAdvertisementsResponse;
+
+import com.amazon.ata.advertising.service.dependency.LambdaComponent;
+import com.amazonaws.services.lambda.runtime.Context;
+import com.amazonaws.services.lambda.runtime.RequestHandler;
+
+public class GenerateAdsActivityDagger implements RequestHandler<GenerateAdvertisementsRequest, GenerateAdvertisementsResponse> {
+    private static final LambdaComponent dagger = DaggerLambdaComponent.create();
+
+    @Override
+    public GenerateAdvertisementsResponse handleRequest(GenerateAdvertisementsRequest generateAdvertisementsRequest, Context context) {
+        return dagger.provideGenerateAdActivity().generateAds(generateAdvertisementsRequest);
+    }
+}
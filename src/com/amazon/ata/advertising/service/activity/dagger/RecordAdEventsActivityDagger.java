@@ -0,0 +1,18 @@
+package com.amazon.ata.advertising.service.activity.dagger;
+
+import com.amazon.ata.advertising.service.dependency.DaggerLambdaComponent;
+import com.amazon.ata.advertising.service.model.requests.RecordAdEventsRequest;
+import com.amazon.ata.advertising.service.model.responses.RecordAdEventsResponse;
+
+import com.amazon.ata.advertising.service.dependency.LambdaComponent;
+import com.amazonaws.services.lambda.runtime.Context;
+import com.amazonaws.services.lambda.runtime.RequestHandler;
+
+public class RecordAdEventsActivityDagger implements RequestHandler<RecordAdEventsRequest, RecordAdEventsResponse> {
+    private static final LambdaComponent dagger = DaggerLambdaComponent.create();
+
+    @Override
+    public RecordAdEventsResponse handleRequest(RecordAdEventsRequest recordAdEventsRequest, Context context) {
+        return dagger.provideRecordAdEventsActivity().recordAdEvents(recordAdEventsRequest);
+    }
+}
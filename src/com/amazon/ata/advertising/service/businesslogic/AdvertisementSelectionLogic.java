@@ -1,23 +1,47 @@
 package com.amazon.ata.advertising.service.businesslogic;
 
-import com.amazon.ata.advertising.service.dao.ReadableDao;
+import com.amazon.ata.advertising.service.dependency.ExecutorModule;
+import com.amazon.ata.advertising.service.index.AdSelectionIndex;
+import com.amazon.ata.advertising.service.index.CandidateStore;
+import com.amazon.ata.advertising.service.index.ContentTargetingGroup;
+import com.amazon.ata.advertising.service.index.MarketplaceSnapshot;
 import com.amazon.ata.advertising.service.model.AdvertisementContent;
 import com.amazon.ata.advertising.service.model.EmptyGeneratedAdvertisement;
 import com.amazon.ata.advertising.service.model.GeneratedAdvertisement;
 import com.amazon.ata.advertising.service.model.RequestContext;
 import com.amazon.ata.advertising.service.targeting.TargetingEvaluator;
+import com.amazon.ata.advertising.service.targeting.TargetingEvaluatorFactory;
 import com.amazon.ata.advertising.service.targeting.TargetingGroup;
+import com.amazon.ata.advertising.service.targeting.TargetingGroupIndex;
 import com.amazon.ata.advertising.service.targeting.predicate.TargetingPredicateResult;
-import org.apache.commons.collections4.CollectionUtils;
+import com.amazon.ata.advertising.service.util.TopK;
 import org.apache.commons.lang3.StringUtils;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 
 import javax.inject.Inject;
+import javax.inject.Named;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.OptionalDouble;
 import java.util.Random;
-import java.util.TreeMap;
+import java.util.Set;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
 import java.util.concurrent.ExecutionException;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.stream.Collectors;
 
 /**
@@ -27,21 +51,47 @@ public class AdvertisementSelectionLogic {
 
     private static final Logger LOG = LogManager.getLogger(AdvertisementSelectionLogic.class);
 
-    private final ReadableDao<String, List<AdvertisementContent>> contentDao;
-    private final ReadableDao<String, List<TargetingGroup>> targetingGroupDao;
+    /**
+     * The most targeting group evaluations a BEST_FIRST deadline selection keeps in flight at once.
+     */
+    private static final int EVALUATION_WINDOW = 4;
+
+    /**
+     * Orders eligible content by click through rate. Content with equal click through rates is ordered by contentId,
+     * with the lowest contentId ranked highest, so ties always resolve the same way.
+     */
+    private static final Comparator<RankedContent> BY_CLICK_THROUGH_RATE =
+            Comparator.comparingDouble(RankedContent::getClickThroughRate)
+                    .thenComparing(RankedContent::getContentId, Comparator.reverseOrder());
+
+    private final AdSelectionIndex adSelectionIndex;
+    private final TargetingEvaluatorFactory targetingEvaluatorFactory;
+    private final SelectionMode selectionMode;
+    private final SelectionMetrics selectionMetrics;
+    private final ScheduledExecutorService deadlineScheduler;
     private Random random = new Random();
 
     /**
      * Constructor for AdvertisementSelectionLogic.
      *
-     * @param contentDao        Source of advertising content.
-     * @param targetingGroupDao Source of targeting groups for each advertising content.
+     * @param adSelectionIndex In-memory snapshot of the advertising content and targeting groups of each marketplace.
+     * @param targetingEvaluatorFactory Creates the evaluator each request's targeting groups are evaluated with.
+     * @param selectionMode How to search for the best eligible content.
+     * @param selectionMetrics Records how many targeting groups each selection evaluated.
+     * @param deadlineScheduler Ends selections whose deadline has passed.
      */
     @Inject
-    public AdvertisementSelectionLogic(ReadableDao<String, List<AdvertisementContent>> contentDao,
-                                       ReadableDao<String, List<TargetingGroup>> targetingGroupDao) {
-        this.contentDao = contentDao;
-        this.targetingGroupDao = targetingGroupDao;
+    public AdvertisementSelectionLogic(AdSelectionIndex adSelectionIndex,
+                                       TargetingEvaluatorFactory targetingEvaluatorFactory,
+                                       SelectionMode selectionMode,
+                                       SelectionMetrics selectionMetrics,
+                                       @Named(ExecutorModule.DEADLINE_SCHEDULER)
+                                               ScheduledExecutorService deadlineScheduler) {
+        this.adSelectionIndex = adSelectionIndex;
+        this.targetingEvaluatorFactory = targetingEvaluatorFactory;
+        this.selectionMode = selectionMode;
+        this.selectionMetrics = selectionMetrics;
+        this.deadlineScheduler = deadlineScheduler;
     }
 
     /**
@@ -54,8 +104,9 @@ public class AdvertisementSelectionLogic {
     }
 
     /**
-     * Gets all of the content and metadata for the marketplace and determines which content can be shown.  Returns the
-     * eligible content with the highest click through rate.  If no advertisement is available or eligible, returns an
+     * Gets all of the content and metadata for the marketplace from the AdSelectionIndex and determines which content
+     * can be shown.  Returns the eligible content with the highest click through rate, where the click through rate of a
+     * piece of content is the highest click through rate among its eligible targeting groups.  If no advertisement is available or eligible, returns an
      * EmptyGeneratedAdvertisement.
      *
      * @param customerId    - the customer to generate a custom advertisement for
@@ -64,48 +115,452 @@ public class AdvertisementSelectionLogic {
      * not be generated.
      */
     public GeneratedAdvertisement selectAdvertisement(String customerId, String marketplaceId) {
-        GeneratedAdvertisement generatedAdvertisement = new EmptyGeneratedAdvertisement();
+        final List<GeneratedAdvertisement> advertisements = selectAdvertisements(customerId, marketplaceId, 1);
+        return advertisements.isEmpty() ? new EmptyGeneratedAdvertisement() : advertisements.get(0);
+    }
+
+    /**
+     * Selects the same advertisement as selectAdvertisement without blocking, giving up once the deadline passes.
+     * Targeting groups are evaluated concurrently on the evaluation executor, from the highest click through rate
+     * down: a few at a time in BEST_FIRST mode and, with the compiled predicates, in COMPILED mode, or all at once in
+     * EXHAUSTIVE mode. In INDEXED mode the marketplace's TargetingGroupIndex resolves every group in a single
+     * evaluation. The future completes as soon as the
+     * eligible content with the highest click through rate is known. If the deadline passes first, outstanding
+     * evaluations are cancelled and the future completes with the best content whose eligibility has already been
+     * confirmed, or an EmptyGeneratedAdvertisement if none has. Evaluations that are already running are left to
+     * finish, but their results are ignored. Evaluations are never run on the calling thread, where the deadline could
+     * not cut them off; a group the saturated executor refuses is not eligible.
+     *
+     * @param customerId    - the customer to generate a custom advertisement for
+     * @param marketplaceId - the id of the marketplace the advertisement will be rendered on
+     * @param deadline      - how long the caller can wait for the advertisement
+     * @return a future of the best advertisement found before the deadline, or an empty advertisement if none was.
+     */
+    public CompletableFuture<GeneratedAdvertisement> selectAdvertisementAsync(String customerId, String marketplaceId,
+                                                                              Duration deadline) {
+        final long deadlineNanos = System.nanoTime() + deadline.toNanos();
         if (StringUtils.isEmpty(marketplaceId)) {
             LOG.warn("MarketplaceId cannot be null or empty. Returning empty ad.");
-        } else {
-            // Gets list of AdvertisementContent for the marketplaceId
-            final List<AdvertisementContent> contents = contentDao.get(marketplaceId);
-
-            TreeMap<Double, AdvertisementContent> advertisementContentTreeMap = new TreeMap<Double, AdvertisementContent>();
-
-            if (CollectionUtils.isNotEmpty(contents)) {
-                List<AdvertisementContent> advertisementContents = contents.stream()
-                        .filter(advertisementContent -> targetingGroupDao.get(advertisementContent.getContentId()).stream()
-                                .anyMatch(targetingGroup -> {
-                                    TargetingEvaluator targetingEvaluator = new TargetingEvaluator(new RequestContext(customerId, marketplaceId));
-                                    TargetingPredicateResult result = null;
-                                    try {
-                                        result = targetingEvaluator.evaluate(targetingGroup);
-                                    } catch (ExecutionException e) {
-                                        e.printStackTrace();
-                                    } catch (InterruptedException e) {
-                                        e.printStackTrace();
-                                    }
-                                    return result.isTrue();
-                                }))
-                        .collect(Collectors.toList());
-
-                for (AdvertisementContent ad : advertisementContents) {
-                    double ct = 0;
-                    List<TargetingGroup> targetingGroups = targetingGroupDao.get(ad.getContentId());
-                        for (TargetingGroup group : targetingGroups) {
-                            if (group.getClickThroughRate() > ct) {
-                                ct = group.getClickThroughRate();
-                            }
-
-                        }
-                    advertisementContentTreeMap.put(ct, ad);
+            return CompletableFuture.completedFuture(new EmptyGeneratedAdvertisement());
+        }
+
+        final MarketplaceSnapshot snapshot = adSelectionIndex.getSnapshot(marketplaceId);
+        final TargetingEvaluator targetingEvaluator =
+                targetingEvaluatorFactory.create(new RequestContext(customerId, marketplaceId));
+
+        return new DeadlineSelection(snapshot).start(targetingEvaluator, deadlineNanos - System.nanoTime());
+    }
+
+    /**
+     * Selects an advertisement for each request in a batch, like selectAdvertisementAsync with one deadline shared by
+     * the whole batch. Each marketplace's content is looked up once, customer data calls are shared by requests for
+     * the same customer, and every request's targeting groups are evaluated concurrently. Requests without a
+     * marketplace get an EmptyGeneratedAdvertisement.
+     *
+     * @param requestContexts - the customer and marketplace of each request
+     * @param deadline        - how long the caller can wait for the whole batch
+     * @return a future of each request's advertisement, in the same order. A future completes exceptionally if its
+     *      request could not be served, without affecting the rest of the batch.
+     */
+    public List<CompletableFuture<GeneratedAdvertisement>> selectAdvertisementsAsync(
+            List<RequestContext> requestContexts, Duration deadline) {
+        final long deadlineNanos = System.nanoTime() + deadline.toNanos();
+        final List<RequestContext> selectable = new ArrayList<>();
+        for (RequestContext requestContext : requestContexts) {
+            if (!StringUtils.isEmpty(requestContext.getMarketplaceId())) {
+                selectable.add(requestContext);
+            }
+        }
+        final List<TargetingEvaluator> targetingEvaluators = targetingEvaluatorFactory.createAll(selectable);
+
+        final Map<String, MarketplaceSnapshot> snapshots = new HashMap<>();
+        final Map<String, RuntimeException> snapshotFailures = new HashMap<>();
+        final List<CompletableFuture<GeneratedAdvertisement>> advertisements = new ArrayList<>();
+        int next = 0;
+        for (RequestContext requestContext : requestContexts) {
+            if (StringUtils.isEmpty(requestContext.getMarketplaceId())) {
+                advertisements.add(CompletableFuture.completedFuture(new EmptyGeneratedAdvertisement()));
+                continue;
+            }
+            final TargetingEvaluator targetingEvaluator = targetingEvaluators.get(next++);
+            final String marketplaceId = requestContext.getMarketplaceId();
+            try {
+                if (!snapshots.containsKey(marketplaceId) && !snapshotFailures.containsKey(marketplaceId)) {
+                    snapshots.put(marketplaceId, adSelectionIndex.getSnapshot(marketplaceId));
                 }
-                Double key = advertisementContentTreeMap.lastKey();
-                AdvertisementContent advertisementContent = advertisementContentTreeMap.get(key);
-                generatedAdvertisement = new GeneratedAdvertisement(advertisementContent);
+            } catch (RuntimeException e) {
+                LOG.warn(String.format("Unable to load the content of marketplace %s.", marketplaceId), e);
+                snapshotFailures.put(marketplaceId, e);
+            }
+            if (snapshotFailures.containsKey(marketplaceId)) {
+                CompletableFuture<GeneratedAdvertisement> failed = new CompletableFuture<>();
+                failed.completeExceptionally(snapshotFailures.get(marketplaceId));
+                advertisements.add(failed);
+            } else {
+                advertisements.add(new DeadlineSelection(snapshots.get(marketplaceId))
+                        .start(targetingEvaluator, deadlineNanos - System.nanoTime()));
+            }
+        }
+        return advertisements;
+    }
+
+    /**
+     * Selects the content for several ad slots: the k eligible pieces of content with the highest click through rates,
+     * highest first. Ties are broken by contentId. In BEST_FIRST mode targeting groups are evaluated from the highest
+     * click through rate down until k pieces of content are eligible. In EXHAUSTIVE mode every group is evaluated, and
+     * only k candidates are held at a time, so ranking takes O(n log k) for n pieces of content. In INDEXED mode the
+     * eligibility of every group is resolved at once by the marketplace's TargetingGroupIndex, and the best eligible
+     * groups are read from its CandidateStore. In COMPILED mode groups are evaluated best first like BEST_FIRST, with
+     * the predicates compiled into the TargetingGroupIndex.
+     *
+     * @param customerId    - the customer to generate custom advertisements for
+     * @param marketplaceId - the id of the marketplace the advertisements will be rendered on
+     * @param k             - the number of advertisements to select
+     * @return up to k advertisements, best first. Empty if none are available or eligible.
+     */
+    public List<GeneratedAdvertisement> selectAdvertisements(String customerId, String marketplaceId, int k) {
+        if (StringUtils.isEmpty(marketplaceId)) {
+            LOG.warn("MarketplaceId cannot be null or empty. Returning empty ad.");
+            return Collections.emptyList();
+        }
+
+        final MarketplaceSnapshot snapshot = adSelectionIndex.getSnapshot(marketplaceId);
+        final TargetingEvaluator targetingEvaluator =
+                targetingEvaluatorFactory.create(new RequestContext(customerId, marketplaceId));
+
+        switch (selectionMode) {
+            case BEST_FIRST:
+                return selectBestFirst(snapshot, targetingEvaluator, k);
+            case INDEXED:
+                return selectIndexed(snapshot, targetingEvaluator, k);
+            case COMPILED:
+                return selectCompiled(snapshot, targetingEvaluator, k);
+            default:
+                return selectExhaustive(snapshot, targetingEvaluator, k);
+        }
+    }
+
+    private List<GeneratedAdvertisement> selectBestFirst(MarketplaceSnapshot snapshot,
+                                                         TargetingEvaluator targetingEvaluator,
+                                                         int k) {
+        final List<ContentTargetingGroup> targetingGroups = snapshot.getTargetingGroupsByClickThroughRate();
+        final List<GeneratedAdvertisement> advertisements = new ArrayList<>();
+        final Set<String> selectedContentIds = new HashSet<>();
+        int evaluated = 0;
+        for (ContentTargetingGroup targetingGroup : targetingGroups) {
+            if (advertisements.size() >= k) {
+                break;
+            }
+            final AdvertisementContent content = targetingGroup.getContent();
+            if (selectedContentIds.contains(content.getContentId())) {
+                continue;
+            }
+            evaluated++;
+            if (isEligible(targetingEvaluator, targetingGroup.getTargetingGroup())) {
+                selectedContentIds.add(content.getContentId());
+                advertisements.add(new GeneratedAdvertisement(content));
+            }
+        }
+
+        recordSelection(snapshot, evaluated, targetingGroups.size());
+        return advertisements;
+    }
+
+    private List<GeneratedAdvertisement> selectIndexed(MarketplaceSnapshot snapshot,
+                                                       TargetingEvaluator targetingEvaluator,
+                                                       int k) {
+        final BitSet eligible = targetingEvaluator.evaluateAll(snapshot.getTargetingGroupIndex());
+        final CandidateStore candidateStore = snapshot.getCandidateStore();
+
+        recordSelection(snapshot, candidateStore.size(), candidateStore.size());
+        return candidateStore.selectTop(eligible.toLongArray(), k).stream()
+                .map(GeneratedAdvertisement::new)
+                .collect(Collectors.toList());
+    }
+
+    private List<GeneratedAdvertisement> selectCompiled(MarketplaceSnapshot snapshot,
+                                                        TargetingEvaluator targetingEvaluator,
+                                                        int k) {
+        final TargetingGroupIndex targetingGroupIndex = snapshot.getTargetingGroupIndex();
+        final CandidateStore candidateStore = snapshot.getCandidateStore();
+        final List<GeneratedAdvertisement> advertisements = new ArrayList<>();
+        final Set<String> selectedContentIds = new HashSet<>();
+        int evaluated = 0;
+        for (int ordinal = 0; ordinal < candidateStore.size() && advertisements.size() < k; ordinal++) {
+            final AdvertisementContent content = candidateStore.getContent(ordinal);
+            if (selectedContentIds.contains(content.getContentId())) {
+                continue;
+            }
+            evaluated++;
+            if (targetingEvaluator.evaluateCompiled(targetingGroupIndex, ordinal)) {
+                selectedContentIds.add(content.getContentId());
+                advertisements.add(new GeneratedAdvertisement(content));
+            }
+        }
+
+        recordSelection(snapshot, evaluated, candidateStore.size());
+        return advertisements;
+    }
+
+    private List<GeneratedAdvertisement> selectExhaustive(MarketplaceSnapshot snapshot,
+                                                          TargetingEvaluator targetingEvaluator,
+                                                          int k) {
+        final TopK<RankedContent> topContent = new TopK<>(k, BY_CLICK_THROUGH_RATE);
+        int evaluated = 0;
+        for (AdvertisementContent content : snapshot.getContents()) {
+            final List<TargetingGroup> targetingGroups = snapshot.getTargetingGroups(content.getContentId());
+            evaluated += targetingGroups.size();
+            OptionalDouble clickThroughRate = targetingGroups.stream()
+                    .filter(targetingGroup -> isEligible(targetingEvaluator, targetingGroup))
+                    .mapToDouble(TargetingGroup::getClickThroughRate)
+                    .max();
+            if (clickThroughRate.isPresent()) {
+                topContent.offer(new RankedContent(content, clickThroughRate.getAsDouble()));
             }
         }
-        return generatedAdvertisement;
+
+        recordSelection(snapshot, evaluated, evaluated);
+        return topContent.toList().stream()
+                .map(rankedContent -> new GeneratedAdvertisement(rankedContent.getContent()))
+                .collect(Collectors.toList());
+    }
+
+    private void recordSelection(MarketplaceSnapshot snapshot, int evaluated, int available) {
+        selectionMetrics.recordSelection(evaluated, available);
+        LOG.debug(String.format("Evaluated %d of %d targeting groups in marketplace %s.", evaluated, available,
+                snapshot.getMarketplaceId()));
+    }
+
+    private boolean isEligible(TargetingEvaluator targetingEvaluator, TargetingGroup targetingGroup) {
+        try {
+            return targetingEvaluator.evaluate(targetingGroup).isTrue();
+        } catch (ExecutionException e) {
+            LOG.warn(String.format("Unable to evaluate targeting group %s.", targetingGroup.getTargetingGroupId()), e);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            LOG.warn(String.format("Interrupted evaluating targeting group %s.",
+                    targetingGroup.getTargetingGroupId()), e);
+        } catch (RejectedExecutionException e) {
+            LOG.warn(String.format("Evaluation executor is saturated; targeting group %s was not evaluated.",
+                    targetingGroup.getTargetingGroupId()), e);
+        }
+        return false;
+    }
+
+    /**
+     * One selectAdvertisementAsync call. Candidates are the snapshot's targeting groups in click through rate order,
+     * so a candidate's position is also its ordinal in the TargetingGroupIndex and CandidateStore. They are evaluated
+     * in that order with up to EVALUATION_WINDOW evaluations in flight, or every candidate in EXHAUSTIVE mode, so a
+     * request whose best groups are eligible stops early, and the selection is decided by whichever comes first: every
+     * candidate ranked above the best eligible one being rejected, or the deadline. In INDEXED mode the index resolves
+     * every candidate in one evaluation instead, and the selection is decided when it finishes or at the deadline.
+     */
+    private final class DeadlineSelection {
+        private final MarketplaceSnapshot snapshot;
+        private final List<ContentTargetingGroup> candidates;
+        private final List<CompletableFuture<TargetingPredicateResult>> evaluations = new ArrayList<>();
+        private final CompletableFuture<GeneratedAdvertisement> result = new CompletableFuture<>();
+        private final AtomicInteger pendingPumps = new AtomicInteger();
+        private final int evaluationWindow;
+        private TargetingEvaluator targetingEvaluator;
+        private CompletableFuture<BitSet> indexedEvaluation;
+        private int inFlight;
+        private boolean decided;
+
+        private DeadlineSelection(MarketplaceSnapshot snapshot) {
+            this.snapshot = snapshot;
+            this.candidates = snapshot.getTargetingGroupsByClickThroughRate();
+            this.evaluationWindow = selectionMode == SelectionMode.EXHAUSTIVE ? candidates.size() : EVALUATION_WINDOW;
+        }
+
+        private CompletableFuture<GeneratedAdvertisement> start(TargetingEvaluator evaluator, long remainingNanos) {
+            this.targetingEvaluator = evaluator;
+            final ScheduledFuture<?> timer =
+                    deadlineScheduler.schedule(this::expire, remainingNanos, TimeUnit.NANOSECONDS);
+            result.whenComplete((advertisement, e) -> {
+                timer.cancel(false);
+                cancelEvaluations();
+            });
+            if (selectionMode == SelectionMode.INDEXED) {
+                startIndexedEvaluation();
+            } else {
+                pump();
+            }
+            return result;
+        }
+
+        private void startIndexedEvaluation() {
+            final CompletableFuture<BitSet> evaluation =
+                    targetingEvaluator.evaluateAllAsync(snapshot.getTargetingGroupIndex());
+            synchronized (this) {
+                indexedEvaluation = evaluation;
+            }
+            evaluation.whenComplete((eligible, e) -> {
+                if (e != null && !(e instanceof CancellationException)) {
+                    LOG.warn(String.format("Unable to evaluate the targeting groups of marketplace %s.",
+                            snapshot.getMarketplaceId()), e);
+                }
+                settle();
+            });
+        }
+
+        /**
+         * Submits candidates while there is room in the window and settles the selection. Evaluations that complete
+         * on the calling thread pump again, so the work is looped here rather than recursing once per candidate.
+         */
+        private void pump() {
+            if (pendingPumps.getAndIncrement() != 0) {
+                return;
+            }
+            int pumps = 1;
+            do {
+                submitWhileRoom();
+                settle();
+                pumps = pendingPumps.addAndGet(-pumps);
+            } while (pumps != 0);
+        }
+
+        private void submitWhileRoom() {
+            while (true) {
+                final int position;
+                final ContentTargetingGroup candidate;
+                synchronized (this) {
+                    if (decided || inFlight >= evaluationWindow || evaluations.size() >= candidates.size()) {
+                        return;
+                    }
+                    position = evaluations.size();
+                    candidate = candidates.get(position);
+                    inFlight++;
+                }
+                final CompletableFuture<TargetingPredicateResult> evaluation = selectionMode == SelectionMode.COMPILED ?
+                        targetingEvaluator.evaluateCompiledAsync(snapshot.getTargetingGroupIndex(), position) :
+                        targetingEvaluator.evaluateAsync(candidate.getTargetingGroup());
+                addEvaluation(evaluation);
+                evaluation.whenComplete((targetingResult, e) -> {
+                    if (e != null && !(e instanceof CancellationException)) {
+                        LOG.warn(String.format("Unable to evaluate targeting group %s.",
+                                candidate.getTargetingGroup().getTargetingGroupId()), e);
+                    }
+                    finishEvaluation();
+                    pump();
+                });
+            }
+        }
+
+        private synchronized void addEvaluation(CompletableFuture<TargetingPredicateResult> evaluation) {
+            evaluations.add(evaluation);
+        }
+
+        private synchronized void finishEvaluation() {
+            inFlight--;
+        }
+
+        private synchronized void cancelEvaluations() {
+            evaluations.forEach(evaluation -> evaluation.cancel(false));
+            if (indexedEvaluation != null) {
+                indexedEvaluation.cancel(false);
+            }
+        }
+
+        private void settle() {
+            complete(decide(false));
+        }
+
+        private void expire() {
+            complete(decide(true));
+        }
+
+        private void complete(GeneratedAdvertisement advertisement) {
+            if (advertisement != null) {
+                result.complete(advertisement);
+            }
+        }
+
+        /**
+         * Decides the selection if it can be decided yet.
+         * @param expired Whether the deadline has passed. If it has, the best confirmed content is selected.
+         * @return The selected advertisement, or null if the selection is undecided or was already decided.
+         */
+        private synchronized GeneratedAdvertisement decide(boolean expired) {
+            if (decided) {
+                return null;
+            }
+            if (selectionMode == SelectionMode.INDEXED) {
+                return decideIndexed(expired);
+            }
+            ContentTargetingGroup best = null;
+            for (int i = 0; i < candidates.size() && best == null; i++) {
+                final boolean resolved = i < evaluations.size() && evaluations.get(i).isDone();
+                if (!resolved && !expired) {
+                    return null;
+                }
+                if (resolved && isEligible(evaluations.get(i))) {
+                    best = candidates.get(i);
+                }
+            }
+
+            decided = true;
+            recordSelection(snapshot, (int) evaluations.stream().filter(this::isEvaluated).count(), candidates.size());
+            selectionMetrics.recordDeadlineSelection(expired);
+            return best == null ? new EmptyGeneratedAdvertisement() : new GeneratedAdvertisement(best.getContent());
+        }
+
+        /**
+         * Decides an INDEXED selection if its evaluation has finished or the deadline has passed. Called while
+         * holding the selection's lock.
+         */
+        private GeneratedAdvertisement decideIndexed(boolean expired) {
+            final boolean resolved = indexedEvaluation != null && indexedEvaluation.isDone();
+            if (!resolved && !expired) {
+                return null;
+            }
+            List<AdvertisementContent> best = Collections.emptyList();
+            final boolean evaluated = resolved && !indexedEvaluation.isCompletedExceptionally();
+            if (evaluated) {
+                best = snapshot.getCandidateStore().selectTop(indexedEvaluation.join().toLongArray(), 1);
+            }
+
+            decided = true;
+            recordSelection(snapshot, evaluated ? candidates.size() : 0, candidates.size());
+            selectionMetrics.recordDeadlineSelection(expired);
+            return best.isEmpty() ? new EmptyGeneratedAdvertisement() : new GeneratedAdvertisement(best.get(0));
+        }
+
+        private boolean isEvaluated(CompletableFuture<TargetingPredicateResult> evaluation) {
+            return evaluation.isDone() && !evaluation.isCompletedExceptionally();
+        }
+
+        private boolean isEligible(CompletableFuture<TargetingPredicateResult> evaluation) {
+            try {
+                return isEvaluated(evaluation) && evaluation.join().isTrue();
+            } catch (CompletionException | CancellationException e) {
+                return false;
+            }
+        }
+    }
+
+    /**
+     * A piece of eligible content and the click through rate it is ranked by.
+     */
+    private static final class RankedContent {
+        private final AdvertisementContent content;
+        private final double clickThroughRate;
+
+        private RankedContent(AdvertisementContent content, double clickThroughRate) {
+            this.content = content;
+            this.clickThroughRate = clickThroughRate;
+        }
+
+        private AdvertisementContent getContent() {
+            return content;
+        }
+
+        private String getContentId() {
+            return content.getContentId();
+        }
+
+        private double getClickThroughRate() {
+            return clickThroughRate;
+        }
     }
 }
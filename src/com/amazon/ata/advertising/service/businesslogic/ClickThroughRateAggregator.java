@@ -0,0 +1,393 @@
+package com.amazon.ata.advertising.service.businesslogic;
+
+import com.amazon.ata.advertising.service.dao.TargetingGroupDao;
+import com.amazon.ata.advertising.service.exceptions.AdvertisementClientException;
+import com.amazon.ata.advertising.service.model.AdEventType;
+import com.amazon.ata.advertising.service.util.MpscRingBuffer;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Learns each targeting group's click through rate from the impressions and clicks of its content.
+ *
+ * <p>Recording an event never blocks: it is offered to a lock-free ring buffer, or dropped and counted if the buffer
+ * is full. The ingest thread drains the buffer every few milliseconds into per-group totals. Every flush interval it
+ * hands the groups with new events to the write executor, which adds them to each group's stored totals and
+ * recomputes its click through rate through TargetingGroupDao, and starts aggregating into new totals. A flush is
+ * skipped while the last one is still writing; its events are written by the next. Events for a group whose write
+ * fails are merged back and retried on the next flush, so a write that failed after DynamoDB applied it can be counted
+ * twice. Events for groups that no longer exist are discarded.
+ *
+ * <p>Lambda freezes the environment between requests, and with it the ingest thread, so a request thread also calls
+ * flushIfDue once it has recorded its events. When a flush is due, the first request to get the ingest lock starts it
+ * without waiting for its writes, and every other request returns at once, so recording never waits on a flush or on
+ * the ingest thread. Writes started just before the environment is frozen finish once it is thawed. Draining and
+ * flushing are serialized by the lock, so the totals are only ever touched by one thread at a time. Events recorded
+ * less than a flush interval before the environment is shut down are still lost; the buffered and pending event
+ * counts are how many that would be.
+ */
+public class ClickThroughRateAggregator {
+    static final long DRAIN_INTERVAL_MILLIS = 50;
+    private static final Logger LOG = LogManager.getLogger(ClickThroughRateAggregator.class);
+
+    private final TargetingGroupDao targetingGroupDao;
+    private final Executor writeExecutor;
+    private final long minimumImpressions;
+    private final long flushIntervalMillis;
+    private final Clock clock;
+    private final MpscRingBuffer<Event> events;
+    private final Queue<GroupEvents> failedWrites = new ConcurrentLinkedQueue<>();
+    private final AtomicBoolean flushing = new AtomicBoolean();
+    private final ReentrantLock ingestLock = new ReentrantLock();
+    private Map<String, GroupEvents> pending = new HashMap<>();
+    private volatile CompletableFuture<Void> lastFlush = CompletableFuture.completedFuture(null);
+
+    private final LongAdder acceptedEvents = new LongAdder();
+    private final LongAdder droppedEvents = new LongAdder();
+    private final LongAdder pendingEvents = new LongAdder();
+    private final LongAdder discardedEvents = new LongAdder();
+    private final LongAdder flushes = new LongAdder();
+    private final LongAdder requestFlushes = new LongAdder();
+    private final LongAdder groupsWritten = new LongAdder();
+    private final LongAdder clickThroughRateUpdates = new LongAdder();
+    private final LongAdder failedWriteCount = new LongAdder();
+    private volatile long lastFlushMillis;
+    private volatile long lastFlushDurationMillis;
+
+    /**
+     * Creates an aggregator. Nothing is written until scheduleFlush or flushIfDue is called.
+     * @param targetingGroupDao stores each group's totals and click through rate
+     * @param writeExecutor writes the groups of a flush in parallel
+     * @param bufferCapacity the most events waiting to be drained, rounded up to a power of two
+     * @param minimumImpressions the fewest total impressions a group's click through rate is recomputed from
+     * @param flushInterval how often aggregated events are written
+     * @param clock the time flushes are measured with
+     */
+    public ClickThroughRateAggregator(TargetingGroupDao targetingGroupDao, Executor writeExecutor, int bufferCapacity,
+                                      long minimumImpressions, Duration flushInterval, Clock clock) {
+        this.targetingGroupDao = targetingGroupDao;
+        this.writeExecutor = writeExecutor;
+        this.minimumImpressions = minimumImpressions;
+        this.flushIntervalMillis = flushInterval.toMillis();
+        this.clock = clock;
+        this.events = new MpscRingBuffer<>(bufferCapacity);
+        this.lastFlushMillis = clock.millis();
+    }
+
+    /**
+     * Records an impression or click of a targeting group's content, without blocking.
+     * @param targetingGroupId The targeting group the event is for. Must not be null.
+     * @param eventType Whether the content was shown or clicked. Must not be null.
+     * @return true if the event was recorded, false if it was dropped because the buffer was full.
+     */
+    public boolean record(String targetingGroupId, AdEventType eventType) {
+        Objects.requireNonNull(targetingGroupId, "targetingGroupId");
+        Objects.requireNonNull(eventType, "eventType");
+        if (events.offer(new Event(targetingGroupId, eventType == AdEventType.CLICK))) {
+            acceptedEvents.increment();
+            return true;
+        }
+        droppedEvents.increment();
+        return false;
+    }
+
+    /**
+     * Drains the buffer every few milliseconds and flushes every interval. The scheduler should not be shared with
+     * work that blocks.
+     * @param scheduler a single threaded scheduler
+     */
+    public void scheduleFlush(ScheduledExecutorService scheduler) {
+        scheduler.scheduleWithFixedDelay(() -> {
+            try {
+                drain();
+            } catch (RuntimeException e) {
+                LOG.warn("Unable to drain ad events.", e);
+            }
+        }, DRAIN_INTERVAL_MILLIS, DRAIN_INTERVAL_MILLIS, TimeUnit.MILLISECONDS);
+        scheduler.scheduleWithFixedDelay(() -> {
+            try {
+                flush();
+            } catch (RuntimeException e) {
+                LOG.warn("Unable to flush ad events.", e);
+            }
+        }, flushIntervalMillis, flushIntervalMillis, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Starts a flush, without waiting for its writes, if the last flush finished at least a flush interval ago.
+     * Returns at once if the last flush is still writing, or another thread is draining or flushing. Called by request
+     * threads, so events are written even while the ingest thread is frozen.
+     * @return true if this call started a flush
+     */
+    public boolean flushIfDue() {
+        if (!isFlushDue() || !ingestLock.tryLock()) {
+            return false;
+        }
+        if (!isFlushDue()) {
+            ingestLock.unlock();
+            return false;
+        }
+        requestFlushes.increment();
+        flushHoldingLock();
+        return true;
+    }
+
+    /**
+     * Moves every event in the buffer, and every failed write, into the aggregated totals.
+     */
+    void drain() {
+        ingestLock.lock();
+        try {
+            GroupEvents failed;
+            while ((failed = failedWrites.poll()) != null) {
+                pending.computeIfAbsent(failed.targetingGroupId, GroupEvents::new).add(failed);
+            }
+            events.drain(this::aggregate, events.capacity());
+        } finally {
+            ingestLock.unlock();
+        }
+    }
+
+    /**
+     * Drains the buffer, then starts writing the aggregated totals unless the last flush is still writing.
+     * @return completes once the flush started, or the one still writing, has written every group
+     */
+    CompletableFuture<?> flush() {
+        ingestLock.lock();
+        return flushHoldingLock();
+    }
+
+    private boolean isFlushDue() {
+        return !flushing.get() && getFlushLagMillis() >= flushIntervalMillis;
+    }
+
+    /**
+     * Flushes with the ingest lock held, releasing it once the aggregated totals have been taken, before they are
+     * handed to the write executor.
+     */
+    private CompletableFuture<?> flushHoldingLock() {
+        final CompletableFuture<Void> flush = new CompletableFuture<>();
+        final Map<String, GroupEvents> batch;
+        final long start;
+        try {
+            drain();
+            if (!flushing.compareAndSet(false, true)) {
+                return lastFlush;
+            }
+            lastFlush = flush;
+            start = clock.millis();
+            if (pending.isEmpty()) {
+                completeFlush(start, flush);
+                return flush;
+            }
+            batch = pending;
+            pending = new HashMap<>();
+        } finally {
+            ingestLock.unlock();
+        }
+
+        final CompletableFuture<?>[] writes = new CompletableFuture<?>[batch.size()];
+        int index = 0;
+        for (GroupEvents group : batch.values()) {
+            try {
+                writes[index] = CompletableFuture.runAsync(() -> write(group), writeExecutor);
+            } catch (RejectedExecutionException e) {
+                writeFailed(group, e);
+                writes[index] = CompletableFuture.completedFuture(null);
+            }
+            index++;
+        }
+        CompletableFuture.allOf(writes).whenComplete((unused, e) -> completeFlush(start, flush));
+        return flush;
+    }
+
+    /**
+     * The number of events recorded.
+     * @return the accepted event count
+     */
+    public long getAcceptedEventCount() {
+        return acceptedEvents.sum();
+    }
+
+    /**
+     * The number of events dropped because the buffer was full.
+     * @return the dropped event count
+     */
+    public long getDroppedEventCount() {
+        return droppedEvents.sum();
+    }
+
+    /**
+     * The approximate number of events in the buffer, waiting to be drained.
+     * @return the buffered event count
+     */
+    public int getBufferedEventCount() {
+        return events.size();
+    }
+
+    /**
+     * The number of drained events that have not been written yet, including those being written.
+     * @return the pending event count
+     */
+    public long getPendingEventCount() {
+        return pendingEvents.sum();
+    }
+
+    /**
+     * How long ago the last flush finished writing. Events recorded since have not been written.
+     * @return the flush lag, in milliseconds
+     */
+    public long getFlushLagMillis() {
+        return Math.max(0, clock.millis() - lastFlushMillis);
+    }
+
+    /**
+     * How long the last flush took to write every group, in milliseconds.
+     * @return the last flush duration
+     */
+    public long getLastFlushDurationMillis() {
+        return lastFlushDurationMillis;
+    }
+
+    /**
+     * The number of flushes that have finished writing.
+     * @return the flush count
+     */
+    public long getFlushCount() {
+        return flushes.sum();
+    }
+
+    /**
+     * The number of flushes started by a request thread because the ingest thread had not flushed in time.
+     * @return the request flush count
+     */
+    public long getRequestFlushCount() {
+        return requestFlushes.sum();
+    }
+
+    /**
+     * The number of writes of a group's events, across all flushes.
+     * @return the group write count
+     */
+    public long getGroupsWrittenCount() {
+        return groupsWritten.sum();
+    }
+
+    /**
+     * The number of group writes that recomputed the group's click through rate.
+     * @return the click through rate update count
+     */
+    public long getClickThroughRateUpdateCount() {
+        return clickThroughRateUpdates.sum();
+    }
+
+    /**
+     * The number of group writes that failed and will be retried.
+     * @return the failed write count
+     */
+    public long getFailedWriteCount() {
+        return failedWriteCount.sum();
+    }
+
+    /**
+     * The number of events discarded because their targeting group no longer exists.
+     * @return the discarded event count
+     */
+    public long getDiscardedEventCount() {
+        return discardedEvents.sum();
+    }
+
+    private void aggregate(Event event) {
+        final GroupEvents group = pending.computeIfAbsent(event.targetingGroupId, GroupEvents::new);
+        if (event.click) {
+            group.clicks++;
+        } else {
+            group.impressions++;
+        }
+        pendingEvents.increment();
+    }
+
+    private void write(GroupEvents group) {
+        try {
+            if (targetingGroupDao.addEvents(group.targetingGroupId, group.impressions, group.clicks,
+                    minimumImpressions)) {
+                clickThroughRateUpdates.increment();
+            }
+            groupsWritten.increment();
+            pendingEvents.add(-group.count());
+        } catch (AdvertisementClientException e) {
+            discardedEvents.add(group.count());
+            pendingEvents.add(-group.count());
+        } catch (RuntimeException e) {
+            writeFailed(group, e);
+        }
+    }
+
+    private void writeFailed(GroupEvents group, RuntimeException e) {
+        LOG.warn(String.format("Unable to write %d ad events for targeting group %s. They will be retried.",
+                group.count(), group.targetingGroupId), e);
+        failedWriteCount.increment();
+        failedWrites.add(group);
+    }
+
+    private void completeFlush(long start, CompletableFuture<Void> flush) {
+        final long end = clock.millis();
+        lastFlushDurationMillis = end - start;
+        lastFlushMillis = end;
+        flushes.increment();
+        flushing.set(false);
+        flush.complete(null);
+    }
+
+    /**
+     * An event waiting in the buffer.
+     */
+    private static final class Event {
+        private final String targetingGroupId;
+        private final boolean click;
+
+        private Event(String targetingGroupId, boolean click) {
+            this.targetingGroupId = targetingGroupId;
+            this.click = click;
+        }
+    }
+
+    /**
+     * The events aggregated for one targeting group since it was last written.
+     */
+    private static final class GroupEvents {
+        private final String targetingGroupId;
+        private long impressions;
+        private long clicks;
+
+        private GroupEvents(String targetingGroupId) {
+            this.targetingGroupId = targetingGroupId;
+        }
+
+        private void add(GroupEvents other) {
+            impressions += other.impressions;
+            clicks += other.clicks;
+        }
+
+        private long count() {
+            return impressions + clicks;
+        }
+    }
+}
@@ -0,0 +1,124 @@
+package com.amazon.ata.advertising.service.businesslogic;
+
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+import javax.inject.Inject;
+import javax.inject.Singleton;
+
+/**
+ * Counters describing how much targeting work AdvertisementSelectionLogic does per request, and how many targeting
+ * groups each recent selection evaluated.
+ */
+@Singleton
+public class SelectionMetrics {
+    private static final int SELECTION_WINDOW = 256;
+
+    private final LongAdder selections = new LongAdder();
+    private final LongAdder groupsEvaluated = new LongAdder();
+    private final LongAdder groupsAvailable = new LongAdder();
+    private final LongAdder deadlineSelections = new LongAdder();
+    private final LongAdder truncatedSelections = new LongAdder();
+    private final AtomicLongArray recentGroupsEvaluated = new AtomicLongArray(SELECTION_WINDOW);
+    private final AtomicLong groupsEvaluatedSampleCount = new AtomicLong();
+
+    /**
+     * Creates empty metrics.
+     */
+    @Inject
+    public SelectionMetrics() {}
+
+    void recordSelection(int evaluated, int available) {
+        recentGroupsEvaluated.set((int) (groupsEvaluatedSampleCount.getAndIncrement() % SELECTION_WINDOW), evaluated);
+        selections.increment();
+        groupsEvaluated.add(evaluated);
+        groupsAvailable.add(available);
+    }
+
+    void recordDeadlineSelection(boolean truncated) {
+        deadlineSelections.increment();
+        if (truncated) {
+            truncatedSelections.increment();
+        }
+    }
+
+    /**
+     * The number of selections made for marketplaces that had content.
+     * @return the selection count
+     */
+    public long getSelectionCount() {
+        return selections.sum();
+    }
+
+    /**
+     * The number of targeting groups evaluated before selections terminated, across all selections.
+     * @return the evaluated group count
+     */
+    public long getGroupsEvaluatedCount() {
+        return groupsEvaluated.sum();
+    }
+
+    /**
+     * The number of targeting groups that could have been evaluated, across all selections.
+     * @return the available group count
+     */
+    public long getGroupsAvailableCount() {
+        return groupsAvailable.sum();
+    }
+
+    /**
+     * The mean number of targeting groups evaluated per selection, or 0 if none have been made.
+     * @return the average evaluated group count
+     */
+    public double getAverageGroupsEvaluated() {
+        long count = getSelectionCount();
+        return count == 0 ? 0 : (double) getGroupsEvaluatedCount() / count;
+    }
+
+    /**
+     * A percentile of the number of targeting groups evaluated by each of the last 256 selections, or 0 if none have
+     * been made.
+     * @param percentile The percentile, between 0 and 1.
+     * @return the evaluated group count of the selection at that percentile
+     */
+    public long getGroupsEvaluatedPercentile(double percentile) {
+        int samples = (int) Math.min(groupsEvaluatedSampleCount.get(), SELECTION_WINDOW);
+        if (samples == 0) {
+            return 0;
+        }
+        long[] sorted = new long[samples];
+        for (int i = 0; i < samples; i++) {
+            sorted[i] = recentGroupsEvaluated.get(i);
+        }
+        Arrays.sort(sorted);
+        int index = (int) Math.ceil(percentile * samples) - 1;
+        return sorted[Math.max(0, Math.min(samples - 1, index))];
+    }
+
+    /**
+     * The number of selections made with a deadline, whether or not it passed.
+     * @return the deadline selection count
+     */
+    public long getDeadlineSelectionCount() {
+        return deadlineSelections.sum();
+    }
+
+    /**
+     * The number of deadline selections that were cut short because their deadline passed before the best eligible
+     * content was known.
+     * @return the truncated selection count
+     */
+    public long getTruncatedSelectionCount() {
+        return truncatedSelections.sum();
+    }
+
+    /**
+     * The fraction of deadline selections that were truncated by their deadline, or 0 if none have been made.
+     * @return the truncation rate
+     */
+    public double getTruncationRate() {
+        long count = getDeadlineSelectionCount();
+        return count == 0 ? 0 : (double) getTruncatedSelectionCount() / count;
+    }
+}
@@ -0,0 +1,27 @@
+package com.amazon.ata.advertising.service.businesslogic;
+
+/**
+ * How AdvertisementSelectionLogic searches for the best eligible content. Every mode selects the same advertisements.
+ */
+public enum SelectionMode {
+    /**
+     * Evaluate every targeting group of every piece of content, then rank the eligible content.
+     */
+    EXHAUSTIVE,
+    /**
+     * Evaluate targeting groups from the highest click through rate down, and stop as soon as enough content has been
+     * found eligible.
+     */
+    BEST_FIRST,
+    /**
+     * Resolve every targeting group at once with the marketplace's TargetingGroupIndex, then take the best eligible
+     * groups in click through rate order.
+     */
+    INDEXED,
+    /**
+     * Evaluate targeting groups from the highest click through rate down, with the predicates compiled into the
+     * marketplace's TargetingGroupIndex, and stop as soon as enough content has been found eligible. Synchronous
+     * selections evaluate them on the calling thread; deadline selections on the evaluation executor.
+     */
+    COMPILED
+}
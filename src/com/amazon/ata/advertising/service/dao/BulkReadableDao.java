@@ -0,0 +1,19 @@
+package com.amazon.ata.advertising.service.dao;
+
+import java.util.Collection;
+import java.util.Map;
+
+/**
+ * Get many objects from a datasource in one call.
+ * @param <I> The input type needed to retrieve an object.  This may often by a query object.
+ * @param <O> The type to be retrieved from the datasource.
+ */
+public interface BulkReadableDao<I, O> extends ReadableDao<I, O> {
+
+    /**
+     * Get an object from the datasource for each of the provided queries.
+     * @param inputQueries The information necessary to retrieve each object. Duplicates are only retrieved once.
+     * @return The objects queried for, keyed by the query that retrieved them.
+     */
+    Map<I, O> getAll(Collection<I> inputQueries);
+}
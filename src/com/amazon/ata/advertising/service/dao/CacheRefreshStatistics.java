@@ -0,0 +1,71 @@
+package com.amazon.ata.advertising.service.dao;
+
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Stale serves and background refreshes of one CachingReadableDao.
+ */
+public class CacheRefreshStatistics {
+    private final LongAdder staleServes = new LongAdder();
+    private final LongAdder refreshes = new LongAdder();
+    private final LongAdder refreshFailures = new LongAdder();
+    private final LongAdder totalRefreshNanos = new LongAdder();
+    private final LongAccumulator maxRefreshNanos = new LongAccumulator(Math::max, 0);
+
+    void recordStaleServe() {
+        staleServes.increment();
+    }
+
+    void recordRefresh(long nanos) {
+        refreshes.increment();
+        totalRefreshNanos.add(nanos);
+        maxRefreshNanos.accumulate(nanos);
+    }
+
+    void recordRefreshFailure() {
+        refreshFailures.increment();
+    }
+
+    /**
+     * The number of gets answered with an entry that was due to be refreshed, while it was refreshed in the
+     * background.
+     * @return the stale serve count
+     */
+    public long getStaleServeCount() {
+        return staleServes.sum();
+    }
+
+    /**
+     * The number of background refreshes that completed.
+     * @return the refresh count
+     */
+    public long getRefreshCount() {
+        return refreshes.sum();
+    }
+
+    /**
+     * The number of background refreshes that failed. The stale entry is kept until it expires.
+     * @return the refresh failure count
+     */
+    public long getRefreshFailureCount() {
+        return refreshFailures.sum();
+    }
+
+    /**
+     * The average time a completed background refresh took.
+     * @return the average refresh time in nanoseconds, or 0 if there have been no refreshes
+     */
+    public long getAverageRefreshNanos() {
+        final long count = refreshes.sum();
+        return count == 0 ? 0 : totalRefreshNanos.sum() / count;
+    }
+
+    /**
+     * The longest time a completed background refresh took.
+     * @return the maximum refresh time in nanoseconds
+     */
+    public long getMaxRefreshNanos() {
+        return maxRefreshNanos.get();
+    }
+}
@@ -0,0 +1,72 @@
+package com.amazon.ata.advertising.service.dao;
+
+import java.time.Duration;
+
+/**
+ * How many entries a CachingReadableDao holds and how long it keeps them.
+ */
+public class CacheSettings {
+    private final long maximumSize;
+    private final Duration expireAfterWrite;
+    private final Duration refreshAfterWrite;
+    private final Duration negativeExpireAfterWrite;
+
+    /**
+     * Creates cache settings that keep negative results as long as any other.
+     * @param maximumSize The most entries to hold. 0 disables caching.
+     * @param expireAfterWrite How long after it is loaded an entry is dropped.
+     * @param refreshAfterWrite How long after it is loaded an entry is reloaded in the background the next time it is
+     *                          read, while the old value is still returned. Null or zero disables refreshing.
+     */
+    public CacheSettings(long maximumSize, Duration expireAfterWrite, Duration refreshAfterWrite) {
+        this(maximumSize, expireAfterWrite, refreshAfterWrite, expireAfterWrite);
+    }
+
+    /**
+     * Creates cache settings.
+     * @param maximumSize The most entries to hold. 0 disables caching.
+     * @param expireAfterWrite How long after it is loaded an entry is dropped.
+     * @param refreshAfterWrite How long after it is loaded an entry is reloaded in the background the next time it is
+     *                          read, while the old value is still returned. Null or zero disables refreshing.
+     * @param negativeExpireAfterWrite How long after it is loaded a negative result (null, or an empty collection or
+     *                                 map) is dropped. Zero disables caching negative results.
+     */
+    public CacheSettings(long maximumSize, Duration expireAfterWrite, Duration refreshAfterWrite,
+                         Duration negativeExpireAfterWrite) {
+        this.maximumSize = maximumSize;
+        this.expireAfterWrite = expireAfterWrite;
+        this.refreshAfterWrite = refreshAfterWrite;
+        this.negativeExpireAfterWrite = negativeExpireAfterWrite;
+    }
+
+    public long getMaximumSize() {
+        return maximumSize;
+    }
+
+    public Duration getExpireAfterWrite() {
+        return expireAfterWrite;
+    }
+
+    public Duration getRefreshAfterWrite() {
+        return refreshAfterWrite;
+    }
+
+    public Duration getNegativeExpireAfterWrite() {
+        return negativeExpireAfterWrite;
+    }
+
+    boolean isRefreshing() {
+        return refreshAfterWrite != null && !refreshAfterWrite.isZero()
+                && refreshAfterWrite.compareTo(expireAfterWrite) < 0;
+    }
+
+    @Override
+    public String toString() {
+        return "CacheSettings{" +
+                "maximumSize=" + maximumSize +
+                ", expireAfterWrite=" + expireAfterWrite +
+                ", refreshAfterWrite=" + refreshAfterWrite +
+                ", negativeExpireAfterWrite=" + negativeExpireAfterWrite +
+                '}';
+    }
+}
@@ -0,0 +1,90 @@
+package com.amazon.ata.advertising.service.dao;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.stats.CacheStats;
+
+import java.util.Collections;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import javax.inject.Inject;
+import javax.inject.Singleton;
+
+/**
+ * Collects the hit, miss, eviction, load time, stale serve and refresh statistics of every CachingReadableDao, the
+ * NegativeResultFilter of every NegativeFilteringReadableDao, and the snapshot hits of every SnapshotReadableDao.
+ */
+@Singleton
+public class CacheStatistics {
+    private final ConcurrentHashMap<String, Cache<?, ?>> cachesByName = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<String, NegativeResultFilter<?>> filtersByName = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<String, CacheRefreshStatistics> refreshStatisticsByName = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<String, SnapshotLookupStatistics> snapshotStatisticsByName =
+            new ConcurrentHashMap<>();
+
+    /**
+     * Creates an empty set of statistics.
+     */
+    @Inject
+    public CacheStatistics() {}
+
+    void register(String name, Cache<?, ?> cache) {
+        cachesByName.put(name, cache);
+    }
+
+    CacheRefreshStatistics forRefreshes(String name) {
+        return refreshStatisticsByName.computeIfAbsent(name, cache -> new CacheRefreshStatistics());
+    }
+
+    SnapshotLookupStatistics forSnapshot(String name) {
+        return snapshotStatisticsByName.computeIfAbsent(name, dao -> new SnapshotLookupStatistics());
+    }
+
+    void register(String name, NegativeResultFilter<?> filter) {
+        filtersByName.put(name, filter);
+    }
+
+    /**
+     * A snapshot of the statistics collected so far, by cache name.
+     * @return An unmodifiable map of the statistics of every cache.
+     */
+    public Map<String, CacheStats> getStatistics() {
+        final Map<String, CacheStats> statistics = new TreeMap<>();
+        cachesByName.forEach((name, cache) -> statistics.put(name, cache.stats()));
+        return Collections.unmodifiableMap(statistics);
+    }
+
+    /**
+     * The approximate number of entries in each cache.
+     * @return An unmodifiable map of the size of every cache, by cache name.
+     */
+    public Map<String, Long> getSizes() {
+        final Map<String, Long> sizes = new TreeMap<>();
+        cachesByName.forEach((name, cache) -> sizes.put(name, cache.estimatedSize()));
+        return Collections.unmodifiableMap(sizes);
+    }
+
+    /**
+     * The stale serves and background refresh times of each cache.
+     * @return An unmodifiable view of the refresh statistics, by cache name.
+     */
+    public Map<String, CacheRefreshStatistics> getRefreshStatistics() {
+        return Collections.unmodifiableMap(new TreeMap<>(refreshStatisticsByName));
+    }
+
+    /**
+     * Every NegativeResultFilter, whose configured and expected false positive rates, size and hit count can be read.
+     * @return An unmodifiable map of the filters, by name.
+     */
+    public Map<String, NegativeResultFilter<?>> getNegativeResultFilters() {
+        return Collections.unmodifiableMap(new TreeMap<>(filtersByName));
+    }
+
+    /**
+     * How often each SnapshotReadableDao answered from the customer snapshot.
+     * @return An unmodifiable view of the snapshot statistics, by DAO name.
+     */
+    public Map<String, SnapshotLookupStatistics> getSnapshotStatistics() {
+        return Collections.unmodifiableMap(new TreeMap<>(snapshotStatisticsByName));
+    }
+}
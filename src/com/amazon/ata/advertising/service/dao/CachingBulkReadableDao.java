@@ -0,0 +1,78 @@
+package com.amazon.ata.advertising.service.dao;
+
+import com.github.benmanes.caffeine.cache.CacheLoader;
+import com.github.benmanes.caffeine.cache.Ticker;
+import com.google.common.annotations.VisibleForTesting;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executor;
+
+/**
+ * A CachingReadableDao for a DAO that can also read in bulk. A getAll returns the cached objects and loads all of the
+ * rest in one bulk call. Queries the bulk call returns nothing for are cached as negative results.
+ * @param <I> The input type needed to retrieve an object.
+ * @param <O> The type to be retrieved from the datasource.
+ */
+public class CachingBulkReadableDao<I, O> extends CachingReadableDao<I, O> implements BulkReadableDao<I, O> {
+    private final BulkReadableDao<I, O> delegate;
+
+    /**
+     * Decorates a bulk DAO.
+     * @param name Name of the cache, used for statistics.
+     * @param delegate The DAO whose results are cached.
+     * @param settings The size and expiry of the cache.
+     * @param executor Runs background refreshes and cache maintenance.
+     * @param cacheStatistics Where the cache's statistics are reported.
+     */
+    public CachingBulkReadableDao(String name, BulkReadableDao<I, O> delegate, CacheSettings settings,
+                                  Executor executor, CacheStatistics cacheStatistics) {
+        this(name, delegate, settings, executor, cacheStatistics, Ticker.systemTicker());
+    }
+
+    @VisibleForTesting
+    CachingBulkReadableDao(String name, BulkReadableDao<I, O> delegate, CacheSettings settings, Executor executor,
+                           CacheStatistics cacheStatistics, Ticker ticker) {
+        super(name, delegate, settings, executor, cacheStatistics, ticker);
+        this.delegate = delegate;
+    }
+
+    /**
+     * Gets an object for each query, from the cache where possible. If any query is null, nothing is cached.
+     * @param inputQueries The information necessary to retrieve each object. Duplicates are only retrieved once.
+     * @return The objects queried for, keyed by the query that retrieved them.
+     */
+    @Override
+    public Map<I, O> getAll(Collection<I> inputQueries) {
+        if (inputQueries.contains(null)) {
+            return delegate.getAll(inputQueries);
+        }
+        final Map<I, O> results = new HashMap<>();
+        cache.getAll(inputQueries).forEach((inputQuery, loaded) -> {
+            final O value = value(loaded);
+            if (value != null) {
+                results.put(inputQuery, value);
+            }
+        });
+        return results;
+    }
+
+    @Override
+    CacheLoader<I, Loaded<O>> loader() {
+        return new Loader() {
+            @Override
+            public Map<I, Loaded<O>> loadAll(Iterable<? extends I> inputQueries) {
+                final List<I> queries = new ArrayList<>();
+                inputQueries.forEach(queries::add);
+                final Map<I, O> fetched = delegate.getAll(queries);
+                // Queries the DAO found nothing for are cached as negative results.
+                final Map<I, Loaded<O>> results = new HashMap<>();
+                queries.forEach(inputQuery -> results.put(inputQuery, loaded(fetched.get(inputQuery))));
+                return results;
+            }
+        };
+    }
+}
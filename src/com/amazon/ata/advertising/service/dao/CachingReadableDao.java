@@ -0,0 +1,189 @@
+package com.amazon.ata.advertising.service.dao;
+
+import com.github.benmanes.caffeine.cache.CacheLoader;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Expiry;
+import com.github.benmanes.caffeine.cache.LoadingCache;
+import com.github.benmanes.caffeine.cache.Ticker;
+import com.google.common.annotations.VisibleForTesting;
+
+import java.util.Collection;
+import java.util.Map;
+import java.util.concurrent.Executor;
+
+/**
+ * Decorates a DAO with a bounded cache. Entries expire a fixed time after they are loaded. If the cache refreshes,
+ * an entry read after its refresh time is served stale while it is reloaded in the background
+ * (stale-while-revalidate), so the request that notices does not wait for the reload; the expiry time is then the
+ * most stale an entry can be when it is read, and a caller that keeps what it reads adds its own age on top.
+ * Concurrent gets for a query that is not cached share one load.
+ *
+ * <p>Negative results (null, or an empty collection or map), like a customer with no spend, are cached for their own,
+ * usually longer, time, so customers without data do not pay for a remote call on every request.
+ *
+ * <p>When the cache is full, a new entry is only admitted if its query has been read more often recently than the
+ * entry it would evict (W-TinyLFU), so a scan of queries that are each read once, like anonymous traffic, does not
+ * push out the entries that are read all the time.
+ * @param <I> The input type needed to retrieve an object.
+ * @param <O> The type to be retrieved from the datasource.
+ */
+public class CachingReadableDao<I, O> implements ReadableDao<I, O> {
+    private final ReadableDao<I, O> delegate;
+    private final Ticker ticker;
+    private final long refreshNanos;
+    final CacheRefreshStatistics refreshStatistics;
+    final LoadingCache<I, Loaded<O>> cache;
+
+    /**
+     * Decorates a DAO.
+     * @param name Name of the cache, used for statistics.
+     * @param delegate The DAO whose results are cached.
+     * @param settings The size, expiry and refresh time of the cache.
+     * @param executor Runs background refreshes and cache maintenance. It should never run tasks on the submitting
+     *                 thread, or that request will wait for the refresh.
+     * @param cacheStatistics Where the cache's statistics are reported.
+     */
+    public CachingReadableDao(String name, ReadableDao<I, O> delegate, CacheSettings settings, Executor executor,
+                              CacheStatistics cacheStatistics) {
+        this(name, delegate, settings, executor, cacheStatistics, Ticker.systemTicker());
+    }
+
+    @VisibleForTesting
+    CachingReadableDao(String name, ReadableDao<I, O> delegate, CacheSettings settings, Executor executor,
+                       CacheStatistics cacheStatistics, Ticker ticker) {
+        this.delegate = delegate;
+        this.ticker = ticker;
+        this.refreshNanos = settings.isRefreshing() ? settings.getRefreshAfterWrite().toNanos() : Long.MAX_VALUE;
+        this.refreshStatistics = cacheStatistics.forRefreshes(name);
+        this.cache = CachingReadableDao.<I, O>newCache(settings, executor, ticker).build(loader());
+        cacheStatistics.register(name, cache);
+    }
+
+    /**
+     * Gets an object from the cache, loading it from the decorated DAO if it is not cached. Null queries are never
+     * cached.
+     * @param inputQuery The information necessary to retrieve an object.
+     * @return The object queried for.
+     */
+    @Override
+    public O get(I inputQuery) {
+        if (inputQuery == null) {
+            return delegate.get(null);
+        }
+        return value(cache.get(inputQuery));
+    }
+
+    /**
+     * Drops the cached object for a query, so the next get loads it again.
+     * @param inputQuery The query whose object has changed.
+     */
+    public void invalidate(I inputQuery) {
+        cache.invalidate(inputQuery);
+    }
+
+    /**
+     * Drops every cached object.
+     */
+    public void invalidateAll() {
+        cache.invalidateAll();
+    }
+
+    CacheLoader<I, Loaded<O>> loader() {
+        return new Loader();
+    }
+
+    /**
+     * Unwraps a cached entry, counting it as a stale serve if it is due to be refreshed.
+     */
+    O value(Loaded<O> loaded) {
+        if (ticker.read() - loaded.loadedAtNanos >= refreshNanos) {
+            refreshStatistics.recordStaleServe();
+        }
+        return loaded.value;
+    }
+
+    Loaded<O> loaded(O value) {
+        return new Loaded<>(value, ticker.read());
+    }
+
+    /**
+     * Whether a result says there is no data for its query: null, or an empty collection or map.
+     * @param result A result loaded from a DAO.
+     * @return true if the result is negative
+     */
+    static boolean isNegative(Object result) {
+        return result == null ||
+                result instanceof Collection && ((Collection<?>) result).isEmpty() ||
+                result instanceof Map && ((Map<?, ?>) result).isEmpty();
+    }
+
+    private static <I, O> Caffeine<I, Loaded<O>> newCache(CacheSettings settings, Executor executor,
+                                                          Ticker ticker) {
+        final long expireNanos = settings.getExpireAfterWrite().toNanos();
+        final long negativeExpireNanos = settings.getNegativeExpireAfterWrite().toNanos();
+        final Caffeine<I, Loaded<O>> builder = Caffeine.newBuilder()
+                .maximumSize(settings.getMaximumSize())
+                .expireAfter(new Expiry<I, Loaded<O>>() {
+                    @Override
+                    public long expireAfterCreate(I inputQuery, Loaded<O> loaded, long currentTime) {
+                        return isNegative(loaded.value) ? negativeExpireNanos : expireNanos;
+                    }
+
+                    @Override
+                    public long expireAfterUpdate(I inputQuery, Loaded<O> loaded, long currentTime,
+                                                  long currentDuration) {
+                        return expireAfterCreate(inputQuery, loaded, currentTime);
+                    }
+
+                    @Override
+                    public long expireAfterRead(I inputQuery, Loaded<O> loaded, long currentTime,
+                                                long currentDuration) {
+                        return currentDuration;
+                    }
+                })
+                .executor(executor)
+                .ticker(ticker)
+                .recordStats();
+        if (settings.isRefreshing()) {
+            builder.refreshAfterWrite(settings.getRefreshAfterWrite());
+        }
+        return builder;
+    }
+
+    /**
+     * Loads entries from the decorated DAO, timing background refreshes.
+     */
+    class Loader implements CacheLoader<I, Loaded<O>> {
+        @Override
+        public Loaded<O> load(I inputQuery) {
+            return loaded(delegate.get(inputQuery));
+        }
+
+        @Override
+        public Loaded<O> reload(I inputQuery, Loaded<O> oldValue) {
+            final long start = ticker.read();
+            try {
+                final Loaded<O> reloaded = load(inputQuery);
+                refreshStatistics.recordRefresh(ticker.read() - start);
+                return reloaded;
+            } catch (RuntimeException e) {
+                refreshStatistics.recordRefreshFailure();
+                throw e;
+            }
+        }
+    }
+
+    /**
+     * A cached result, which may be null, and when it was loaded.
+     * @param <O> The type of the result.
+     */
+    static final class Loaded<O> {
+        private final O value;
+        private final long loadedAtNanos;
+
+        Loaded(O value, long loadedAtNanos) {
+            this.value = value;
+            this.loadedAtNanos = loadedAtNanos;
+        }
+    }
+}
@@ -0,0 +1,81 @@
+package com.amazon.ata.advertising.service.dao;
+
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * A CoalescingReadableDao for a DAO that can also read in bulk. A getAll shares the calls already in flight for any of
+ * its queries, whether they were started by get or getAll, and fetches only the rest, in one bulk call.
+ * @param <I> The input type needed to retrieve an object.
+ * @param <O> The type to be retrieved from the datasource.
+ */
+public class CoalescingBulkReadableDao<I, O> extends CoalescingReadableDao<I, O> implements BulkReadableDao<I, O> {
+    private final BulkReadableDao<I, O> delegate;
+
+    /**
+     * Decorates a bulk DAO.
+     * @param dependency Name of the call the DAO makes, used for statistics.
+     * @param delegate The DAO whose calls are shared.
+     * @param dependencyStatistics Where the coalesced calls are counted.
+     */
+    public CoalescingBulkReadableDao(String dependency, BulkReadableDao<I, O> delegate,
+                                     DependencyStatistics dependencyStatistics) {
+        super(dependency, delegate, dependencyStatistics);
+        this.delegate = delegate;
+    }
+
+    /**
+     * Gets an object from the decorated DAO for each query, joining the calls already in flight for equal queries.
+     * If any query is null, nothing is coalesced.
+     * @param inputQueries The information necessary to retrieve each object. Duplicates are only retrieved once.
+     * @return The objects queried for, keyed by the query that retrieved them.
+     */
+    @Override
+    public Map<I, O> getAll(Collection<I> inputQueries) {
+        if (inputQueries.contains(null)) {
+            return delegate.getAll(inputQueries);
+        }
+
+        final Map<I, CompletableFuture<O>> leading = new LinkedHashMap<>();
+        final Map<I, CompletableFuture<O>> following = new LinkedHashMap<>();
+        for (I inputQuery : new LinkedHashSet<>(inputQueries)) {
+            final CompletableFuture<O> call = new CompletableFuture<>();
+            final CompletableFuture<O> inFlightCall = inFlight.putIfAbsent(inputQuery, call);
+            if (inFlightCall == null) {
+                leading.put(inputQuery, call);
+            } else {
+                statistics.recordCoalesced();
+                following.put(inputQuery, inFlightCall);
+            }
+        }
+
+        final Map<I, O> results = new HashMap<>();
+        if (!leading.isEmpty()) {
+            try {
+                final Map<I, O> fetched = delegate.getAll(leading.keySet());
+                leading.forEach((inputQuery, call) -> {
+                    call.complete(fetched.get(inputQuery));
+                    if (fetched.containsKey(inputQuery)) {
+                        results.put(inputQuery, fetched.get(inputQuery));
+                    }
+                });
+            } catch (RuntimeException e) {
+                leading.values().forEach(call -> call.completeExceptionally(e));
+                throw e;
+            } finally {
+                leading.forEach(inFlight::remove);
+            }
+        }
+        following.forEach((inputQuery, call) -> {
+            final O result = join(call);
+            if (result != null) {
+                results.put(inputQuery, result);
+            }
+        });
+        return results;
+    }
+}
@@ -0,0 +1,72 @@
+package com.amazon.ata.advertising.service.dao;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Decorates a DAO so that concurrent gets for equal queries share one call to it. The first caller for a query makes
+ * the call, and every caller that arrives while it is in flight waits for and receives the same result, or the same
+ * exception. Once the call returns, the next get makes a new call; nothing is cached.
+ * @param <I> The input type needed to retrieve an object.
+ * @param <O> The type to be retrieved from the datasource.
+ */
+public class CoalescingReadableDao<I, O> implements ReadableDao<I, O> {
+    private final ReadableDao<I, O> delegate;
+    final ConcurrentHashMap<I, CompletableFuture<O>> inFlight = new ConcurrentHashMap<>();
+    final DependencyCallStatistics statistics;
+
+    /**
+     * Decorates a DAO.
+     * @param dependency Name of the call the DAO makes, used for statistics.
+     * @param delegate The DAO whose calls are shared.
+     * @param dependencyStatistics Where the coalesced calls are counted.
+     */
+    public CoalescingReadableDao(String dependency, ReadableDao<I, O> delegate,
+                                 DependencyStatistics dependencyStatistics) {
+        this.delegate = delegate;
+        this.statistics = dependencyStatistics.forDependency(dependency);
+    }
+
+    /**
+     * Gets an object from the decorated DAO, joining the call already in flight for an equal query if there is one.
+     * Null queries are never coalesced.
+     * @param inputQuery The information necessary to retrieve an object.
+     * @return The object queried for.
+     */
+    @Override
+    public O get(I inputQuery) {
+        if (inputQuery == null) {
+            return delegate.get(null);
+        }
+
+        final CompletableFuture<O> call = new CompletableFuture<>();
+        final CompletableFuture<O> inFlightCall = inFlight.putIfAbsent(inputQuery, call);
+        if (inFlightCall != null) {
+            statistics.recordCoalesced();
+            return join(inFlightCall);
+        }
+
+        try {
+            final O result = delegate.get(inputQuery);
+            call.complete(result);
+            return result;
+        } catch (RuntimeException e) {
+            call.completeExceptionally(e);
+            throw e;
+        } finally {
+            inFlight.remove(inputQuery, call);
+        }
+    }
+
+    static <O> O join(CompletableFuture<O> call) {
+        try {
+            return call.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            throw e;
+        }
+    }
+}
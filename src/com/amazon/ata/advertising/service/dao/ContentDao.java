@@ -2,28 +2,57 @@ package com.amazon.ata.advertising.service.dao;
 
 import com.amazon.ata.advertising.service.exceptions.AdvertisementClientException;
 import com.amazon.ata.advertising.service.model.AdvertisementContent;
+import com.amazon.ata.advertising.service.targeting.TargetingGroup;
 import com.amazon.ata.advertising.service.util.EncryptionUtil;
 
+import com.amazonaws.services.dynamodbv2.AmazonDynamoDB;
 import com.amazonaws.services.dynamodbv2.datamodeling.DynamoDBMapper;
+import com.amazonaws.services.dynamodbv2.datamodeling.DynamoDBMapperTableModel;
 import com.amazonaws.services.dynamodbv2.datamodeling.DynamoDBQueryExpression;
+import com.amazonaws.services.dynamodbv2.datamodeling.DynamoDBTransactionWriteExpression;
+import com.amazonaws.services.dynamodbv2.datamodeling.TransactionWriteRequest;
+import com.amazonaws.services.dynamodbv2.model.AttributeValue;
+import com.amazonaws.services.dynamodbv2.model.CancellationReason;
+import com.amazonaws.services.dynamodbv2.model.ConditionalCheckFailedException;
+import com.amazonaws.services.dynamodbv2.model.TransactionCanceledException;
+import com.amazonaws.services.dynamodbv2.model.UpdateItemRequest;
+import com.google.common.collect.Lists;
 
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.UUID;
 import javax.inject.Inject;
 
 /**
  * Gets ATA Content based on Marketplace.
+ *
+ * <p>Writes to existing content are single conditional requests, so content that is deleted while it is being updated
+ * is never written back.
  */
 public class ContentDao implements ReadableDao<String, List<AdvertisementContent>> {
+    private static final String CONTENT_EXISTS = "attribute_exists(#contentId)";
+    private static final String CONDITIONAL_CHECK_FAILED = "ConditionalCheckFailed";
+    /**
+     * The most items DynamoDB writes in one transaction.
+     */
+    static final int MAXIMUM_TRANSACTION_ITEMS = 100;
+
     private final DynamoDBMapper mapper;
+    private final AmazonDynamoDB dynamoDb;
 
     /**
      * Constructs a ContentDao.
      * @param mapper Connection to dynamo
+     * @param dynamoDb Client for the conditional writes the mapper cannot make
      */
     @Inject
-    public ContentDao(DynamoDBMapper mapper) {
+    public ContentDao(DynamoDBMapper mapper, AmazonDynamoDB dynamoDb) {
         this.mapper = mapper;
+        this.dynamoDb = dynamoDb;
     }
 
     /**
@@ -63,43 +92,90 @@ public class ContentDao implements ReadableDao<String, List<AdvertisementContent
     }
 
     /**
-     * Update an AdvertisementContent's renderable content and it's marketplace.
+     * Update an AdvertisementContent's renderable content and it's marketplace, in a single UpdateItem that only
+     * succeeds if the content still exists.
      * @param marketplaceId the marketplace to move the content to.
      * @param advertisementContent The renderable content to be updated.
      * @return The updated AdvertisementContent.
      */
     public AdvertisementContent update(String marketplaceId, AdvertisementContent advertisementContent) {
-        AdvertisementContent hashKey = AdvertisementContent.builder()
-                .withContentId(advertisementContent.getContentId())
-                .build();
-        AdvertisementContent existingAdvertisementContent = mapper.load(hashKey);
-        if (existingAdvertisementContent == null) {
-            throw new AdvertisementClientException("No content exists with the ID " +
-                    advertisementContent.getContentId());
+        String encryptedMarketplace = EncryptionUtil.encryptMarketplaceId(marketplaceId);
+        DynamoDBMapperTableModel<AdvertisementContent> model = mapper.getTableModel(AdvertisementContent.class);
+        Map<String, String> names = new HashMap<>();
+        names.put("#contentId", model.hashKey().name());
+        names.put("#marketplaceId", AdvertisementContent.MARKETPLACE_ID);
+        names.put("#renderableContent", AdvertisementContent.RENDERABLE_CONTENT);
+        Map<String, AttributeValue> values = new HashMap<>();
+        values.put(":marketplaceId", new AttributeValue(encryptedMarketplace));
+        String updateExpression;
+        if (advertisementContent.getRenderableContent() == null) {
+            updateExpression = "SET #marketplaceId = :marketplaceId REMOVE #renderableContent";
+        } else {
+            updateExpression = "SET #marketplaceId = :marketplaceId, #renderableContent = :renderableContent";
+            values.put(":renderableContent", new AttributeValue(advertisementContent.getRenderableContent()));
         }
 
-        String encryptedMarketplace = EncryptionUtil.encryptMarketplaceId(marketplaceId);
+        try {
+            dynamoDb.updateItem(new UpdateItemRequest()
+                    .withTableName(mapper.generateCreateTableRequest(AdvertisementContent.class).getTableName())
+                    .withKey(model.convertKey(advertisementContent.getContentId(), null))
+                    .withUpdateExpression(updateExpression)
+                    .withConditionExpression(CONTENT_EXISTS)
+                    .withExpressionAttributeNames(names)
+                    .withExpressionAttributeValues(values));
+        } catch (ConditionalCheckFailedException e) {
+            throw new AdvertisementClientException("No content exists with the ID " +
+                    advertisementContent.getContentId(), e);
+        }
         advertisementContent.setMarketplaceId(encryptedMarketplace);
-        mapper.save(advertisementContent);
         return advertisementContent;
     }
 
     /**
-     * Deletes the AdvertisementContent corresponding to the provided contentId. If content cannot be found for the
-     * provided contentId an AdvertisementClientException will be thrown.
+     * Deletes the AdvertisementContent corresponding to the provided contentId together with its targeting groups.
+     * Content with up to 99 targeting groups is deleted in one transaction that only succeeds if the content exists.
+     * Content with more is deleted in several transactions of at most 100 items: the extra groups first, each
+     * transaction only if the content still exists, then the content with its last 99 groups. If a transaction fails,
+     * the content and the groups not yet deleted are left as they are, so the delete can be retried. If content cannot
+     * be found for the provided contentId an AdvertisementClientException will be thrown, and nothing is deleted.
      * @param contentId - the id of the content to delete
-     * @return - the deleted content
+     * @param targetingGroups - the targeting groups of the content
      */
-    public AdvertisementContent delete(String contentId) {
-        AdvertisementContent advertisementContent = AdvertisementContent.builder()
-            .withContentId(contentId).build();
-        AdvertisementContent deletedContent = mapper.load(advertisementContent);
+    public void delete(String contentId, Collection<TargetingGroup> targetingGroups) {
+        AdvertisementContent content = AdvertisementContent.builder().withContentId(contentId).build();
+        DynamoDBTransactionWriteExpression contentExists = new DynamoDBTransactionWriteExpression()
+                .withConditionExpression(CONTENT_EXISTS)
+                .withExpressionAttributeNames(Collections.singletonMap("#contentId",
+                        mapper.getTableModel(AdvertisementContent.class).hashKey().name()));
+        List<List<TargetingGroup>> batches = Lists.partition(new ArrayList<>(targetingGroups),
+                MAXIMUM_TRANSACTION_ITEMS - 1);
 
-        if (deletedContent == null) {
-            throw new AdvertisementClientException("Unable to find content to delete with contentId: " + contentId);
+        for (int batch = 0; batch < batches.size() - 1; batch++) {
+            TransactionWriteRequest transaction = new TransactionWriteRequest()
+                    .addConditionCheck(content, contentExists);
+            batches.get(batch).forEach(transaction::addDelete);
+            transactionWrite(contentId, transaction);
+        }
+        TransactionWriteRequest transaction = new TransactionWriteRequest().addDelete(content, contentExists);
+        if (!batches.isEmpty()) {
+            batches.get(batches.size() - 1).forEach(transaction::addDelete);
         }
+        transactionWrite(contentId, transaction);
+    }
 
-        mapper.delete(deletedContent);
-        return deletedContent;
+    /**
+     * Writes a transaction whose first item requires the content to exist.
+     */
+    private void transactionWrite(String contentId, TransactionWriteRequest transaction) {
+        try {
+            mapper.transactionWrite(transaction);
+        } catch (TransactionCanceledException e) {
+            List<CancellationReason> reasons = e.getCancellationReasons();
+            if (reasons != null && !reasons.isEmpty() && CONDITIONAL_CHECK_FAILED.equals(reasons.get(0).getCode())) {
+                throw new AdvertisementClientException("Unable to find content to delete with contentId: " +
+                        contentId, e);
+            }
+            throw e;
+        }
     }
 }
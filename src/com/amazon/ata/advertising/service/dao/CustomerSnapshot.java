@@ -0,0 +1,406 @@
+package com.amazon.ata.advertising.service.dao;
+
+import com.amazon.ata.advertising.service.model.RequestContext;
+import com.amazon.ata.customerservice.CustomerProfile;
+import com.amazon.ata.customerservice.Spend;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * A read-only, memory-mapped snapshot of customer profiles, spend and prime benefits, written by
+ * CustomerSnapshotWriter.
+ *
+ * <p>The file is a header followed by fixed-size records sorted by customer id and then marketplace, and then a sparse
+ * index: the first eight characters of every 64th record's customer id, as a big-endian long. The index is read onto
+ * the heap, about 1MB for 10 million records, so a lookup binary searches it to narrow the search to a few adjacent
+ * records before touching the mapped pages. Finding a customer allocates nothing; only the value returned
+ * is allocated, and profiles and prime benefit lists are shared between customers with the same values, so they must
+ * not be modified.
+ *
+ * <p>Header, big-endian: magic, version, key width, record size, record count, creation time in epoch milliseconds,
+ * the offset of the first record, then the marketplace, spend category, age range, home state and prime benefit
+ * dictionaries, each a count followed by length-prefixed ASCII strings. Each record is:
+ * <pre>
+ *   customer id        key width bytes, ASCII, zero padded
+ *   marketplace        1 byte, index into the marketplace dictionary
+ *   signals            1 byte, which of profile, spend and prime benefits were exported
+ *   home state         1 byte, 1 + index into the state dictionary, or 0 for none
+ *   age range          1 byte, 1 + index into the age range dictionary, or 0 for none
+ *   parent             1 byte, 0 for unknown, 1 for no, 2 for yes
+ *   prime benefits     1 byte, bit i set for the i'th benefit in the dictionary
+ *   spend categories   4 bytes, bit i set if the customer has spend in the i'th category
+ *   spend              per category in the dictionary, 4 bytes number of purchases then 4 bytes USD spent
+ * </pre>
+ */
+public final class CustomerSnapshot {
+    static final int MAGIC = 0x41435353;
+    static final short VERSION = 1;
+    static final int FIXED_HEADER_SIZE = 36;
+    static final int MAX_KEY_WIDTH = 255;
+    static final int MAX_MARKETPLACES = 256;
+    static final int MAX_CATEGORIES = 32;
+    static final int MAX_STATES = 255;
+    static final int MAX_AGE_RANGES = 255;
+    static final int MAX_BENEFITS = 8;
+    static final int INDEX_INTERVAL = 64;
+    static final int INDEX_PREFIX_LENGTH = Long.BYTES;
+
+    static final byte HAS_PROFILE = 1;
+    static final byte HAS_SPEND = 2;
+    static final byte HAS_PRIME_BENEFITS = 4;
+
+    static final int MARKETPLACE_OFFSET = 0;
+    static final int SIGNALS_OFFSET = 1;
+    static final int HOME_STATE_OFFSET = 2;
+    static final int AGE_RANGE_OFFSET = 3;
+    static final int PARENT_OFFSET = 4;
+    static final int PRIME_BENEFITS_OFFSET = 5;
+    static final int SPEND_CATEGORIES_OFFSET = 6;
+    static final int SPEND_OFFSET = 10;
+    static final int SPEND_SIZE = 8;
+
+    private static final int PARENT_VALUES = 3;
+
+    private final Path path;
+    private final Instant createdAt;
+    private final int keyWidth;
+    private final int recordSize;
+    private final long recordCount;
+    private final int recordsPerSegment;
+    private final ByteBuffer[] segments;
+    private final long[] index;
+    private final String[] marketplaces;
+    private final String[] categories;
+    private final String[] ageRanges;
+    private final String[] states;
+    private final String[] benefits;
+    private final AtomicReferenceArray<CustomerProfile> profiles;
+    private final List<List<String>> benefitLists;
+
+    private CustomerSnapshot(Path path, ByteBuffer header, FileChannel channel, long maxSegmentBytes)
+            throws IOException {
+        this.path = path;
+        if (header.getInt() != MAGIC) {
+            throw new IOException(path + " is not a customer snapshot");
+        }
+        final short version = header.getShort();
+        if (version != VERSION) {
+            throw new IOException(String.format("%s is version %d of the customer snapshot format, not %d",
+                    path, version, VERSION));
+        }
+        keyWidth = header.getShort();
+        recordSize = header.getInt();
+        recordCount = header.getLong();
+        createdAt = Instant.ofEpochMilli(header.getLong());
+        final long dataOffset = header.getLong();
+        marketplaces = readDictionary(header);
+        categories = readDictionary(header);
+        ageRanges = readDictionary(header);
+        states = readDictionary(header);
+        benefits = readDictionary(header);
+        final long indexOffset = dataOffset + recordCount * recordSize;
+        final int indexLength = indexLength(recordCount);
+        if (recordSize != keyWidth + SPEND_OFFSET + categories.length * SPEND_SIZE
+                || indexOffset + (long) indexLength * Long.BYTES != channel.size()) {
+            throw new IOException(path + " is truncated or corrupt");
+        }
+        index = new long[indexLength];
+        channel.map(FileChannel.MapMode.READ_ONLY, indexOffset, (long) indexLength * Long.BYTES).asLongBuffer()
+                .get(index);
+
+        // A single mapping can hold at most 2GB, so large snapshots are mapped in segments of whole records.
+        recordsPerSegment = (int) Math.max(1, Math.min(maxSegmentBytes, Integer.MAX_VALUE) / recordSize);
+        final int segmentCount = (int) ((recordCount + recordsPerSegment - 1) / recordsPerSegment);
+        segments = new ByteBuffer[segmentCount];
+        for (int segment = 0; segment < segmentCount; segment++) {
+            final long firstRecord = (long) segment * recordsPerSegment;
+            final long records = Math.min(recordsPerSegment, recordCount - firstRecord);
+            segments[segment] = channel.map(FileChannel.MapMode.READ_ONLY,
+                    dataOffset + firstRecord * recordSize, records * recordSize);
+        }
+
+        profiles = new AtomicReferenceArray<>((states.length + 1) * (ageRanges.length + 1) * PARENT_VALUES);
+        final List<List<String>> lists = new ArrayList<>(1 << benefits.length);
+        for (int mask = 0; mask < 1 << benefits.length; mask++) {
+            final List<String> list = new ArrayList<>(Integer.bitCount(mask));
+            for (int benefit = 0; benefit < benefits.length; benefit++) {
+                if ((mask & 1 << benefit) != 0) {
+                    list.add(benefits[benefit]);
+                }
+            }
+            lists.add(Collections.unmodifiableList(list));
+        }
+        benefitLists = lists;
+    }
+
+    /**
+     * Maps a snapshot file. The file can be replaced while it is mapped, but must not be modified in place.
+     * @param path The snapshot file.
+     * @return The snapshot.
+     * @throws IOException if the file cannot be read or is not a valid snapshot
+     */
+    public static CustomerSnapshot open(Path path) throws IOException {
+        return open(path, Integer.MAX_VALUE);
+    }
+
+    static CustomerSnapshot open(Path path, long maxSegmentBytes) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            final long size = channel.size();
+            if (size < FIXED_HEADER_SIZE) {
+                throw new IOException(path + " is not a customer snapshot");
+            }
+            final ByteBuffer fixedHeader = channel.map(FileChannel.MapMode.READ_ONLY, 0, FIXED_HEADER_SIZE);
+            fixedHeader.position(FIXED_HEADER_SIZE - Long.BYTES);
+            final long dataOffset = fixedHeader.getLong();
+            if (dataOffset < FIXED_HEADER_SIZE || dataOffset > size) {
+                throw new IOException(path + " is truncated or corrupt");
+            }
+            return new CustomerSnapshot(path, channel.map(FileChannel.MapMode.READ_ONLY, 0, dataOffset), channel,
+                    maxSegmentBytes);
+        }
+    }
+
+    /**
+     * Gets a customer's profile from the snapshot.
+     * @param customerId The customer.
+     * @return The customer's profile, or null if the snapshot does not have it.
+     */
+    public CustomerProfile getCustomerProfile(String customerId) {
+        final long record = findCustomer(customerId);
+        if (record < 0 || !has(record, HAS_PROFILE)) {
+            return null;
+        }
+        final ByteBuffer segment = segment(record);
+        final int position = position(record) + keyWidth;
+        final int state = segment.get(position + HOME_STATE_OFFSET) & 0xFF;
+        final int ageRange = segment.get(position + AGE_RANGE_OFFSET) & 0xFF;
+        final int parent = segment.get(position + PARENT_OFFSET);
+        final int index = (state * (ageRanges.length + 1) + ageRange) * PARENT_VALUES + parent;
+        CustomerProfile profile = profiles.get(index);
+        if (profile == null) {
+            profile = CustomerProfile.builder()
+                    .withHomeState(state == 0 ? null : states[state - 1])
+                    .withAgeRange(ageRange == 0 ? null : ageRanges[ageRange - 1])
+                    .withParent(parent == 0 ? null : parent == 2)
+                    .build();
+            profiles.set(index, profile);
+        }
+        return profile;
+    }
+
+    /**
+     * Gets a customer's spend per category in a marketplace from the snapshot.
+     * @param requestContext The customer and marketplace.
+     * @return The customer's spend by category, or null if the snapshot does not have it.
+     */
+    public Map<String, Spend> getCustomerSpend(RequestContext requestContext) {
+        final long record = find(requestContext);
+        if (record < 0 || !has(record, HAS_SPEND)) {
+            return null;
+        }
+        final ByteBuffer segment = segment(record);
+        final int position = position(record) + keyWidth;
+        final int spendCategories = segment.getInt(position + SPEND_CATEGORIES_OFFSET);
+        final Map<String, Spend> spend = new HashMap<>();
+        for (int category = 0; category < categories.length; category++) {
+            if ((spendCategories & 1 << category) != 0) {
+                final int spendPosition = position + SPEND_OFFSET + category * SPEND_SIZE;
+                spend.put(categories[category], Spend.builder()
+                        .withNumberOfPurchases(segment.getInt(spendPosition))
+                        .withUsdSpent(segment.getInt(spendPosition + Integer.BYTES))
+                        .build());
+            }
+        }
+        return spend;
+    }
+
+    /**
+     * Gets a customer's prime benefits in a marketplace from the snapshot.
+     * @param requestContext The customer and marketplace.
+     * @return The types of the customer's benefits, or null if the snapshot does not have them.
+     */
+    public List<String> getPrimeBenefits(RequestContext requestContext) {
+        final long record = find(requestContext);
+        if (record < 0 || !has(record, HAS_PRIME_BENEFITS)) {
+            return null;
+        }
+        return benefitLists.get(segment(record).get(position(record) + keyWidth + PRIME_BENEFITS_OFFSET) & 0xFF);
+    }
+
+    public Path getPath() {
+        return path;
+    }
+
+    public Instant getCreatedAt() {
+        return createdAt;
+    }
+
+    public long getRecordCount() {
+        return recordCount;
+    }
+
+    /**
+     * Finds the record of a customer in a marketplace.
+     * @return the record's index, or -1 if there is none
+     */
+    long find(RequestContext requestContext) {
+        if (requestContext == null) {
+            return -1;
+        }
+        final String customerId = requestContext.getCustomerId();
+        final int marketplace = marketplaceIndex(requestContext.getMarketplaceId());
+        if (marketplace < 0 || !isKey(customerId)) {
+            return -1;
+        }
+        final long record = lowerBound(customerId, marketplace);
+        return record < recordCount && compare(record, customerId, marketplace) == 0 ? record : -1;
+    }
+
+    /**
+     * Finds the first record of a customer, in any marketplace.
+     * @return the record's index, or -1 if there is none
+     */
+    long findCustomer(String customerId) {
+        if (!isKey(customerId)) {
+            return -1;
+        }
+        final long record = lowerBound(customerId, -1);
+        return record < recordCount && compareKey(record, customerId) == 0 ? record : -1;
+    }
+
+    private long lowerBound(String customerId, int marketplace) {
+        // Records before the last indexed record with a smaller prefix, and from the first indexed record with a
+        // larger prefix, cannot hold the customer.
+        final long prefix = keyPrefix(customerId);
+        final int firstNotSmaller = firstIndexed(prefix);
+        final int firstLarger = prefix == Long.MAX_VALUE ? index.length : firstIndexed(prefix + 1);
+        long low = firstNotSmaller == 0 ? 0 : (long) (firstNotSmaller - 1) * INDEX_INTERVAL;
+        long high = Math.min(recordCount, (long) firstLarger * INDEX_INTERVAL);
+        while (low < high) {
+            final long middle = (low + high) >>> 1;
+            if (compare(middle, customerId, marketplace) < 0) {
+                low = middle + 1;
+            } else {
+                high = middle;
+            }
+        }
+        return low;
+    }
+
+    /**
+     * The position of the first indexed record whose prefix is at least the given prefix.
+     */
+    private int firstIndexed(long prefix) {
+        int low = 0;
+        int high = index.length;
+        while (low < high) {
+            final int middle = (low + high) >>> 1;
+            if (index[middle] < prefix) {
+                low = middle + 1;
+            } else {
+                high = middle;
+            }
+        }
+        return low;
+    }
+
+    private int compare(long record, String customerId, int marketplace) {
+        final int comparison = compareKey(record, customerId);
+        if (comparison != 0) {
+            return comparison;
+        }
+        return Integer.compare(segment(record).get(position(record) + keyWidth + MARKETPLACE_OFFSET) & 0xFF,
+                marketplace);
+    }
+
+    /**
+     * Compares a record's customer id with a customer id, in the same order as String.compareTo. Customer ids are
+     * ASCII and zero padded, so they compare character by character.
+     */
+    private int compareKey(long record, String customerId) {
+        final ByteBuffer segment = segment(record);
+        final int position = position(record);
+        for (int i = 0; i < keyWidth; i++) {
+            final int stored = segment.get(position + i);
+            final int wanted = i < customerId.length() ? customerId.charAt(i) : 0;
+            if (stored != wanted) {
+                return stored - wanted;
+            }
+            if (stored == 0) {
+                return i < customerId.length() ? -1 : 0;
+            }
+        }
+        return customerId.length() > keyWidth ? -1 : 0;
+    }
+
+    private boolean has(long record, byte signal) {
+        return (segment(record).get(position(record) + keyWidth + SIGNALS_OFFSET) & signal) != 0;
+    }
+
+    private int marketplaceIndex(String marketplaceId) {
+        for (int i = 0; i < marketplaces.length; i++) {
+            if (marketplaces[i].equals(marketplaceId)) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    private boolean isKey(String customerId) {
+        if (customerId == null || customerId.isEmpty() || customerId.length() > keyWidth) {
+            return false;
+        }
+        for (int i = 0; i < customerId.length(); i++) {
+            if (customerId.charAt(i) > Byte.MAX_VALUE) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private ByteBuffer segment(long record) {
+        return segments[(int) (record / recordsPerSegment)];
+    }
+
+    private int position(long record) {
+        return (int) (record % recordsPerSegment) * recordSize;
+    }
+
+    /**
+     * The first eight characters of an ASCII customer id as a big-endian long, zero padded, so prefixes compare in the
+     * same order as customer ids.
+     */
+    static long keyPrefix(String customerId) {
+        long prefix = 0;
+        for (int i = 0; i < INDEX_PREFIX_LENGTH; i++) {
+            prefix = prefix << Byte.SIZE | (i < customerId.length() ? customerId.charAt(i) : 0);
+        }
+        return prefix;
+    }
+
+    static int indexLength(long recordCount) {
+        return (int) ((recordCount + INDEX_INTERVAL - 1) / INDEX_INTERVAL);
+    }
+
+    private static String[] readDictionary(ByteBuffer header) {
+        final String[] dictionary = new String[header.getShort()];
+        for (int i = 0; i < dictionary.length; i++) {
+            final byte[] value = new byte[header.getShort()];
+            header.get(value);
+            dictionary[i] = new String(value, StandardCharsets.US_ASCII);
+        }
+        return dictionary;
+    }
+}
@@ -0,0 +1,200 @@
+package com.amazon.ata.advertising.service.dao;
+
+import com.amazon.ata.advertising.service.dependency.ExternalServiceModule;
+import com.amazon.ata.advertising.service.model.RequestContext;
+import com.amazon.ata.customerservice.CustomerProfile;
+import com.amazon.ata.customerservice.Spend;
+
+import com.amazonaws.auth.AWSCredentialsProvider;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.Clock;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.function.Supplier;
+import java.util.stream.Collectors;
+
+/**
+ * Batch export of customer profiles, spend and prime benefits into a CustomerSnapshot. Customer spend is recalculated
+ * once a day, so the export is meant to run daily, after the recalculation, with the service mapping each new
+ * snapshot as it appears.
+ *
+ * <p>Run it with the customer and prime club service endpoint system properties the service uses:
+ * <pre>
+ *   java CustomerSnapshotExporter CUSTOMER_ID_FILE SNAPSHOT_FILE MARKETPLACE_ID...
+ * </pre>
+ * where CUSTOMER_ID_FILE has one customer id per line. Every customer is exported for every marketplace.
+ */
+public class CustomerSnapshotExporter {
+    private static final Logger LOG = LogManager.getLogger(CustomerSnapshotExporter.class);
+    private static final String EXPORT_THREADS = "ata.advertising.service.customerSnapshot.exportThreads";
+    private static final int DEFAULT_EXPORT_THREADS = 32;
+    private static final int BATCH_SIZE = 1_000;
+
+    private final ReadableDao<String, CustomerProfile> customerProfileDao;
+    private final ReadableDao<RequestContext, Map<String, Spend>> customerSpendDao;
+    private final ReadableDao<RequestContext, List<String>> primeDao;
+    private final ExecutorService executor;
+    private final Clock clock;
+
+    /**
+     * Creates an exporter.
+     * @param customerProfileDao Source of customer profiles.
+     * @param customerSpendDao Source of customer spend.
+     * @param primeDao Source of prime benefits.
+     * @param executor Fetches customers in parallel.
+     * @param clock Gives the snapshot's creation time.
+     */
+    public CustomerSnapshotExporter(ReadableDao<String, CustomerProfile> customerProfileDao,
+                                    ReadableDao<RequestContext, Map<String, Spend>> customerSpendDao,
+                                    ReadableDao<RequestContext, List<String>> primeDao,
+                                    ExecutorService executor, Clock clock) {
+        this.customerProfileDao = customerProfileDao;
+        this.customerSpendDao = customerSpendDao;
+        this.primeDao = primeDao;
+        this.executor = executor;
+        this.clock = clock;
+    }
+
+    /**
+     * Fetches every customer's signals in every marketplace and writes them to a snapshot. Signals that cannot be
+     * fetched are left out, and customers with ids or values the snapshot cannot hold are skipped; either way, they
+     * are fetched from their services at request time instead.
+     * @param customerIds The customers to export, in any order.
+     * @param marketplaceIds The marketplaces to export them for.
+     * @param target The snapshot file to create or replace.
+     * @return The number of customers and marketplaces written.
+     * @throws IOException if the snapshot cannot be written, in which case any existing snapshot is left in place
+     */
+    public long export(Collection<String> customerIds, Collection<String> marketplaceIds, Path target)
+            throws IOException {
+        final List<String> customers = customerIds.stream()
+                .filter(CustomerSnapshotWriter::isCustomerId)
+                .distinct()
+                .sorted()
+                .collect(Collectors.toList());
+        final List<String> marketplaces = marketplaceIds.stream().distinct().sorted().collect(Collectors.toList());
+        final int keyWidth = customers.stream().mapToInt(String::length).max().orElse(1);
+
+        final CustomerSnapshotWriter writer = new CustomerSnapshotWriter(target, keyWidth, marketplaces, clock);
+        long skipped = customerIds.size() - customers.size();
+        try {
+            for (int start = 0; start < customers.size(); start += BATCH_SIZE) {
+                final List<Future<List<Record>>> batch = new ArrayList<>(BATCH_SIZE);
+                for (String customerId : customers.subList(start, Math.min(start + BATCH_SIZE, customers.size()))) {
+                    batch.add(executor.submit(() -> fetch(customerId, marketplaces)));
+                }
+                for (Future<List<Record>> customer : batch) {
+                    for (Record record : customer.get()) {
+                        if (!writer.write(record.customerId, record.marketplaceId, record.profile, record.spend,
+                                record.primeBenefits)) {
+                            skipped++;
+                        }
+                    }
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            writer.abort();
+            throw new IOException("Interrupted exporting the customer snapshot", e);
+        } catch (ExecutionException e) {
+            writer.abort();
+            throw new IOException("Unable to export the customer snapshot", e.getCause());
+        } catch (IOException | RuntimeException e) {
+            writer.abort();
+            throw e;
+        }
+        writer.close();
+        LOG.info(String.format("Exported %d records of %d customers in %d marketplaces to %s. Skipped %d.",
+                writer.getRecordCount(), customers.size(), marketplaces.size(), target, skipped));
+        return writer.getRecordCount();
+    }
+
+    private List<Record> fetch(String customerId, List<String> marketplaces) {
+        final CustomerProfile profile = orNull(() -> customerProfileDao.get(customerId));
+        final List<Record> records = new ArrayList<>(marketplaces.size());
+        for (String marketplaceId : marketplaces) {
+            final RequestContext requestContext = new RequestContext(customerId, marketplaceId);
+            records.add(new Record(customerId, marketplaceId, profile,
+                    orNull(() -> customerSpendDao.get(requestContext)),
+                    orNull(() -> primeDao.get(requestContext))));
+        }
+        return records;
+    }
+
+    private static <T> T orNull(Supplier<T> signal) {
+        try {
+            return signal.get();
+        } catch (RuntimeException e) {
+            LOG.warn("Unable to fetch a customer signal. It will be left out of the snapshot.", e);
+            return null;
+        }
+    }
+
+    /**
+     * One customer's signals in one marketplace.
+     */
+    private static final class Record {
+        private final String customerId;
+        private final String marketplaceId;
+        private final CustomerProfile profile;
+        private final Map<String, Spend> spend;
+        private final List<String> primeBenefits;
+
+        private Record(String customerId, String marketplaceId, CustomerProfile profile, Map<String, Spend> spend,
+                       List<String> primeBenefits) {
+            this.customerId = customerId;
+            this.marketplaceId = marketplaceId;
+            this.profile = profile;
+            this.spend = spend;
+            this.primeBenefits = primeBenefits;
+        }
+    }
+
+    /**
+     * Exports a snapshot of the customers in a file from the customer and prime club services.
+     * @param args The customer id file, the snapshot file, and the marketplace ids.
+     * @throws IOException if the customer ids cannot be read or the snapshot cannot be written
+     */
+    public static void main(String[] args) throws IOException {
+        if (args.length < 3) {
+            System.err.println("Usage: CustomerSnapshotExporter CUSTOMER_ID_FILE SNAPSHOT_FILE MARKETPLACE_ID...");
+            System.exit(1);
+        }
+        final List<String> customerIds = Files.readAllLines(Paths.get(args[0]), StandardCharsets.UTF_8).stream()
+                .map(String::trim)
+                .collect(Collectors.toList());
+        final ExternalServiceModule services = new ExternalServiceModule();
+        final AWSCredentialsProvider credentials = services.provideAWSCredentialsProvider();
+        final ExecutorService executor = Executors.newFixedThreadPool(
+                Integer.getInteger(EXPORT_THREADS, DEFAULT_EXPORT_THREADS),
+                new ThreadFactoryBuilder()
+                        .setNameFormat("customer-snapshot-export-%d")
+                        .setDaemon(true)
+                        .build());
+        try {
+            new CustomerSnapshotExporter(
+                    new CustomerProfileDao(services.provideCustomerService(credentials)),
+                    new CustomerSpendDao(services.provideCustomerService(credentials)),
+                    new PrimeDao(services.providePrimeClubService(credentials)),
+                    executor, Clock.systemUTC())
+                    .export(customerIds, Arrays.asList(args).subList(2, args.length), Paths.get(args[1]));
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+}
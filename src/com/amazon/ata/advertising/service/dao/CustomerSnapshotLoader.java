@@ -0,0 +1,96 @@
+package com.amazon.ata.advertising.service.dao;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.time.Clock;
+import java.time.Duration;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Keeps the latest CustomerSnapshot mapped. The snapshot file is replaced by each day's export, and mapped again the
+ * next time it is reloaded; until then, and if the new file cannot be read, the previous snapshot is kept. A snapshot
+ * older than the maximum age is not used at all, so a failing export cannot leave the service serving ever older data.
+ */
+public class CustomerSnapshotLoader {
+    private static final Logger LOG = LogManager.getLogger(CustomerSnapshotLoader.class);
+
+    private final Path path;
+    private final Duration maximumAge;
+    private final Clock clock;
+    private volatile CustomerSnapshot snapshot;
+    private FileTime loadedModifiedTime;
+
+    /**
+     * Creates a loader and maps the snapshot, if there is one.
+     * @param path The snapshot file, or null if the service has no snapshot.
+     * @param maximumAge How long after it is created a snapshot is used.
+     * @param clock Gives the current time.
+     */
+    public CustomerSnapshotLoader(Path path, Duration maximumAge, Clock clock) {
+        this.path = path;
+        this.maximumAge = maximumAge;
+        this.clock = clock;
+        reload();
+    }
+
+    /**
+     * The current snapshot.
+     * @return the snapshot, or null if there is none or it is older than the maximum age
+     */
+    public CustomerSnapshot get() {
+        final CustomerSnapshot current = snapshot;
+        if (current == null || current.getCreatedAt().plus(maximumAge).isBefore(clock.instant())) {
+            return null;
+        }
+        return current;
+    }
+
+    /**
+     * Maps the snapshot file again if it has been replaced since it was last mapped.
+     * @return true if a new snapshot was mapped
+     */
+    public synchronized boolean reload() {
+        if (path == null || !Files.exists(path)) {
+            return false;
+        }
+        try {
+            final FileTime modifiedTime = Files.getLastModifiedTime(path);
+            if (modifiedTime.equals(loadedModifiedTime)) {
+                return false;
+            }
+            final CustomerSnapshot loaded = CustomerSnapshot.open(path);
+            loadedModifiedTime = modifiedTime;
+            snapshot = loaded;
+            LOG.info(String.format("Mapped customer snapshot %s with %d records, created at %s",
+                    path, loaded.getRecordCount(), loaded.getCreatedAt()));
+            return true;
+        } catch (IOException e) {
+            LOG.warn(String.format("Unable to map customer snapshot %s. Keeping the previous snapshot.", path), e);
+            return false;
+        }
+    }
+
+    /**
+     * Checks for a new snapshot file every interval.
+     * @param executor Runs the reloads.
+     * @param interval How often to check.
+     */
+    public void scheduleReload(ScheduledExecutorService executor, Duration interval) {
+        if (path == null) {
+            return;
+        }
+        executor.scheduleWithFixedDelay(() -> {
+            try {
+                reload();
+            } catch (RuntimeException e) {
+                LOG.warn("Unable to reload the customer snapshot.", e);
+            }
+        }, interval.toMillis(), interval.toMillis(), TimeUnit.MILLISECONDS);
+    }
+}
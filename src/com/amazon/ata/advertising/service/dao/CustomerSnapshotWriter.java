@@ -0,0 +1,299 @@
+package com.amazon.ata.advertising.service.dao;
+
+import com.amazon.ata.customerservice.AgeRange;
+import com.amazon.ata.customerservice.Category;
+import com.amazon.ata.customerservice.CustomerProfile;
+import com.amazon.ata.customerservice.Spend;
+import com.amazon.ata.customerservice.State;
+import com.amazon.ata.primeclubservice.Benefit;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.Clock;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Writes a CustomerSnapshot file, and its index. Customers must be written in ascending order of customer id and then
+ * marketplace id.
+ * The snapshot is written to a temporary file next to the target, which only replaces the target once it is
+ * complete, so a service mapping the target never sees a partial snapshot. Call abort rather than close to abandon a
+ * snapshot that could not be completed.
+ */
+public class CustomerSnapshotWriter implements Closeable {
+    private static final int BUFFER_SIZE = 1 << 20;
+
+    private final Path target;
+    private final Path temporary;
+    private final FileChannel channel;
+    private final ByteBuffer buffer;
+    private final Clock clock;
+    private final int keyWidth;
+    private final int recordSize;
+    private final String[] marketplaces;
+    private final String[] categories;
+    private final String[] ageRanges;
+    private final String[] states;
+    private final String[] benefits;
+    private long recordCount;
+    private long[] index = new long[1024];
+    private String lastCustomerId;
+    private int lastMarketplace = -1;
+    private boolean closed;
+
+    /**
+     * Starts writing a snapshot.
+     * @param target The snapshot file to create or replace.
+     * @param keyWidth The length of the longest customer id that will be written.
+     * @param marketplaceIds Every marketplace customers will be written for.
+     * @param clock Gives the snapshot's creation time.
+     * @throws IOException if the temporary file cannot be written
+     */
+    public CustomerSnapshotWriter(Path target, int keyWidth, Collection<String> marketplaceIds, Clock clock)
+            throws IOException {
+        if (keyWidth < 1 || keyWidth > CustomerSnapshot.MAX_KEY_WIDTH) {
+            throw new IllegalArgumentException(String.format("Customer ids must be 1 to %d characters long, not %d",
+                    CustomerSnapshot.MAX_KEY_WIDTH, keyWidth));
+        }
+        if (marketplaceIds.size() > CustomerSnapshot.MAX_MARKETPLACES) {
+            throw new IllegalArgumentException(String.format("A snapshot can hold at most %d marketplaces",
+                    CustomerSnapshot.MAX_MARKETPLACES));
+        }
+        this.target = target;
+        this.clock = clock;
+        this.keyWidth = keyWidth;
+        this.marketplaces = marketplaceIds.stream().distinct().sorted().toArray(String[]::new);
+        this.categories = Category.values().clone();
+        this.ageRanges = AgeRange.values().clone();
+        this.states = State.values().clone();
+        this.benefits = Benefit.values().clone();
+        if (categories.length > CustomerSnapshot.MAX_CATEGORIES || ageRanges.length > CustomerSnapshot.MAX_AGE_RANGES
+                || states.length > CustomerSnapshot.MAX_STATES || benefits.length > CustomerSnapshot.MAX_BENEFITS) {
+            throw new IllegalStateException("The customer and prime models have outgrown the snapshot format");
+        }
+        this.recordSize = keyWidth + CustomerSnapshot.SPEND_OFFSET + categories.length * CustomerSnapshot.SPEND_SIZE;
+
+        final ByteBuffer header = header(0);
+        final Path directory = target.toAbsolutePath().getParent();
+        this.temporary = Files.createTempFile(directory, target.getFileName().toString(), ".tmp");
+        this.channel = FileChannel.open(temporary, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING);
+        this.buffer = ByteBuffer.allocate(Math.max(BUFFER_SIZE, recordSize));
+        channel.write(header);
+    }
+
+    /**
+     * Writes a customer's signals in a marketplace. A signal that is null is left out of the snapshot, so it is
+     * fetched from its service instead.
+     * @param customerId The customer. Must be printable ASCII and no longer than the key width.
+     * @param marketplaceId The marketplace, one of those the writer was created with.
+     * @param profile The customer's profile, or null.
+     * @param spend The customer's spend by category in the marketplace, or null.
+     * @param primeBenefits The types of the customer's prime benefits in the marketplace, or null.
+     * @return false if the customer could not be written because a value is not part of the customer or prime
+     *     models, in which case the customer is left out of the snapshot
+     * @throws IOException if the snapshot cannot be written
+     */
+    public boolean write(String customerId, String marketplaceId, CustomerProfile profile, Map<String, Spend> spend,
+                         List<String> primeBenefits) throws IOException {
+        if (!isCustomerId(customerId) || customerId.length() > keyWidth) {
+            throw new IllegalArgumentException(String.format(
+                    "Customer id %s must be printable ASCII of at most %d characters", customerId, keyWidth));
+        }
+        final int marketplace = Arrays.binarySearch(marketplaces, marketplaceId);
+        if (marketplace < 0) {
+            throw new IllegalArgumentException("The snapshot has no marketplace " + marketplaceId);
+        }
+        if (lastCustomerId != null) {
+            final int order = customerId.compareTo(lastCustomerId);
+            if (order < 0 || order == 0 && marketplace <= lastMarketplace) {
+                throw new IllegalArgumentException(String.format(
+                        "Customer %s in %s is out of order. Customers must be sorted by customer and marketplace id.",
+                        customerId, marketplaceId));
+            }
+        }
+
+        final byte[] record = new byte[recordSize];
+        final ByteBuffer fields = ByteBuffer.wrap(record);
+        for (int i = 0; i < customerId.length(); i++) {
+            record[i] = (byte) customerId.charAt(i);
+        }
+        fields.position(keyWidth);
+        fields.put((byte) marketplace);
+        byte signals = 0;
+        if (profile != null) {
+            final int state = indexOrAbsent(states, profile.getHomeState());
+            final int ageRange = indexOrAbsent(ageRanges, profile.getAgeRange());
+            if (state < 0 || ageRange < 0) {
+                return false;
+            }
+            signals |= CustomerSnapshot.HAS_PROFILE;
+            record[keyWidth + CustomerSnapshot.HOME_STATE_OFFSET] = (byte) state;
+            record[keyWidth + CustomerSnapshot.AGE_RANGE_OFFSET] = (byte) ageRange;
+            record[keyWidth + CustomerSnapshot.PARENT_OFFSET] =
+                    (byte) (profile.isParent() == null ? 0 : profile.isParent() ? 2 : 1);
+        }
+        if (primeBenefits != null) {
+            int mask = 0;
+            for (String benefit : primeBenefits) {
+                final int index = Arrays.asList(benefits).indexOf(benefit);
+                if (index < 0) {
+                    return false;
+                }
+                mask |= 1 << index;
+            }
+            signals |= CustomerSnapshot.HAS_PRIME_BENEFITS;
+            record[keyWidth + CustomerSnapshot.PRIME_BENEFITS_OFFSET] = (byte) mask;
+        }
+        if (spend != null) {
+            int mask = 0;
+            for (Map.Entry<String, Spend> categorySpend : spend.entrySet()) {
+                final int category = Arrays.asList(categories).indexOf(categorySpend.getKey());
+                if (category < 0 || categorySpend.getValue() == null) {
+                    return false;
+                }
+                mask |= 1 << category;
+                fields.position(keyWidth + CustomerSnapshot.SPEND_OFFSET + category * CustomerSnapshot.SPEND_SIZE);
+                fields.putInt(categorySpend.getValue().getNumberOfPurchases());
+                fields.putInt(categorySpend.getValue().getUsdSpent());
+            }
+            signals |= CustomerSnapshot.HAS_SPEND;
+            fields.putInt(keyWidth + CustomerSnapshot.SPEND_CATEGORIES_OFFSET, mask);
+        }
+        record[keyWidth + CustomerSnapshot.SIGNALS_OFFSET] = signals;
+
+        if (buffer.remaining() < recordSize) {
+            flush();
+        }
+        buffer.put(record);
+        if (recordCount % CustomerSnapshot.INDEX_INTERVAL == 0) {
+            final int position = (int) (recordCount / CustomerSnapshot.INDEX_INTERVAL);
+            if (position == index.length) {
+                index = Arrays.copyOf(index, index.length * 2);
+            }
+            index[position] = CustomerSnapshot.keyPrefix(customerId);
+        }
+        recordCount++;
+        lastCustomerId = customerId;
+        lastMarketplace = marketplace;
+        return true;
+    }
+
+    /**
+     * Completes the snapshot and moves it into place.
+     * @throws IOException if the snapshot cannot be written
+     */
+    @Override
+    public void close() throws IOException {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        try {
+            for (int position = 0; position < CustomerSnapshot.indexLength(recordCount); position++) {
+                if (buffer.remaining() < Long.BYTES) {
+                    flush();
+                }
+                buffer.putLong(index[position]);
+            }
+            flush();
+            channel.write(header(recordCount), 0);
+            channel.force(true);
+            channel.close();
+            Files.move(temporary, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            channel.close();
+            Files.deleteIfExists(temporary);
+        }
+    }
+
+    /**
+     * Abandons the snapshot, leaving any existing target in place.
+     * @throws IOException if the temporary file cannot be deleted
+     */
+    public void abort() throws IOException {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        try {
+            channel.close();
+        } finally {
+            Files.deleteIfExists(temporary);
+        }
+    }
+
+    public long getRecordCount() {
+        return recordCount;
+    }
+
+    private void flush() throws IOException {
+        buffer.flip();
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+        buffer.clear();
+    }
+
+    private ByteBuffer header(long records) {
+        final String[][] dictionaries = {marketplaces, categories, ageRanges, states, benefits};
+        int size = CustomerSnapshot.FIXED_HEADER_SIZE;
+        for (String[] dictionary : dictionaries) {
+            size += Short.BYTES;
+            for (String value : dictionary) {
+                size += Short.BYTES + value.length();
+            }
+        }
+        final ByteBuffer header = ByteBuffer.allocate(size)
+                .putInt(CustomerSnapshot.MAGIC)
+                .putShort(CustomerSnapshot.VERSION)
+                .putShort((short) keyWidth)
+                .putInt(recordSize)
+                .putLong(records)
+                .putLong(clock.millis())
+                .putLong(size);
+        for (String[] dictionary : dictionaries) {
+            header.putShort((short) dictionary.length);
+            for (String value : dictionary) {
+                header.putShort((short) value.length()).put(value.getBytes(StandardCharsets.US_ASCII));
+            }
+        }
+        header.flip();
+        return header;
+    }
+
+    /**
+     * Whether a customer id can be written to a snapshot: printable ASCII of at most the maximum key width.
+     */
+    static boolean isCustomerId(String customerId) {
+        if (customerId == null || customerId.isEmpty() || customerId.length() > CustomerSnapshot.MAX_KEY_WIDTH) {
+            return false;
+        }
+        for (int i = 0; i < customerId.length(); i++) {
+            final char c = customerId.charAt(i);
+            if (c < ' ' || c > '~') {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * The 1-based index of a value in a dictionary, 0 for null, or -1 if the dictionary does not have it.
+     */
+    private static int indexOrAbsent(String[] dictionary, String value) {
+        if (value == null) {
+            return 0;
+        }
+        final int index = Arrays.asList(dictionary).indexOf(value);
+        return index < 0 ? -1 : index + 1;
+    }
+}
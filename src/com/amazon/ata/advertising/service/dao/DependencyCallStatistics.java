@@ -0,0 +1,125 @@
+package com.amazon.ata.advertising.service.dao;
+
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Calls, coalesced calls, hedges, timeouts, rejections and recent latencies of one downstream dependency.
+ */
+public class DependencyCallStatistics {
+    private static final int LATENCY_WINDOW = 256;
+
+    private final LongAdder calls = new LongAdder();
+    private final LongAdder hedgesIssued = new LongAdder();
+    private final LongAdder hedgesWon = new LongAdder();
+    private final LongAdder timeouts = new LongAdder();
+    private final LongAdder rejections = new LongAdder();
+    private final LongAdder coalescedCalls = new LongAdder();
+    private final AtomicLongArray latencies = new AtomicLongArray(LATENCY_WINDOW);
+    private final AtomicLong latencyCount = new AtomicLong();
+
+    void recordCall() {
+        calls.increment();
+    }
+
+    void recordLatency(long nanos) {
+        latencies.set((int) (latencyCount.getAndIncrement() % LATENCY_WINDOW), nanos);
+    }
+
+    void recordHedge() {
+        hedgesIssued.increment();
+    }
+
+    void recordHedgeWon() {
+        hedgesWon.increment();
+    }
+
+    void recordTimeout() {
+        timeouts.increment();
+    }
+
+    void recordRejection() {
+        rejections.increment();
+    }
+
+    void recordCoalesced() {
+        coalescedCalls.increment();
+    }
+
+    /**
+     * The number of calls made to the dependency, not counting hedges.
+     * @return the call count
+     */
+    public long getCallCount() {
+        return calls.sum();
+    }
+
+    /**
+     * The number of duplicate calls sent because the first call was slower than usual.
+     * @return the hedges issued count
+     */
+    public long getHedgesIssuedCount() {
+        return hedgesIssued.sum();
+    }
+
+    /**
+     * The number of hedges that responded before the call they duplicated.
+     * @return the hedges won count
+     */
+    public long getHedgesWonCount() {
+        return hedgesWon.sum();
+    }
+
+    /**
+     * The number of calls that had no response, from either the call or its hedge, before the timeout.
+     * @return the timeout count
+     */
+    public long getTimeoutCount() {
+        return timeouts.sum();
+    }
+
+    /**
+     * The number of calls and hedges that were not made because every call thread was busy.
+     * @return the rejection count
+     */
+    public long getRejectionCount() {
+        return rejections.sum();
+    }
+
+    /**
+     * The number of gets that shared a call already in flight for an equal query instead of making their own.
+     * @return the coalesced call count
+     */
+    public long getCoalescedCallCount() {
+        return coalescedCalls.sum();
+    }
+
+    /**
+     * The number of successful responses whose latency has been recorded.
+     * @return the latency sample count
+     */
+    public long getLatencySampleCount() {
+        return latencyCount.get();
+    }
+
+    /**
+     * A percentile of the latency of the last 256 successful responses, or 0 if there have been none.
+     * @param percentile The percentile, between 0 and 1.
+     * @return the latency in nanoseconds
+     */
+    public long getLatencyPercentileNanos(double percentile) {
+        int samples = (int) Math.min(latencyCount.get(), LATENCY_WINDOW);
+        if (samples == 0) {
+            return 0;
+        }
+        long[] sorted = new long[samples];
+        for (int i = 0; i < samples; i++) {
+            sorted[i] = latencies.get(i);
+        }
+        Arrays.sort(sorted);
+        int index = (int) Math.ceil(percentile * samples) - 1;
+        return sorted[Math.max(0, Math.min(samples - 1, index))];
+    }
+}
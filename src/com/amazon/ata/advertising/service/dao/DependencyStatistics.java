@@ -0,0 +1,37 @@
+package com.amazon.ata.advertising.service.dao;
+
+import java.util.Collections;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import javax.inject.Inject;
+import javax.inject.Singleton;
+
+/**
+ * Collects the call, coalesced call, hedge and timeout counts and recent latencies of every downstream dependency the
+ * DAOs call through a ResilientReadableDao or CoalescingReadableDao. The latencies decide when a call is slow enough to
+ * hedge, so they are shared by every request.
+ */
+@Singleton
+public class DependencyStatistics {
+    private final ConcurrentHashMap<String, DependencyCallStatistics> statisticsByDependency =
+            new ConcurrentHashMap<>();
+
+    /**
+     * Creates an empty set of statistics.
+     */
+    @Inject
+    public DependencyStatistics() {}
+
+    DependencyCallStatistics forDependency(String dependency) {
+        return statisticsByDependency.computeIfAbsent(dependency, name -> new DependencyCallStatistics());
+    }
+
+    /**
+     * The statistics collected so far, by dependency name.
+     * @return An unmodifiable view of the statistics for every dependency called so far.
+     */
+    public Map<String, DependencyCallStatistics> getStatistics() {
+        return Collections.unmodifiableMap(new TreeMap<>(statisticsByDependency));
+    }
+}
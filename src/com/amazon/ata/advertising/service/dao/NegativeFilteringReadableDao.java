@@ -0,0 +1,51 @@
+package com.amazon.ata.advertising.service.dao;
+
+/**
+ * Decorates a DAO with a NegativeResultFilter. Queries the filter knows have no data get the empty result straight
+ * away, without calling the DAO; every empty collection or map the DAO returns is recorded in the filter. Null results
+ * are not recorded, since they can mean the call failed.
+ * @param <I> The input type needed to retrieve an object.
+ * @param <O> The type to be retrieved from the datasource.
+ */
+public class NegativeFilteringReadableDao<I, O> implements ReadableDao<I, O> {
+    private final ReadableDao<I, O> delegate;
+    private final NegativeResultFilter<I> filter;
+    private final O emptyResult;
+
+    /**
+     * Decorates a DAO.
+     * @param name Name of the filter, used for statistics.
+     * @param delegate The DAO to call for queries the filter has not recorded.
+     * @param filter The queries known to have no data.
+     * @param emptyResult What to return for those queries, like an empty map.
+     * @param cacheStatistics Where the filter's statistics are reported.
+     */
+    public NegativeFilteringReadableDao(String name, ReadableDao<I, O> delegate, NegativeResultFilter<I> filter,
+                                        O emptyResult, CacheStatistics cacheStatistics) {
+        this.delegate = delegate;
+        this.filter = filter;
+        this.emptyResult = emptyResult;
+        cacheStatistics.register(name, filter);
+    }
+
+    /**
+     * Gets the empty result if the query is known to have no data, or the object from the decorated DAO.
+     * @param inputQuery The information necessary to retrieve an object.
+     * @return The object queried for.
+     */
+    @Override
+    public O get(I inputQuery) {
+        if (inputQuery == null) {
+            return delegate.get(null);
+        }
+        if (filter.mightHaveNoData(inputQuery)) {
+            return emptyResult;
+        }
+
+        final O result = delegate.get(inputQuery);
+        if (result != null && CachingReadableDao.isNegative(result)) {
+            filter.recordNoData(inputQuery);
+        }
+        return result;
+    }
+}
@@ -0,0 +1,142 @@
+package com.amazon.ata.advertising.service.dao;
+
+import com.google.common.hash.BloomFilter;
+import com.google.common.hash.Funnel;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.time.Duration;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A Bloom filter of the queries a DAO is known to have no data for, like customers with no spend. It never misses a
+ * query that was recorded, but can wrongly report, at about the configured false positive rate, that a query has no
+ * data, so only use it where that costs less than the remote call it saves.
+ *
+ * <p>Its memory is fixed by the number of queries it is sized for. Queries recorded once it is full are not added, so
+ * the false positive rate stays near the configured rate. Bloom filters cannot forget a query, so the filter is rebuilt
+ * in generations: queries are recorded in both the current and the next generation, and each rebuild replaces the
+ * current generation with the next. A query that gains data is therefore forgotten within two rebuilds.
+ * @param <I> The input type of the DAO.
+ */
+public class NegativeResultFilter<I> {
+    private static final Logger LOG = LogManager.getLogger(NegativeResultFilter.class);
+
+    private final Funnel<? super I> funnel;
+    private final long expectedInsertions;
+    private final double falsePositiveRate;
+    private volatile BloomFilter<I> current;
+    private volatile BloomFilter<I> next;
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder rebuilds = new LongAdder();
+
+    /**
+     * Creates an empty filter.
+     * @param funnel Turns a query into the bytes that are hashed.
+     * @param expectedInsertions How many queries each generation holds.
+     * @param falsePositiveRate The rate at which queries that were never recorded are reported as having no data.
+     */
+    public NegativeResultFilter(Funnel<? super I> funnel, long expectedInsertions, double falsePositiveRate) {
+        this.funnel = funnel;
+        this.expectedInsertions = expectedInsertions;
+        this.falsePositiveRate = falsePositiveRate;
+        this.current = newGeneration();
+        this.next = newGeneration();
+    }
+
+    /**
+     * Whether the query is known to have no data, so the DAO does not need to be called.
+     * @param inputQuery The query to check.
+     * @return true if the query was recorded as having no data, or, rarely, if it is a false positive.
+     */
+    public boolean mightHaveNoData(I inputQuery) {
+        final boolean mightHaveNoData = current.mightContain(inputQuery);
+        if (mightHaveNoData) {
+            hits.increment();
+        }
+        return mightHaveNoData;
+    }
+
+    /**
+     * Records that the DAO returned no data for a query.
+     * @param inputQuery The query with no data.
+     */
+    public void recordNoData(I inputQuery) {
+        put(current, inputQuery);
+        put(next, inputQuery);
+    }
+
+    /**
+     * Replaces the current generation with the next one, forgetting queries that have not been recorded since the
+     * last rebuild.
+     */
+    public void rebuild() {
+        final BloomFilter<I> rebuilt = next;
+        next = newGeneration();
+        current = rebuilt;
+        rebuilds.increment();
+    }
+
+    /**
+     * Schedules rebuild() to run repeatedly on the provided executor.
+     * @param executor The executor to run the rebuilds on.
+     * @param interval The time between rebuilds.
+     */
+    public void scheduleRebuild(ScheduledExecutorService executor, Duration interval) {
+        executor.scheduleWithFixedDelay(() -> {
+            try {
+                rebuild();
+            } catch (RuntimeException e) {
+                LOG.warn("Unable to rebuild the negative result filter.", e);
+            }
+        }, interval.toMillis(), interval.toMillis(), TimeUnit.MILLISECONDS);
+    }
+
+    public double getConfiguredFalsePositiveRate() {
+        return falsePositiveRate;
+    }
+
+    /**
+     * The false positive rate of the current generation, given how many queries it holds.
+     * @return the expected false positive rate
+     */
+    public double getExpectedFalsePositiveRate() {
+        return current.expectedFpp();
+    }
+
+    /**
+     * The approximate number of queries in the current generation.
+     * @return the approximate element count
+     */
+    public long getApproximateElementCount() {
+        return current.approximateElementCount();
+    }
+
+    public long getExpectedInsertions() {
+        return expectedInsertions;
+    }
+
+    /**
+     * The number of queries answered by the filter instead of the DAO.
+     * @return the hit count
+     */
+    public long getHitCount() {
+        return hits.sum();
+    }
+
+    public long getRebuildCount() {
+        return rebuilds.sum();
+    }
+
+    private void put(BloomFilter<I> generation, I inputQuery) {
+        if (generation.approximateElementCount() < expectedInsertions) {
+            generation.put(inputQuery);
+        }
+    }
+
+    private BloomFilter<I> newGeneration() {
+        return BloomFilter.create(funnel, expectedInsertions, falsePositiveRate);
+    }
+}
@@ -0,0 +1,179 @@
+package com.amazon.ata.advertising.service.dao;
+
+import com.amazon.ata.advertising.service.exceptions.AdvertisementServiceException;
+import com.amazon.ata.advertising.service.exceptions.DependencyTimeoutException;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Decorates a DAO that calls a remote service with a timeout and hedged requests. If a call has not responded by the
+ * time 95% of recent calls had, a duplicate call is sent and whichever responds first is returned; the other is then
+ * cancelled, so it does not keep holding a call thread. If neither has responded when the timeout passes, both are
+ * cancelled and a DependencyTimeoutException is thrown. If the executor refuses the call because every thread is busy,
+ * a DependencyTimeoutException is thrown straight away, without calling the dependency on the caller's thread; a
+ * refused hedge is skipped.
+ * @param <I> The input type needed to retrieve an object.
+ * @param <O> The type to be retrieved from the datasource.
+ */
+public class ResilientReadableDao<I, O> implements ReadableDao<I, O> {
+    private static final double HEDGE_PERCENTILE = 0.95;
+    private static final int MIN_HEDGE_SAMPLES = 20;
+
+    private final String dependency;
+    private final ReadableDao<I, O> delegate;
+    private final ExecutorService executor;
+    private final long timeoutNanos;
+    private final boolean hedging;
+    private final DependencyCallStatistics statistics;
+
+    /**
+     * Decorates a DAO.
+     * @param dependency Name of the remote call the DAO makes, used for statistics and errors.
+     * @param delegate The DAO making the remote call.
+     * @param executor Runs the calls, so the caller can stop waiting for them.
+     * @param timeout How long to wait for a response before giving up.
+     * @param hedging Whether to send a duplicate call when the first is slow.
+     * @param dependencyStatistics Where the calls, hedges, timeouts and latencies are recorded.
+     */
+    public ResilientReadableDao(String dependency, ReadableDao<I, O> delegate, ExecutorService executor,
+                                Duration timeout, boolean hedging, DependencyStatistics dependencyStatistics) {
+        this.dependency = dependency;
+        this.delegate = delegate;
+        this.executor = executor;
+        this.timeoutNanos = timeout.toNanos();
+        this.hedging = hedging;
+        this.statistics = dependencyStatistics.forDependency(dependency);
+    }
+
+    /**
+     * Gets an object from the decorated DAO, hedging the call if it is slow.
+     * @param inputQuery The information necessary to retrieve an object.
+     * @return The object queried for.
+     * @throws DependencyTimeoutException if there was no response within the timeout, or the call was refused.
+     */
+    @Override
+    public O get(I inputQuery) {
+        statistics.recordCall();
+        final long deadline = System.nanoTime() + timeoutNanos;
+        final CompletableFuture<O> result = new CompletableFuture<>();
+        final AtomicInteger outstanding = new AtomicInteger(1);
+        final AtomicInteger answeredBy = new AtomicInteger(-1);
+        final AtomicReference<RuntimeException> failure = new AtomicReference<>();
+        final List<Future<?>> attempts = new CopyOnWriteArrayList<>();
+        try {
+            attempts.add(call(inputQuery, result, outstanding, answeredBy, failure, 0));
+        } catch (RejectedExecutionException e) {
+            statistics.recordRejection();
+            throw new DependencyTimeoutException(String.format("%s was not called: every call thread is busy.",
+                    dependency), e);
+        }
+        // Once one attempt has answered, any other attempt is only holding a thread.
+        result.whenComplete((value, e) -> {
+            if (e == null) {
+                cancelUnanswered(attempts, answeredBy.get());
+            }
+        });
+
+        try {
+            final long hedgeDelay = hedgeDelayNanos();
+            if (hedgeDelay < timeoutNanos) {
+                try {
+                    return result.get(hedgeDelay, TimeUnit.NANOSECONDS);
+                } catch (TimeoutException e) {
+                    hedge(inputQuery, result, outstanding, answeredBy, failure, attempts);
+                }
+            }
+            return result.get(deadline - System.nanoTime(), TimeUnit.NANOSECONDS);
+        } catch (TimeoutException e) {
+            statistics.recordTimeout();
+            attempts.forEach(attempt -> attempt.cancel(true));
+            throw new DependencyTimeoutException(String.format("%s did not respond within %d ms.", dependency,
+                    TimeUnit.NANOSECONDS.toMillis(timeoutNanos)), e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
+            }
+            throw new AdvertisementServiceException(String.format("Unable to call %s.", dependency), e.getCause());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            attempts.forEach(attempt -> attempt.cancel(true));
+            throw new AdvertisementServiceException(String.format("Interrupted calling %s.", dependency), e);
+        }
+    }
+
+    /**
+     * How long to wait before hedging: the 95th percentile of recent latencies. Calls are not hedged until enough
+     * latencies have been seen to estimate it.
+     */
+    private long hedgeDelayNanos() {
+        if (!hedging || statistics.getLatencySampleCount() < MIN_HEDGE_SAMPLES) {
+            return Long.MAX_VALUE;
+        }
+        return statistics.getLatencyPercentileNanos(HEDGE_PERCENTILE);
+    }
+
+    private void hedge(I inputQuery, CompletableFuture<O> result, AtomicInteger outstanding, AtomicInteger answeredBy,
+                       AtomicReference<RuntimeException> failure, List<Future<?>> attempts) {
+        outstanding.incrementAndGet();
+        try {
+            attempts.add(call(inputQuery, result, outstanding, answeredBy, failure, attempts.size()));
+            statistics.recordHedge();
+            // The first call may have answered before the hedge was added to the attempts to cancel.
+            if (result.isDone()) {
+                cancelUnanswered(attempts, answeredBy.get());
+            }
+        } catch (RejectedExecutionException e) {
+            statistics.recordRejection();
+            // The first call may have failed while this hedge counted as outstanding.
+            if (outstanding.decrementAndGet() == 0) {
+                result.completeExceptionally(failure.get());
+            }
+        }
+    }
+
+    /**
+     * Cancels, interrupting if needed, every attempt except the one that answered, which is still finishing its task.
+     */
+    private static void cancelUnanswered(List<Future<?>> attempts, int answeredBy) {
+        for (int attempt = 0; attempt < attempts.size(); attempt++) {
+            if (attempt != answeredBy) {
+                attempts.get(attempt).cancel(true);
+            }
+        }
+    }
+
+    private Future<?> call(I inputQuery, CompletableFuture<O> result, AtomicInteger outstanding,
+                           AtomicInteger answeredBy, AtomicReference<RuntimeException> failure, int attempt) {
+        return executor.submit(() -> {
+            final long start = System.nanoTime();
+            try {
+                final O value = delegate.get(inputQuery);
+                statistics.recordLatency(System.nanoTime() - start);
+                // Record a winning hedge before the caller sees its result.
+                if (answeredBy.compareAndSet(-1, attempt)) {
+                    if (attempt > 0) {
+                        statistics.recordHedgeWon();
+                    }
+                    result.complete(value);
+                }
+            } catch (RuntimeException e) {
+                // Only fail once every attempt has, since a hedge may still succeed.
+                failure.set(e);
+                if (outstanding.decrementAndGet() == 0) {
+                    result.completeExceptionally(e);
+                }
+            }
+        });
+    }
+}
@@ -0,0 +1,35 @@
+package com.amazon.ata.advertising.service.dao;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * How often one SnapshotReadableDao answered from the customer snapshot rather than its fallback DAO.
+ */
+public class SnapshotLookupStatistics {
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder fallbacks = new LongAdder();
+
+    void recordHit() {
+        hits.increment();
+    }
+
+    void recordFallback() {
+        fallbacks.increment();
+    }
+
+    /**
+     * The number of gets answered from the snapshot.
+     * @return the hit count
+     */
+    public long getHitCount() {
+        return hits.sum();
+    }
+
+    /**
+     * The number of gets passed to the fallback DAO, because there was no snapshot or it did not have the query.
+     * @return the fallback count
+     */
+    public long getFallbackCount() {
+        return fallbacks.sum();
+    }
+}
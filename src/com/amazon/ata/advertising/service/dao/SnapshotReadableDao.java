@@ -0,0 +1,51 @@
+package com.amazon.ata.advertising.service.dao;
+
+import java.util.function.BiFunction;
+
+/**
+ * Decorates a DAO with a lookup in the customer snapshot. Queries the snapshot has are answered from it, without
+ * calling the DAO; everything else, including every query while there is no current snapshot, is passed to the DAO.
+ * @param <I> The input type needed to retrieve an object.
+ * @param <O> The type to be retrieved from the datasource.
+ */
+public class SnapshotReadableDao<I, O> implements ReadableDao<I, O> {
+    private final CustomerSnapshotLoader snapshots;
+    private final BiFunction<CustomerSnapshot, I, O> lookup;
+    private final ReadableDao<I, O> fallback;
+    private final SnapshotLookupStatistics statistics;
+
+    /**
+     * Decorates a DAO.
+     * @param name Name of the DAO, used for statistics.
+     * @param snapshots Gives the current snapshot.
+     * @param lookup Gets the object from a snapshot, or null if the snapshot does not have it.
+     * @param fallback The DAO to call for queries the snapshot does not have.
+     * @param cacheStatistics Where the hits and fallbacks are reported.
+     */
+    public SnapshotReadableDao(String name, CustomerSnapshotLoader snapshots, BiFunction<CustomerSnapshot, I, O> lookup,
+                               ReadableDao<I, O> fallback, CacheStatistics cacheStatistics) {
+        this.snapshots = snapshots;
+        this.lookup = lookup;
+        this.fallback = fallback;
+        this.statistics = cacheStatistics.forSnapshot(name);
+    }
+
+    /**
+     * Gets the object from the snapshot, or from the decorated DAO if the snapshot does not have it.
+     * @param inputQuery The information necessary to retrieve an object.
+     * @return The object queried for.
+     */
+    @Override
+    public O get(I inputQuery) {
+        final CustomerSnapshot snapshot = snapshots.get();
+        if (snapshot != null && inputQuery != null) {
+            final O result = lookup.apply(snapshot, inputQuery);
+            if (result != null) {
+                statistics.recordHit();
+                return result;
+            }
+        }
+        statistics.recordFallback();
+        return fallback.get(inputQuery);
+    }
+}
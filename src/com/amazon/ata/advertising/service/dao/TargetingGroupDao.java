@@ -1,33 +1,66 @@
 package com.amazon.ata.advertising.service.dao;
 
+import com.amazon.ata.advertising.service.dependency.ExecutorModule;
 import com.amazon.ata.advertising.service.dependency.TargetingPredicateInjector;
 import com.amazon.ata.advertising.service.exceptions.AdvertisementClientException;
 import com.amazon.ata.advertising.service.targeting.TargetingGroup;
 import com.amazon.ata.advertising.service.targeting.predicate.TargetingPredicate;
+import com.amazon.ata.advertising.service.util.Futures;
 
+import com.amazonaws.services.dynamodbv2.AmazonDynamoDB;
 import com.amazonaws.services.dynamodbv2.datamodeling.DynamoDBMapper;
+import com.amazonaws.services.dynamodbv2.datamodeling.DynamoDBMapperTableModel;
 import com.amazonaws.services.dynamodbv2.datamodeling.DynamoDBQueryExpression;
+import com.amazonaws.services.dynamodbv2.model.AttributeValue;
+import com.amazonaws.services.dynamodbv2.model.ConditionalCheckFailedException;
+import com.amazonaws.services.dynamodbv2.model.ReturnValue;
+import com.amazonaws.services.dynamodbv2.model.UpdateItemRequest;
 
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.UUID;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
 import javax.inject.Inject;
+import javax.inject.Named;
 
 /**
  * Gets the TargetingGroups for a piece of ATA ad content.
  */
-public class TargetingGroupDao implements ReadableDao<String, List<TargetingGroup>> {
+public class TargetingGroupDao implements BulkReadableDao<String, List<TargetingGroup>> {
+    /**
+     * The attributes addEvents keeps a group's running totals in. TargetingGroup does not map them, so the mapper never
+     * reads them or overwrites them when it saves a group.
+     */
+    private static final String IMPRESSIONS = "Impressions";
+    private static final String CLICKS = "Clicks";
+
     private final TargetingPredicateInjector targetingPredicateInjector;
     private final DynamoDBMapper mapper;
+    private final AmazonDynamoDB dynamoDb;
+    private final ExecutorService queryExecutor;
 
     /**
      * Constructs a new TargetingGroupDao.
      * @param targetingPredicateInjector injects the dependencies into the predicates
      * @param mapper connection to DynamoDB
+     * @param dynamoDb client for the conditional writes the mapper cannot make
+     * @param queryExecutor runs the queries of getAll in parallel. Its size bounds how many run at once.
      */
     @Inject
-    public TargetingGroupDao(TargetingPredicateInjector targetingPredicateInjector, DynamoDBMapper mapper) {
+    public TargetingGroupDao(TargetingPredicateInjector targetingPredicateInjector,
+                             DynamoDBMapper mapper,
+                             AmazonDynamoDB dynamoDb,
+                             @Named(ExecutorModule.DAO_FAN_OUT_EXECUTOR) ExecutorService queryExecutor) {
         this.targetingPredicateInjector = targetingPredicateInjector;
         this.mapper = mapper;
+        this.dynamoDb = dynamoDb;
+        this.queryExecutor = queryExecutor;
     }
 
     /**
@@ -46,6 +79,34 @@ public class TargetingGroupDao implements ReadableDao<String, List<TargetingGrou
         return mapper.query(TargetingGroup.class, queryExpression);
     }
 
+    /**
+     * Retrieves the targeting groups of many pieces of content at once. The ContentIdIndex queries run in parallel on
+     * the query executor, and every page of each query is read before this method returns.
+     * @param contentIds The ids of the content to get targeting groups for
+     * @return The targeting groups of each piece of content, keyed by contentId. Content without targeting groups maps
+     *     to an empty list.
+     */
+    @Override
+    public Map<String, List<TargetingGroup>> getAll(Collection<String> contentIds) {
+        Map<String, Future<List<TargetingGroup>>> queries = new LinkedHashMap<>();
+        for (String contentId : contentIds) {
+            if (!queries.containsKey(contentId)) {
+                queries.put(contentId, queryExecutor.submit(() -> new ArrayList<>(get(contentId))));
+            }
+        }
+
+        Map<String, List<TargetingGroup>> targetingGroups = new HashMap<>();
+        try {
+            for (Map.Entry<String, Future<List<TargetingGroup>>> query : queries.entrySet()) {
+                targetingGroups.put(query.getKey(), Futures.getUnchecked(query.getValue()));
+            }
+        } catch (RuntimeException e) {
+            queries.values().forEach(query -> query.cancel(true));
+            throw e;
+        }
+        return targetingGroups;
+    }
+
     /**
      * Create a new targeting group and persist it.
      * @param contentId The content to associate with the new targeting group.
@@ -59,30 +120,99 @@ public class TargetingGroupDao implements ReadableDao<String, List<TargetingGrou
     }
 
     /**
-     * Update the click through rate for a targeting group.
+     * Update the click through rate for a targeting group, in a single UpdateItem that only succeeds if the group
+     * still exists and returns the updated group. Concurrent updates of a group's predicates are never overwritten.
      * @param targetingGroupId The ID of the targeting group to update
      * @param clickThroughRate The new clickThroughRate for the targeting group
      * @return The updated TargetingGroup
      */
     public TargetingGroup update(String targetingGroupId, double clickThroughRate) {
-        TargetingGroup hashKey = new TargetingGroup(targetingGroupId, null, 0, null);
-        TargetingGroup targetingGroup = mapper.load(hashKey);
-        if (targetingGroup == null) {
-            throw new AdvertisementClientException("No targeting group exists with the ID " + targetingGroupId);
+        DynamoDBMapperTableModel<TargetingGroup> model = mapper.getTableModel(TargetingGroup.class);
+        Map<String, String> names = new HashMap<>();
+        names.put("#id", model.hashKey().name());
+        names.put("#clickThroughRate", TargetingGroup.CLICK_THROUGH_RATE);
+        Map<String, AttributeValue> updatedGroup;
+        try {
+            updatedGroup = dynamoDb.updateItem(updateOf(model, targetingGroupId)
+                    .withUpdateExpression("SET #clickThroughRate = :clickThroughRate")
+                    .withConditionExpression("attribute_exists(#id)")
+                    .withExpressionAttributeNames(names)
+                    .withExpressionAttributeValues(Collections.singletonMap(":clickThroughRate",
+                            new AttributeValue().withN(Double.toString(clickThroughRate))))
+                    .withReturnValues(ReturnValue.ALL_NEW))
+                    .getAttributes();
+        } catch (ConditionalCheckFailedException e) {
+            throw new AdvertisementClientException("No targeting group exists with the ID " + targetingGroupId, e);
         }
-        targetingGroup.setClickThroughRate(clickThroughRate);
-        mapper.save(targetingGroup);
-        return targetingGroup;
+        return mapper.marshallIntoObject(TargetingGroup.class, updatedGroup);
     }
 
     /**
-     * Deletes the List of TargetingGroups associated with the provided contentId.
-     * @param contentId - the id of the content to delete TargetingGroups for
-     * @return the deleted list of TargetingGroups
+     * Adds impressions and clicks to a targeting group's running totals, and recomputes its click through rate from
+     * them once it has been shown enough times. The totals are added in a single UpdateItem that only succeeds if the
+     * group still exists, so writes from many hosts never overwrite each other. The click through rate is then set
+     * only if no other write has added to the totals since, so it is never replaced by one computed from older
+     * totals.
+     * @param targetingGroupId The ID of the targeting group the events are for
+     * @param impressions The number of times the group's content was shown
+     * @param clicks The number of times the group's content was clicked
+     * @param minimumImpressions The fewest total impressions the click through rate is recomputed from
+     * @return true if the click through rate was updated
      */
-    public List<TargetingGroup> delete(String contentId) {
-        List<TargetingGroup> targetingGroups = get(contentId);
-        mapper.batchDelete(targetingGroups);
-        return targetingGroups;
+    public boolean addEvents(String targetingGroupId, long impressions, long clicks, long minimumImpressions) {
+        DynamoDBMapperTableModel<TargetingGroup> model = mapper.getTableModel(TargetingGroup.class);
+        Map<String, String> names = new HashMap<>();
+        names.put("#id", model.hashKey().name());
+        names.put("#impressions", IMPRESSIONS);
+        names.put("#clicks", CLICKS);
+        Map<String, AttributeValue> values = new HashMap<>();
+        values.put(":impressions", new AttributeValue().withN(Long.toString(impressions)));
+        values.put(":clicks", new AttributeValue().withN(Long.toString(clicks)));
+        Map<String, AttributeValue> totals;
+        try {
+            totals = dynamoDb.updateItem(updateOf(model, targetingGroupId)
+                    .withUpdateExpression("ADD #impressions :impressions, #clicks :clicks")
+                    .withConditionExpression("attribute_exists(#id)")
+                    .withExpressionAttributeNames(names)
+                    .withExpressionAttributeValues(values)
+                    .withReturnValues(ReturnValue.UPDATED_NEW))
+                    .getAttributes();
+        } catch (ConditionalCheckFailedException e) {
+            throw new AdvertisementClientException("No targeting group exists with the ID " + targetingGroupId, e);
+        }
+
+        long totalImpressions = Long.parseLong(totals.get(IMPRESSIONS).getN());
+        long totalClicks = Long.parseLong(totals.get(CLICKS).getN());
+        if (totalImpressions <= 0 || totalImpressions < minimumImpressions) {
+            return false;
+        }
+
+        Map<String, String> rateNames = new HashMap<>();
+        rateNames.put("#impressions", IMPRESSIONS);
+        rateNames.put("#clickThroughRate", TargetingGroup.CLICK_THROUGH_RATE);
+        Map<String, AttributeValue> rateValues = new HashMap<>();
+        rateValues.put(":impressions", totals.get(IMPRESSIONS));
+        rateValues.put(":clickThroughRate", new AttributeValue().withN(
+                Double.toString(Math.min(1.0, (double) totalClicks / totalImpressions))));
+        try {
+            dynamoDb.updateItem(updateOf(model, targetingGroupId)
+                    .withUpdateExpression("SET #clickThroughRate = :clickThroughRate")
+                    .withConditionExpression("#impressions = :impressions")
+                    .withExpressionAttributeNames(rateNames)
+                    .withExpressionAttributeValues(rateValues));
+        } catch (ConditionalCheckFailedException e) {
+            // Another write added to the totals; it recomputes the click through rate from the newer ones.
+            return false;
+        }
+        return true;
+    }
+
+    /**
+     * Starts an UpdateItem of a targeting group, on the table and key the mapper resolves for TargetingGroup.
+     */
+    private UpdateItemRequest updateOf(DynamoDBMapperTableModel<TargetingGroup> model, String targetingGroupId) {
+        return new UpdateItemRequest()
+                .withTableName(mapper.generateCreateTableRequest(TargetingGroup.class).getTableName())
+                .withKey(model.convertKey(targetingGroupId, null));
     }
 }
@@ -0,0 +1,174 @@
+package com.amazon.ata.advertising.service.dao;
+
+import com.amazon.ata.advertising.service.targeting.predicate.TargetingPredicateCodec;
+
+import com.amazonaws.auth.DefaultAWSCredentialsProviderChain;
+import com.amazonaws.regions.Regions;
+import com.amazonaws.services.dynamodbv2.AmazonDynamoDB;
+import com.amazonaws.services.dynamodbv2.AmazonDynamoDBClientBuilder;
+import com.amazonaws.services.dynamodbv2.model.AttributeValue;
+import com.amazonaws.services.dynamodbv2.model.ConditionalCheckFailedException;
+import com.amazonaws.services.dynamodbv2.model.ScanRequest;
+import com.amazonaws.services.dynamodbv2.model.ScanResult;
+import com.amazonaws.services.dynamodbv2.model.UpdateItemRequest;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Rewrites the targeting predicates of every targeting group stored as JSON in the binary form of
+ * TargetingPredicateCodec, in place. Rows are read whichever way they are stored, so the migration can run while the
+ * service is serving, once every host reads the binary form.
+ *
+ * Each row is only rewritten if its predicates are still the JSON that was read, so an update made while the
+ * migration runs is never overwritten; the row is counted as a conflict and picked up by running the migration
+ * again. Rows that are already binary are skipped, so running it again is safe.
+ *
+ * <p>Run it with AWS credentials for the service's account:
+ * <pre>
+ *   java TargetingPredicateMigrator [--dry-run]
+ * </pre>
+ * A dry run reads and converts every row without writing any.
+ */
+public class TargetingPredicateMigrator {
+    private static final Logger LOG = LogManager.getLogger(TargetingPredicateMigrator.class);
+    private static final String TABLE_NAME = "TargetingGroups";
+    private static final String ID = "TargetingGroupId";
+    private static final String PREDICATES = "TargetingPredicates";
+
+    private final AmazonDynamoDB dynamoDb;
+
+    /**
+     * Creates a migrator.
+     * @param dynamoDb The client for the targeting group table.
+     */
+    public TargetingPredicateMigrator(AmazonDynamoDB dynamoDb) {
+        this.dynamoDb = dynamoDb;
+    }
+
+    /**
+     * Rewrites every targeting group's JSON predicates in the binary form.
+     * @param dryRun Whether to convert rows without writing them.
+     * @return How many rows were rewritten, skipped, lost to concurrent updates or could not be read.
+     */
+    public Result migrate(boolean dryRun) {
+        final Result result = new Result();
+        final Map<String, String> names = new HashMap<>();
+        names.put("#id", ID);
+        names.put("#predicates", PREDICATES);
+        Map<String, AttributeValue> lastEvaluatedKey = null;
+        do {
+            final ScanResult page = dynamoDb.scan(new ScanRequest()
+                    .withTableName(TABLE_NAME)
+                    .withProjectionExpression("#id, #predicates")
+                    .withExpressionAttributeNames(names)
+                    .withExclusiveStartKey(lastEvaluatedKey));
+            for (Map<String, AttributeValue> item : page.getItems()) {
+                migrate(item, dryRun, result);
+            }
+            lastEvaluatedKey = page.getLastEvaluatedKey();
+        } while (lastEvaluatedKey != null && !lastEvaluatedKey.isEmpty());
+
+        LOG.info(String.format("%s targeting predicates: %d migrated, %d skipped, %d conflicts, %d failed.",
+                dryRun ? "Dry run of migrating" : "Migrated", result.getMigrated(), result.getSkipped(),
+                result.getConflicts(), result.getFailed()));
+        return result;
+    }
+
+    private void migrate(Map<String, AttributeValue> item, boolean dryRun, Result result) {
+        final AttributeValue id = item.get(ID);
+        final AttributeValue json = item.get(PREDICATES);
+        if (json == null || json.getS() == null) {
+            result.skipped++;
+            return;
+        }
+
+        final byte[] binary;
+        try {
+            binary = TargetingPredicateCodec.encode(TargetingPredicateCodec.fromJson(json.getS()));
+        } catch (IOException | IllegalArgumentException e) {
+            LOG.warn(String.format("Unable to convert the targeting predicates of targeting group %s. " +
+                    "It will be left as JSON.", id.getS()), e);
+            result.failed++;
+            return;
+        }
+        if (dryRun) {
+            result.migrated++;
+            return;
+        }
+
+        final Map<String, AttributeValue> values = new HashMap<>();
+        values.put(":binary", new AttributeValue().withB(ByteBuffer.wrap(binary)));
+        values.put(":json", json);
+        try {
+            dynamoDb.updateItem(new UpdateItemRequest()
+                    .withTableName(TABLE_NAME)
+                    .withKey(Collections.singletonMap(ID, id))
+                    .withUpdateExpression("SET #predicates = :binary")
+                    .withConditionExpression("#predicates = :json")
+                    .withExpressionAttributeNames(Collections.singletonMap("#predicates", PREDICATES))
+                    .withExpressionAttributeValues(values));
+            result.migrated++;
+        } catch (ConditionalCheckFailedException e) {
+            LOG.info(String.format("Targeting group %s changed while it was migrated. It will be left as it is.",
+                    id.getS()));
+            result.conflicts++;
+        }
+    }
+
+    /**
+     * Counts of what a migration did with each row.
+     */
+    public static class Result {
+        private int migrated;
+        private int skipped;
+        private int conflicts;
+        private int failed;
+
+        public int getMigrated() {
+            return migrated;
+        }
+
+        public int getSkipped() {
+            return skipped;
+        }
+
+        public int getConflicts() {
+            return conflicts;
+        }
+
+        public int getFailed() {
+            return failed;
+        }
+    }
+
+    /**
+     * Migrates the targeting group table the service reads.
+     * @param args "--dry-run" to convert rows without writing them.
+     */
+    public static void main(String[] args) {
+        final boolean dryRun = args.length > 0 && "--dry-run".equals(args[0]);
+        if (args.length > 1 || args.length == 1 && !dryRun) {
+            System.err.println("Usage: TargetingPredicateMigrator [--dry-run]");
+            System.exit(1);
+        }
+        final AmazonDynamoDB dynamoDb = AmazonDynamoDBClientBuilder.standard()
+                .withCredentials(DefaultAWSCredentialsProviderChain.getInstance())
+                .withRegion(Regions.US_WEST_2)
+                .build();
+        final Result result;
+        try {
+            result = new TargetingPredicateMigrator(dynamoDb).migrate(dryRun);
+        } finally {
+            dynamoDb.shutdown();
+        }
+        if (result.getConflicts() > 0 || result.getFailed() > 0) {
+            System.exit(2);
+        }
+    }
+}
@@ -0,0 +1,53 @@
+package com.amazon.ata.advertising.service.dependency;
+
+import com.amazon.ata.advertising.service.businesslogic.ClickThroughRateAggregator;
+import com.amazon.ata.advertising.service.dao.TargetingGroupDao;
+
+import dagger.Module;
+import dagger.Provides;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ScheduledExecutorService;
+import javax.inject.Named;
+import javax.inject.Singleton;
+
+/**
+ * Wire up the ingestion of impression and click events.
+ */
+@Module
+public class AdEventModule {
+    private static final String BUFFER_CAPACITY = "ata.advertising.service.adEvents.bufferCapacity";
+    private static final int DEFAULT_BUFFER_CAPACITY = 1 << 16;
+    private static final String FLUSH_INTERVAL_SECONDS = "ata.advertising.service.adEvents.flushIntervalSeconds";
+    private static final long DEFAULT_FLUSH_INTERVAL_SECONDS = 10;
+    private static final String MINIMUM_IMPRESSIONS = "ata.advertising.service.adEvents.minimumImpressions";
+    private static final long DEFAULT_MINIMUM_IMPRESSIONS = 100;
+
+    /**
+     * Provides a singleton ClickThroughRateAggregator that flushes in the background, and on request threads when a
+     * flush is due. Its buffer holds 65536 events,
+     * it flushes every 10 seconds and recomputes click through rates from 100 impressions, unless the
+     * ata.advertising.service.adEvents.bufferCapacity, flushIntervalSeconds or minimumImpressions system properties
+     * are set.
+     * @param targetingGroupDao stores each group's totals and click through rate
+     * @param scheduler the single thread that drains and flushes events
+     * @param writeExecutor writes the groups of a flush in parallel
+     * @return ClickThroughRateAggregator
+     */
+    @Provides
+    @Singleton
+    public ClickThroughRateAggregator provideClickThroughRateAggregator(
+            TargetingGroupDao targetingGroupDao,
+            @Named(ExecutorModule.AD_EVENT_SCHEDULER) ScheduledExecutorService scheduler,
+            @Named(ExecutorModule.AD_EVENT_WRITE_EXECUTOR) ExecutorService writeExecutor) {
+        ClickThroughRateAggregator aggregator = new ClickThroughRateAggregator(targetingGroupDao, writeExecutor,
+                Integer.getInteger(BUFFER_CAPACITY, DEFAULT_BUFFER_CAPACITY),
+                Long.getLong(MINIMUM_IMPRESSIONS, DEFAULT_MINIMUM_IMPRESSIONS),
+                Duration.ofSeconds(Long.getLong(FLUSH_INTERVAL_SECONDS, DEFAULT_FLUSH_INTERVAL_SECONDS)),
+                Clock.systemUTC());
+        aggregator.scheduleFlush(scheduler);
+        return aggregator;
+    }
+}
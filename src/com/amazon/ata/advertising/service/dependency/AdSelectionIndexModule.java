@@ -0,0 +1,57 @@
+package com.amazon.ata.advertising.service.dependency;
+
+import com.amazon.ata.advertising.service.dao.BulkReadableDao;
+import com.amazon.ata.advertising.service.dao.ReadableDao;
+import com.amazon.ata.advertising.service.index.AdSelectionIndex;
+import com.amazon.ata.advertising.service.model.AdvertisementContent;
+import com.amazon.ata.advertising.service.targeting.TargetingGroup;
+
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import dagger.Module;
+import dagger.Provides;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.Executors;
+import javax.inject.Singleton;
+
+/**
+ * Wire up the in-memory index that advertisements are selected from.
+ */
+@Module
+public class AdSelectionIndexModule {
+    private static final String REFRESH_INTERVAL_SECONDS = "ata.advertising.service.index.refreshIntervalSeconds";
+    private static final long DEFAULT_REFRESH_INTERVAL_SECONDS = 60;
+    private static final String MAXIMUM_MARKETPLACES = "ata.advertising.service.index.maximumMarketplaces";
+    private static final String IDLE_EXPIRY_SECONDS = "ata.advertising.service.index.idleExpirySeconds";
+    private static final String MAXIMUM_AGE_SECONDS = "ata.advertising.service.index.maximumAgeSeconds";
+
+    /**
+     * Provides a singleton AdSelectionIndex that is refreshed in the background on a daemon thread. The refresh
+     * interval can be overridden with the ata.advertising.service.index.refreshIntervalSeconds system property, the
+     * most marketplaces indexed with ata.advertising.service.index.maximumMarketplaces, how long a marketplace stays
+     * indexed without being requested with ata.advertising.service.index.idleExpirySeconds, and the oldest snapshot
+     * served with ata.advertising.service.index.maximumAgeSeconds. The oldest content an ad is selected from is that
+     * maximum age plus the content cache's ata.advertising.service.cache.content.expireAfterWriteSeconds.
+     * @param contentDao source of content data
+     * @param targetingGroupDao source of targeting group data
+     * @return AdSelectionIndex
+     */
+    @Provides
+    @Singleton
+    public AdSelectionIndex provideAdSelectionIndex(ReadableDao<String, List<AdvertisementContent>> contentDao,
+                                                    BulkReadableDao<String, List<TargetingGroup>> targetingGroupDao) {
+        AdSelectionIndex index = new AdSelectionIndex(contentDao, targetingGroupDao,
+                Integer.getInteger(MAXIMUM_MARKETPLACES, AdSelectionIndex.DEFAULT_MAXIMUM_MARKETPLACES),
+                Duration.ofSeconds(Long.getLong(IDLE_EXPIRY_SECONDS,
+                        AdSelectionIndex.DEFAULT_IDLE_EXPIRY.getSeconds())),
+                Duration.ofSeconds(Long.getLong(MAXIMUM_AGE_SECONDS,
+                        AdSelectionIndex.DEFAULT_MAXIMUM_AGE.getSeconds())));
+        index.scheduleRefresh(Executors.newSingleThreadScheduledExecutor(new ThreadFactoryBuilder()
+                        .setNameFormat("ad-selection-index-refresh-%d")
+                        .setDaemon(true)
+                        .build()),
+                Duration.ofSeconds(Long.getLong(REFRESH_INTERVAL_SECONDS, DEFAULT_REFRESH_INTERVAL_SECONDS)));
+        return index;
+    }
+}
@@ -1,10 +1,24 @@
 package com.amazon.ata.advertising.service.dependency;
 
+import com.amazon.ata.advertising.service.dao.BulkReadableDao;
+import com.amazon.ata.advertising.service.dao.CacheSettings;
+import com.amazon.ata.advertising.service.dao.CacheStatistics;
+import com.amazon.ata.advertising.service.dao.CachingBulkReadableDao;
+import com.amazon.ata.advertising.service.dao.CachingReadableDao;
+import com.amazon.ata.advertising.service.dao.CoalescingBulkReadableDao;
+import com.amazon.ata.advertising.service.dao.CoalescingReadableDao;
 import com.amazon.ata.advertising.service.dao.ContentDao;
 import com.amazon.ata.advertising.service.dao.CustomerProfileDao;
+import com.amazon.ata.advertising.service.dao.CustomerSnapshot;
+import com.amazon.ata.advertising.service.dao.CustomerSnapshotLoader;
 import com.amazon.ata.advertising.service.dao.CustomerSpendDao;
+import com.amazon.ata.advertising.service.dao.DependencyStatistics;
+import com.amazon.ata.advertising.service.dao.NegativeFilteringReadableDao;
+import com.amazon.ata.advertising.service.dao.NegativeResultFilter;
 import com.amazon.ata.advertising.service.dao.PrimeDao;
 import com.amazon.ata.advertising.service.dao.ReadableDao;
+import com.amazon.ata.advertising.service.dao.ResilientReadableDao;
+import com.amazon.ata.advertising.service.dao.SnapshotReadableDao;
 import com.amazon.ata.advertising.service.dao.TargetingGroupDao;
 import com.amazon.ata.advertising.service.model.AdvertisementContent;
 import com.amazon.ata.advertising.service.model.RequestContext;
@@ -14,63 +28,316 @@ import com.amazon.ata.customerservice.Spend;
 
 import com.amazon.atacustomerservicelambda.service.ATACustomerService;
 import com.amazon.ataprimeclubservicelambda.service.ATAPrimeClubService;
+import com.google.common.hash.Funnel;
 import dagger.Module;
 import dagger.Provides;
 
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Paths;
+import java.time.Clock;
+import java.time.Duration;
+import java.util.Collections;
 import java.util.List;
 import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ScheduledExecutorService;
+import javax.inject.Named;
+import javax.inject.Singleton;
 
+/**
+ * Wire up the DAOs. Every DAO is cached; each cache's size and expiry can be overridden with the
+ * ata.advertising.service.cache.NAME.maximumSize, expireAfterWriteSeconds, refreshAfterWriteSeconds and
+ * negativeExpireAfterWriteSeconds system properties, where NAME is content, targetingGroups, customerProfile,
+ * customerSpend or primeBenefits.
+ *
+ * <p>Customers with no spend or prime benefits are also recorded in a NegativeResultFilter, so that they do not need a
+ * remote call even once their cache entry has been evicted. Each filter is configured with the
+ * ata.advertising.service.negativeFilter.NAME.expectedInsertions, falsePositiveRate and rebuildIntervalSeconds system
+ * properties, where NAME is customerSpend or primeBenefits.
+ *
+ * <p>Customer profiles, spend and prime benefits are read from the daily CustomerSnapshot in the file named by the
+ * ata.advertising.service.customerSnapshot.path system property, if it is set; only customers the snapshot does not
+ * have are fetched from the remote services and cached.
+ */
 @Module
 public class DaoModule {
+    private static final String DEPENDENCY_TIMEOUT_MILLIS = "ata.advertising.service.dependency.timeoutMillis";
+    private static final long DEFAULT_DEPENDENCY_TIMEOUT_MILLIS = 1000;
+    private static final String DEPENDENCY_HEDGING = "ata.advertising.service.dependency.hedging";
+    private static final String CACHE_PROPERTY_PREFIX = "ata.advertising.service.cache.";
+    private static final String NEGATIVE_FILTER_PROPERTY_PREFIX = "ata.advertising.service.negativeFilter.";
+    private static final long DEFAULT_NEGATIVE_FILTER_EXPECTED_INSERTIONS = 1_000_000;
+    private static final double DEFAULT_NEGATIVE_FILTER_FALSE_POSITIVE_RATE = 0.001;
+    private static final Funnel<RequestContext> REQUEST_CONTEXT_FUNNEL = (requestContext, into) -> into
+            .putString(Objects.toString(requestContext.getCustomerId(), ""), StandardCharsets.UTF_8)
+            .putByte((byte) 0)
+            .putString(Objects.toString(requestContext.getMarketplaceId(), ""), StandardCharsets.UTF_8);
+    private static final String CUSTOMER_SNAPSHOT_PATH = "ata.advertising.service.customerSnapshot.path";
+    private static final String CUSTOMER_SNAPSHOT_MAXIMUM_AGE_HOURS =
+            "ata.advertising.service.customerSnapshot.maximumAgeHours";
+    private static final long DEFAULT_CUSTOMER_SNAPSHOT_MAXIMUM_AGE_HOURS = 48;
+    private static final String CUSTOMER_SNAPSHOT_RELOAD_INTERVAL_SECONDS =
+            "ata.advertising.service.customerSnapshot.reloadIntervalSeconds";
+    private static final long DEFAULT_CUSTOMER_SNAPSHOT_RELOAD_INTERVAL_SECONDS = 300;
+    private static final String CONTENT_QUERY = "Content.query";
+    private static final String TARGETING_GROUPS_QUERY = "TargetingGroups.query";
+    private static final String GET_CUSTOMER_PROFILE = "CustomerService.getCustomerProfile";
+    private static final String GET_CUSTOMER_SPEND = "CustomerService.getCustomerSpendCategories";
+    private static final String GET_PRIME_BENEFITS = "PrimeClubService.getPrimeBenefits";
+
+    // Content is read with eventually consistent reads anyway, so a marketplace's content is served stale while it is
+    // refreshed in the background. Ads are selected from ad selection index snapshots built from this cache, which
+    // are served for up to three more minutes, so content expires after two minutes to keep ads from being selected
+    // from content more than five minutes old.
+    private static final String CONTENT_CACHE = "content";
+    private static final CacheSettings CONTENT_CACHE_SETTINGS =
+            new CacheSettings(1_000, Duration.ofMinutes(2), Duration.ofSeconds(30));
+    // The ad selection index rebuilds its snapshots every minute, so targeting groups are only cached for long enough
+    // to share reads between marketplaces and refreshes, and are never refreshed in the background.
+    private static final String TARGETING_GROUPS_CACHE = "targetingGroups";
+    private static final CacheSettings TARGETING_GROUPS_CACHE_SETTINGS =
+            new CacheSettings(100_000, Duration.ofSeconds(30), Duration.ZERO);
+    private static final String CUSTOMER_PROFILE_CACHE = "customerProfile";
+    private static final CacheSettings CUSTOMER_PROFILE_CACHE_SETTINGS =
+            new CacheSettings(100_000, Duration.ofHours(1), Duration.ofMinutes(10));
+    // Customer spend is recalculated once a day, so a customer with no spend will not have any until tomorrow.
+    private static final String CUSTOMER_SPEND_CACHE = "customerSpend";
+    private static final CacheSettings CUSTOMER_SPEND_CACHE_SETTINGS =
+            new CacheSettings(100_000, Duration.ofHours(24), Duration.ofHours(1), Duration.ofHours(24));
+    private static final Duration CUSTOMER_SPEND_FILTER_REBUILD_INTERVAL = Duration.ofHours(6);
+    // A customer can join prime at any time, so customers without benefits are only trusted for a few minutes.
+    private static final String PRIME_BENEFITS_CACHE = "primeBenefits";
+    private static final CacheSettings PRIME_BENEFITS_CACHE_SETTINGS =
+            new CacheSettings(100_000, Duration.ofHours(1), Duration.ofMinutes(5), Duration.ofMinutes(5));
+    private static final Duration PRIME_BENEFITS_FILTER_REBUILD_INTERVAL = Duration.ofMinutes(5);
 
     /**
-     * Dao for content.
+     * Dao for content, cached. Once a marketplace's content is 30 seconds old it is served stale while it is refreshed
+     * in the background, and after 2 minutes it is no longer served. The AdSelectionIndex keeps what it reads for up
+     * to its own maximum age, so the oldest content an ad is selected from is the sum of the two, 5 minutes by
+     * default. Concurrent reads of the same marketplace share one query.
      * @param contentDao source of content data
+     * @param cacheRefreshExecutor refreshes the cache
+     * @param dependencyStatistics counts the coalesced queries
+     * @param cacheStatistics records the cache's hits, misses, evictions and load times
      * @return Dao
      */
     @Provides
-    public ReadableDao<String, List<AdvertisementContent>> provideContentDao(ContentDao contentDao) {
-        return contentDao;
+    @Singleton
+    public ReadableDao<String, List<AdvertisementContent>> provideContentDao(
+            ContentDao contentDao,
+            @Named(ExecutorModule.CACHE_REFRESH_EXECUTOR) ExecutorService cacheRefreshExecutor,
+            DependencyStatistics dependencyStatistics,
+            CacheStatistics cacheStatistics) {
+        return new CachingReadableDao<>(CONTENT_CACHE,
+                new CoalescingReadableDao<>(CONTENT_QUERY, contentDao, dependencyStatistics),
+                cacheSettings(CONTENT_CACHE, CONTENT_CACHE_SETTINGS), cacheRefreshExecutor, cacheStatistics);
     }
 
     /**
-     * Dao for customer profiles.
+     * The daily snapshot of customer profiles, spend and prime benefits, from the file named by the
+     * ata.advertising.service.customerSnapshot.path system property. The file is checked for a new snapshot every
+     * ata.advertising.service.customerSnapshot.reloadIntervalSeconds (5 minutes by default), and a snapshot is no
+     * longer used once it is ata.advertising.service.customerSnapshot.maximumAgeHours old (48 by default).
+     * @param maintenanceScheduler reloads the snapshot
+     * @return the snapshot loader, which never has a snapshot if the path is not set
+     */
+    @Provides
+    @Singleton
+    public CustomerSnapshotLoader provideCustomerSnapshotLoader(
+            @Named(ExecutorModule.MAINTENANCE_SCHEDULER) ScheduledExecutorService maintenanceScheduler) {
+        final String path = System.getProperty(CUSTOMER_SNAPSHOT_PATH);
+        final CustomerSnapshotLoader loader = new CustomerSnapshotLoader(path == null ? null : Paths.get(path),
+                Duration.ofHours(Long.getLong(CUSTOMER_SNAPSHOT_MAXIMUM_AGE_HOURS,
+                        DEFAULT_CUSTOMER_SNAPSHOT_MAXIMUM_AGE_HOURS)),
+                Clock.systemUTC());
+        loader.scheduleReload(maintenanceScheduler, Duration.ofSeconds(Long.getLong(
+                CUSTOMER_SNAPSHOT_RELOAD_INTERVAL_SECONDS, DEFAULT_CUSTOMER_SNAPSHOT_RELOAD_INTERVAL_SECONDS)));
+        return loader;
+    }
+
+    /**
+     * Dao for customer profiles, read from the customer snapshot, or cached, with a timeout and hedged calls, for
+     * customers the snapshot does not have. Concurrent reads for the same customer share one call.
      * @param customerClient source of customer profile data
+     * @param customerSnapshots the daily customer snapshot
+     * @param executor runs the customer service calls
+     * @param cacheRefreshExecutor refreshes the cache
+     * @param dependencyStatistics records the calls' latencies, coalesced calls, hedges and timeouts
+     * @param cacheStatistics records the snapshot's and cache's hits, misses, evictions and load times
      * @return Dao
      */
     @Provides
-    public ReadableDao<String, CustomerProfile> provideCustomerProfileDao(ATACustomerService customerClient) {
-        return new CustomerProfileDao(customerClient);
+    @Singleton
+    public ReadableDao<String, CustomerProfile> provideCustomerProfileDao(
+            ATACustomerService customerClient,
+            CustomerSnapshotLoader customerSnapshots,
+            @Named(ExecutorModule.DEPENDENCY_CALL_EXECUTOR) ExecutorService executor,
+            @Named(ExecutorModule.CACHE_REFRESH_EXECUTOR) ExecutorService cacheRefreshExecutor,
+            DependencyStatistics dependencyStatistics,
+            CacheStatistics cacheStatistics) {
+        return new SnapshotReadableDao<>(CUSTOMER_PROFILE_CACHE, customerSnapshots,
+                CustomerSnapshot::getCustomerProfile,
+                new CachingReadableDao<>(CUSTOMER_PROFILE_CACHE,
+                        remote(GET_CUSTOMER_PROFILE, new CustomerProfileDao(customerClient), executor,
+                                dependencyStatistics),
+                        cacheSettings(CUSTOMER_PROFILE_CACHE, CUSTOMER_PROFILE_CACHE_SETTINGS), cacheRefreshExecutor,
+                        cacheStatistics),
+                cacheStatistics);
     }
 
     /**
-     * Dao for customer spend per category.
+     * Dao for customer spend per category, read from the customer snapshot, or cached, with a timeout and hedged
+     * calls, for customers the snapshot does not have. Concurrent reads for the same customer share one call, and
+     * customers known to have no spend get an empty map without a call.
      * @param customerClient source of customer spend data
+     * @param customerSnapshots the daily customer snapshot
+     * @param executor runs the customer service calls
+     * @param cacheRefreshExecutor refreshes the cache
+     * @param maintenanceScheduler rebuilds the filter of customers with no spend
+     * @param dependencyStatistics records the calls' latencies, coalesced calls, hedges and timeouts
+     * @param cacheStatistics records the cache's hits, misses, evictions and load times, and the filter's hits
      * @return Dao
      */
     @Provides
-    public ReadableDao<RequestContext, Map<String, Spend>> provideCustomerSpendDao(ATACustomerService customerClient) {
-        return new CustomerSpendDao(customerClient);
+    @Singleton
+    public ReadableDao<RequestContext, Map<String, Spend>> provideCustomerSpendDao(
+            ATACustomerService customerClient,
+            CustomerSnapshotLoader customerSnapshots,
+            @Named(ExecutorModule.DEPENDENCY_CALL_EXECUTOR) ExecutorService executor,
+            @Named(ExecutorModule.CACHE_REFRESH_EXECUTOR) ExecutorService cacheRefreshExecutor,
+            @Named(ExecutorModule.MAINTENANCE_SCHEDULER) ScheduledExecutorService maintenanceScheduler,
+            DependencyStatistics dependencyStatistics,
+            CacheStatistics cacheStatistics) {
+        final ReadableDao<RequestContext, Map<String, Spend>> spendDao =
+                remote(GET_CUSTOMER_SPEND, new CustomerSpendDao(customerClient), executor, dependencyStatistics);
+        final NegativeResultFilter<RequestContext> noSpendFilter = negativeResultFilter(CUSTOMER_SPEND_CACHE,
+                CUSTOMER_SPEND_FILTER_REBUILD_INTERVAL, maintenanceScheduler);
+        return new SnapshotReadableDao<>(CUSTOMER_SPEND_CACHE, customerSnapshots, CustomerSnapshot::getCustomerSpend,
+                new CachingReadableDao<>(CUSTOMER_SPEND_CACHE,
+                        new NegativeFilteringReadableDao<>(CUSTOMER_SPEND_CACHE, spendDao, noSpendFilter,
+                                Collections.emptyMap(), cacheStatistics),
+                        cacheSettings(CUSTOMER_SPEND_CACHE, CUSTOMER_SPEND_CACHE_SETTINGS), cacheRefreshExecutor,
+                        cacheStatistics),
+                cacheStatistics);
     }
 
     /**
-     * Dao for prime benefits.
+     * Dao for prime benefits, read from the customer snapshot, or cached, with a timeout and hedged calls, for
+     * customers the snapshot does not have. Concurrent reads for the same customer share one call, and customers known
+     * to have no benefits get an empty list without a call.
      * @param primeClubServiceClient source of prime benefit data
+     * @param customerSnapshots the daily customer snapshot
+     * @param executor runs the prime club service calls
+     * @param cacheRefreshExecutor refreshes the cache
+     * @param maintenanceScheduler rebuilds the filter of customers with no benefits
+     * @param dependencyStatistics records the calls' latencies, coalesced calls, hedges and timeouts
+     * @param cacheStatistics records the cache's hits, misses, evictions and load times, and the filter's hits
      * @return Dao
      */
     @Provides
-    public ReadableDao<RequestContext, List<String>> providePrimeDao(ATAPrimeClubService primeClubServiceClient) {
-        return new PrimeDao(primeClubServiceClient);
+    @Singleton
+    public ReadableDao<RequestContext, List<String>> providePrimeDao(
+            ATAPrimeClubService primeClubServiceClient,
+            CustomerSnapshotLoader customerSnapshots,
+            @Named(ExecutorModule.DEPENDENCY_CALL_EXECUTOR) ExecutorService executor,
+            @Named(ExecutorModule.CACHE_REFRESH_EXECUTOR) ExecutorService cacheRefreshExecutor,
+            @Named(ExecutorModule.MAINTENANCE_SCHEDULER) ScheduledExecutorService maintenanceScheduler,
+            DependencyStatistics dependencyStatistics,
+            CacheStatistics cacheStatistics) {
+        final ReadableDao<RequestContext, List<String>> primeDao =
+                remote(GET_PRIME_BENEFITS, new PrimeDao(primeClubServiceClient), executor, dependencyStatistics);
+        final NegativeResultFilter<RequestContext> noBenefitsFilter = negativeResultFilter(PRIME_BENEFITS_CACHE,
+                PRIME_BENEFITS_FILTER_REBUILD_INTERVAL, maintenanceScheduler);
+        return new SnapshotReadableDao<>(PRIME_BENEFITS_CACHE, customerSnapshots, CustomerSnapshot::getPrimeBenefits,
+                new CachingReadableDao<>(PRIME_BENEFITS_CACHE,
+                        new NegativeFilteringReadableDao<>(PRIME_BENEFITS_CACHE, primeDao, noBenefitsFilter,
+                                Collections.emptyList(), cacheStatistics),
+                        cacheSettings(PRIME_BENEFITS_CACHE, PRIME_BENEFITS_CACHE_SETTINGS), cacheRefreshExecutor,
+                        cacheStatistics),
+                cacheStatistics);
     }
 
+    /**
+     * Wraps a remote DAO with the timeout in ata.advertising.service.dependency.timeoutMillis (1000 by default), and
+     * hedged calls unless ata.advertising.service.dependency.hedging is false. Concurrent gets for equal queries share
+     * one timed, hedged call.
+     */
+    private static <I, O> ReadableDao<I, O> remote(String dependency, ReadableDao<I, O> dao,
+                                                   ExecutorService executor,
+                                                   DependencyStatistics dependencyStatistics) {
+        return new CoalescingReadableDao<>(dependency, new ResilientReadableDao<>(dependency, dao, executor,
+                Duration.ofMillis(Long.getLong(DEPENDENCY_TIMEOUT_MILLIS, DEFAULT_DEPENDENCY_TIMEOUT_MILLIS)),
+                Boolean.parseBoolean(System.getProperty(DEPENDENCY_HEDGING, "true")),
+                dependencyStatistics), dependencyStatistics);
+    }
 
     /**
-     * Dao to get all of the targeting groups for a piece of content.
-     * @param targetingGroupDao source of targeting Dao data
+     * Reads a cache's settings from the ata.advertising.service.cache.NAME system properties, falling back to the
+     * defaults for any that are not set.
+     */
+    private static CacheSettings cacheSettings(String cache, CacheSettings defaults) {
+        final String prefix = CACHE_PROPERTY_PREFIX + cache;
+        return new CacheSettings(
+                Long.getLong(prefix + ".maximumSize", defaults.getMaximumSize()),
+                Duration.ofSeconds(Long.getLong(prefix + ".expireAfterWriteSeconds",
+                        defaults.getExpireAfterWrite().getSeconds())),
+                Duration.ofSeconds(Long.getLong(prefix + ".refreshAfterWriteSeconds",
+                        defaults.getRefreshAfterWrite().getSeconds())),
+                Duration.ofSeconds(Long.getLong(prefix + ".negativeExpireAfterWriteSeconds",
+                        defaults.getNegativeExpireAfterWrite().getSeconds())));
+    }
+
+    /**
+     * Creates a NegativeResultFilter of customers, configured by the ata.advertising.service.negativeFilter.NAME
+     * system properties, and schedules its rebuilds.
+     */
+    private static NegativeResultFilter<RequestContext> negativeResultFilter(String filter,
+                                                                             Duration defaultRebuildInterval,
+                                                                             ScheduledExecutorService scheduler) {
+        final String prefix = NEGATIVE_FILTER_PROPERTY_PREFIX + filter;
+        final NegativeResultFilter<RequestContext> negativeResultFilter = new NegativeResultFilter<>(
+                REQUEST_CONTEXT_FUNNEL,
+                Long.getLong(prefix + ".expectedInsertions", DEFAULT_NEGATIVE_FILTER_EXPECTED_INSERTIONS),
+                Double.parseDouble(System.getProperty(prefix + ".falsePositiveRate",
+                        Double.toString(DEFAULT_NEGATIVE_FILTER_FALSE_POSITIVE_RATE))));
+        negativeResultFilter.scheduleRebuild(scheduler, Duration.ofSeconds(Long.getLong(
+                prefix + ".rebuildIntervalSeconds", defaultRebuildInterval.getSeconds())));
+        return negativeResultFilter;
+    }
+
+    /**
+     * Dao to get all of the targeting groups for a piece of content. It shares its cache and in-flight queries with the
+     * bulk Dao.
+     * @param targetingGroupDao the bulk Dao
      * @return Dao
      */
     @Provides
-    public ReadableDao<String, List<TargetingGroup>> provideTargetingGroupDao(TargetingGroupDao targetingGroupDao) {
+    public ReadableDao<String, List<TargetingGroup>> provideTargetingGroupDao(
+            BulkReadableDao<String, List<TargetingGroup>> targetingGroupDao) {
         return targetingGroupDao;
     }
+
+    /**
+     * Dao to get all of the targeting groups for many pieces of content at once, cached. Concurrent reads of the same
+     * content share one query.
+     * @param targetingGroupDao source of targeting Dao data
+     * @param cacheRefreshExecutor runs cache maintenance
+     * @param dependencyStatistics counts the coalesced queries
+     * @param cacheStatistics records the cache's hits, misses, evictions and load times
+     * @return Dao
+     */
+    @Provides
+    @Singleton
+    public BulkReadableDao<String, List<TargetingGroup>> provideBulkTargetingGroupDao(
+            TargetingGroupDao targetingGroupDao,
+            @Named(ExecutorModule.CACHE_REFRESH_EXECUTOR) ExecutorService cacheRefreshExecutor,
+            DependencyStatistics dependencyStatistics,
+            CacheStatistics cacheStatistics) {
+        return new CachingBulkReadableDao<>(TARGETING_GROUPS_CACHE,
+                new CoalescingBulkReadableDao<>(TARGETING_GROUPS_QUERY, targetingGroupDao, dependencyStatistics),
+                cacheSettings(TARGETING_GROUPS_CACHE, TARGETING_GROUPS_CACHE_SETTINGS), cacheRefreshExecutor,
+                cacheStatistics);
+    }
 }
@@ -14,18 +14,28 @@ import javax.inject.Singleton;
 public class DynamoDBModule {
 
     /**
-     * Provides a singleton instance of DynamoDBMapper.
+     * Provides a singleton instance of the DynamoDB client, for the writes the DynamoDBMapper cannot make.
      *
-     * @return DynamoDBMapper
+     * @return AmazonDynamoDB
      */
     @Singleton
     @Provides
-    public DynamoDBMapper provideDynamoDBMapper() {
-        AmazonDynamoDB amazonDynamoDBClient = AmazonDynamoDBClientBuilder.standard()
+    public AmazonDynamoDB provideAmazonDynamoDB() {
+        return AmazonDynamoDBClientBuilder.standard()
                 .withCredentials(DefaultAWSCredentialsProviderChain.getInstance())
                 .withRegion(Regions.US_WEST_2)
                 .build();
+    }
 
+    /**
+     * Provides a singleton instance of DynamoDBMapper.
+     *
+     * @param amazonDynamoDBClient The client the mapper shares with the rest of the service.
+     * @return DynamoDBMapper
+     */
+    @Singleton
+    @Provides
+    public DynamoDBMapper provideDynamoDBMapper(AmazonDynamoDB amazonDynamoDBClient) {
         return new DynamoDBMapper(amazonDynamoDBClient);
     }
 }
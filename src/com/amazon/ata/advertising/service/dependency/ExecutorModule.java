@@ -0,0 +1,273 @@
+package com.amazon.ata.advertising.service.dependency;
+
+import com.amazon.ata.advertising.service.util.BoundedExecutor;
+import com.amazon.ata.advertising.service.util.VirtualThreads;
+
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import dagger.Module;
+import dagger.Provides;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import javax.inject.Named;
+import javax.inject.Provider;
+import javax.inject.Singleton;
+
+/**
+ * Wire up the thread pools shared by the whole service.
+ */
+@Module
+public class ExecutorModule {
+    public static final String EXECUTOR_MODE = "ata.advertising.service.executor.mode";
+    public static final String DAO_FAN_OUT_EXECUTOR = "daoFanOutExecutor";
+    public static final String CUSTOMER_SIGNALS_EXECUTOR = "customerSignalsExecutor";
+    public static final String EVALUATION_EXECUTOR = "evaluationExecutor";
+    public static final String DEADLINE_SCHEDULER = "deadlineScheduler";
+    public static final String DEPENDENCY_CALL_EXECUTOR = "dependencyCallExecutor";
+    public static final String MAINTENANCE_SCHEDULER = "maintenanceScheduler";
+    public static final String CACHE_REFRESH_EXECUTOR = "cacheRefreshExecutor";
+    public static final String AD_EVENT_SCHEDULER = "adEventScheduler";
+    public static final String AD_EVENT_WRITE_EXECUTOR = "adEventWriteExecutor";
+
+    private static final String DAO_FAN_OUT_CONCURRENCY = "ata.advertising.service.dao.fanOutConcurrency";
+    private static final int DEFAULT_DAO_FAN_OUT_CONCURRENCY = 16;
+    private static final String CUSTOMER_SIGNALS_MAX_THREADS = "ata.advertising.service.customerSignals.maxThreads";
+    private static final int DEFAULT_CUSTOMER_SIGNALS_MAX_THREADS = 64;
+    private static final String DEPENDENCY_CALL_MAX_THREADS = "ata.advertising.service.dependency.maxThreads";
+    private static final int DEFAULT_DEPENDENCY_CALL_MAX_THREADS = 128;
+    private static final String CACHE_REFRESH_THREADS = "ata.advertising.service.cache.refreshThreads";
+    private static final int DEFAULT_CACHE_REFRESH_THREADS = 4;
+    private static final String EVALUATION_THREADS = "ata.advertising.service.evaluation.threads";
+    private static final int DEFAULT_EVALUATION_THREADS = 32;
+    private static final String EVALUATION_QUEUE_CAPACITY = "ata.advertising.service.evaluation.queueCapacity";
+    private static final int DEFAULT_EVALUATION_QUEUE_CAPACITY = 1024;
+    private static final String EVALUATION_REJECTION_POLICY = "ata.advertising.service.evaluation.rejectionPolicy";
+    private static final String AD_EVENT_WRITE_THREADS = "ata.advertising.service.adEvents.writeThreads";
+    private static final int DEFAULT_AD_EVENT_WRITE_THREADS = 8;
+
+    private static final Logger LOG = LogManager.getLogger(ExecutorModule.class);
+
+    /**
+     * The kind of threads blocking work (predicate evaluation and customer data calls) is run on.
+     */
+    public enum ExecutorMode {
+        /**
+         * Bounded pools of platform threads.
+         */
+        PLATFORM,
+        /**
+         * A new virtual thread per task. Requires JDK 21 or later.
+         */
+        VIRTUAL
+    }
+
+    /**
+     * Provides the executor DAOs use to run many queries in parallel. Its thread count is the most queries that will
+     * be in flight at once, and can be overridden with the ata.advertising.service.dao.fanOutConcurrency system
+     * property.
+     * @return ExecutorService
+     */
+    @Provides
+    @Singleton
+    @Named(DAO_FAN_OUT_EXECUTOR)
+    public ExecutorService provideDaoFanOutExecutor() {
+        return Executors.newFixedThreadPool(
+                Integer.getInteger(DAO_FAN_OUT_CONCURRENCY, DEFAULT_DAO_FAN_OUT_CONCURRENCY),
+                new ThreadFactoryBuilder()
+                        .setNameFormat("dao-fan-out-%d")
+                        .setDaemon(true)
+                        .build());
+    }
+
+    /**
+     * Provides the executor that fetches customer signals from the customer and prime services. Threads are created
+     * as needed up to ata.advertising.service.customerSignals.maxThreads; once they are all busy, the requesting
+     * thread fetches the signal itself rather than queueing behind other requests. In VIRTUAL mode every fetch gets
+     * its own virtual thread instead.
+     * @return ExecutorService
+     */
+    @Provides
+    @Singleton
+    @Named(CUSTOMER_SIGNALS_EXECUTOR)
+    public ExecutorService provideCustomerSignalsExecutor() {
+        if (executorMode() == ExecutorMode.VIRTUAL) {
+            return VirtualThreads.newVirtualThreadPerTaskExecutor("customer-signals");
+        }
+        return new ThreadPoolExecutor(0,
+                Integer.getInteger(CUSTOMER_SIGNALS_MAX_THREADS, DEFAULT_CUSTOMER_SIGNALS_MAX_THREADS),
+                60L, TimeUnit.SECONDS,
+                new SynchronousQueue<>(),
+                new ThreadFactoryBuilder()
+                        .setNameFormat("customer-signals-%d")
+                        .setDaemon(true)
+                        .build(),
+                new ThreadPoolExecutor.CallerRunsPolicy());
+    }
+
+    /**
+     * Provides the executor remote customer and prime service calls run on, so that callers can stop waiting when a
+     * call times out and send hedged calls alongside slow ones. Threads are created as needed up to
+     * ata.advertising.service.dependency.maxThreads; once they are all busy, further calls are refused, and fail as
+     * timeouts rather than being made on the caller's thread without one. In VIRTUAL mode every call gets its own
+     * virtual thread instead.
+     * @return ExecutorService
+     */
+    @Provides
+    @Singleton
+    @Named(DEPENDENCY_CALL_EXECUTOR)
+    public ExecutorService provideDependencyCallExecutor() {
+        if (executorMode() == ExecutorMode.VIRTUAL) {
+            return VirtualThreads.newVirtualThreadPerTaskExecutor("dependency-call");
+        }
+        return new ThreadPoolExecutor(0,
+                Integer.getInteger(DEPENDENCY_CALL_MAX_THREADS, DEFAULT_DEPENDENCY_CALL_MAX_THREADS),
+                60L, TimeUnit.SECONDS,
+                new SynchronousQueue<>(),
+                new ThreadFactoryBuilder()
+                        .setNameFormat("dependency-call-%d")
+                        .setDaemon(true)
+                        .build(),
+                new ThreadPoolExecutor.AbortPolicy());
+    }
+
+    /**
+     * Provides the executor that every TargetingEvaluator submits targeting group evaluations to. Its thread count,
+     * queue capacity and rejection policy (ABORT or CALLER_RUNS) are set with the
+     * ata.advertising.service.evaluation.threads, queueCapacity and rejectionPolicy system properties. The rejection
+     * policy only applies to synchronous selections; deadline selections never run evaluations on the caller.
+     * @return BoundedExecutor
+     */
+    @Provides
+    @Singleton
+    @Named(EVALUATION_EXECUTOR)
+    public BoundedExecutor provideEvaluationExecutor() {
+        return new BoundedExecutor("targeting-evaluation",
+                Integer.getInteger(EVALUATION_THREADS, DEFAULT_EVALUATION_THREADS),
+                Integer.getInteger(EVALUATION_QUEUE_CAPACITY, DEFAULT_EVALUATION_QUEUE_CAPACITY),
+                BoundedExecutor.RejectionPolicy.valueOf(System.getProperty(EVALUATION_REJECTION_POLICY,
+                        BoundedExecutor.RejectionPolicy.CALLER_RUNS.name())));
+    }
+
+    /**
+     * Provides the executor TargetingEvaluators submit to: the bounded evaluation executor in PLATFORM mode, or a new
+     * virtual thread per evaluation in VIRTUAL mode.
+     * @param evaluationExecutor the bounded evaluation executor
+     * @return ExecutorService
+     */
+    @Provides
+    @Singleton
+    @Named(EVALUATION_EXECUTOR)
+    public ExecutorService provideEvaluationExecutorService(
+            @Named(EVALUATION_EXECUTOR) Provider<BoundedExecutor> evaluationExecutor) {
+        if (executorMode() == ExecutorMode.VIRTUAL) {
+            return VirtualThreads.newVirtualThreadPerTaskExecutor("targeting-evaluation");
+        }
+        return evaluationExecutor.get();
+    }
+
+    /**
+     * Provides the scheduler that completes selections whose deadline has passed. Its single thread only fires
+     * timers, so it never runs blocking work, and cancelled timers are removed straight away.
+     * @return ScheduledExecutorService
+     */
+    @Provides
+    @Singleton
+    @Named(DEADLINE_SCHEDULER)
+    public ScheduledExecutorService provideDeadlineScheduler() {
+        ScheduledThreadPoolExecutor scheduler = new ScheduledThreadPoolExecutor(1,
+                new ThreadFactoryBuilder()
+                        .setNameFormat("deadline-scheduler-%d")
+                        .setDaemon(true)
+                        .build());
+        scheduler.setRemoveOnCancelPolicy(true);
+        return scheduler;
+    }
+
+    /**
+     * Provides the executor DAO caches refresh stale entries and run maintenance on. Its thread count can be
+     * overridden with the ata.advertising.service.cache.refreshThreads system property. Its queue is unbounded so that
+     * a refresh never runs on, and delays, the request that triggered it; each cache refreshes an entry at most once
+     * at a time, so the queue is bounded by the number of cached entries.
+     * @return ExecutorService
+     */
+    @Provides
+    @Singleton
+    @Named(CACHE_REFRESH_EXECUTOR)
+    public ExecutorService provideCacheRefreshExecutor() {
+        return Executors.newFixedThreadPool(
+                Integer.getInteger(CACHE_REFRESH_THREADS, DEFAULT_CACHE_REFRESH_THREADS),
+                new ThreadFactoryBuilder()
+                        .setNameFormat("cache-refresh-%d")
+                        .setDaemon(true)
+                        .build());
+    }
+
+    /**
+     * Provides the scheduler that runs periodic background maintenance, like rebuilding negative result filters.
+     * @return ScheduledExecutorService
+     */
+    @Provides
+    @Singleton
+    @Named(MAINTENANCE_SCHEDULER)
+    public ScheduledExecutorService provideMaintenanceScheduler() {
+        return Executors.newSingleThreadScheduledExecutor(new ThreadFactoryBuilder()
+                .setNameFormat("maintenance-%d")
+                .setDaemon(true)
+                .build());
+    }
+
+    /**
+     * Provides the scheduler that drains and flushes impression and click events. Its single thread is the only one
+     * that aggregates events, and never waits on their writes.
+     * @return ScheduledExecutorService
+     */
+    @Provides
+    @Singleton
+    @Named(AD_EVENT_SCHEDULER)
+    public ScheduledExecutorService provideAdEventScheduler() {
+        return Executors.newSingleThreadScheduledExecutor(new ThreadFactoryBuilder()
+                .setNameFormat("ad-event-ingest-%d")
+                .setDaemon(true)
+                .build());
+    }
+
+    /**
+     * Provides the executor that writes aggregated impression and click events, kept apart from the DAO fan-out
+     * executor so a large flush never delays queries. Its thread count is the most writes in flight at once, and can
+     * be overridden with the ata.advertising.service.adEvents.writeThreads system property.
+     * @return ExecutorService
+     */
+    @Provides
+    @Singleton
+    @Named(AD_EVENT_WRITE_EXECUTOR)
+    public ExecutorService provideAdEventWriteExecutor() {
+        return Executors.newFixedThreadPool(
+                Integer.getInteger(AD_EVENT_WRITE_THREADS, DEFAULT_AD_EVENT_WRITE_THREADS),
+                new ThreadFactoryBuilder()
+                        .setNameFormat("ad-event-write-%d")
+                        .setDaemon(true)
+                        .build());
+    }
+
+    /**
+     * Reads the ata.advertising.service.executor.mode system property, PLATFORM by default. VIRTUAL falls back to
+     * PLATFORM when the JVM does not support virtual threads.
+     * @return the configured ExecutorMode
+     */
+    static ExecutorMode executorMode() {
+        ExecutorMode mode = ExecutorMode.valueOf(System.getProperty(EXECUTOR_MODE, ExecutorMode.PLATFORM.name()));
+        if (mode == ExecutorMode.VIRTUAL && !VirtualThreads.isSupported()) {
+            LOG.warn(String.format("%s is %s but Java %s has no virtual threads. Using %s.",
+                    EXECUTOR_MODE, mode, System.getProperty("java.version"), ExecutorMode.PLATFORM));
+            return ExecutorMode.PLATFORM;
+        }
+        return mode;
+    }
+}
@@ -4,9 +4,17 @@ package com.amazon.ata.advertising.service.dependency;
 //import com.amazon.coral.service.lambda.LambdaEndpoint;
 
 import com.amazon.ata.advertising.service.activity.*;
+import com.amazon.ata.advertising.service.businesslogic.ClickThroughRateAggregator;
+import com.amazon.ata.advertising.service.businesslogic.SelectionMetrics;
+import com.amazon.ata.advertising.service.dao.CacheStatistics;
+import com.amazon.ata.advertising.service.dao.DependencyStatistics;
+import com.amazon.ata.advertising.service.targeting.PredicateResultMemo;
+import com.amazon.ata.advertising.service.targeting.PredicateStatistics;
+import com.amazon.ata.advertising.service.util.BoundedExecutor;
 import dagger.Component;
 import dagger.Module;
 
+import javax.inject.Named;
 import javax.inject.Singleton;
 
 @Singleton
@@ -16,9 +24,13 @@ import javax.inject.Singleton;
 //        generateLauncher = false
 //)
 @Component(modules = {
+        AdEventModule.class,
         ExternalServiceModule.class,
         DaoModule.class,
-        DynamoDBModule.class
+        DynamoDBModule.class,
+        AdSelectionIndexModule.class,
+        ExecutorModule.class,
+        SelectionModule.class
 })
 public interface LambdaComponent {
     /**
@@ -33,14 +45,62 @@ public interface LambdaComponent {
      */
     TargetingPredicateInjector getTargetingPredicateInjector();
 
+    /**
+     * The executor every TargetingEvaluator submits to, exposed so its load can be monitored.
+     * @return the evaluation executor
+     */
+    @Named(ExecutorModule.EVALUATION_EXECUTOR)
+    BoundedExecutor getEvaluationExecutor();
+
+    /**
+     * The cost and pass rate of each type of targeting predicate evaluated so far.
+     * @return the predicate statistics
+     */
+    PredicateStatistics getPredicateStatistics();
+
+    /**
+     * The hit rate and memory use of the memo of each customer's predicate results.
+     * @return the predicate result memo
+     */
+    PredicateResultMemo getPredicateResultMemo();
+
+    /**
+     * How many targeting groups are evaluated per advertisement selection.
+     * @return the selection metrics
+     */
+    SelectionMetrics getSelectionMetrics();
+
+    /**
+     * The accepted, dropped and pending impression and click events, and how far behind and how long their flushes
+     * are.
+     * @return the click through rate aggregator
+     */
+    ClickThroughRateAggregator getClickThroughRateAggregator();
+
+    /**
+     * The calls, hedges, timeouts and latencies of each customer and prime service call.
+     * @return the dependency statistics
+     */
+    DependencyStatistics getDependencyStatistics();
+
+    /**
+     * The hits, misses, evictions and load times of each DAO cache.
+     * @return the cache statistics
+     */
+    CacheStatistics getCacheStatistics();
+
     GenerateAdActivity provideGenerateAdActivity();
 
+    GenerateAdBatchActivity provideGenerateAdBatchActivity();
+
     AddTargetingGroupActivity provideAddTargetingGroupActivity();
 
     CreateContentActivity provideCreateContentActivity();
 
     DeleteContentActivity provideDeleteContentActivity();
 
+    RecordAdEventsActivity provideRecordAdEventsActivity();
+
     UpdateClickThroughRateActivity provideUpdateClickThroughRateActivity();
 
     UpdateContentActivity provideUpdateContentActivity();
@@ -0,0 +1,47 @@
+package com.amazon.ata.advertising.service.dependency;
+
+import com.amazon.ata.advertising.service.businesslogic.SelectionMode;
+import com.amazon.ata.advertising.service.targeting.PredicateResultMemo;
+
+import dagger.Module;
+import dagger.Provides;
+
+import java.time.Duration;
+import javax.inject.Singleton;
+
+/**
+ * Wire up how advertisements are selected.
+ */
+@Module
+public class SelectionModule {
+    private static final String SELECTION_MODE = "ata.advertising.service.selection.mode";
+    private static final String PREDICATE_MEMO_MAXIMUM_BYTES = "ata.advertising.service.predicateMemo.maximumBytes";
+    private static final long DEFAULT_PREDICATE_MEMO_MAXIMUM_BYTES = 64L * 1024 * 1024;
+    private static final String PREDICATE_MEMO_EXPIRE_AFTER_WRITE_SECONDS =
+            "ata.advertising.service.predicateMemo.expireAfterWriteSeconds";
+    private static final long DEFAULT_PREDICATE_MEMO_EXPIRE_AFTER_WRITE_SECONDS = 60;
+
+    /**
+     * Provides the SelectionMode, BEST_FIRST unless the ata.advertising.service.selection.mode system property is set.
+     * @return SelectionMode
+     */
+    @Provides
+    public SelectionMode provideSelectionMode() {
+        return SelectionMode.valueOf(System.getProperty(SELECTION_MODE, SelectionMode.BEST_FIRST.name()));
+    }
+
+    /**
+     * Provides the memo of each customer's predicate results, holding an estimated 64MB for a minute unless the
+     * ata.advertising.service.predicateMemo.maximumBytes or .expireAfterWriteSeconds system properties are set. Either
+     * set to 0 disables it.
+     * @return PredicateResultMemo
+     */
+    @Provides
+    @Singleton
+    public PredicateResultMemo providePredicateResultMemo() {
+        return new PredicateResultMemo(
+                Long.getLong(PREDICATE_MEMO_MAXIMUM_BYTES, DEFAULT_PREDICATE_MEMO_MAXIMUM_BYTES),
+                Duration.ofSeconds(Long.getLong(PREDICATE_MEMO_EXPIRE_AFTER_WRITE_SECONDS,
+                        DEFAULT_PREDICATE_MEMO_EXPIRE_AFTER_WRITE_SECONDS)));
+    }
+}
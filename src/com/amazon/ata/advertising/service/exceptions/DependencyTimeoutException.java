@@ -0,0 +1,11 @@
+package com.amazon.ata.advertising.service.exceptions;
+
+/**
+ * Thrown when a downstream service does not respond within its timeout. Targeting predicates treat it as an
+ * INDETERMINATE result rather than failing the request.
+ */
+public class DependencyTimeoutException extends AdvertisementServiceException {
+    public DependencyTimeoutException(String message, Throwable cause) {
+        super(message, cause);
+    }
+}
@@ -0,0 +1,273 @@
+package com.amazon.ata.advertising.service.index;
+
+import com.amazon.ata.advertising.service.dao.BulkReadableDao;
+import com.amazon.ata.advertising.service.dao.ReadableDao;
+import com.amazon.ata.advertising.service.model.AdvertisementContent;
+import com.amazon.ata.advertising.service.targeting.TargetingGroup;
+
+import com.google.common.annotations.VisibleForTesting;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+/**
+ * Holds a MarketplaceSnapshot for the marketplaces that ads have recently been requested for, so that selecting an ad
+ * does not need to read from DynamoDB. The first request for a marketplace builds its snapshot; after that, snapshots
+ * are rebuilt in the background and swapped in whole, so readers always see a complete snapshot.
+ *
+ * <p>The background rebuilds stop whenever the environment is frozen, so a snapshot older than the maximum age is
+ * never served: the first request to find it that old rebuilds it while any others for the marketplace wait, and fails
+ * if it cannot be rebuilt. A snapshot is only as fresh as the content DAO it is built from, so the oldest content an
+ * ad can be selected from is the maximum age plus the most stale that DAO serves.
+ *
+ * <p>Marketplace ids come from clients, so the index is bounded. A marketplace without content is never indexed, so
+ * unknown marketplaces cannot fill it, and once it holds the maximum number of marketplaces a new one replaces the
+ * least recently requested. A marketplace that has not been requested for the idle expiry, or whose content has all
+ * been deleted, is dropped by the next refresh instead of being rebuilt.
+ */
+public class AdSelectionIndex {
+    public static final int DEFAULT_MAXIMUM_MARKETPLACES = 100;
+    public static final Duration DEFAULT_IDLE_EXPIRY = Duration.ofHours(1);
+    public static final Duration DEFAULT_MAXIMUM_AGE = Duration.ofMinutes(3);
+    private static final long LAST_REQUESTED_RESOLUTION_MILLIS = 1000;
+    private static final Logger LOG = LogManager.getLogger(AdSelectionIndex.class);
+
+    private final ReadableDao<String, List<AdvertisementContent>> contentDao;
+    private final BulkReadableDao<String, List<TargetingGroup>> targetingGroupDao;
+    private final int maximumMarketplaces;
+    private final long idleExpiryMillis;
+    private final long maximumAgeMillis;
+    private final Clock clock;
+    private final ConcurrentMap<String, IndexedMarketplace> marketplaces = new ConcurrentHashMap<>();
+    private final AdSelectionIndexMetrics metrics = new AdSelectionIndexMetrics();
+
+    /**
+     * Creates an index that reads from the provided DAOs, with the default bounds.
+     * @param contentDao Source of advertising content.
+     * @param targetingGroupDao Source of targeting groups for each advertising content, read in bulk.
+     */
+    public AdSelectionIndex(ReadableDao<String, List<AdvertisementContent>> contentDao,
+                            BulkReadableDao<String, List<TargetingGroup>> targetingGroupDao) {
+        this(contentDao, targetingGroupDao, DEFAULT_MAXIMUM_MARKETPLACES, DEFAULT_IDLE_EXPIRY, DEFAULT_MAXIMUM_AGE);
+    }
+
+    /**
+     * Creates an index that reads from the provided DAOs.
+     * @param contentDao Source of advertising content.
+     * @param targetingGroupDao Source of targeting groups for each advertising content, read in bulk.
+     * @param maximumMarketplaces The most marketplaces the index holds snapshots for.
+     * @param idleExpiry How long a marketplace stays indexed without being requested.
+     * @param maximumAge The oldest a snapshot may be when it is served.
+     */
+    public AdSelectionIndex(ReadableDao<String, List<AdvertisementContent>> contentDao,
+                            BulkReadableDao<String, List<TargetingGroup>> targetingGroupDao,
+                            int maximumMarketplaces,
+                            Duration idleExpiry,
+                            Duration maximumAge) {
+        this(contentDao, targetingGroupDao, maximumMarketplaces, idleExpiry, maximumAge, Clock.systemUTC());
+    }
+
+    @VisibleForTesting
+    AdSelectionIndex(ReadableDao<String, List<AdvertisementContent>> contentDao,
+                     BulkReadableDao<String, List<TargetingGroup>> targetingGroupDao,
+                     int maximumMarketplaces,
+                     Duration idleExpiry,
+                     Duration maximumAge,
+                     Clock clock) {
+        if (maximumMarketplaces <= 0) {
+            throw new IllegalArgumentException("maximumMarketplaces must be positive, was " + maximumMarketplaces);
+        }
+        this.contentDao = contentDao;
+        this.targetingGroupDao = targetingGroupDao;
+        this.maximumMarketplaces = maximumMarketplaces;
+        this.idleExpiryMillis = idleExpiry.toMillis();
+        this.maximumAgeMillis = maximumAge.toMillis();
+        this.clock = clock;
+    }
+
+    /**
+     * Gets the current snapshot for a marketplace, building it if the marketplace is not indexed, or rebuilding it if
+     * it is older than the maximum age. A built snapshot is only indexed if the marketplace has content.
+     * @param marketplaceId The marketplace to get the snapshot for.
+     * @return The most recently built snapshot for the marketplace.
+     */
+    public MarketplaceSnapshot getSnapshot(String marketplaceId) {
+        final long now = clock.millis();
+        IndexedMarketplace marketplace = marketplaces.get(marketplaceId);
+        if (marketplace != null) {
+            metrics.recordHit();
+            marketplace.requested(now);
+            return served(withinMaximumAge(marketplaceId, marketplace, now), now);
+        }
+
+        metrics.recordMiss();
+        MarketplaceSnapshot built = buildSnapshot(marketplaceId);
+        if (built.getContents().isEmpty()) {
+            metrics.recordRejection();
+            return served(built, now);
+        }
+        while (marketplaces.size() >= maximumMarketplaces && !marketplaces.containsKey(marketplaceId)) {
+            evictLeastRecentlyRequested();
+        }
+        IndexedMarketplace existing = marketplaces.putIfAbsent(marketplaceId, new IndexedMarketplace(built, now));
+        return served(existing == null ? built : existing.snapshot, now);
+    }
+
+    /**
+     * Rebuilds the snapshot of every marketplace in the index that has been requested within the idle expiry, and
+     * drops the rest, along with marketplaces that no longer have content. If a marketplace cannot be rebuilt, its
+     * previous snapshot is kept until it reaches the maximum age.
+     */
+    public void refresh() {
+        final long now = clock.millis();
+        for (Map.Entry<String, IndexedMarketplace> entry : marketplaces.entrySet()) {
+            final String marketplaceId = entry.getKey();
+            final IndexedMarketplace marketplace = entry.getValue();
+            if (now - marketplace.lastRequestedMillis > idleExpiryMillis) {
+                if (marketplaces.remove(marketplaceId, marketplace)) {
+                    metrics.recordEviction();
+                }
+                continue;
+            }
+            try {
+                final MarketplaceSnapshot rebuilt = buildSnapshot(marketplaceId);
+                if (rebuilt.getContents().isEmpty()) {
+                    if (marketplaces.remove(marketplaceId, marketplace)) {
+                        metrics.recordEviction();
+                    }
+                    continue;
+                }
+                marketplace.rebuilt(rebuilt);
+                metrics.recordRefresh();
+            } catch (RuntimeException e) {
+                metrics.recordRefreshFailure();
+                LOG.warn(String.format("Unable to refresh the ad selection index for marketplace %s.",
+                        marketplaceId), e);
+            }
+        }
+    }
+
+    /**
+     * Schedules refresh() to run repeatedly on the provided executor.
+     * @param executor The executor to run the refreshes on.
+     * @param interval The delay between the end of one refresh and the start of the next.
+     */
+    public void scheduleRefresh(ScheduledExecutorService executor, Duration interval) {
+        executor.scheduleWithFixedDelay(this::refresh, interval.toMillis(), interval.toMillis(),
+                TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * How long ago the snapshot currently served for a marketplace was built.
+     * @param marketplaceId The marketplace to check.
+     * @return The age of the marketplace's snapshot, or null if the marketplace has not been indexed.
+     */
+    public Duration getRefreshAge(String marketplaceId) {
+        IndexedMarketplace marketplace = marketplaces.get(marketplaceId);
+        return marketplace == null ? null : Duration.between(marketplace.snapshot.getBuiltAt(), clock.instant());
+    }
+
+    /**
+     * The number of marketplaces currently indexed.
+     * @return the indexed marketplace count
+     */
+    public int getMarketplaceCount() {
+        return marketplaces.size();
+    }
+
+    public AdSelectionIndexMetrics getMetrics() {
+        return metrics;
+    }
+
+    /**
+     * A marketplace's snapshot, rebuilt first if it is older than the maximum age. Only one request rebuilds it; any
+     * others for the marketplace wait for that rebuild instead of starting their own.
+     */
+    private MarketplaceSnapshot withinMaximumAge(String marketplaceId, IndexedMarketplace marketplace, long now) {
+        final MarketplaceSnapshot snapshot = marketplace.snapshot;
+        if (now - marketplace.builtAtMillis <= maximumAgeMillis) {
+            return snapshot;
+        }
+        synchronized (marketplace) {
+            if (marketplace.snapshot != snapshot) {
+                return marketplace.snapshot;
+            }
+            final MarketplaceSnapshot rebuilt;
+            try {
+                rebuilt = buildSnapshot(marketplaceId);
+            } catch (RuntimeException e) {
+                metrics.recordRefreshFailure();
+                throw e;
+            }
+            marketplace.rebuilt(rebuilt);
+            metrics.recordExpiredRebuild();
+            return rebuilt;
+        }
+    }
+
+    private MarketplaceSnapshot served(MarketplaceSnapshot snapshot, long now) {
+        metrics.recordServedAge(Math.max(0, now - snapshot.getBuiltAt().toEpochMilli()));
+        return snapshot;
+    }
+
+    /**
+     * Drops the marketplace that was requested longest ago, to make room for another.
+     */
+    private void evictLeastRecentlyRequested() {
+        Map.Entry<String, IndexedMarketplace> leastRecent = null;
+        for (Map.Entry<String, IndexedMarketplace> entry : marketplaces.entrySet()) {
+            if (leastRecent == null ||
+                    entry.getValue().lastRequestedMillis < leastRecent.getValue().lastRequestedMillis) {
+                leastRecent = entry;
+            }
+        }
+        if (leastRecent != null && marketplaces.remove(leastRecent.getKey(), leastRecent.getValue())) {
+            metrics.recordEviction();
+        }
+    }
+
+    private MarketplaceSnapshot buildSnapshot(String marketplaceId) {
+        final List<AdvertisementContent> contents = contentDao.get(marketplaceId);
+
+        final Map<String, List<TargetingGroup>> targetingGroups = targetingGroupDao.getAll(contents.stream()
+                .map(AdvertisementContent::getContentId)
+                .collect(Collectors.toList()));
+
+        return new MarketplaceSnapshot(marketplaceId, contents, targetingGroups, clock.instant());
+    }
+
+    /**
+     * A marketplace's current snapshot, and when it was last requested. The time is only updated once it is a second
+     * stale, so that concurrent requests for a marketplace do not all write to it.
+     */
+    private static final class IndexedMarketplace {
+        private volatile MarketplaceSnapshot snapshot;
+        private volatile long builtAtMillis;
+        private volatile long lastRequestedMillis;
+
+        private IndexedMarketplace(MarketplaceSnapshot snapshot, long lastRequestedMillis) {
+            rebuilt(snapshot);
+            this.lastRequestedMillis = lastRequestedMillis;
+        }
+
+        private void rebuilt(MarketplaceSnapshot rebuilt) {
+            builtAtMillis = rebuilt.getBuiltAt().toEpochMilli();
+            snapshot = rebuilt;
+        }
+
+        private void requested(long now) {
+            if (now - lastRequestedMillis >= LAST_REQUESTED_RESOLUTION_MILLIS) {
+                lastRequestedMillis = now;
+            }
+        }
+    }
+}
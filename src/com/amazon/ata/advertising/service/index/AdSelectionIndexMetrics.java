@@ -0,0 +1,142 @@
+package com.amazon.ata.advertising.service.index;
+
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Counters describing how the AdSelectionIndex is being used, and how old the snapshots it serves are.
+ */
+public class AdSelectionIndexMetrics {
+    private static final int SERVED_AGE_WINDOW = 256;
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder refreshes = new LongAdder();
+    private final LongAdder refreshFailures = new LongAdder();
+    private final LongAdder rejections = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+    private final LongAdder expiredRebuilds = new LongAdder();
+    private final AtomicLongArray servedAges = new AtomicLongArray(SERVED_AGE_WINDOW);
+    private final AtomicLong servedAgeCount = new AtomicLong();
+
+    void recordHit() {
+        hits.increment();
+    }
+
+    void recordMiss() {
+        misses.increment();
+    }
+
+    void recordRefresh() {
+        refreshes.increment();
+    }
+
+    void recordRefreshFailure() {
+        refreshFailures.increment();
+    }
+
+    void recordRejection() {
+        rejections.increment();
+    }
+
+    void recordEviction() {
+        evictions.increment();
+    }
+
+    void recordExpiredRebuild() {
+        expiredRebuilds.increment();
+    }
+
+    void recordServedAge(long millis) {
+        servedAges.set((int) (servedAgeCount.getAndIncrement() % SERVED_AGE_WINDOW), millis);
+    }
+
+    /**
+     * The number of lookups that were served from an existing snapshot.
+     * @return the hit count
+     */
+    public long getHitCount() {
+        return hits.sum();
+    }
+
+    /**
+     * The number of lookups that had to build a snapshot before they could be served.
+     * @return the miss count
+     */
+    public long getMissCount() {
+        return misses.sum();
+    }
+
+    /**
+     * The number of snapshots that were rebuilt in the background.
+     * @return the refresh count
+     */
+    public long getRefreshCount() {
+        return refreshes.sum();
+    }
+
+    /**
+     * The number of rebuilds that failed. A background rebuild that fails leaves the previous snapshot in place; a
+     * rebuild of a snapshot older than the maximum age fails the request that started it.
+     * @return the refresh failure count
+     */
+    public long getRefreshFailureCount() {
+        return refreshFailures.sum();
+    }
+
+    /**
+     * The number of built snapshots that were not indexed because their marketplace has no content.
+     * @return the rejection count
+     */
+    public long getRejectionCount() {
+        return rejections.sum();
+    }
+
+    /**
+     * The number of marketplaces dropped from the index: because they were not requested within the idle expiry, no
+     * longer had content, or were the least recently requested when the index was full.
+     * @return the eviction count
+     */
+    public long getEvictionCount() {
+        return evictions.sum();
+    }
+
+    /**
+     * The number of snapshots rebuilt by a request because they were older than the maximum age, which means the
+     * background rebuilds had not kept up, usually because the environment was frozen.
+     * @return the expired rebuild count
+     */
+    public long getExpiredRebuildCount() {
+        return expiredRebuilds.sum();
+    }
+
+    /**
+     * The number of snapshots served whose age has been recorded.
+     * @return the served age sample count
+     */
+    public long getServedAgeSampleCount() {
+        return servedAgeCount.get();
+    }
+
+    /**
+     * A percentile of how long before they were served the last 256 snapshots served were built, or 0 if none have
+     * been served. Ads were selected from content at most this old plus the content DAO's maximum staleness.
+     * @param percentile The percentile, between 0 and 1.
+     * @return the served age in milliseconds
+     */
+    public long getServedAgePercentileMillis(double percentile) {
+        int samples = (int) Math.min(servedAgeCount.get(), SERVED_AGE_WINDOW);
+        if (samples == 0) {
+            return 0;
+        }
+        long[] sorted = new long[samples];
+        for (int i = 0; i < samples; i++) {
+            sorted[i] = servedAges.get(i);
+        }
+        Arrays.sort(sorted);
+        int index = (int) Math.ceil(percentile * samples) - 1;
+        return sorted[Math.max(0, Math.min(samples - 1, index))];
+    }
+}
@@ -0,0 +1,161 @@
+package com.amazon.ata.advertising.service.index;
+
+import com.amazon.ata.advertising.service.model.AdvertisementContent;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The targeting groups of a marketplace as parallel primitive arrays, for ranking eligible groups without touching the
+ * group objects. Each group is identified by its ordinal, its position in click through rate order, and eligibility is
+ * passed as a bitmask of ordinals in the layout of BitSet.toLongArray.
+ *
+ * Because ordinals are in rank order, the eligible group with the highest click through rate is the lowest set bit of
+ * the mask, so the masked argmax is a scan for the first non-zero word rather than a comparison of every eligible
+ * group's click through rate.
+ */
+public class CandidateStore {
+    private final AdvertisementContent[] contents;
+    private final double[] clickThroughRates;
+    private final int[] contentOrdinals;
+
+    /**
+     * Stores a marketplace's targeting groups.
+     * @param targetingGroups The targeting groups paired with their content, highest click through rate first, as
+     *                        returned by MarketplaceSnapshot.getTargetingGroupsByClickThroughRate.
+     */
+    public CandidateStore(List<ContentTargetingGroup> targetingGroups) {
+        final Map<String, Integer> contentOrdinalsById = new HashMap<>();
+        final List<AdvertisementContent> distinctContents = new ArrayList<>();
+        this.clickThroughRates = new double[targetingGroups.size()];
+        this.contentOrdinals = new int[targetingGroups.size()];
+        for (int ordinal = 0; ordinal < targetingGroups.size(); ordinal++) {
+            final ContentTargetingGroup targetingGroup = targetingGroups.get(ordinal);
+            final double clickThroughRate = targetingGroup.getTargetingGroup().getClickThroughRate();
+            if (ordinal > 0 && Double.compare(clickThroughRate, clickThroughRates[ordinal - 1]) > 0) {
+                throw new IllegalArgumentException("Targeting groups must be ordered by click through rate");
+            }
+            clickThroughRates[ordinal] = clickThroughRate;
+            contentOrdinals[ordinal] = contentOrdinalsById.computeIfAbsent(
+                    targetingGroup.getContent().getContentId(), contentId -> {
+                        distinctContents.add(targetingGroup.getContent());
+                        return distinctContents.size() - 1;
+                    });
+        }
+        this.contents = distinctContents.toArray(new AdvertisementContent[0]);
+    }
+
+    /**
+     * The number of targeting groups in the store.
+     * @return the group count
+     */
+    public int size() {
+        return clickThroughRates.length;
+    }
+
+    public double getClickThroughRate(int ordinal) {
+        return clickThroughRates[ordinal];
+    }
+
+    public AdvertisementContent getContent(int ordinal) {
+        return contents[contentOrdinals[ordinal]];
+    }
+
+    /**
+     * Finds the eligible targeting group with the highest click through rate. Ties go to the lowest ordinal, which
+     * is the group whose content has the lowest contentId.
+     * @param eligible The eligible ordinals.
+     * @return The ordinal of the best eligible group, or -1 if none are eligible.
+     */
+    public int bestEligible(long[] eligible) {
+        return nextEligible(eligible, 0);
+    }
+
+    /**
+     * Selects the content of the k best eligible targeting groups, skipping groups whose content has already been
+     * selected through a better group.
+     * @param eligible The eligible ordinals.
+     * @param k The most content to select.
+     * @return Up to k pieces of distinct content, best first.
+     */
+    public List<AdvertisementContent> selectTop(long[] eligible, int k) {
+        if (k <= 0) {
+            return Collections.emptyList();
+        }
+        final int first = bestEligible(eligible);
+        if (first < 0) {
+            return Collections.emptyList();
+        }
+        if (k == 1) {
+            return Collections.singletonList(getContent(first));
+        }
+
+        final List<AdvertisementContent> selected = new ArrayList<>(Math.min(k, contents.length));
+        final ContentSet selectedContents = new ContentSet(k, contents.length);
+        for (int ordinal = first; ordinal >= 0 && selected.size() < k; ordinal = nextEligible(eligible, ordinal + 1)) {
+            final int content = contentOrdinals[ordinal];
+            if (selectedContents.add(content)) {
+                selected.add(contents[content]);
+            }
+        }
+        return selected;
+    }
+
+    /**
+     * The lowest eligible ordinal at or after from, or -1 if there is none.
+     */
+    private int nextEligible(long[] eligible, int from) {
+        int word = from >>> 6;
+        if (word >= eligible.length || from >= clickThroughRates.length) {
+            return -1;
+        }
+        long bits = eligible[word] & -1L << from;
+        while (bits == 0) {
+            if (++word >= eligible.length) {
+                return -1;
+            }
+            bits = eligible[word];
+        }
+        final int ordinal = word * Long.SIZE + Long.numberOfTrailingZeros(bits);
+        return ordinal < clickThroughRates.length ? ordinal : -1;
+    }
+
+    /**
+     * The content ordinals selected so far. A handful of ad slots are checked with a linear scan, which is cheaper
+     * than clearing a bitmask with a bit for every piece of content in the marketplace; larger selections use the
+     * bitmask.
+     */
+    private static final class ContentSet {
+        private static final int MAX_SCANNED = 16;
+
+        private final int[] scanned;
+        private final long[] bits;
+        private int size;
+
+        private ContentSet(int capacity, int contentCount) {
+            this.scanned = capacity <= MAX_SCANNED ? new int[capacity] : null;
+            this.bits = capacity <= MAX_SCANNED ? null : new long[(contentCount + Long.SIZE - 1) / Long.SIZE];
+        }
+
+        private boolean add(int content) {
+            if (bits != null) {
+                final long bit = 1L << content;
+                if ((bits[content >>> 6] & bit) != 0) {
+                    return false;
+                }
+                bits[content >>> 6] |= bit;
+                return true;
+            }
+            for (int i = 0; i < size; i++) {
+                if (scanned[i] == content) {
+                    return false;
+                }
+            }
+            scanned[size++] = content;
+            return true;
+        }
+    }
+}
@@ -0,0 +1,30 @@
+package com.amazon.ata.advertising.service.index;
+
+import com.amazon.ata.advertising.service.model.AdvertisementContent;
+import com.amazon.ata.advertising.service.targeting.TargetingGroup;
+
+/**
+ * A targeting group paired with the content it targets.
+ */
+public class ContentTargetingGroup {
+    private final AdvertisementContent content;
+    private final TargetingGroup targetingGroup;
+
+    /**
+     * Pairs a targeting group with its content.
+     * @param content The content the targeting group belongs to.
+     * @param targetingGroup The targeting group.
+     */
+    public ContentTargetingGroup(AdvertisementContent content, TargetingGroup targetingGroup) {
+        this.content = content;
+        this.targetingGroup = targetingGroup;
+    }
+
+    public AdvertisementContent getContent() {
+        return content;
+    }
+
+    public TargetingGroup getTargetingGroup() {
+        return targetingGroup;
+    }
+}
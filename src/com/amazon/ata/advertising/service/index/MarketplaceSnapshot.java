@@ -0,0 +1,166 @@
+package com.amazon.ata.advertising.service.index;
+
+import com.amazon.ata.advertising.service.model.AdvertisementContent;
+import com.amazon.ata.advertising.service.targeting.TargetingGroup;
+import com.amazon.ata.advertising.service.targeting.TargetingGroupIndex;
+import com.amazon.ata.advertising.service.targeting.predicate.TargetingPredicate;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+/**
+ * An immutable view of all of the advertisement content for a marketplace, along with the targeting groups of each
+ * piece of content, as of the moment the snapshot was built.
+ *
+ * Equal predicates are shared: every targeting group in the snapshot that uses a predicate references the same
+ * instance, so a TargetingEvaluator can evaluate it once per request and reuse the result for every group.
+ */
+public class MarketplaceSnapshot {
+    /**
+     * Highest click through rate first, then lowest contentId first, matching how AdvertisementSelectionLogic ranks
+     * content.
+     */
+    private static final Comparator<ContentTargetingGroup> BY_CLICK_THROUGH_RATE =
+            Comparator.comparingDouble((ContentTargetingGroup group) -> group.getTargetingGroup().getClickThroughRate())
+                    .reversed()
+                    .thenComparing(group -> group.getContent().getContentId());
+
+    private final String marketplaceId;
+    private final List<AdvertisementContent> contents;
+    private final Map<String, List<TargetingGroup>> targetingGroupsByContentId;
+    private final Instant builtAt;
+    private final int distinctPredicateCount;
+    private final List<ContentTargetingGroup> targetingGroupsByClickThroughRate;
+    private final TargetingGroupIndex targetingGroupIndex;
+    private final CandidateStore candidateStore;
+
+    /**
+     * Creates a snapshot of a marketplace. The passed collections are copied, so later changes to them are not
+     * reflected in the snapshot.
+     * @param marketplaceId The marketplace this snapshot was built for.
+     * @param contents All of the advertisement content in the marketplace.
+     * @param targetingGroupsByContentId The targeting groups of each piece of content, keyed by contentId.
+     * @param builtAt When the data in this snapshot was read.
+     */
+    public MarketplaceSnapshot(String marketplaceId,
+                               List<AdvertisementContent> contents,
+                               Map<String, List<TargetingGroup>> targetingGroupsByContentId,
+                               Instant builtAt) {
+        this.marketplaceId = marketplaceId;
+        this.contents = Collections.unmodifiableList(new ArrayList<>(contents));
+
+        Map<TargetingPredicate, TargetingPredicate> canonicalPredicates = new HashMap<>();
+        Map<String, List<TargetingGroup>> groups = new HashMap<>();
+        targetingGroupsByContentId.forEach((contentId, targetingGroups) ->
+                groups.put(contentId, Collections.unmodifiableList(targetingGroups.stream()
+                        .map(targetingGroup -> shareEqualPredicates(targetingGroup, canonicalPredicates))
+                        .collect(Collectors.toList()))));
+        this.targetingGroupsByContentId = Collections.unmodifiableMap(groups);
+        this.builtAt = builtAt;
+        this.distinctPredicateCount = canonicalPredicates.size();
+
+        List<ContentTargetingGroup> ranked = new ArrayList<>();
+        for (AdvertisementContent content : this.contents) {
+            for (TargetingGroup targetingGroup : getTargetingGroups(content.getContentId())) {
+                ranked.add(new ContentTargetingGroup(content, targetingGroup));
+            }
+        }
+        ranked.sort(BY_CLICK_THROUGH_RATE);
+        this.targetingGroupsByClickThroughRate = Collections.unmodifiableList(ranked);
+        this.targetingGroupIndex = new TargetingGroupIndex(ranked.stream()
+                .map(ContentTargetingGroup::getTargetingGroup)
+                .collect(Collectors.toList()));
+        this.candidateStore = new CandidateStore(ranked);
+    }
+
+    public String getMarketplaceId() {
+        return marketplaceId;
+    }
+
+    public List<AdvertisementContent> getContents() {
+        return contents;
+    }
+
+    /**
+     * Gets the targeting groups of a piece of content in this marketplace.
+     * @param contentId The content to get targeting groups for.
+     * @return The targeting groups of the content. Empty if the content has none, or is not in this snapshot.
+     */
+    public List<TargetingGroup> getTargetingGroups(String contentId) {
+        return targetingGroupsByContentId.getOrDefault(contentId, Collections.emptyList());
+    }
+
+    /**
+     * Every targeting group in the marketplace paired with its content, highest click through rate first. Ties are
+     * ordered by contentId. Evaluating groups in this order, the first eligible group found for each piece of content
+     * is the one that sets its click through rate, and content is found in the order it should be ranked.
+     * @return The targeting groups of the marketplace in click through rate order.
+     */
+    public List<ContentTargetingGroup> getTargetingGroupsByClickThroughRate() {
+        return targetingGroupsByClickThroughRate;
+    }
+
+    /**
+     * An index of every targeting group in the marketplace. The ordinal of each group is its position in
+     * getTargetingGroupsByClickThroughRate, so the lowest eligible ordinal is the best eligible group.
+     * @return The targeting group index of the marketplace.
+     */
+    public TargetingGroupIndex getTargetingGroupIndex() {
+        return targetingGroupIndex;
+    }
+
+    /**
+     * The click through rate and content of every targeting group in the marketplace, by the same ordinals as
+     * getTargetingGroupIndex.
+     * @return The candidate store of the marketplace.
+     */
+    public CandidateStore getCandidateStore() {
+        return candidateStore;
+    }
+
+    public Instant getBuiltAt() {
+        return builtAt;
+    }
+
+    /**
+     * The number of distinct predicates across every targeting group in the snapshot. At most this many predicate
+     * evaluations are needed to serve a request.
+     * @return the distinct predicate count
+     */
+    public int getDistinctPredicateCount() {
+        return distinctPredicateCount;
+    }
+
+    private static TargetingGroup shareEqualPredicates(TargetingGroup targetingGroup,
+                                                       Map<TargetingPredicate, TargetingPredicate> canonical) {
+        final List<TargetingPredicate> predicates = targetingGroup.getTargetingPredicates();
+        if (predicates == null) {
+            return targetingGroup;
+        }
+
+        final List<TargetingPredicate> shared = predicates.stream()
+                .map(predicate -> canonical.computeIfAbsent(predicate, Function.identity()))
+                .collect(Collectors.toList());
+        boolean allShared = true;
+        for (int i = 0; i < predicates.size(); i++) {
+            allShared &= predicates.get(i) == shared.get(i);
+        }
+        if (allShared) {
+            return targetingGroup;
+        }
+
+        return TargetingGroup.builder()
+                .withTargetingGroupId(targetingGroup.getTargetingGroupId())
+                .withContentId(targetingGroup.getContentId())
+                .withClickThroughRate(targetingGroup.getClickThroughRate())
+                .withTargetingPredicates(shared)
+                .build();
+    }
+}
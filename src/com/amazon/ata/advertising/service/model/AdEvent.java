@@ -0,0 +1,58 @@
+package com.amazon.ata.advertising.service.model;
+
+public class AdEvent {
+    private String targetingGroupId;
+    private AdEventType eventType;
+
+    public AdEvent(String targetingGroupId, AdEventType eventType) {
+        this.targetingGroupId = targetingGroupId;
+        this.eventType = eventType;
+    }
+
+    public AdEvent() {
+    }
+
+    public String getTargetingGroupId() {
+        return targetingGroupId;
+    }
+
+    public void setTargetingGroupId(String targetingGroupId) {
+        this.targetingGroupId = targetingGroupId;
+    }
+
+    public AdEventType getEventType() {
+        return eventType;
+    }
+
+    public void setEventType(AdEventType eventType) {
+        this.eventType = eventType;
+    }
+
+    public AdEvent(Builder builder) {
+        this.targetingGroupId = builder.targetingGroupId;
+        this.eventType = builder.eventType;
+    }
+
+    public static Builder builder() {return new Builder();}
+
+    public static final class Builder {
+        private String targetingGroupId;
+        private AdEventType eventType;
+
+        private Builder() {
+
+        }
+
+        public Builder withTargetingGroupId(String targetingGroupIdToUse) {
+            this.targetingGroupId = targetingGroupIdToUse;
+            return this;
+        }
+
+        public Builder withEventType(AdEventType eventTypeToUse) {
+            this.eventType = eventTypeToUse;
+            return this;
+        }
+
+        public AdEvent build() { return new AdEvent(this); }
+    }
+}
@@ -0,0 +1,6 @@
+package com.amazon.ata.advertising.service.model;
+
+public enum AdEventType {
+    IMPRESSION,
+    CLICK
+}
@@ -13,6 +13,8 @@ import java.util.Objects;
 @DynamoDBTable(tableName = "Content")
 public class AdvertisementContent {
     public static final String MARKETPLACE_ID_INDEX = "MarketplaceIdIndex";
+    public static final String MARKETPLACE_ID = "MarketplaceId";
+    public static final String RENDERABLE_CONTENT = "RenderableContent";
 
     private String contentId;
     private String renderableContent;
@@ -35,7 +37,7 @@ public class AdvertisementContent {
      */
     public AdvertisementContent() {}
 
-    @DynamoDBAttribute(attributeName = "RenderableContent")
+    @DynamoDBAttribute(attributeName = RENDERABLE_CONTENT)
     public String getRenderableContent() {
         return this.renderableContent;
     }
@@ -53,7 +55,7 @@ public class AdvertisementContent {
         this.contentId = contentId;
     }
 
-    @DynamoDBIndexHashKey(globalSecondaryIndexName = MARKETPLACE_ID_INDEX, attributeName = "MarketplaceId")
+    @DynamoDBIndexHashKey(globalSecondaryIndexName = MARKETPLACE_ID_INDEX, attributeName = MARKETPLACE_ID)
     public String getMarketplaceId() {
         return marketplaceId;
     }
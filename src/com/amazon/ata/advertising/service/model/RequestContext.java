@@ -1,5 +1,7 @@
 package com.amazon.ata.advertising.service.model;
 
+import com.amazon.ata.advertising.service.targeting.CustomerSignals;
+
 import org.apache.commons.lang3.StringUtils;
 
 import java.util.Objects;
@@ -11,6 +13,7 @@ public class RequestContext {
     private final boolean recognizedCustomer;
     private final String customerId;
     private final String marketplaceId;
+    private final CustomerSignals customerSignals;
 
     /**
      * Constructor of RequestContext objects. A flag denoting whether the customer is recognized is set based on the
@@ -28,6 +31,24 @@ public class RequestContext {
             this.customerId = customerId;
         }
         this.marketplaceId = marketplaceId;
+        this.customerSignals = null;
+    }
+
+    private RequestContext(RequestContext requestContext, CustomerSignals customerSignals) {
+        this.recognizedCustomer = requestContext.recognizedCustomer;
+        this.customerId = requestContext.customerId;
+        this.marketplaceId = requestContext.marketplaceId;
+        this.customerSignals = customerSignals;
+    }
+
+    /**
+     * Creates a copy of this context that carries the customer signals fetched for the request. The copy is equal to
+     * this context.
+     * @param signals The customer signals of this request.
+     * @return A RequestContext with the provided customer signals.
+     */
+    public RequestContext withCustomerSignals(CustomerSignals signals) {
+        return new RequestContext(this, signals);
     }
 
     public boolean isRecognizedCustomer() {
@@ -42,6 +63,14 @@ public class RequestContext {
         return marketplaceId;
     }
 
+    public boolean hasCustomerSignals() {
+        return customerSignals != null;
+    }
+
+    public CustomerSignals getCustomerSignals() {
+        return customerSignals;
+    }
+
     @Override
     public boolean equals(Object o) {
         if (this == o) {
@@ -0,0 +1,43 @@
+package com.amazon.ata.advertising.service.model.requests;
+
+import java.util.List;
+
+public class GenerateAdvertisementBatchRequest {
+    private List<GenerateAdvertisementRequest> requests;
+
+    public GenerateAdvertisementBatchRequest(List<GenerateAdvertisementRequest> requests) {
+        this.requests = requests;
+    }
+
+    public GenerateAdvertisementBatchRequest() {
+    }
+
+    public List<GenerateAdvertisementRequest> getRequests() {
+        return requests;
+    }
+
+    public void setRequests(List<GenerateAdvertisementRequest> requests) {
+        this.requests = requests;
+    }
+
+    public GenerateAdvertisementBatchRequest(Builder builder) {
+        this.requests = builder.requests;
+    }
+
+    public static Builder builder() {return new Builder();}
+
+    public static final class Builder {
+        private List<GenerateAdvertisementRequest> requests;
+
+        private Builder() {
+
+        }
+
+        public Builder withRequests(List<GenerateAdvertisementRequest> requestsToUse) {
+            this.requests = requestsToUse;
+            return this;
+        }
+
+        public GenerateAdvertisementBatchRequest build() { return new GenerateAdvertisementBatchRequest(this); }
+    }
+}
@@ -0,0 +1,75 @@
+package com.amazon.ata.advertising.service.model.requests;
+
+public class GenerateAdvertisementsRequest {
+    private String customerId;
+    private String marketplaceId;
+    private int numberOfAdvertisements;
+
+    public GenerateAdvertisementsRequest(String customerId, String marketplaceId, int numberOfAdvertisements) {
+        this.customerId = customerId;
+        this.marketplaceId = marketplaceId;
+        this.numberOfAdvertisements = numberOfAdvertisements;
+    }
+
+    public GenerateAdvertisementsRequest() {
+    }
+
+    public String getCustomerId() {
+        return customerId;
+    }
+
+    public void setCustomerId(String customerId) {
+        this.customerId = customerId;
+    }
+
+    public String getMarketplaceId() {
+        return marketplaceId;
+    }
+
+    public void setMarketplaceId(String marketplaceId) {
+        this.marketplaceId = marketplaceId;
+    }
+
+    public int getNumberOfAdvertisements() {
+        return numberOfAdvertisements;
+    }
+
+    public void setNumberOfAdvertisements(int numberOfAdvertisements) {
+        this.numberOfAdvertisements = numberOfAdvertisements;
+    }
+
+    public GenerateAdvertisementsRequest(Builder builder) {
+        this.customerId = builder.customerId;
+        this.marketplaceId = builder.marketplaceId;
+        this.numberOfAdvertisements = builder.numberOfAdvertisements;
+    }
+
+    public static Builder builder() {return new Builder();}
+
+    public static final class Builder {
+        private String customerId;
+        private String marketplaceId;
+        private int numberOfAdvertisements;
+
+        private Builder() {
+
+        }
+
+        public Builder withCustomerId(String customerIdToUse) {
+            this.customerId = customerIdToUse;
+            return this;
+        }
+
+        public Builder withMarketplaceId(String marketplaceIdToUse) {
+            this.marketplaceId = marketplaceIdToUse;
+            return this;
+        }
+
+        public Builder withNumberOfAdvertisements(int numberOfAdvertisementsToUse) {
+            this.numberOfAdvertisements = numberOfAdvertisementsToUse;
+            return this;
+        }
+
+        public GenerateAdvertisementsRequest build() { return new GenerateAdvertisementsRequest(this); }
+    }
+}
@@ -0,0 +1,45 @@
+package com.amazon.ata.advertising.service.model.requests;
+
+import com.amazon.ata.advertising.service.model.AdEvent;
+
+import java.util.List;
+
+public class RecordAdEventsRequest {
+    private List<AdEvent> events;
+
+    public RecordAdEventsRequest(List<AdEvent> events) {
+        this.events = events;
+    }
+
+    public RecordAdEventsRequest() {
+    }
+
+    public List<AdEvent> getEvents() {
+        return events;
+    }
+
+    public void setEvents(List<AdEvent> events) {
+        this.events = events;
+    }
+
+    public RecordAdEventsRequest(Builder builder) {
+        this.events = builder.events;
+    }
+
+    public static Builder builder() {return new Builder();}
+
+    public static final class Builder {
+        private List<AdEvent> events;
+
+        private Builder() {
+
+        }
+
+        public Builder withEvents(List<AdEvent> eventsToUse) {
+            this.events = eventsToUse;
+            return this;
+        }
+
+        public RecordAdEventsRequest build() { return new RecordAdEventsRequest(this); }
+    }
+}
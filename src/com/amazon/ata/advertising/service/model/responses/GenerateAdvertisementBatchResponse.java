@@ -0,0 +1,43 @@
+package com.amazon.ata.advertising.service.model.responses;
+
+import java.util.List;
+
+public class GenerateAdvertisementBatchResponse {
+    private List<GenerateAdvertisementBatchResult> results;
+
+    public GenerateAdvertisementBatchResponse(List<GenerateAdvertisementBatchResult> results) {
+        this.results = results;
+    }
+
+    public GenerateAdvertisementBatchResponse() {
+    }
+
+    public List<GenerateAdvertisementBatchResult> getResults() {
+        return results;
+    }
+
+    public void setResults(List<GenerateAdvertisementBatchResult> results) {
+        this.results = results;
+    }
+
+    public GenerateAdvertisementBatchResponse(Builder builder) {
+        this.results = builder.results;
+    }
+
+    public static Builder builder() {return new Builder();}
+
+    public static final class Builder {
+        private List<GenerateAdvertisementBatchResult> results;
+
+        private Builder() {
+
+        }
+
+        public Builder withResults(List<GenerateAdvertisementBatchResult> resultsToUse) {
+            this.results = resultsToUse;
+            return this;
+        }
+
+        public GenerateAdvertisementBatchResponse build() { return new GenerateAdvertisementBatchResponse(this); }
+    }
+}
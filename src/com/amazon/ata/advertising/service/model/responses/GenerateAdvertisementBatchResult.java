@@ -0,0 +1,99 @@
+package com.amazon.ata.advertising.service.model.responses;
+
+import com.amazon.ata.advertising.service.model.Advertisement;
+
+/**
+ * The outcome of one request in a GenerateAdvertisementBatch call. If the request failed, the advertisement is empty
+ * and error describes what went wrong.
+ */
+public class GenerateAdvertisementBatchResult {
+    private String customerId;
+    private String marketplaceId;
+    private Advertisement advertisement;
+    private String error;
+
+    public GenerateAdvertisementBatchResult(String customerId, String marketplaceId, Advertisement advertisement,
+                                            String error) {
+        this.customerId = customerId;
+        this.marketplaceId = marketplaceId;
+        this.advertisement = advertisement;
+        this.error = error;
+    }
+
+    public GenerateAdvertisementBatchResult() {
+    }
+
+    public String getCustomerId() {
+        return customerId;
+    }
+
+    public void setCustomerId(String customerId) {
+        this.customerId = customerId;
+    }
+
+    public String getMarketplaceId() {
+        return marketplaceId;
+    }
+
+    public void setMarketplaceId(String marketplaceId) {
+        this.marketplaceId = marketplaceId;
+    }
+
+    public Advertisement getAdvertisement() {
+        return advertisement;
+    }
+
+    public void setAdvertisement(Advertisement advertisement) {
+        this.advertisement = advertisement;
+    }
+
+    public String getError() {
+        return error;
+    }
+
+    public void setError(String error) {
+        this.error = error;
+    }
+
+    public GenerateAdvertisementBatchResult(Builder builder) {
+        this.customerId = builder.customerId;
+        this.marketplaceId = builder.marketplaceId;
+        this.advertisement = builder.advertisement;
+        this.error = builder.error;
+    }
+
+    public static Builder builder() {return new Builder();}
+
+    public static final class Builder {
+        private String customerId;
+        private String marketplaceId;
+        private Advertisement advertisement;
+        private String error;
+
+        private Builder() {
+
+        }
+
+        public Builder withCustomerId(String customerIdToUse) {
+            this.customerId = customerIdToUse;
+            return this;
+        }
+
+        public Builder withMarketplaceId(String marketplaceIdToUse) {
+            this.marketplaceId = marketplaceIdToUse;
+            return this;
+        }
+
+        public Builder withAdvertisement(Advertisement advertisementToUse) {
+            this.advertisement = advertisementToUse;
+            return this;
+        }
+
+        public Builder withError(String errorToUse) {
+            this.error = errorToUse;
+            return this;
+        }
+
+        public GenerateAdvertisementBatchResult build() { return new GenerateAdvertisementBatchResult(this); }
+    }
+}
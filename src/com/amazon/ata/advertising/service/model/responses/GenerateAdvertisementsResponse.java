@@ -0,0 +1,45 @@
+package com.amazon.ata.advertising.service.model.responses;
+
+import com.amazon.ata.advertising.service.model.Advertisement;
+
+import java.util.List;
+
+public class GenerateAdvertisementsResponse {
+    private List<Advertisement> advertisements;
+
+    public GenerateAdvertisementsResponse(List<Advertisement> advertisements) {
+        this.advertisements = advertisements;
+    }
+
+    public GenerateAdvertisementsResponse() {
+    }
+
+    public List<Advertisement> getAdvertisements() {
+        return advertisements;
+    }
+
+    public void setAdvertisements(List<Advertisement> advertisements) {
+        this.advertisements = advertisements;
+    }
+
+    public GenerateAdvertisementsResponse(Builder builder) {
+        this.advertisements = builder.advertisements;
+    }
+
+    public static Builder builder() {return new Builder();}
+
+    public static final class Builder {
+        private List<Advertisement> advertisements;
+
+        private Builder() {
+
+        }
+
+        public Builder withAdvertisements(List<Advertisement> advertisementsToUse) {
+            this.advertisements = advertisementsToUse;
+            return this;
+        }
+
+        public GenerateAdvertisementsResponse build() { return new GenerateAdvertisementsResponse(this); }
+    }
+}
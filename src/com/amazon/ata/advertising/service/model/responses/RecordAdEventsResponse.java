@@ -0,0 +1,58 @@
+package com.amazon.ata.advertising.service.model.responses;
+
+public class RecordAdEventsResponse {
+    private int acceptedCount;
+    private int droppedCount;
+
+    public RecordAdEventsResponse(int acceptedCount, int droppedCount) {
+        this.acceptedCount = acceptedCount;
+        this.droppedCount = droppedCount;
+    }
+
+    public RecordAdEventsResponse() {
+    }
+
+    public int getAcceptedCount() {
+        return acceptedCount;
+    }
+
+    public void setAcceptedCount(int acceptedCount) {
+        this.acceptedCount = acceptedCount;
+    }
+
+    public int getDroppedCount() {
+        return droppedCount;
+    }
+
+    public void setDroppedCount(int droppedCount) {
+        this.droppedCount = droppedCount;
+    }
+
+    public RecordAdEventsResponse(Builder builder) {
+        this.acceptedCount = builder.acceptedCount;
+        this.droppedCount = builder.droppedCount;
+    }
+
+    public static Builder builder() {return new Builder();}
+
+    public static final class Builder {
+        private int acceptedCount;
+        private int droppedCount;
+
+        private Builder() {
+
+        }
+
+        public Builder withAcceptedCount(int acceptedCountToUse) {
+            this.acceptedCount = acceptedCountToUse;
+            return this;
+        }
+
+        public Builder withDroppedCount(int droppedCountToUse) {
+            this.droppedCount = droppedCountToUse;
+            return this;
+        }
+
+        public RecordAdEventsResponse build() { return new RecordAdEventsResponse(this); }
+    }
+}
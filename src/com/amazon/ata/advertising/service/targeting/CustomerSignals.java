@@ -0,0 +1,125 @@
+package com.amazon.ata.advertising.service.targeting;
+
+import com.amazon.ata.customerservice.CustomerProfile;
+import com.amazon.ata.customerservice.Spend;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Supplier;
+
+/**
+ * The customer data targeting predicates evaluate against, fetched at most once per request. Each signal is loaded on
+ * the provided executor the first time it is prefetched or read, and every later read shares that load.
+ */
+public class CustomerSignals {
+    private final Signal<CustomerProfile> customerProfile;
+    private final Signal<Map<String, Spend>> customerSpend;
+    private final Signal<List<String>> primeBenefits;
+
+    /**
+     * Creates the signals for a single request.
+     * @param customerProfileLoader Loads the customer's profile.
+     * @param customerSpendLoader Loads the customer's spend per category.
+     * @param primeBenefitsLoader Loads the customer's prime benefits.
+     * @param executor Where the loaders are run.
+     */
+    public CustomerSignals(Supplier<CustomerProfile> customerProfileLoader,
+                           Supplier<Map<String, Spend>> customerSpendLoader,
+                           Supplier<List<String>> primeBenefitsLoader,
+                           Executor executor) {
+        this.customerProfile = new Signal<>(customerProfileLoader, executor);
+        this.customerSpend = new Signal<>(customerSpendLoader, executor);
+        this.primeBenefits = new Signal<>(primeBenefitsLoader, executor);
+    }
+
+    /**
+     * Starts loading every signal that has not been loaded yet, in parallel, without waiting for them.
+     * @return these signals
+     */
+    public CustomerSignals prefetch() {
+        customerProfile.load();
+        customerSpend.load();
+        primeBenefits.load();
+        return this;
+    }
+
+    /**
+     * Gets the customer's profile, waiting for it to load if needed.
+     * @return the customer profile
+     */
+    public CustomerProfile getCustomerProfile() {
+        return customerProfile.get();
+    }
+
+    /**
+     * Gets the customer's spend per category, waiting for it to load if needed.
+     * @return the spend per category
+     */
+    public Map<String, Spend> getCustomerSpend() {
+        return customerSpend.get();
+    }
+
+    /**
+     * Gets the customer's prime benefit types, waiting for them to load if needed.
+     * @return the prime benefit types
+     */
+    public List<String> getPrimeBenefits() {
+        return primeBenefits.get();
+    }
+
+    /**
+     * A value that is loaded at most once.
+     * @param <T> The type of the value.
+     */
+    private static final class Signal<T> {
+        private final Supplier<T> loader;
+        private final Executor executor;
+        private final AtomicReference<CompletableFuture<T>> value = new AtomicReference<>();
+
+        private Signal(Supplier<T> loader, Executor executor) {
+            this.loader = loader;
+            this.executor = executor;
+        }
+
+        private CompletableFuture<T> load() {
+            CompletableFuture<T> loading = value.get();
+            if (loading != null) {
+                return loading;
+            }
+
+            CompletableFuture<T> started = new CompletableFuture<>();
+            if (!value.compareAndSet(null, started)) {
+                return value.get();
+            }
+            Runnable task = () -> {
+                try {
+                    started.complete(loader.get());
+                } catch (RuntimeException e) {
+                    started.completeExceptionally(e);
+                }
+            };
+            try {
+                executor.execute(task);
+            } catch (RejectedExecutionException e) {
+                task.run();
+            }
+            return started;
+        }
+
+        private T get() {
+            try {
+                return load().join();
+            } catch (CompletionException e) {
+                if (e.getCause() instanceof RuntimeException) {
+                    throw (RuntimeException) e.getCause();
+                }
+                throw e;
+            }
+        }
+    }
+}
@@ -0,0 +1,97 @@
+package com.amazon.ata.advertising.service.targeting;
+
+import com.amazon.ata.advertising.service.dao.ReadableDao;
+import com.amazon.ata.advertising.service.dependency.ExecutorModule;
+import com.amazon.ata.advertising.service.model.RequestContext;
+import com.amazon.ata.customerservice.CustomerProfile;
+import com.amazon.ata.customerservice.Spend;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.function.Supplier;
+import javax.inject.Inject;
+import javax.inject.Named;
+
+/**
+ * Attaches request-scoped CustomerSignals to a RequestContext, so that every targeting predicate evaluated for the
+ * request shares one call to each customer data source.
+ */
+public class CustomerSignalsFactory {
+    private final ReadableDao<String, CustomerProfile> customerProfileDao;
+    private final ReadableDao<RequestContext, Map<String, Spend>> customerSpendDao;
+    private final ReadableDao<RequestContext, List<String>> primeDao;
+    private final ExecutorService executor;
+
+    /**
+     * Creates a factory that loads signals from the provided DAOs.
+     * @param customerProfileDao source of customer profile data
+     * @param customerSpendDao source of customer spend data
+     * @param primeDao source of prime benefit data
+     * @param executor runs the DAO calls in parallel
+     */
+    @Inject
+    public CustomerSignalsFactory(ReadableDao<String, CustomerProfile> customerProfileDao,
+                                  ReadableDao<RequestContext, Map<String, Spend>> customerSpendDao,
+                                  ReadableDao<RequestContext, List<String>> primeDao,
+                                  @Named(ExecutorModule.CUSTOMER_SIGNALS_EXECUTOR) ExecutorService executor) {
+        this.customerProfileDao = customerProfileDao;
+        this.customerSpendDao = customerSpendDao;
+        this.primeDao = primeDao;
+        this.executor = executor;
+    }
+
+    /**
+     * Starts fetching the customer signals for a request in parallel and attaches them to the request's context.
+     * Unrecognized customers have no signals to fetch, so their context is returned unchanged.
+     * @param requestContext The context of the request.
+     * @return A context carrying the request's CustomerSignals.
+     */
+    public RequestContext prefetch(RequestContext requestContext) {
+        return prefetch(requestContext, null);
+    }
+
+    /**
+     * Starts fetching the customer signals for a batch of requests, calling each customer data source as few times as
+     * possible. Requests for the same customer and marketplace share one set of signals, and requests for the same
+     * customer in different marketplaces share one customer profile call.
+     * @param requestContexts The contexts of the requests in the batch.
+     * @return A context carrying CustomerSignals for each request, in the same order. Equal requests get the same
+     *      context.
+     */
+    public List<RequestContext> prefetchAll(List<RequestContext> requestContexts) {
+        final Map<RequestContext, RequestContext> prefetched = new HashMap<>();
+        final Map<String, CustomerSignals> signalsByCustomer = new HashMap<>();
+        final List<RequestContext> contexts = new ArrayList<>(requestContexts.size());
+        for (RequestContext requestContext : requestContexts) {
+            RequestContext withSignals = prefetched.get(requestContext);
+            if (withSignals == null) {
+                withSignals = prefetch(requestContext, signalsByCustomer.get(requestContext.getCustomerId()));
+                prefetched.put(requestContext, withSignals);
+                if (withSignals.hasCustomerSignals()) {
+                    signalsByCustomer.putIfAbsent(requestContext.getCustomerId(), withSignals.getCustomerSignals());
+                }
+            }
+            contexts.add(withSignals);
+        }
+        return contexts;
+    }
+
+    private RequestContext prefetch(RequestContext requestContext, CustomerSignals sameCustomerSignals) {
+        if (!requestContext.isRecognizedCustomer()) {
+            return requestContext;
+        }
+
+        final Supplier<CustomerProfile> customerProfileLoader = sameCustomerSignals == null ?
+                () -> customerProfileDao.get(requestContext.getCustomerId()) :
+                sameCustomerSignals::getCustomerProfile;
+        CustomerSignals customerSignals = new CustomerSignals(
+                customerProfileLoader,
+                () -> customerSpendDao.get(requestContext),
+                () -> primeDao.get(requestContext),
+                executor);
+        return requestContext.withCustomerSignals(customerSignals.prefetch());
+    }
+}
@@ -0,0 +1,429 @@
+package com.amazon.ata.advertising.service.targeting;
+
+import com.amazon.ata.advertising.service.model.RequestContext;
+import com.amazon.ata.advertising.service.targeting.predicate.AgeTargetingPredicate;
+import com.amazon.ata.advertising.service.targeting.predicate.CategorySpendFrequencyTargetingPredicate;
+import com.amazon.ata.advertising.service.targeting.predicate.CategorySpendValueTargetingPredicate;
+import com.amazon.ata.advertising.service.targeting.predicate.ParentPredicate;
+import com.amazon.ata.advertising.service.targeting.predicate.PrimeBenefitTargetingPredicate;
+import com.amazon.ata.advertising.service.targeting.predicate.RecognizedTargetingPredicate;
+import com.amazon.ata.advertising.service.targeting.predicate.TargetingPredicate;
+import com.amazon.ata.advertising.service.targeting.predicate.TargetingPredicateResult;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Expiry;
+import com.github.benmanes.caffeine.cache.Ticker;
+import com.google.common.annotations.VisibleForTesting;
+
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Remembers the result of each targeting predicate evaluated for a customer across requests, so a customer browsing
+ * through several pages a minute does not have every predicate evaluated again for each of them.
+ *
+ * <p>A result is only valid for the customer signal its predicate reads, so a customer's results are kept apart by
+ * signal. A request fingerprints a signal by its hash code the first time it looks up one of that signal's predicates,
+ * so it never waits for a signal its predicates do not read, and a request whose signal differs from the remembered
+ * one, because a cache or the customer snapshot has reloaded it, drops every result remembered for that signal.
+ * Requests without signals are not memoized, and neither are the predicates of a signal that could not be loaded,
+ * since they may have been evaluated against a dependency that timed out. Results are also dropped a fixed time after
+ * the customer's first result is remembered, so a refresh whose signal has the same hash code is only missed for that
+ * long.
+ *
+ * <p>Each distinct predicate, by equality, is given a small ordinal, and a customer's results for a signal are stored
+ * as two bits per ordinal in a byte array. The memo is bounded by the estimated bytes of its entries; customers that
+ * have not been read recently are evicted first.
+ */
+public class PredicateResultMemo {
+    /**
+     * Predicates are given ordinals up to this limit, so one customer's results for a signal never take more than
+     * 16KB. Predicates seen after that are evaluated every time.
+     */
+    static final int MAXIMUM_PREDICATES = 1 << 16;
+    private static final int RESULTS_PER_BYTE = 4;
+    /**
+     * Estimated bytes of an entry besides its results and identifiers: the cache node, the key and its two strings,
+     * the entry and its array of signals.
+     */
+    private static final int ENTRY_OVERHEAD_BYTES = 160;
+    /**
+     * Estimated bytes of one signal's results besides the results themselves: the object and its array's header.
+     */
+    private static final int SIGNAL_OVERHEAD_BYTES = 40;
+    /**
+     * Stands in, within one request, for a signal that could not be loaded.
+     */
+    private static final SignalResults UNAVAILABLE = new SignalResults(0, 0);
+    private static final TargetingPredicateResult[] RESULTS = TargetingPredicateResult.values();
+
+    private final long expireNanos;
+    private final Ticker ticker;
+    private final Cache<RequestContext, CustomerEntry> resultsByCustomer;
+    private final ConcurrentHashMap<TargetingPredicate, Integer> ordinals = new ConcurrentHashMap<>();
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder invalidations = new LongAdder();
+
+    /**
+     * Creates a memo.
+     * @param maximumBytes The most bytes the memo's entries are estimated to take. 0 disables the memo.
+     * @param expireAfterWrite How long after a customer's first result is remembered all of their results are dropped.
+     *                         Zero disables the memo.
+     */
+    public PredicateResultMemo(long maximumBytes, Duration expireAfterWrite) {
+        this(maximumBytes, expireAfterWrite, ForkJoinPool.commonPool(), Ticker.systemTicker());
+    }
+
+    @VisibleForTesting
+    PredicateResultMemo(long maximumBytes, Duration expireAfterWrite, Executor executor, Ticker ticker) {
+        this.expireNanos = expireAfterWrite.toNanos();
+        this.ticker = ticker;
+        if (maximumBytes <= 0 || expireAfterWrite.isZero()) {
+            this.resultsByCustomer = null;
+            return;
+        }
+        this.resultsByCustomer = Caffeine.newBuilder()
+                .maximumWeight(maximumBytes)
+                .<RequestContext, CustomerEntry>weigher((customer, entry) -> entry.estimatedBytes())
+                .expireAfter(new Expiry<RequestContext, CustomerEntry>() {
+                    @Override
+                    public long expireAfterCreate(RequestContext customer, CustomerEntry entry, long currentTime) {
+                        return entry.expiresAtNanos - currentTime;
+                    }
+
+                    @Override
+                    public long expireAfterUpdate(RequestContext customer, CustomerEntry entry, long currentTime,
+                                                  long currentDuration) {
+                        // Adding a signal's results re-weighs the entry, but does not make them any younger
+                        return entry.expiresAtNanos - currentTime;
+                    }
+
+                    @Override
+                    public long expireAfterRead(RequestContext customer, CustomerEntry entry, long currentTime,
+                                                long currentDuration) {
+                        return currentDuration;
+                    }
+                })
+                .executor(executor)
+                .ticker(ticker)
+                .recordStats()
+                .build();
+    }
+
+    /**
+     * The results remembered for a request's customer, if the request can be memoized. Does not wait for any of the
+     * request's signals; each is only checked once one of its predicates is looked up.
+     * @param requestContext The context of the request, with its customer signals.
+     * @return The customer's results, or null if the memo is disabled or the request is not memoized.
+     */
+    CustomerResults forRequest(RequestContext requestContext) {
+        if (resultsByCustomer == null || !requestContext.isRecognizedCustomer() ||
+                !requestContext.hasCustomerSignals()) {
+            return null;
+        }
+        // The key does not carry the request's signals, so the memo does not keep them alive.
+        final RequestContext customer = new RequestContext(requestContext.getCustomerId(),
+                requestContext.getMarketplaceId());
+        return new CustomerResults(resultsByCustomer.get(customer, CustomerEntry::new),
+                requestContext.getCustomerSignals());
+    }
+
+    /**
+     * The number of predicate evaluations answered by the memo.
+     * @return the hit count
+     */
+    public long getHitCount() {
+        return hits.sum();
+    }
+
+    /**
+     * The number of predicates looked up in the memo that had to be evaluated.
+     * @return the miss count
+     */
+    public long getMissCount() {
+        return misses.sum();
+    }
+
+    /**
+     * The share of predicate lookups answered by the memo.
+     * @return the hit rate, or 0 if nothing has been looked up
+     */
+    public double getHitRate() {
+        final long hitCount = getHitCount();
+        final long lookups = hitCount + getMissCount();
+        return lookups == 0 ? 0 : (double) hitCount / lookups;
+    }
+
+    /**
+     * The number of times a customer's results for a signal were dropped because the signal changed.
+     * @return the invalidation count
+     */
+    public long getInvalidationCount() {
+        return invalidations.sum();
+    }
+
+    /**
+     * The number of customers whose results were dropped to stay within the memo's size, or because they expired.
+     * @return the eviction count
+     */
+    public long getEvictionCount() {
+        return resultsByCustomer == null ? 0 : resultsByCustomer.stats().evictionCount();
+    }
+
+    /**
+     * The approximate number of customers with remembered results.
+     * @return the customer count
+     */
+    public long getCustomerCount() {
+        return resultsByCustomer == null ? 0 : resultsByCustomer.estimatedSize();
+    }
+
+    /**
+     * The estimated bytes taken by the remembered results, which the memo keeps below its maximum.
+     * @return the estimated memory use, in bytes
+     */
+    public long getEstimatedBytes() {
+        return resultsByCustomer == null ? 0 :
+                resultsByCustomer.policy().eviction().get().weightedSize().orElse(0);
+    }
+
+    /**
+     * The number of distinct predicates that have been given an ordinal.
+     * @return the predicate count
+     */
+    public int getPredicateCount() {
+        return ordinals.size();
+    }
+
+    private int ordinalOf(TargetingPredicate predicate) {
+        final Integer ordinal = ordinals.get(predicate);
+        if (ordinal != null) {
+            return ordinal;
+        }
+        if (ordinals.size() >= MAXIMUM_PREDICATES) {
+            return -1;
+        }
+        synchronized (ordinals) {
+            return ordinals.computeIfAbsent(predicate, unused -> ordinals.size());
+        }
+    }
+
+    /**
+     * The customer signal a predicate reads, which its results are kept with.
+     */
+    private enum Signal {
+        NONE, CUSTOMER_PROFILE, CUSTOMER_SPEND, PRIME_BENEFITS,
+        /**
+         * Read by predicates of a type the memo does not know, whose results are only valid for every signal.
+         */
+        ALL;
+
+        private static Signal of(TargetingPredicate predicate) {
+            if (predicate instanceof RecognizedTargetingPredicate) {
+                return NONE;
+            }
+            if (predicate instanceof AgeTargetingPredicate || predicate instanceof ParentPredicate) {
+                return CUSTOMER_PROFILE;
+            }
+            if (predicate instanceof CategorySpendFrequencyTargetingPredicate ||
+                    predicate instanceof CategorySpendValueTargetingPredicate) {
+                return CUSTOMER_SPEND;
+            }
+            if (predicate instanceof PrimeBenefitTargetingPredicate) {
+                return PRIME_BENEFITS;
+            }
+            return ALL;
+        }
+
+        /**
+         * Fingerprints this signal of a request, waiting for it to load if needed.
+         */
+        private long fingerprint(CustomerSignals signals) {
+            switch (this) {
+                case NONE:
+                    return 0;
+                case CUSTOMER_PROFILE:
+                    return Objects.hashCode(signals.getCustomerProfile());
+                case CUSTOMER_SPEND:
+                    return Objects.hashCode(signals.getCustomerSpend());
+                case PRIME_BENEFITS:
+                    return Objects.hashCode(signals.getPrimeBenefits());
+                default:
+                    long fingerprint = 1;
+                    fingerprint = (fingerprint ^ CUSTOMER_PROFILE.fingerprint(signals)) * 0x9E3779B97F4A7C15L;
+                    fingerprint = (fingerprint ^ CUSTOMER_SPEND.fingerprint(signals)) * 0x9E3779B97F4A7C15L;
+                    fingerprint = (fingerprint ^ PRIME_BENEFITS.fingerprint(signals)) * 0x9E3779B97F4A7C15L;
+                    return fingerprint;
+            }
+        }
+    }
+
+    /**
+     * Everything remembered for one customer: their results for each signal.
+     */
+    private final class CustomerEntry {
+        private final RequestContext customer;
+        private final long expiresAtNanos;
+        private final AtomicReferenceArray<SignalResults> bySignal =
+                new AtomicReferenceArray<>(Signal.values().length);
+
+        private CustomerEntry(RequestContext customer) {
+            this.customer = customer;
+            this.expiresAtNanos = ticker.read() + expireNanos;
+        }
+
+        /**
+         * The results remembered for a signal with the given fingerprint, replacing any remembered for another.
+         */
+        private SignalResults resultsFor(Signal signal, long fingerprint) {
+            while (true) {
+                final SignalResults current = bySignal.get(signal.ordinal());
+                if (current != null && current.fingerprint == fingerprint) {
+                    return current;
+                }
+                final SignalResults replacement = new SignalResults(fingerprint, ordinals.size());
+                if (bySignal.compareAndSet(signal.ordinal(), current, replacement)) {
+                    if (current != null) {
+                        invalidations.increment();
+                    }
+                    reweigh();
+                    return replacement;
+                }
+            }
+        }
+
+        /**
+         * Re-weighs the entry, if it is still the customer's.
+         */
+        private void reweigh() {
+            resultsByCustomer.asMap().replace(customer, this, this);
+        }
+
+        private int estimatedBytes() {
+            int bytes = ENTRY_OVERHEAD_BYTES + 2 * (customer.getCustomerId().length() +
+                    (customer.getMarketplaceId() == null ? 0 : customer.getMarketplaceId().length()));
+            for (int i = 0; i < bySignal.length(); i++) {
+                final SignalResults signalResults = bySignal.get(i);
+                if (signalResults != null) {
+                    bytes += SIGNAL_OVERHEAD_BYTES + signalResults.results.length;
+                }
+            }
+            return bytes;
+        }
+    }
+
+    /**
+     * The results remembered for one customer and one value of a signal, two bits per predicate ordinal: 0 for a
+     * predicate that has not been evaluated, otherwise the TargetingPredicateResult's ordinal plus one. Results are
+     * written under the object's lock and read without it; a read that misses a concurrent write just evaluates the
+     * predicate again.
+     */
+    private static final class SignalResults {
+        private final long fingerprint;
+        private volatile byte[] results;
+
+        private SignalResults(long fingerprint, int predicates) {
+            this.fingerprint = fingerprint;
+            this.results = new byte[bytesFor(predicates)];
+        }
+    }
+
+    /**
+     * One request's view of the results remembered for its customer. Each signal's results are found the first time
+     * the request looks up or remembers one of its predicates.
+     */
+    final class CustomerResults {
+        private final CustomerEntry entry;
+        private final CustomerSignals signals;
+        private final AtomicReferenceArray<SignalResults> found = new AtomicReferenceArray<>(Signal.values().length);
+
+        private CustomerResults(CustomerEntry entry, CustomerSignals signals) {
+            this.entry = entry;
+            this.signals = signals;
+        }
+
+        /**
+         * The remembered result of a predicate. Waits for the signal the predicate reads, if it is still loading.
+         * @param predicate The predicate to look up.
+         * @return The predicate's result, or null if it has not been remembered.
+         */
+        TargetingPredicateResult get(TargetingPredicate predicate) {
+            final SignalResults signalResults = resultsFor(predicate);
+            final Integer ordinal = ordinals.get(predicate);
+            final byte[] current = signalResults == null ? null : signalResults.results;
+            if (current == null || ordinal == null || ordinal / RESULTS_PER_BYTE >= current.length) {
+                misses.increment();
+                return null;
+            }
+            final int code = current[ordinal / RESULTS_PER_BYTE] >>> shift(ordinal) & 0b11;
+            if (code == 0) {
+                misses.increment();
+                return null;
+            }
+            hits.increment();
+            return RESULTS[code - 1];
+        }
+
+        /**
+         * Remembers the result of a predicate, unless the signal it reads could not be loaded.
+         * @param predicate The predicate that was evaluated.
+         * @param result Its result for the customer's signals.
+         */
+        void put(TargetingPredicate predicate, TargetingPredicateResult result) {
+            final SignalResults signalResults = resultsFor(predicate);
+            final int ordinal = signalResults == null ? -1 : ordinalOf(predicate);
+            if (ordinal < 0) {
+                return;
+            }
+            final boolean grown;
+            synchronized (signalResults) {
+                byte[] current = signalResults.results;
+                grown = ordinal / RESULTS_PER_BYTE >= current.length;
+                if (grown) {
+                    current = Arrays.copyOf(current, bytesFor(Math.max(ordinals.size(), ordinal + 1)));
+                }
+                final int index = ordinal / RESULTS_PER_BYTE;
+                current[index] = (byte) (current[index] & ~(0b11 << shift(ordinal)) |
+                        (result.ordinal() + 1) << shift(ordinal));
+                signalResults.results = current;
+            }
+            if (grown) {
+                entry.reweigh();
+            }
+        }
+
+        /**
+         * The customer's results for the signal a predicate reads, or null if the signal could not be loaded.
+         */
+        private SignalResults resultsFor(TargetingPredicate predicate) {
+            final Signal signal = Signal.of(predicate);
+            SignalResults signalResults = found.get(signal.ordinal());
+            if (signalResults == null) {
+                try {
+                    signalResults = entry.resultsFor(signal, signal.fingerprint(signals));
+                } catch (RuntimeException e) {
+                    signalResults = UNAVAILABLE;
+                }
+                if (!found.compareAndSet(signal.ordinal(), null, signalResults)) {
+                    signalResults = found.get(signal.ordinal());
+                }
+            }
+            return signalResults == UNAVAILABLE ? null : signalResults;
+        }
+
+        private int shift(int ordinal) {
+            return ordinal % RESULTS_PER_BYTE * 2;
+        }
+    }
+
+    private static int bytesFor(int predicates) {
+        return (predicates + RESULTS_PER_BYTE - 1) / RESULTS_PER_BYTE;
+    }
+}
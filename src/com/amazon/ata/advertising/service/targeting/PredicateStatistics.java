@@ -0,0 +1,94 @@
+package com.amazon.ata.advertising.service.targeting;
+
+import com.amazon.ata.advertising.service.targeting.predicate.TargetingPredicate;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import javax.inject.Inject;
+import javax.inject.Singleton;
+
+/**
+ * Collects the cost and pass rate of every type of TargetingPredicate the service evaluates, and uses them to order a
+ * targeting group's predicates so that groups that will not match are rejected with as few downstream calls as
+ * possible. A predicate's type is its class and whether it is inverted.
+ */
+@Singleton
+public class PredicateStatistics {
+    private final ConcurrentHashMap<String, PredicateTypeStatistics> statisticsByType = new ConcurrentHashMap<>();
+    private final LongAdder reusedResults = new LongAdder();
+
+    /**
+     * Creates an empty set of statistics.
+     */
+    @Inject
+    public PredicateStatistics() {}
+
+    /**
+     * Records the outcome of evaluating a predicate.
+     * @param predicate The predicate that was evaluated.
+     * @param nanos How long the evaluation took.
+     * @param passed Whether the predicate evaluated to TRUE.
+     */
+    public void record(TargetingPredicate predicate, long nanos, boolean passed) {
+        statisticsByType.computeIfAbsent(typeOf(predicate), type -> new PredicateTypeStatistics())
+                .recordEvaluation(nanos, passed);
+    }
+
+    /**
+     * Records that a predicate's result was reused from an earlier evaluation in the same request instead of being
+     * evaluated again.
+     */
+    public void recordReuse() {
+        reusedResults.increment();
+    }
+
+    /**
+     * Orders predicates by the expected cost of finding out they reject the request, cheapest first. Ties keep their
+     * stored order.
+     * @param predicates The predicates of a targeting group.
+     * @return A new list with the same predicates in evaluation order.
+     */
+    public List<TargetingPredicate> order(List<TargetingPredicate> predicates) {
+        if (predicates.size() < 2) {
+            return predicates;
+        }
+
+        // Rank once up front, since other requests keep updating the statistics while we sort.
+        Map<TargetingPredicate, Double> ranks = new IdentityHashMap<>();
+        for (TargetingPredicate predicate : predicates) {
+            PredicateTypeStatistics statistics = statisticsByType.get(typeOf(predicate));
+            ranks.put(predicate, statistics == null ? 0 : statistics.getRank());
+        }
+        List<TargetingPredicate> ordered = new ArrayList<>(predicates);
+        ordered.sort(Comparator.comparingDouble(ranks::get));
+        return ordered;
+    }
+
+    /**
+     * The statistics collected so far, by predicate type.
+     * @return An unmodifiable view of the statistics for every type evaluated so far.
+     */
+    public Map<String, PredicateTypeStatistics> getStatistics() {
+        return Collections.unmodifiableMap(new TreeMap<>(statisticsByType));
+    }
+
+    /**
+     * The number of predicate evaluations avoided by reusing a result from earlier in the same request.
+     * @return the reused result count
+     */
+    public long getReusedResultCount() {
+        return reusedResults.sum();
+    }
+
+    private static String typeOf(TargetingPredicate predicate) {
+        String type = predicate.getClass().getSimpleName();
+        return predicate.isInverse() ? "!" + type : type;
+    }
+}
@@ -0,0 +1,67 @@
+package com.amazon.ata.advertising.service.targeting;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Running cost and pass rate of one type of TargetingPredicate.
+ */
+public class PredicateTypeStatistics {
+    private final LongAdder evaluations = new LongAdder();
+    private final LongAdder passes = new LongAdder();
+    private final LongAdder totalNanos = new LongAdder();
+
+    void recordEvaluation(long nanos, boolean passed) {
+        evaluations.increment();
+        totalNanos.add(nanos);
+        if (passed) {
+            passes.increment();
+        }
+    }
+
+    /**
+     * The number of times predicates of this type have been evaluated.
+     * @return the evaluation count
+     */
+    public long getEvaluationCount() {
+        return evaluations.sum();
+    }
+
+    /**
+     * The number of evaluations that returned TRUE.
+     * @return the pass count
+     */
+    public long getPassCount() {
+        return passes.sum();
+    }
+
+    /**
+     * The fraction of evaluations that returned TRUE, or 0 if the type has not been evaluated.
+     * @return the pass rate
+     */
+    public double getPassRate() {
+        long count = getEvaluationCount();
+        return count == 0 ? 0 : (double) getPassCount() / count;
+    }
+
+    /**
+     * The mean time an evaluation took, or 0 if the type has not been evaluated.
+     * @return the average cost in nanoseconds
+     */
+    public double getAverageCostNanos() {
+        long count = getEvaluationCount();
+        return count == 0 ? 0 : (double) totalNanos.sum() / count;
+    }
+
+    /**
+     * The expected time spent evaluating predicates of this type for every group they reject: the average cost divided
+     * by the probability of not passing. Evaluating predicates in increasing order of this rank rejects a failing group
+     * with the least expected work. The failure probability is smoothed so that new types are not ranked as free or
+     * as never failing.
+     * @return the rank, lowest first
+     */
+    double getRank() {
+        long count = getEvaluationCount();
+        double failureProbability = (count - getPassCount() + 1.0) / (count + 2.0);
+        return getAverageCostNanos() / failureProbability;
+    }
+}
@@ -1,42 +1,260 @@
 package com.amazon.ata.advertising.service.targeting;
 
 import com.amazon.ata.advertising.service.model.RequestContext;
+import com.amazon.ata.advertising.service.targeting.predicate.TargetingPredicate;
 import com.amazon.ata.advertising.service.targeting.predicate.TargetingPredicateResult;
+import com.amazon.ata.advertising.service.util.BoundedExecutor;
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
 
+import java.util.BitSet;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
 import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
 import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.function.Supplier;
 
 /**
- * Evaluates TargetingPredicates for a given RequestContext.
+ * Evaluates TargetingPredicates for a given RequestContext. Each distinct predicate is evaluated at most once per
+ * evaluator, and its result is reused by every targeting group that contains an equal predicate. Predicates evaluated
+ * one at a time are also looked up in, and remembered by, the PredicateResultMemo shared across requests.
  */
 public class TargetingEvaluator {
+    private static final Logger LOG = LogManager.getLogger(TargetingEvaluator.class);
     public static final boolean IMPLEMENTED_STREAMS = true;
     public static final boolean IMPLEMENTED_CONCURRENCY = true;
     private final RequestContext requestContext;
+    private final ExecutorService executor;
+    private final PredicateStatistics predicateStatistics;
+    private final PredicateResultMemo predicateResultMemo;
+    private final Map<TargetingPredicate, Boolean> results = new ConcurrentHashMap<>();
+    private volatile boolean memoizedResultsResolved;
+    private PredicateResultMemo.CustomerResults memoizedResults;
+
+    /**
+     * Creates an evaluator for targeting predicates that does not remember results across requests.
+     * @param requestContext Context that can be used to evaluate the predicates.
+     * @param executor Shared executor the predicates are evaluated on.
+     * @param predicateStatistics Orders the predicates, and records the cost and outcome of each evaluation.
+     */
+    public TargetingEvaluator(RequestContext requestContext, ExecutorService executor,
+                              PredicateStatistics predicateStatistics) {
+        this(requestContext, executor, predicateStatistics, null);
+    }
 
     /**
      * Creates an evaluator for targeting predicates.
      * @param requestContext Context that can be used to evaluate the predicates.
+     * @param executor Shared executor the predicates are evaluated on.
+     * @param predicateStatistics Orders the predicates, and records the cost and outcome of each evaluation.
+     * @param predicateResultMemo Results of the customer's predicates from earlier requests, or null to evaluate every
+     *                            predicate again.
      */
-    public TargetingEvaluator(RequestContext requestContext) {
+    public TargetingEvaluator(RequestContext requestContext, ExecutorService executor,
+                              PredicateStatistics predicateStatistics, PredicateResultMemo predicateResultMemo) {
         this.requestContext = requestContext;
+        this.executor = executor;
+        this.predicateStatistics = predicateStatistics;
+        this.predicateResultMemo = predicateResultMemo;
     }
 
     /**
      * Evaluate a TargetingGroup to determine if all of its TargetingPredicates are TRUE or not for the given
-     * RequestContext.
+     * RequestContext. Predicates are evaluated cheapest-to-reject first, and evaluation stops at the first one that is
+     * not TRUE. A group with a predicate already known to be false is rejected without evaluating anything.
      * @param targetingGroup Targeting group for an advertisement, including TargetingPredicates.
      * @return TRUE if all of the TargetingPredicates evaluate to TRUE against the RequestContext, FALSE otherwise.
      */
     public TargetingPredicateResult evaluate(TargetingGroup targetingGroup) throws ExecutionException, InterruptedException {
+        final List<TargetingPredicate> predicates = targetingGroup.getTargetingPredicates();
+        if (isKnownFalse(predicates)) {
+            return TargetingPredicateResult.FALSE;
+        }
 
-        ExecutorService service = Executors.newCachedThreadPool();
-        Future<Boolean> allTruePredicates = service.submit(() -> targetingGroup.getTargetingPredicates().stream()
-                    .allMatch(predicate -> predicate.evaluate(requestContext).isTrue()));
-        service.shutdown();
+        Future<Boolean> allTruePredicates = executor.submit(() -> allTrue(predicates));
 
         return allTruePredicates.get() ? TargetingPredicateResult.TRUE : TargetingPredicateResult.FALSE;
     }
+
+    /**
+     * Starts evaluating a TargetingGroup without waiting for the result. Cancelling the returned future before the
+     * evaluation has started keeps it from running at all. The evaluation never runs on the calling thread: if the
+     * executor is saturated, whatever its rejection policy, the future completes exceptionally with a
+     * RejectedExecutionException.
+     * @param targetingGroup Targeting group for an advertisement, including TargetingPredicates.
+     * @return A future of TRUE if all of the TargetingPredicates evaluate to TRUE against the RequestContext, FALSE
+     *      otherwise.
+     */
+    public CompletableFuture<TargetingPredicateResult> evaluateAsync(TargetingGroup targetingGroup) {
+        final List<TargetingPredicate> predicates = targetingGroup.getTargetingPredicates();
+        if (isKnownFalse(predicates)) {
+            return CompletableFuture.completedFuture(TargetingPredicateResult.FALSE);
+        }
+
+        return supplyAsync(() -> allTrue(predicates) ?
+                TargetingPredicateResult.TRUE : TargetingPredicateResult.FALSE);
+    }
+
+    /**
+     * Starts finding every eligible targeting group of an index, like evaluateAll, without waiting for the result.
+     * Like evaluateAsync, the evaluation never runs on the calling thread.
+     * @param targetingGroupIndex The targeting groups to evaluate.
+     * @return A future of a new set of the ordinals of the eligible groups.
+     */
+    public CompletableFuture<BitSet> evaluateAllAsync(TargetingGroupIndex targetingGroupIndex) {
+        return supplyAsync(() -> evaluateAll(targetingGroupIndex));
+    }
+
+    /**
+     * Starts evaluating one targeting group of an index, like evaluateCompiled, without waiting for the result. Like
+     * evaluateAsync, the evaluation never runs on the calling thread.
+     * @param targetingGroupIndex The index the group belongs to.
+     * @param ordinal The group's ordinal in the index.
+     * @return A future of TRUE if all of the group's predicates evaluate to TRUE, FALSE otherwise.
+     */
+    public CompletableFuture<TargetingPredicateResult> evaluateCompiledAsync(TargetingGroupIndex targetingGroupIndex,
+                                                                             int ordinal) {
+        return supplyAsync(() -> evaluateCompiled(targetingGroupIndex, ordinal) ?
+                TargetingPredicateResult.TRUE : TargetingPredicateResult.FALSE);
+    }
+
+    /**
+     * Finds every eligible targeting group of an index at once. The index resolves the groups whose predicates it
+     * covers; any other candidates are evaluated with their compiled predicates on the calling thread, and a group
+     * whose predicates cannot be evaluated is not eligible. If the index needs customer signals the request context
+     * does not have, every group is evaluated instead, one predicate at a time.
+     * @param targetingGroupIndex The targeting groups to evaluate.
+     * @return A new set of the ordinals of the eligible groups.
+     */
+    public BitSet evaluateAll(TargetingGroupIndex targetingGroupIndex) {
+        final boolean missingSignals = isMissingSignals(targetingGroupIndex);
+        final BitSet eligible;
+        final BitSet toEvaluate;
+        if (missingSignals) {
+            eligible = new BitSet();
+            eligible.set(0, targetingGroupIndex.size());
+            toEvaluate = (BitSet) eligible.clone();
+        } else {
+            eligible = targetingGroupIndex.getCandidates(requestContext);
+            toEvaluate = targetingGroupIndex.getUnindexedGroups();
+            toEvaluate.and(eligible);
+        }
+
+        for (int ordinal = toEvaluate.nextSetBit(0); ordinal >= 0; ordinal = toEvaluate.nextSetBit(ordinal + 1)) {
+            if (!isEligible(targetingGroupIndex, ordinal, !missingSignals)) {
+                eligible.clear(ordinal);
+            }
+        }
+        return eligible;
+    }
+
+    /**
+     * Evaluates one targeting group of an index on the calling thread, with the predicates compiled into the index. If
+     * the index needs customer signals the request context does not have, the group's predicates are evaluated one at
+     * a time instead, so each predicate's dependency calls are shared with every other group of the request.
+     * @param targetingGroupIndex The index the group belongs to.
+     * @param ordinal The group's ordinal in the index.
+     * @return true if all of the group's predicates evaluate to TRUE; false otherwise, including when they cannot be
+     *      evaluated.
+     */
+    public boolean evaluateCompiled(TargetingGroupIndex targetingGroupIndex, int ordinal) {
+        return isEligible(targetingGroupIndex, ordinal, !isMissingSignals(targetingGroupIndex));
+    }
+
+    /**
+     * Runs an evaluation for a caller that is not waiting on it. The bounded executor refuses the evaluation rather
+     * than running it on the submitting thread, and a refusal completes the future exceptionally.
+     */
+    private <T> CompletableFuture<T> supplyAsync(Supplier<T> evaluation) {
+        final Executor asyncExecutor = executor instanceof BoundedExecutor ?
+                ((BoundedExecutor) executor)::executeOrReject : executor;
+        try {
+            return CompletableFuture.supplyAsync(evaluation, asyncExecutor);
+        } catch (RejectedExecutionException e) {
+            CompletableFuture<T> rejected = new CompletableFuture<>();
+            rejected.completeExceptionally(e);
+            return rejected;
+        }
+    }
+
+    private boolean isMissingSignals(TargetingGroupIndex targetingGroupIndex) {
+        return requestContext.isRecognizedCustomer() && !requestContext.hasCustomerSignals() &&
+                targetingGroupIndex.needsCustomerSignals();
+    }
+
+    private boolean isEligible(TargetingGroupIndex targetingGroupIndex, int ordinal, boolean compiled) {
+        try {
+            if (compiled) {
+                return targetingGroupIndex.getCompiledTargetingGroup(ordinal).test(requestContext);
+            }
+            final List<TargetingPredicate> predicates =
+                    targetingGroupIndex.getTargetingGroup(ordinal).getTargetingPredicates();
+            return predicates != null && !isKnownFalse(predicates) && allTrue(predicates);
+        } catch (RuntimeException e) {
+            LOG.warn(String.format("Unable to evaluate targeting group %s.",
+                    targetingGroupIndex.getTargetingGroup(ordinal).getTargetingGroupId()), e);
+            return false;
+        }
+    }
+
+    private boolean isKnownFalse(List<TargetingPredicate> predicates) {
+        if (predicates.stream().anyMatch(predicate -> Boolean.FALSE.equals(results.get(predicate)))) {
+            predicateStatistics.recordReuse();
+            return true;
+        }
+        return false;
+    }
+
+    private boolean allTrue(List<TargetingPredicate> predicates) {
+        return predicateStatistics.order(predicates).stream()
+                .allMatch(this::evaluateOnce);
+    }
+
+    private boolean evaluateOnce(TargetingPredicate predicate) {
+        final Boolean result = results.get(predicate);
+        if (result != null) {
+            predicateStatistics.recordReuse();
+            return result;
+        }
+        final PredicateResultMemo.CustomerResults memoized = memoizedResults();
+        TargetingPredicateResult evaluated = memoized == null ? null : memoized.get(predicate);
+        if (evaluated == null) {
+            evaluated = evaluate(predicate);
+            if (memoized != null) {
+                memoized.put(predicate, evaluated);
+            }
+        }
+        final boolean passed = evaluated.isTrue();
+        results.put(predicate, passed);
+        return passed;
+    }
+
+    /**
+     * The customer's results from earlier requests, looked up the first time a predicate is evaluated. Each signal is
+     * only waited for once one of its predicates is looked up.
+     */
+    private PredicateResultMemo.CustomerResults memoizedResults() {
+        if (!memoizedResultsResolved) {
+            synchronized (this) {
+                if (!memoizedResultsResolved) {
+                    memoizedResults = predicateResultMemo == null ?
+                            null : predicateResultMemo.forRequest(requestContext);
+                    memoizedResultsResolved = true;
+                }
+            }
+        }
+        return memoizedResults;
+    }
+
+    private TargetingPredicateResult evaluate(TargetingPredicate predicate) {
+        long start = System.nanoTime();
+        TargetingPredicateResult result = predicate.evaluate(requestContext);
+        predicateStatistics.record(predicate, System.nanoTime() - start, result.isTrue());
+        return result;
+    }
 }
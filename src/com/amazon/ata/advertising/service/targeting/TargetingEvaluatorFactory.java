@@ -0,0 +1,69 @@
+package com.amazon.ata.advertising.service.targeting;
+
+import com.amazon.ata.advertising.service.dependency.ExecutorModule;
+import com.amazon.ata.advertising.service.model.RequestContext;
+
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import javax.inject.Inject;
+import javax.inject.Named;
+
+/**
+ * Creates the TargetingEvaluator for a request. Every evaluator shares the service's evaluation executor, so the
+ * number of evaluation threads stays fixed no matter how many requests are in flight, and the memo of each customer's
+ * predicate results.
+ */
+public class TargetingEvaluatorFactory {
+    private final CustomerSignalsFactory customerSignalsFactory;
+    private final ExecutorService executor;
+    private final PredicateStatistics predicateStatistics;
+    private final PredicateResultMemo predicateResultMemo;
+
+    /**
+     * Creates a factory for TargetingEvaluators.
+     * @param customerSignalsFactory Fetches the customer data shared by every predicate evaluated for a request.
+     * @param executor Shared executor the predicates are evaluated on.
+     * @param predicateStatistics Cost and pass rate of each predicate type, shared by every evaluator.
+     * @param predicateResultMemo Each customer's predicate results, shared by every evaluator.
+     */
+    @Inject
+    public TargetingEvaluatorFactory(CustomerSignalsFactory customerSignalsFactory,
+                                     @Named(ExecutorModule.EVALUATION_EXECUTOR) ExecutorService executor,
+                                     PredicateStatistics predicateStatistics,
+                                     PredicateResultMemo predicateResultMemo) {
+        this.customerSignalsFactory = customerSignalsFactory;
+        this.executor = executor;
+        this.predicateStatistics = predicateStatistics;
+        this.predicateResultMemo = predicateResultMemo;
+    }
+
+    /**
+     * Starts fetching the customer signals for a request and creates an evaluator for it.
+     * @param requestContext The context of the request.
+     * @return An evaluator for the request.
+     */
+    public TargetingEvaluator create(RequestContext requestContext) {
+        return new TargetingEvaluator(customerSignalsFactory.prefetch(requestContext), executor,
+                predicateStatistics, predicateResultMemo);
+    }
+
+    /**
+     * Starts fetching the customer signals for a batch of requests, coalescing calls for the same customer, and
+     * creates an evaluator for each request. Equal requests share an evaluator, so each of their predicates is only
+     * evaluated once.
+     * @param requestContexts The contexts of the requests in the batch.
+     * @return An evaluator for each request, in the same order.
+     */
+    public List<TargetingEvaluator> createAll(List<RequestContext> requestContexts) {
+        final Map<RequestContext, TargetingEvaluator> evaluators = new IdentityHashMap<>();
+        final List<TargetingEvaluator> batch = new ArrayList<>(requestContexts.size());
+        for (RequestContext requestContext : customerSignalsFactory.prefetchAll(requestContexts)) {
+            batch.add(evaluators.computeIfAbsent(requestContext,
+                    context -> new TargetingEvaluator(context, executor, predicateStatistics, predicateResultMemo)));
+        }
+        return batch;
+    }
+}
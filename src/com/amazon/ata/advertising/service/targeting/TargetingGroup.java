@@ -14,6 +14,7 @@ import java.util.List;
 @DynamoDBTable(tableName = "TargetingGroups")
 public class TargetingGroup {
     public static final String CONTENT_ID_INDEX = "ContentIdIndex";
+    public static final String CLICK_THROUGH_RATE = "ClickThroughRate";
 
     @DynamoDBHashKey(attributeName = "TargetingGroupId")
     private String targetingGroupId;
@@ -21,7 +22,7 @@ public class TargetingGroup {
     @DynamoDBIndexHashKey(globalSecondaryIndexName = CONTENT_ID_INDEX, attributeName = "ContentId")
     private String contentId;
 
-    @DynamoDBAttribute(attributeName = "ClickThroughRate")
+    @DynamoDBAttribute(attributeName = CLICK_THROUGH_RATE)
     private double clickThroughRate;
 
     @DynamoDBAttribute(attributeName = "TargetingPredicates")
@@ -0,0 +1,422 @@
+package com.amazon.ata.advertising.service.targeting;
+
+import com.amazon.ata.advertising.service.exceptions.DependencyTimeoutException;
+import com.amazon.ata.advertising.service.model.RequestContext;
+import com.amazon.ata.advertising.service.targeting.predicate.AgeTargetingPredicate;
+import com.amazon.ata.advertising.service.targeting.predicate.CategorySpendFrequencyTargetingPredicate;
+import com.amazon.ata.advertising.service.targeting.predicate.CategorySpendValueTargetingPredicate;
+import com.amazon.ata.advertising.service.targeting.predicate.ParentPredicate;
+import com.amazon.ata.advertising.service.targeting.predicate.PrimeBenefitTargetingPredicate;
+import com.amazon.ata.advertising.service.targeting.predicate.RecognizedTargetingPredicate;
+import com.amazon.ata.advertising.service.targeting.predicate.TargetingPredicate;
+import com.amazon.ata.advertising.service.targeting.predicate.TargetingPredicateCompiler;
+import com.amazon.ata.customerservice.CustomerProfile;
+import com.amazon.ata.customerservice.Spend;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.TreeMap;
+import java.util.function.Predicate;
+import java.util.function.Supplier;
+import java.util.function.ToIntFunction;
+
+/**
+ * An inverted index from customer signal values to the targeting groups that reject them, so every group's eligibility
+ * is resolved at once with a few bitset operations instead of evaluating each group's predicates.
+ *
+ * Each targeting group is identified by its ordinal, its position in the list the index was built from. For every
+ * value a predicate can see, such as an age range, whether the customer is a parent, whether they have a prime
+ * benefit, or which bucket between the targeted thresholds their spend in a category falls in, the index holds the set
+ * of groups with a predicate that is not TRUE for that value. Inverse predicates are indexed by their inverted
+ * results, so they are simply complements of the normal ones. A customer's eligible groups are every group minus the
+ * rejecting sets of each of their values. A signal that cannot be fetched rejects every group that uses it, just as
+ * its predicates would be INDETERMINATE or fail to evaluate.
+ *
+ * Only the predicate types of this package are indexed. Groups with other predicates, or predicates missing the
+ * parameters they need to evaluate, are returned as candidates when their indexed predicates pass, and are listed by
+ * getUnindexedGroups so their predicates can be evaluated as before.
+ *
+ * Spend predicates take 2k + 1 bitsets for k distinct thresholds of a category, one for each threshold and one for each
+ * interval around them, so the index grows with the number of groups times the number of distinct thresholds.
+ *
+ * Every group is also compiled by TargetingPredicateCompiler when the index is built, for evaluating groups one at a
+ * time.
+ */
+public class TargetingGroupIndex {
+    private static final Logger LOG = LogManager.getLogger(TargetingGroupIndex.class);
+
+    private static final int NOT_PARENT = 0;
+    private static final int PARENT = 1;
+    private static final int PARENT_UNKNOWN = 2;
+
+    private final List<TargetingGroup> targetingGroups;
+    private final List<Predicate<RequestContext>> compiledTargetingGroups = new ArrayList<>();
+    private final BitSet unindexed = new BitSet();
+    private final BitSet rejectedIfUnrecognized = new BitSet();
+    private final BitSet rejectedIfRecognized = new BitSet();
+    private final BitSet usingProfile = new BitSet();
+    private final BitSet usingSpend = new BitSet();
+    private final BitSet usingPrimeBenefits = new BitSet();
+    private final TreeMap<String, Integer> ageRanges = new TreeMap<>(String.CASE_INSENSITIVE_ORDER);
+    private final BitSet[] rejectedByAgeRange;
+    private final BitSet[] rejectedByParent = {new BitSet(), new BitSet(), new BitSet()};
+    private final String[] benefits;
+    private final BitSet[] rejectedWithBenefit;
+    private final BitSet[] rejectedWithoutBenefit;
+    private final List<SpendIndex> spendIndexes = new ArrayList<>();
+
+    /**
+     * Builds an index of targeting groups.
+     * @param targetingGroups The groups to index. The ordinal of each group is its position in the list.
+     */
+    public TargetingGroupIndex(List<TargetingGroup> targetingGroups) {
+        this.targetingGroups = Collections.unmodifiableList(new ArrayList<>(targetingGroups));
+
+        final Map<TargetingPredicate, BitSet> groupsByPredicate = new LinkedHashMap<>();
+        for (int ordinal = 0; ordinal < this.targetingGroups.size(); ordinal++) {
+            final List<TargetingPredicate> predicates = this.targetingGroups.get(ordinal).getTargetingPredicates();
+            compiledTargetingGroups.add(TargetingPredicateCompiler.compile(predicates));
+            if (predicates == null) {
+                unindexed.set(ordinal);
+                continue;
+            }
+            for (TargetingPredicate predicate : predicates) {
+                if (isIndexed(predicate)) {
+                    groupsByPredicate.computeIfAbsent(predicate, p -> new BitSet()).set(ordinal);
+                } else {
+                    unindexed.set(ordinal);
+                }
+            }
+        }
+
+        final List<String> benefitValues = new ArrayList<>();
+        final Map<SpendKey, List<Integer>> thresholds = new LinkedHashMap<>();
+        for (TargetingPredicate predicate : groupsByPredicate.keySet()) {
+            if (predicate instanceof AgeTargetingPredicate) {
+                ageRanges.putIfAbsent(((AgeTargetingPredicate) predicate).getTargetedAgeRange(), ageRanges.size());
+            } else if (predicate instanceof PrimeBenefitTargetingPredicate) {
+                final String benefit = ((PrimeBenefitTargetingPredicate) predicate).getBenefitToHave();
+                if (!benefitValues.contains(benefit)) {
+                    benefitValues.add(benefit);
+                }
+            } else if (SpendKey.of(predicate) != null) {
+                thresholds.computeIfAbsent(SpendKey.of(predicate), key -> new ArrayList<>()).add(threshold(predicate));
+            }
+        }
+        this.rejectedByAgeRange = newBitSets(ageRanges.size() + 1);
+        this.benefits = benefitValues.toArray(new String[0]);
+        this.rejectedWithBenefit = newBitSets(benefits.length);
+        this.rejectedWithoutBenefit = newBitSets(benefits.length);
+        final Map<SpendKey, SpendIndex> spendIndexesByKey = new HashMap<>();
+        thresholds.forEach((key, values) -> {
+            final SpendIndex spendIndex = new SpendIndex(key, values);
+            spendIndexesByKey.put(key, spendIndex);
+            spendIndexes.add(spendIndex);
+        });
+
+        groupsByPredicate.forEach((predicate, groups) -> {
+            if (!(predicate instanceof RecognizedTargetingPredicate) || !predicate.isInverse()) {
+                rejectedIfUnrecognized.or(groups);
+            }
+            if (predicate instanceof RecognizedTargetingPredicate) {
+                if (predicate.isInverse()) {
+                    rejectedIfRecognized.or(groups);
+                }
+            } else if (predicate instanceof AgeTargetingPredicate) {
+                indexAgeRange((AgeTargetingPredicate) predicate, groups);
+            } else if (predicate instanceof ParentPredicate) {
+                indexParent(predicate, groups);
+            } else if (predicate instanceof PrimeBenefitTargetingPredicate) {
+                indexBenefit((PrimeBenefitTargetingPredicate) predicate, groups);
+            } else {
+                spendIndexesByKey.get(SpendKey.of(predicate)).index(predicate, groups);
+                usingSpend.or(groups);
+            }
+        });
+    }
+
+    /**
+     * The number of targeting groups in the index.
+     * @return the group count
+     */
+    public int size() {
+        return targetingGroups.size();
+    }
+
+    /**
+     * Gets a targeting group by its ordinal.
+     * @param ordinal The position of the group in the list the index was built from.
+     * @return the targeting group
+     */
+    public TargetingGroup getTargetingGroup(int ordinal) {
+        return targetingGroups.get(ordinal);
+    }
+
+    /**
+     * Gets the compiled predicates of a targeting group.
+     * @param ordinal The position of the group in the list the index was built from.
+     * @return a predicate that is true for requests the group's predicates all evaluate to TRUE for
+     */
+    public Predicate<RequestContext> getCompiledTargetingGroup(int ordinal) {
+        return compiledTargetingGroups.get(ordinal);
+    }
+
+    /**
+     * The groups with predicates the index cannot resolve. When one of them is a candidate, its predicates still need
+     * to be evaluated to know whether it is eligible.
+     * @return a new set of the unindexed groups' ordinals
+     */
+    public BitSet getUnindexedGroups() {
+        return (BitSet) unindexed.clone();
+    }
+
+    /**
+     * Whether resolving a recognized customer needs their customer signals, because some group targets their
+     * profile, spend or prime benefits.
+     * @return true if getCandidates needs a context with customer signals for recognized customers
+     */
+    public boolean needsCustomerSignals() {
+        return !usingProfile.isEmpty() || !usingSpend.isEmpty() || !usingPrimeBenefits.isEmpty();
+    }
+
+    /**
+     * Finds the groups whose indexed predicates all evaluate to TRUE for a request. Every indexed group in the result
+     * is eligible; unindexed groups in it still need their predicates evaluated.
+     * @param requestContext The request. Must have customer signals if the customer is recognized and
+     *                       needsCustomerSignals is true.
+     * @return a new set of the candidate groups' ordinals
+     */
+    public BitSet getCandidates(RequestContext requestContext) {
+        final BitSet candidates = new BitSet();
+        candidates.set(0, targetingGroups.size());
+        if (!requestContext.isRecognizedCustomer()) {
+            candidates.andNot(rejectedIfUnrecognized);
+            return candidates;
+        }
+        candidates.andNot(rejectedIfRecognized);
+        if (!needsCustomerSignals()) {
+            return candidates;
+        }
+        if (!requestContext.hasCustomerSignals()) {
+            throw new IllegalArgumentException(
+                    "Resolving a recognized customer's targeting groups needs their customer signals");
+        }
+
+        final CustomerSignals signals = requestContext.getCustomerSignals();
+        if (!usingProfile.isEmpty()) {
+            final CustomerProfile profile = fetch(signals::getCustomerProfile, "profile", requestContext);
+            if (profile == null) {
+                candidates.andNot(usingProfile);
+            } else {
+                final Integer ageRange = profile.getAgeRange() == null ? null : ageRanges.get(profile.getAgeRange());
+                candidates.andNot(rejectedByAgeRange[ageRange == null ? ageRanges.size() : ageRange]);
+                candidates.andNot(rejectedByParent[profile.isParent() == null ? PARENT_UNKNOWN :
+                        profile.isParent() ? PARENT : NOT_PARENT]);
+            }
+        }
+        if (!usingPrimeBenefits.isEmpty()) {
+            final List<String> primeBenefits = fetch(signals::getPrimeBenefits, "prime benefits", requestContext);
+            if (primeBenefits == null) {
+                candidates.andNot(usingPrimeBenefits);
+            } else {
+                for (int benefit = 0; benefit < benefits.length; benefit++) {
+                    candidates.andNot(primeBenefits.contains(benefits[benefit]) ?
+                            rejectedWithBenefit[benefit] : rejectedWithoutBenefit[benefit]);
+                }
+            }
+        }
+        if (!usingSpend.isEmpty()) {
+            final Map<String, Spend> spend = fetch(signals::getCustomerSpend, "spend", requestContext);
+            if (spend == null) {
+                candidates.andNot(usingSpend);
+            } else {
+                for (SpendIndex spendIndex : spendIndexes) {
+                    candidates.andNot(spendIndex.rejected(spend));
+                }
+            }
+        }
+        return candidates;
+    }
+
+    private void indexAgeRange(AgeTargetingPredicate predicate, BitSet groups) {
+        final int targeted = ageRanges.get(predicate.getTargetedAgeRange());
+        for (int ageRange = 0; ageRange < rejectedByAgeRange.length; ageRange++) {
+            if (ageRange == targeted == predicate.isInverse()) {
+                rejectedByAgeRange[ageRange].or(groups);
+            }
+        }
+        usingProfile.or(groups);
+    }
+
+    private void indexParent(TargetingPredicate predicate, BitSet groups) {
+        rejectedByParent[predicate.isInverse() ? PARENT : NOT_PARENT].or(groups);
+        rejectedByParent[PARENT_UNKNOWN].or(groups);
+        usingProfile.or(groups);
+    }
+
+    private void indexBenefit(PrimeBenefitTargetingPredicate predicate, BitSet groups) {
+        final int benefit = Arrays.asList(benefits).indexOf(predicate.getBenefitToHave());
+        (predicate.isInverse() ? rejectedWithBenefit : rejectedWithoutBenefit)[benefit].or(groups);
+        usingPrimeBenefits.or(groups);
+    }
+
+    /**
+     * Fetches a customer signal.
+     * @return the signal, or null if it could not be fetched
+     */
+    private static <T> T fetch(Supplier<T> signal, String name, RequestContext requestContext) {
+        try {
+            return signal.get();
+        } catch (DependencyTimeoutException e) {
+            return null;
+        } catch (RuntimeException e) {
+            LOG.warn(String.format("Unable to fetch the %s of customer %s. Groups targeting it are not eligible.",
+                    name, requestContext.getCustomerId()), e);
+            return null;
+        }
+    }
+
+    /**
+     * Whether the index can resolve a predicate: it is exactly one of the indexed types, with every parameter it needs.
+     */
+    private static boolean isIndexed(TargetingPredicate predicate) {
+        final Class<?> type = predicate.getClass();
+        if (type == RecognizedTargetingPredicate.class || type == ParentPredicate.class) {
+            return true;
+        }
+        if (type == AgeTargetingPredicate.class) {
+            return ((AgeTargetingPredicate) predicate).getTargetedAgeRange() != null;
+        }
+        if (type == PrimeBenefitTargetingPredicate.class) {
+            return ((PrimeBenefitTargetingPredicate) predicate).getBenefitToHave() != null;
+        }
+        if (type == CategorySpendValueTargetingPredicate.class) {
+            final CategorySpendValueTargetingPredicate spend = (CategorySpendValueTargetingPredicate) predicate;
+            return spend.getTargetedCategory() != null && spend.getComparison() != null;
+        }
+        if (type == CategorySpendFrequencyTargetingPredicate.class) {
+            final CategorySpendFrequencyTargetingPredicate spend = (CategorySpendFrequencyTargetingPredicate) predicate;
+            return spend.getTargetedCategory() != null && spend.getComparison() != null;
+        }
+        return false;
+    }
+
+    private static int threshold(TargetingPredicate predicate) {
+        return predicate instanceof CategorySpendValueTargetingPredicate ?
+                ((CategorySpendValueTargetingPredicate) predicate).getTargetedValue() :
+                ((CategorySpendFrequencyTargetingPredicate) predicate).getTargetedNumberOfPurchases();
+    }
+
+    private static Comparison comparison(TargetingPredicate predicate) {
+        return predicate instanceof CategorySpendValueTargetingPredicate ?
+                ((CategorySpendValueTargetingPredicate) predicate).getComparison() :
+                ((CategorySpendFrequencyTargetingPredicate) predicate).getComparison();
+    }
+
+    private static BitSet[] newBitSets(int count) {
+        final BitSet[] bitSets = new BitSet[count];
+        for (int i = 0; i < count; i++) {
+            bitSets[i] = new BitSet();
+        }
+        return bitSets;
+    }
+
+    /**
+     * A category and whether its dollar value or number of purchases is compared.
+     */
+    private static final class SpendKey {
+        private final String category;
+        private final boolean byValue;
+
+        private SpendKey(String category, boolean byValue) {
+            this.category = category;
+            this.byValue = byValue;
+        }
+
+        private static SpendKey of(TargetingPredicate predicate) {
+            if (predicate instanceof CategorySpendValueTargetingPredicate) {
+                return new SpendKey(((CategorySpendValueTargetingPredicate) predicate).getTargetedCategory(), true);
+            }
+            if (predicate instanceof CategorySpendFrequencyTargetingPredicate) {
+                return new SpendKey(((CategorySpendFrequencyTargetingPredicate) predicate).getTargetedCategory(),
+                        false);
+            }
+            return null;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (o == null || getClass() != o.getClass()) {
+                return false;
+            }
+            final SpendKey that = (SpendKey) o;
+            return byValue == that.byValue && category.equals(that.category);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(category, byValue);
+        }
+    }
+
+    /**
+     * The groups rejected by each bucket of one category's spend. With thresholds t0 < t1 < ... the buckets are
+     * below t0, t0, between t0 and t1, t1, and so on, and every spend in a bucket compares the same way against every
+     * threshold.
+     */
+    private static final class SpendIndex {
+        private final String category;
+        private final ToIntFunction<Spend> measure;
+        private final int[] thresholds;
+        private final BitSet[] rejectedByBucket;
+        private final BitSet using = new BitSet();
+
+        private SpendIndex(SpendKey key, List<Integer> thresholdValues) {
+            this.category = key.category;
+            this.measure = key.byValue ? Spend::getUsdSpent : Spend::getNumberOfPurchases;
+            this.thresholds = thresholdValues.stream().mapToInt(Integer::intValue).distinct().sorted().toArray();
+            this.rejectedByBucket = newBitSets(2 * thresholds.length + 1);
+        }
+
+        private void index(TargetingPredicate predicate, BitSet groups) {
+            final int thresholdBucket = 2 * Arrays.binarySearch(thresholds, threshold(predicate)) + 1;
+            final Comparison comparison = comparison(predicate);
+            for (int bucket = 0; bucket < rejectedByBucket.length; bucket++) {
+                if (comparison.compare(Integer.compare(bucket, thresholdBucket), 0) == predicate.isInverse()) {
+                    rejectedByBucket[bucket].or(groups);
+                }
+            }
+            using.or(groups);
+        }
+
+        /**
+         * The groups rejected by a customer's spend. A category whose spend is missing has spent nothing, but one
+         * whose spend is null cannot be evaluated, so it rejects every group targeting it.
+         */
+        private BitSet rejected(Map<String, Spend> spend) {
+            final Spend categorySpend = spend.get(category);
+            if (categorySpend == null) {
+                return spend.containsKey(category) ? using : rejectedByBucket[bucket(0)];
+            }
+            return rejectedByBucket[bucket(measure.applyAsInt(categorySpend))];
+        }
+
+        private int bucket(int value) {
+            final int position = Arrays.binarySearch(thresholds, value);
+            return position >= 0 ? 2 * position + 1 : 2 * (-position - 1);
+        }
+    }
+}
@@ -7,6 +7,7 @@ import com.amazon.ata.customerservice.CustomerProfile;
 import com.google.common.annotations.VisibleForTesting;
 import org.apache.commons.lang3.Validate;
 
+import java.util.Objects;
 import javax.inject.Inject;
 
 /**
@@ -47,7 +48,8 @@ public class AgeTargetingPredicate extends TargetingPredicate {
     TargetingPredicateResult evaluateRecognizedCustomer(RequestContext context) {
         Validate.notNull(targetedAgeRange, "Targeted AgeRange cannot be null.");
 
-        final CustomerProfile profile = customerProfileDao.get(context.getCustomerId());
+        final CustomerProfile profile = context.hasCustomerSignals() ?
+                context.getCustomerSignals().getCustomerProfile() : customerProfileDao.get(context.getCustomerId());
         return targetedAgeRange.toString().equalsIgnoreCase(profile.getAgeRange()) ?
                 TargetingPredicateResult.TRUE : TargetingPredicateResult.FALSE;
     }
@@ -64,4 +66,18 @@ public class AgeTargetingPredicate extends TargetingPredicate {
     public void setTargetedAgeRange(String targetedAgeRange) {
         this.targetedAgeRange = targetedAgeRange;
     }
+
+    @Override
+    public boolean equals(Object o) {
+        if (!super.equals(o)) {
+            return false;
+        }
+        final AgeTargetingPredicate that = (AgeTargetingPredicate) o;
+        return Objects.equals(targetedAgeRange, that.targetedAgeRange);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(super.hashCode(), targetedAgeRange);
+    }
 }
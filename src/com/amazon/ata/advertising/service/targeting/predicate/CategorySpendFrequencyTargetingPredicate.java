@@ -9,6 +9,7 @@ import com.google.common.annotations.VisibleForTesting;
 import org.apache.commons.lang3.Validate;
 
 import java.util.Map;
+import java.util.Objects;
 import javax.inject.Inject;
 
 /**
@@ -70,7 +71,8 @@ public class CategorySpendFrequencyTargetingPredicate extends TargetingPredicate
         Validate.notNull(targetedCategory, "The targeted category cannot be null.");
         Validate.notNull(comparison, "How to compare against the targeted value cannot be null.");
 
-        final Map<String, Spend> customerSpend = spendDao.get(context);
+        final Map<String, Spend> customerSpend = context.hasCustomerSignals() ?
+                context.getCustomerSignals().getCustomerSpend() : spendDao.get(context);
         final Spend categorySpend = customerSpend.getOrDefault(targetedCategory, ZERO_SPEND);
         return comparison.compare(categorySpend.getNumberOfPurchases(), targetedNumberOfPurchases) ?
                 TargetingPredicateResult.TRUE : TargetingPredicateResult.FALSE;
@@ -104,4 +106,20 @@ public class CategorySpendFrequencyTargetingPredicate extends TargetingPredicate
     public void setSpendDao(ReadableDao<RequestContext, Map<String, Spend>> spendDao) {
         this.spendDao = spendDao;
     }
+
+    @Override
+    public boolean equals(Object o) {
+        if (!super.equals(o)) {
+            return false;
+        }
+        final CategorySpendFrequencyTargetingPredicate that = (CategorySpendFrequencyTargetingPredicate) o;
+        return Objects.equals(targetedCategory, that.targetedCategory) &&
+                Objects.equals(comparison, that.comparison) &&
+                targetedNumberOfPurchases == that.targetedNumberOfPurchases;
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(super.hashCode(), targetedCategory, comparison, targetedNumberOfPurchases);
+    }
 }
@@ -9,6 +9,7 @@ import com.google.common.annotations.VisibleForTesting;
 import org.apache.commons.lang3.Validate;
 
 import java.util.Map;
+import java.util.Objects;
 import javax.inject.Inject;
 
 /**
@@ -67,7 +68,8 @@ public class CategorySpendValueTargetingPredicate extends TargetingPredicate {
         Validate.notNull(targetedCategory, "The targeted category cannot be null.");
         Validate.notNull(comparison, "How to compare against the targeted value cannot be null.");
 
-        final Map<String, Spend> customerSpend = spendDao.get(context);
+        final Map<String, Spend> customerSpend = context.hasCustomerSignals() ?
+                context.getCustomerSignals().getCustomerSpend() : spendDao.get(context);
         final Spend categorySpend = customerSpend.getOrDefault(targetedCategory, ZERO_SPEND);
         return comparison.compare(categorySpend.getUsdSpent(), targetedValue) ?
                 TargetingPredicateResult.TRUE : TargetingPredicateResult.FALSE;
@@ -101,4 +103,20 @@ public class CategorySpendValueTargetingPredicate extends TargetingPredicate {
     void setSpendDao(ReadableDao<RequestContext, Map<String, Spend>> spendDao) {
         this.spendDao = spendDao;
     }
+
+    @Override
+    public boolean equals(Object o) {
+        if (!super.equals(o)) {
+            return false;
+        }
+        final CategorySpendValueTargetingPredicate that = (CategorySpendValueTargetingPredicate) o;
+        return Objects.equals(targetedCategory, that.targetedCategory) &&
+                Objects.equals(comparison, that.comparison) &&
+                targetedValue == that.targetedValue;
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(super.hashCode(), targetedCategory, comparison, targetedValue);
+    }
 }
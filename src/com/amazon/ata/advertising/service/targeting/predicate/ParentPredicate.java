@@ -31,7 +31,8 @@ public class ParentPredicate extends TargetingPredicate {
 
     @Override
     TargetingPredicateResult evaluateRecognizedCustomer(RequestContext context) {
-        final CustomerProfile profile = customerProfileDao.get(context.getCustomerId());
+        final CustomerProfile profile = context.hasCustomerSignals() ?
+                context.getCustomerSignals().getCustomerProfile() : customerProfileDao.get(context.getCustomerId());
 
         return profile.isParent() == null ? TargetingPredicateResult.INDETERMINATE : profile.isParent() ?
                 TargetingPredicateResult.TRUE : TargetingPredicateResult.FALSE;
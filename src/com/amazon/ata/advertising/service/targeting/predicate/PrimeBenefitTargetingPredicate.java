@@ -7,6 +7,7 @@ import com.google.common.annotations.VisibleForTesting;
 import org.apache.commons.lang3.Validate;
 
 import java.util.List;
+import java.util.Objects;
 import javax.inject.Inject;
 
 /**
@@ -49,7 +50,9 @@ public class PrimeBenefitTargetingPredicate extends TargetingPredicate {
     TargetingPredicateResult evaluateRecognizedCustomer(RequestContext context) {
         Validate.notNull(benefitToHave, "Prime Benefit must be populated to evaluate the predicate.");
 
-        return primeDao.get(context)
+        final List<String> primeBenefits = context.hasCustomerSignals() ?
+                context.getCustomerSignals().getPrimeBenefits() : primeDao.get(context);
+        return primeBenefits
                 .stream()
                 .anyMatch(benefit -> benefitToHave.equals(benefit)) ?
                 TargetingPredicateResult.TRUE : TargetingPredicateResult.FALSE;
@@ -67,4 +70,18 @@ public class PrimeBenefitTargetingPredicate extends TargetingPredicate {
     void setDao(ReadableDao<RequestContext, List<String>> dao) {
         this.primeDao = dao;
     }
+
+    @Override
+    public boolean equals(Object o) {
+        if (!super.equals(o)) {
+            return false;
+        }
+        final PrimeBenefitTargetingPredicate that = (PrimeBenefitTargetingPredicate) o;
+        return Objects.equals(benefitToHave, that.benefitToHave);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(super.hashCode(), benefitToHave);
+    }
 }
@@ -1,18 +1,26 @@
 package com.amazon.ata.advertising.service.targeting.predicate;
 
+import com.amazon.ata.advertising.service.exceptions.DependencyTimeoutException;
 import com.amazon.ata.advertising.service.model.RequestContext;
 
 import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
 import com.fasterxml.jackson.annotation.JsonTypeInfo;
+import com.fasterxml.jackson.databind.annotation.JsonTypeIdResolver;
+
+import java.util.Objects;
 
 /**
  * Base class for all TargetingPredicates. The evaluate method will call either a recognized or unrecognized evaluate
  * method based on whether not the customerId is available in the context. All classes extending TargetingPredicate must
  * implement the recognized evaluation method. Default implementation of the unrecognized evaluate is to return an
  * INDETERMINATE result.
+ *
+ * Two predicates are equal when they are the same type with the same parameters and inverse flag, so they always
+ * evaluate to the same result for a request.
  */
 @JsonIgnoreProperties(ignoreUnknown = true)
-@JsonTypeInfo(use = JsonTypeInfo.Id.CLASS, include = JsonTypeInfo.As.PROPERTY, property = "@class")
+@JsonTypeInfo(use = JsonTypeInfo.Id.CUSTOM, include = JsonTypeInfo.As.PROPERTY, property = "@class")
+@JsonTypeIdResolver(TargetingPredicateTypeIdResolver.class)
 public abstract class TargetingPredicate {
 
     protected boolean inverse;
@@ -33,10 +41,16 @@ public abstract class TargetingPredicate {
     /**
      * Evaluate whether the information available in the request context passes the targeting predicate.
      * @param context - information about the incoming request, such as requestor and location
-     * @return TRUE/FALSE if the predicate passes, or INDETERMINATE if the evaluation cannot be made
+     * @return TRUE/FALSE if the predicate passes, or INDETERMINATE if the evaluation cannot be made, including when
+     *      the customer data it needs did not arrive in time
      */
     public TargetingPredicateResult evaluate(RequestContext context) {
-        final TargetingPredicateResult nonInvertedResult = evaluateWithoutInverse(context);
+        final TargetingPredicateResult nonInvertedResult;
+        try {
+            nonInvertedResult = evaluateWithoutInverse(context);
+        } catch (DependencyTimeoutException e) {
+            return TargetingPredicateResult.INDETERMINATE;
+        }
         return inverse ? nonInvertedResult.invert() : nonInvertedResult;
     }
 
@@ -73,4 +87,21 @@ public abstract class TargetingPredicate {
     public boolean isInverse() {
         return inverse;
     }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (o == null || getClass() != o.getClass()) {
+            return false;
+        }
+        final TargetingPredicate that = (TargetingPredicate) o;
+        return inverse == that.inverse;
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(getClass().getName(), inverse);
+    }
 }
@@ -0,0 +1,364 @@
+package com.amazon.ata.advertising.service.targeting.predicate;
+
+import com.amazon.ata.advertising.service.targeting.Comparison;
+import com.amazon.ata.customerservice.AgeRange;
+import com.amazon.ata.customerservice.Category;
+import com.amazon.ata.primeclubservice.Benefit;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.fasterxml.jackson.databind.ObjectWriter;
+
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Encodes lists of TargetingPredicates for storage, either as the JSON the service has always stored or as a compact
+ * binary form. The binary form, version 1, is:
+ * <pre>
+ *   byte     version, always 1. JSON rows start with '[', so the two are never confused.
+ *   varint   number of strings, then each string as a varint length and that many UTF-8 bytes
+ *   varint   number of predicates, then each predicate as
+ *     byte   header: the predicate type in bits 0-2, inverse in bit 3, and the comparison in bits 4-5
+ *     varint reference to the targeted age range, category or benefit, if the type has one: 0 for none,
+ *            otherwise 1 + its position in the string table
+ *     varint zigzag encoded targeted value or number of purchases, for the category spend types
+ * </pre>
+ * Varints are unsigned LEB128. Every string is written once per row however many predicates target it, and decoded
+ * strings that name a known age range, category or benefit are replaced by the shared constant.
+ *
+ * A new predicate type needs a new type code here, as well as its place in TargetingPredicateTypeIdResolver.
+ */
+public final class TargetingPredicateCodec {
+    public static final byte FORMAT_VERSION = 1;
+
+    private static final int AGE = 1;
+    private static final int PARENT = 2;
+    private static final int PRIME_BENEFIT = 3;
+    private static final int RECOGNIZED = 4;
+    private static final int CATEGORY_SPEND_VALUE = 5;
+    private static final int CATEGORY_SPEND_FREQUENCY = 6;
+    private static final int TYPE_MASK = 0x07;
+    private static final int INVERSE = 0x08;
+    private static final int COMPARISON_SHIFT = 4;
+    private static final int NO_COMPARISON = 3;
+    private static final int MAX_HEADER = 0x3F;
+    private static final Comparison[] COMPARISONS = {Comparison.LT, Comparison.GT, Comparison.EQ};
+
+    private static final Map<String, String> KNOWN_STRINGS = knownStrings();
+
+    private static final TypeReference<List<TargetingPredicate>> PREDICATE_LIST =
+            new TypeReference<List<TargetingPredicate>>() { };
+    private static final ObjectMapper MAPPER = new ObjectMapper();
+    private static final ObjectReader READER = MAPPER.readerFor(PREDICATE_LIST);
+    private static final ObjectWriter WRITER = MAPPER.writerFor(PREDICATE_LIST);
+
+    private TargetingPredicateCodec() {}
+
+    /**
+     * Writes predicates as JSON. The list is written as a list of the abstract TargetingPredicate type, so every
+     * member carries the type id from the @JsonTypeInfo annotation on that class.
+     * @param predicates The predicates to write.
+     * @return The JSON. "[]" in the case of an empty list.
+     * @throws IOException if the predicates cannot be written
+     * @throws IllegalArgumentException if a predicate is not a registered type
+     */
+    public static String toJson(List<TargetingPredicate> predicates) throws IOException {
+        return WRITER.writeValueAsString(predicates);
+    }
+
+    /**
+     * Reads predicates written as JSON. The predicates' dependencies are not injected.
+     * @param json The JSON.
+     * @return The predicates.
+     * @throws IOException if the JSON is not a list of registered predicate types
+     */
+    public static List<TargetingPredicate> fromJson(String json) throws IOException {
+        return READER.readValue(json);
+    }
+
+    /**
+     * Writes predicates in the binary form.
+     * @param predicates The predicates to write.
+     * @return The encoded predicates.
+     * @throws IllegalArgumentException if a predicate is not one of the known types
+     */
+    public static byte[] encode(List<TargetingPredicate> predicates) {
+        final Map<String, Integer> strings = new LinkedHashMap<>();
+        for (TargetingPredicate predicate : predicates) {
+            final String value = targetedString(predicate);
+            if (value != null) {
+                strings.putIfAbsent(value, strings.size());
+            }
+        }
+
+        final Output output = new Output(8 + 4 * predicates.size());
+        output.writeByte(FORMAT_VERSION);
+        output.writeVarint(strings.size());
+        for (String value : strings.keySet()) {
+            final byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+            output.writeVarint(bytes.length);
+            output.writeBytes(bytes);
+        }
+        output.writeVarint(predicates.size());
+        for (TargetingPredicate predicate : predicates) {
+            final int type = typeOf(predicate);
+            final Comparison comparison = comparisonOf(predicate);
+            output.writeByte(type
+                    | (predicate.isInverse() ? INVERSE : 0)
+                    | (comparison == null ? NO_COMPARISON : comparison.ordinal()) << COMPARISON_SHIFT);
+            if (type != PARENT && type != RECOGNIZED) {
+                final String value = targetedString(predicate);
+                output.writeVarint(value == null ? 0 : strings.get(value) + 1);
+            }
+            if (type == CATEGORY_SPEND_VALUE) {
+                output.writeVarint(zigzag(((CategorySpendValueTargetingPredicate) predicate).getTargetedValue()));
+            } else if (type == CATEGORY_SPEND_FREQUENCY) {
+                output.writeVarint(zigzag(
+                        ((CategorySpendFrequencyTargetingPredicate) predicate).getTargetedNumberOfPurchases()));
+            }
+        }
+        return output.toByteArray();
+    }
+
+    /**
+     * Reads predicates written in the binary form. The predicates' dependencies are not injected.
+     * @param encoded The encoded predicates.
+     * @return The predicates.
+     * @throws IllegalArgumentException if the bytes are not predicates in a known version of the binary form
+     */
+    public static List<TargetingPredicate> decode(byte[] encoded) {
+        return decode(ByteBuffer.wrap(encoded));
+    }
+
+    /**
+     * Reads predicates written in the binary form, from the buffer's position to its limit. The buffer's position
+     * is left where it was.
+     * @param encoded The encoded predicates.
+     * @return The predicates.
+     * @throws IllegalArgumentException if the bytes are not predicates in a known version of the binary form
+     */
+    public static List<TargetingPredicate> decode(ByteBuffer encoded) {
+        final ByteBuffer input = encoded.duplicate();
+        try {
+            final byte version = input.get();
+            if (version != FORMAT_VERSION) {
+                throw new IllegalArgumentException("Unknown targeting predicate format version " + version);
+            }
+            final int stringCount = readLength(input);
+            if (stringCount > input.remaining()) {
+                throw new IllegalArgumentException("More targeting predicate strings than bytes in the row");
+            }
+            final String[] strings = new String[stringCount];
+            for (int i = 0; i < strings.length; i++) {
+                final int length = readLength(input);
+                if (length > input.remaining()) {
+                    throw new IllegalArgumentException("Targeting predicate string runs past the end of the row");
+                }
+                final byte[] bytes = new byte[length];
+                input.get(bytes);
+                final String value = new String(bytes, StandardCharsets.UTF_8);
+                strings[i] = KNOWN_STRINGS.getOrDefault(value, value);
+            }
+
+            final int count = readLength(input);
+            final List<TargetingPredicate> predicates = new ArrayList<>(Math.min(count, input.remaining()));
+            for (int i = 0; i < count; i++) {
+                predicates.add(readPredicate(input, strings));
+            }
+            if (input.hasRemaining()) {
+                throw new IllegalArgumentException(input.remaining() + " unexpected bytes after the predicates");
+            }
+            return predicates;
+        } catch (BufferUnderflowException e) {
+            throw new IllegalArgumentException("Targeting predicates end before the row does", e);
+        }
+    }
+
+    private static TargetingPredicate readPredicate(ByteBuffer input, String[] strings) {
+        final int header = input.get() & 0xFF;
+        if (header > MAX_HEADER) {
+            throw new IllegalArgumentException("Unknown targeting predicate header " + header);
+        }
+        final int type = header & TYPE_MASK;
+        final int comparisonCode = header >>> COMPARISON_SHIFT;
+        final Comparison comparison = comparisonCode == NO_COMPARISON ? null : COMPARISONS[comparisonCode];
+        final TargetingPredicate predicate;
+        switch (type) {
+            case AGE:
+                final AgeTargetingPredicate age = new AgeTargetingPredicate();
+                age.setTargetedAgeRange(readString(input, strings));
+                predicate = age;
+                break;
+            case PARENT:
+                predicate = new ParentPredicate();
+                break;
+            case PRIME_BENEFIT:
+                final PrimeBenefitTargetingPredicate benefit = new PrimeBenefitTargetingPredicate();
+                benefit.setBenefitToHave(readString(input, strings));
+                predicate = benefit;
+                break;
+            case RECOGNIZED:
+                predicate = new RecognizedTargetingPredicate();
+                break;
+            case CATEGORY_SPEND_VALUE:
+                final CategorySpendValueTargetingPredicate value = new CategorySpendValueTargetingPredicate();
+                value.setTargetedCategory(readString(input, strings));
+                value.setComparison(comparison);
+                value.setTargetedValue(unzigzag(readVarint(input)));
+                predicate = value;
+                break;
+            case CATEGORY_SPEND_FREQUENCY:
+                final CategorySpendFrequencyTargetingPredicate frequency =
+                        new CategorySpendFrequencyTargetingPredicate();
+                frequency.setTargetedCategory(readString(input, strings));
+                frequency.setComparison(comparison);
+                frequency.setTargetedNumberOfPurchases(unzigzag(readVarint(input)));
+                predicate = frequency;
+                break;
+            default:
+                throw new IllegalArgumentException("Unknown targeting predicate type " + type);
+        }
+        predicate.setInverse((header & INVERSE) != 0);
+        return predicate;
+    }
+
+    private static int typeOf(TargetingPredicate predicate) {
+        final Class<?> type = predicate.getClass();
+        if (type == AgeTargetingPredicate.class) {
+            return AGE;
+        } else if (type == ParentPredicate.class) {
+            return PARENT;
+        } else if (type == PrimeBenefitTargetingPredicate.class) {
+            return PRIME_BENEFIT;
+        } else if (type == RecognizedTargetingPredicate.class) {
+            return RECOGNIZED;
+        } else if (type == CategorySpendValueTargetingPredicate.class) {
+            return CATEGORY_SPEND_VALUE;
+        } else if (type == CategorySpendFrequencyTargetingPredicate.class) {
+            return CATEGORY_SPEND_FREQUENCY;
+        }
+        throw new IllegalArgumentException(String.format(
+                "%s is not a registered targeting predicate type and cannot be stored", type.getName()));
+    }
+
+    private static String targetedString(TargetingPredicate predicate) {
+        if (predicate instanceof AgeTargetingPredicate) {
+            return ((AgeTargetingPredicate) predicate).getTargetedAgeRange();
+        } else if (predicate instanceof PrimeBenefitTargetingPredicate) {
+            return ((PrimeBenefitTargetingPredicate) predicate).getBenefitToHave();
+        } else if (predicate instanceof CategorySpendValueTargetingPredicate) {
+            return ((CategorySpendValueTargetingPredicate) predicate).getTargetedCategory();
+        } else if (predicate instanceof CategorySpendFrequencyTargetingPredicate) {
+            return ((CategorySpendFrequencyTargetingPredicate) predicate).getTargetedCategory();
+        }
+        return null;
+    }
+
+    private static Comparison comparisonOf(TargetingPredicate predicate) {
+        if (predicate instanceof CategorySpendValueTargetingPredicate) {
+            return ((CategorySpendValueTargetingPredicate) predicate).getComparison();
+        } else if (predicate instanceof CategorySpendFrequencyTargetingPredicate) {
+            return ((CategorySpendFrequencyTargetingPredicate) predicate).getComparison();
+        }
+        return null;
+    }
+
+    private static String readString(ByteBuffer input, String[] strings) {
+        final int reference = readLength(input);
+        if (reference > strings.length) {
+            throw new IllegalArgumentException("Targeting predicate string " + reference + " is not in the row");
+        }
+        return reference == 0 ? null : strings[reference - 1];
+    }
+
+    private static int readLength(ByteBuffer input) {
+        final int length = readVarint(input);
+        if (length < 0) {
+            throw new IllegalArgumentException("Negative length in targeting predicates");
+        }
+        return length;
+    }
+
+    private static int readVarint(ByteBuffer input) {
+        int value = 0;
+        for (int shift = 0; shift < Integer.SIZE; shift += 7) {
+            final byte b = input.get();
+            value |= (b & 0x7F) << shift;
+            if (b >= 0) {
+                return value;
+            }
+        }
+        throw new IllegalArgumentException("Varint in targeting predicates is longer than an int");
+    }
+
+    private static int zigzag(int value) {
+        return value << 1 ^ value >> 31;
+    }
+
+    private static int unzigzag(int value) {
+        return value >>> 1 ^ -(value & 1);
+    }
+
+    private static Map<String, String> knownStrings() {
+        final Map<String, String> known = new HashMap<>();
+        for (String[] values : Arrays.asList(AgeRange.values(), Category.values(), Benefit.values())) {
+            for (String value : values) {
+                known.put(value, value);
+            }
+        }
+        return Collections.unmodifiableMap(known);
+    }
+
+    /**
+     * A growable byte array, so a row is encoded without the synchronization of ByteArrayOutputStream.
+     */
+    private static final class Output {
+        private byte[] bytes;
+        private int size;
+
+        private Output(int capacity) {
+            this.bytes = new byte[capacity];
+        }
+
+        private void writeByte(int b) {
+            ensureCapacity(1);
+            bytes[size++] = (byte) b;
+        }
+
+        private void writeVarint(int value) {
+            ensureCapacity(5);
+            while ((value & ~0x7F) != 0) {
+                bytes[size++] = (byte) (value & 0x7F | 0x80);
+                value >>>= 7;
+            }
+            bytes[size++] = (byte) value;
+        }
+
+        private void writeBytes(byte[] source) {
+            ensureCapacity(source.length);
+            System.arraycopy(source, 0, bytes, size, source.length);
+            size += source.length;
+        }
+
+        private void ensureCapacity(int needed) {
+            if (size + needed > bytes.length) {
+                bytes = Arrays.copyOf(bytes, Math.max(bytes.length * 2, size + needed));
+            }
+        }
+
+        private byte[] toByteArray() {
+            return Arrays.copyOf(bytes, size);
+        }
+    }
+}
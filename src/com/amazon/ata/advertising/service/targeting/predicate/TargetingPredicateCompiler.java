@@ -0,0 +1,240 @@
+package com.amazon.ata.advertising.service.targeting.predicate;
+
+import com.amazon.ata.advertising.service.dao.ReadableDao;
+import com.amazon.ata.advertising.service.exceptions.DependencyTimeoutException;
+import com.amazon.ata.advertising.service.model.RequestContext;
+import com.amazon.ata.advertising.service.targeting.Comparison;
+import com.amazon.ata.customerservice.CustomerProfile;
+import com.amazon.ata.customerservice.Spend;
+
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Predicate;
+import java.util.function.ToIntFunction;
+
+/**
+ * Compiles the predicates of a targeting group into a single evaluator that is true when every predicate evaluates to
+ * TRUE, without going through TargetingPredicate.evaluate and its TargetingPredicateResults for each predicate.
+ *
+ * Everything that only depends on the predicates is decided once, when the group is compiled: the result for
+ * unrecognized customers, which is FALSE for a group with any predicate other than an inverse
+ * RecognizedTargetingPredicate; RecognizedTargetingPredicates for recognized customers; repeated predicates; and each
+ * predicate's inverse flag and comparison, which become a lambda over the customer's profile, spend or prime benefits
+ * with the targeted value and a primitive comparison built in. When a group is evaluated, each customer signal it
+ * reads is fetched once, and only if every test on the signals fetched before it passed. A signal that times out
+ * fails the group, just as its INDETERMINATE predicates would.
+ *
+ * Predicates of other types, or missing the parameters they need to evaluate, are evaluated through
+ * TargetingPredicate.evaluate after the compiled tests pass, so every group compiles to the same results it would be
+ * evaluated to. When a customer's signals are not attached to the request, each signal is read from the DAO of the
+ * first of the group's predicates that uses it, so predicates can be compiled before they are injected.
+ */
+public final class TargetingPredicateCompiler {
+    private static final Spend ZERO_SPEND = new Spend.Builder().withNumberOfPurchases(0).withUsdSpent(0).build();
+
+    private TargetingPredicateCompiler() {}
+
+    /**
+     * Compiles a targeting group's predicates.
+     * @param predicates The targeting group's predicates.
+     * @return A predicate that is true for a request if every one of the predicates evaluates to TRUE for it. A group
+     *      without a predicate list is never true.
+     */
+    public static Predicate<RequestContext> compile(List<TargetingPredicate> predicates) {
+        if (predicates == null) {
+            return context -> false;
+        }
+
+        final CompiledTargetingGroup group = new CompiledTargetingGroup();
+        final List<Predicate<CustomerProfile>> profileTests = new ArrayList<>();
+        final List<Predicate<Map<String, Spend>>> spendTests = new ArrayList<>();
+        final List<Predicate<List<String>>> benefitTests = new ArrayList<>();
+        final List<Predicate<RequestContext>> evaluated = new ArrayList<>();
+        for (TargetingPredicate predicate : new LinkedHashSet<>(predicates)) {
+            if (!isCompiled(predicate)) {
+                evaluated.add(context -> predicate.evaluate(context).isTrue());
+                continue;
+            }
+            final boolean inverse = predicate.isInverse();
+            if (predicate instanceof RecognizedTargetingPredicate) {
+                group.rejectsRecognized |= inverse;
+                group.rejectsUnrecognized |= !inverse;
+                continue;
+            }
+            group.rejectsUnrecognized = true;
+            if (predicate instanceof ParentPredicate) {
+                group.profileSource = group.profileSource != null ? group.profileSource : predicate;
+                final Boolean expected = !inverse;
+                profileTests.add(profile -> expected.equals(profile.isParent()));
+            } else if (predicate instanceof AgeTargetingPredicate) {
+                group.profileSource = group.profileSource != null ? group.profileSource : predicate;
+                final String ageRange = ((AgeTargetingPredicate) predicate).getTargetedAgeRange();
+                profileTests.add(inverse ?
+                        profile -> !ageRange.equalsIgnoreCase(profile.getAgeRange()) :
+                        profile -> ageRange.equalsIgnoreCase(profile.getAgeRange()));
+            } else if (predicate instanceof PrimeBenefitTargetingPredicate) {
+                group.benefitSource = group.benefitSource != null ?
+                        group.benefitSource : (PrimeBenefitTargetingPredicate) predicate;
+                final String benefit = ((PrimeBenefitTargetingPredicate) predicate).getBenefitToHave();
+                benefitTests.add(inverse ?
+                        benefits -> !benefits.contains(benefit) :
+                        benefits -> benefits.contains(benefit));
+            } else if (predicate instanceof CategorySpendValueTargetingPredicate) {
+                final CategorySpendValueTargetingPredicate value = (CategorySpendValueTargetingPredicate) predicate;
+                group.spendSource = group.spendSource != null ? group.spendSource : predicate;
+                final String category = value.getTargetedCategory();
+                spendTests.add(compare(spend -> spend.getOrDefault(category, ZERO_SPEND).getUsdSpent(),
+                        value.getComparison(), value.getTargetedValue(), inverse));
+            } else {
+                final CategorySpendFrequencyTargetingPredicate frequency =
+                        (CategorySpendFrequencyTargetingPredicate) predicate;
+                group.spendSource = group.spendSource != null ? group.spendSource : predicate;
+                final String category = frequency.getTargetedCategory();
+                spendTests.add(compare(spend -> spend.getOrDefault(category, ZERO_SPEND).getNumberOfPurchases(),
+                        frequency.getComparison(), frequency.getTargetedNumberOfPurchases(), inverse));
+            }
+        }
+        group.profileTest = allOf(profileTests);
+        group.spendTest = allOf(spendTests);
+        group.benefitTest = allOf(benefitTests);
+        group.evaluated = allOf(evaluated);
+        if (group.rejectsRecognized && group.rejectsUnrecognized) {
+            return context -> false;
+        }
+        return group;
+    }
+
+    /**
+     * Whether a predicate is one of this package's types with everything it needs to evaluate.
+     */
+    private static boolean isCompiled(TargetingPredicate predicate) {
+        final Class<?> type = predicate.getClass();
+        if (type == RecognizedTargetingPredicate.class || type == ParentPredicate.class) {
+            return true;
+        } else if (type == AgeTargetingPredicate.class) {
+            return ((AgeTargetingPredicate) predicate).getTargetedAgeRange() != null;
+        } else if (type == PrimeBenefitTargetingPredicate.class) {
+            return ((PrimeBenefitTargetingPredicate) predicate).getBenefitToHave() != null;
+        } else if (type == CategorySpendValueTargetingPredicate.class) {
+            final CategorySpendValueTargetingPredicate spend = (CategorySpendValueTargetingPredicate) predicate;
+            return spend.getTargetedCategory() != null && spend.getComparison() != null;
+        } else if (type == CategorySpendFrequencyTargetingPredicate.class) {
+            final CategorySpendFrequencyTargetingPredicate spend = (CategorySpendFrequencyTargetingPredicate) predicate;
+            return spend.getTargetedCategory() != null && spend.getComparison() != null;
+        }
+        return false;
+    }
+
+    /**
+     * A primitive comparison of a customer's value against a threshold, with the inverse flag folded into the
+     * operator.
+     */
+    private static <T> Predicate<T> compare(ToIntFunction<T> value, Comparison comparison, int threshold,
+                                            boolean inverse) {
+        switch (comparison) {
+            case LT:
+                return inverse ?
+                        signal -> value.applyAsInt(signal) >= threshold :
+                        signal -> value.applyAsInt(signal) < threshold;
+            case GT:
+                return inverse ?
+                        signal -> value.applyAsInt(signal) <= threshold :
+                        signal -> value.applyAsInt(signal) > threshold;
+            default:
+                return inverse ?
+                        signal -> value.applyAsInt(signal) != threshold :
+                        signal -> value.applyAsInt(signal) == threshold;
+        }
+    }
+
+    /**
+     * Joins tests into one that is only true if all of them are, specialized for the few tests a group usually has.
+     * @return the joined test, or null if there are none
+     */
+    private static <T> Predicate<T> allOf(List<Predicate<T>> tests) {
+        switch (tests.size()) {
+            case 0:
+                return null;
+            case 1:
+                return tests.get(0);
+            case 2:
+                final Predicate<T> first = tests.get(0);
+                final Predicate<T> second = tests.get(1);
+                return signal -> first.test(signal) && second.test(signal);
+            default:
+                @SuppressWarnings("unchecked")
+                final Predicate<T>[] all = (Predicate<T>[]) tests.toArray(new Predicate<?>[0]);
+                return signal -> {
+                    for (Predicate<T> test : all) {
+                        if (!test.test(signal)) {
+                            return false;
+                        }
+                    }
+                    return true;
+                };
+        }
+    }
+
+    /**
+     * A compiled targeting group. Tests that are null are not needed by the group.
+     */
+    private static final class CompiledTargetingGroup implements Predicate<RequestContext> {
+        private boolean rejectsRecognized;
+        private boolean rejectsUnrecognized;
+        private TargetingPredicate profileSource;
+        private TargetingPredicate spendSource;
+        private PrimeBenefitTargetingPredicate benefitSource;
+        private Predicate<CustomerProfile> profileTest;
+        private Predicate<Map<String, Spend>> spendTest;
+        private Predicate<List<String>> benefitTest;
+        private Predicate<RequestContext> evaluated;
+
+        @Override
+        public boolean test(RequestContext context) {
+            if (!context.isRecognizedCustomer()) {
+                return !rejectsUnrecognized && (evaluated == null || evaluated.test(context));
+            }
+            if (rejectsRecognized) {
+                return false;
+            }
+            try {
+                if (profileTest != null && !profileTest.test(profile(context))) {
+                    return false;
+                }
+                if (spendTest != null && !spendTest.test(spend(context))) {
+                    return false;
+                }
+                if (benefitTest != null && !benefitTest.test(context.hasCustomerSignals() ?
+                        context.getCustomerSignals().getPrimeBenefits() : benefitSource.primeDao.get(context))) {
+                    return false;
+                }
+            } catch (DependencyTimeoutException e) {
+                return false;
+            }
+            return evaluated == null || evaluated.test(context);
+        }
+
+        private CustomerProfile profile(RequestContext context) {
+            if (context.hasCustomerSignals()) {
+                return context.getCustomerSignals().getCustomerProfile();
+            }
+            final ReadableDao<String, CustomerProfile> customerProfileDao = profileSource instanceof ParentPredicate ?
+                    ((ParentPredicate) profileSource).customerProfileDao :
+                    ((AgeTargetingPredicate) profileSource).customerProfileDao;
+            return customerProfileDao.get(context.getCustomerId());
+        }
+
+        private Map<String, Spend> spend(RequestContext context) {
+            if (context.hasCustomerSignals()) {
+                return context.getCustomerSignals().getCustomerSpend();
+            }
+            final ReadableDao<RequestContext, Map<String, Spend>> spendDao =
+                    spendSource instanceof CategorySpendValueTargetingPredicate ?
+                            ((CategorySpendValueTargetingPredicate) spendSource).spendDao :
+                            ((CategorySpendFrequencyTargetingPredicate) spendSource).spendDao;
+            return spendDao.get(context);
+        }
+    }
+}
@@ -2,63 +2,104 @@ package com.amazon.ata.advertising.service.targeting.predicate;
 
 import com.amazon.ata.advertising.service.dependency.DaggerLambdaComponent;
 import com.amazon.ata.advertising.service.exceptions.AdvertisementServiceException;
-import com.amazon.ata.advertising.service.dependency.LambdaComponent;
 import com.amazon.ata.advertising.service.dependency.TargetingPredicateInjector;
 
 import com.amazonaws.services.dynamodbv2.datamodeling.DynamoDBTypeConverter;
-import com.fasterxml.jackson.core.type.TypeReference;
-import com.fasterxml.jackson.databind.ObjectMapper;
+import com.amazonaws.services.dynamodbv2.model.AttributeValue;
 
 import java.io.IOException;
+import java.nio.ByteBuffer;
 import java.util.List;
-import java.util.stream.Collectors;
 
 /**
- * Class to convert a list of the complex type TargetingPredicate to a string and vice-versa.
+ * Class to convert a list of the complex type TargetingPredicate to a DynamoDB attribute and vice-versa.
+ *
+ * Predicates are written in the storage format set by the system property
+ * "ata.advertising.service.targetingPredicates.storageFormat": JSON, the default, writes the JSON string the service
+ * has always stored, and BINARY writes the compact form of TargetingPredicateCodec as a binary attribute. Either form
+ * is read, whatever the setting, so rows written before the binary form existed keep working. BINARY should only be
+ * turned on once every host reads the binary form, since older hosts cannot read its rows, and can be undone by
+ * switching back to JSON. TargetingPredicateMigrator rewrites existing JSON rows in the binary form.
+ *
+ * DynamoDB creates converters itself, so everything a conversion needs is shared by every instance, and the
+ * predicate injector comes from a single object graph, built the first time a row is read.
  */
-public class TargetingPredicateTypeConverter implements DynamoDBTypeConverter<String, List<TargetingPredicate>> {
-    private static final ObjectMapper MAPPER = new ObjectMapper();
+public class TargetingPredicateTypeConverter
+        implements DynamoDBTypeConverter<AttributeValue, List<TargetingPredicate>> {
+    private static final String STORAGE_FORMAT = "ata.advertising.service.targetingPredicates.storageFormat";
+
+    private final StorageFormat storageFormat;
 
     /**
-     * Serializes the passed predicate list into a String. Each member is serialized separately so that the Jackson
-     * annotation (@JsonTypeInfo) can live at the abstract TargetingPredicate class, rather than annotating each
-     * subclass.
-     * information
-     * @param predicateList - a list of TargetingPredicates that will be converted to a String value
-     * @return The serialized string. "[]" in the case of an empty list.
+     * How predicates are written.
      */
-    @Override
-    public String convert(List<TargetingPredicate> predicateList) {
-        return new StringBuffer()
-                .append("[")
-                .append(predicateList.stream()
-                        .map(this::getSerializePredicateFunction).collect(Collectors.joining(",")))
-                .append("]").toString();
+    public enum StorageFormat {
+        JSON, BINARY
+    }
+
+    /**
+     * Creates a converter that writes the storage format set in the system properties.
+     */
+    public TargetingPredicateTypeConverter() {
+        this(StorageFormat.valueOf(System.getProperty(STORAGE_FORMAT, StorageFormat.JSON.name())));
     }
 
-    private String getSerializePredicateFunction(TargetingPredicate predicate) {
+    /**
+     * Creates a converter.
+     * @param storageFormat How predicates are written.
+     */
+    public TargetingPredicateTypeConverter(StorageFormat storageFormat) {
+        this.storageFormat = storageFormat;
+    }
+
+    /**
+     * Serializes the passed predicate list into an attribute in the converter's storage format.
+     * @param predicateList - a list of TargetingPredicates that will be converted to an attribute
+     * @return A binary attribute, or a string attribute holding JSON. "[]" in the case of an empty list.
+     */
+    @Override
+    public AttributeValue convert(List<TargetingPredicate> predicateList) {
         try {
-            return MAPPER.writeValueAsString(predicate);
-        } catch (IOException e) {
-            throw new AdvertisementServiceException("Unable to convert the predicate to a String. " +
-                    "Object: " + predicate, e);
+            if (storageFormat == StorageFormat.BINARY) {
+                return new AttributeValue().withB(ByteBuffer.wrap(TargetingPredicateCodec.encode(predicateList)));
+            }
+            return new AttributeValue().withS(TargetingPredicateCodec.toJson(predicateList));
+        } catch (IOException | IllegalArgumentException e) {
+            throw new AdvertisementServiceException("Unable to convert the predicates to an attribute. " +
+                    "Object: " + predicateList, e);
         }
     }
 
     @Override
-    public List<TargetingPredicate> unconvert(String value) {
-        LambdaComponent component = DaggerLambdaComponent.create();
-        TargetingPredicateInjector injector = component.getTargetingPredicateInjector();
-        try {
-            final List<TargetingPredicate> predicates = MAPPER.readValue(value,
-                    new TypeReference<List<TargetingPredicate>>() { });
-            for (TargetingPredicate predicate : predicates) {
-                injector.inject(predicate);
+    public List<TargetingPredicate> unconvert(AttributeValue value) {
+        final TargetingPredicateInjector injector = Injector.INSTANCE;
+        final List<TargetingPredicate> predicates;
+        if (value.getB() != null) {
+            try {
+                predicates = TargetingPredicateCodec.decode(value.getB());
+            } catch (IllegalArgumentException e) {
+                throw new AdvertisementServiceException("Unable to convert the binary value to a list of targeting " +
+                        "predicates. Length: " + value.getB().remaining(), e);
+            }
+        } else {
+            try {
+                predicates = TargetingPredicateCodec.fromJson(value.getS());
+            } catch (IOException | IllegalArgumentException e) {
+                throw new AdvertisementServiceException("Unable to convert the String value to a list of " +
+                        "targeting predicates. String: " + value.getS(), e);
             }
-            return predicates;
-        } catch (IOException e) {
-            throw new AdvertisementServiceException("Unable to convert the String value to a list of targeting " +
-                    "predicates. String: " + value, e);
         }
+        for (TargetingPredicate predicate : predicates) {
+            injector.inject(predicate);
+        }
+        return predicates;
+    }
+
+    /**
+     * Holds the injector shared by every converter, so the object graph is only built once it is needed.
+     */
+    private static final class Injector {
+        private static final TargetingPredicateInjector INSTANCE =
+                DaggerLambdaComponent.create().getTargetingPredicateInjector();
     }
 }
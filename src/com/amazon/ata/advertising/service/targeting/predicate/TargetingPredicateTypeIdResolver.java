@@ -0,0 +1,68 @@
+package com.amazon.ata.advertising.service.targeting.predicate;
+
+import com.fasterxml.jackson.annotation.JsonTypeInfo;
+import com.fasterxml.jackson.databind.DatabindContext;
+import com.fasterxml.jackson.databind.JavaType;
+import com.fasterxml.jackson.databind.jsontype.impl.TypeIdResolverBase;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Resolves the "@class" type ids of serialized TargetingPredicates from a fixed registry of the predicate types,
+ * rather than loading whatever class a stored id names. The ids are still the fully qualified class names, so rows
+ * written before the registry existed, and readers that still resolve ids as class names, keep working.
+ *
+ * A new predicate type must be added to the registry before it can be stored.
+ */
+public class TargetingPredicateTypeIdResolver extends TypeIdResolverBase {
+    private static final Map<String, Class<? extends TargetingPredicate>> TYPES_BY_ID = registry(
+            AgeTargetingPredicate.class,
+            CategorySpendFrequencyTargetingPredicate.class,
+            CategorySpendValueTargetingPredicate.class,
+            ParentPredicate.class,
+            PrimeBenefitTargetingPredicate.class,
+            RecognizedTargetingPredicate.class);
+
+    @Override
+    public String idFromValue(Object value) {
+        return idFromValueAndType(value, value.getClass());
+    }
+
+    @Override
+    public String idFromValueAndType(Object value, Class<?> suggestedType) {
+        final String id = suggestedType.getName();
+        if (!TYPES_BY_ID.containsKey(id)) {
+            throw new IllegalArgumentException(String.format(
+                    "%s is not a registered targeting predicate type and cannot be stored", id));
+        }
+        return id;
+    }
+
+    @Override
+    public JavaType typeFromId(DatabindContext context, String id) {
+        final Class<? extends TargetingPredicate> type = TYPES_BY_ID.get(id);
+        return type == null ? null : context.constructType(type);
+    }
+
+    @Override
+    public String getDescForKnownTypeIds() {
+        return String.join(", ", TYPES_BY_ID.keySet());
+    }
+
+    @Override
+    public JsonTypeInfo.Id getMechanism() {
+        return JsonTypeInfo.Id.CUSTOM;
+    }
+
+    @SafeVarargs
+    private static Map<String, Class<? extends TargetingPredicate>> registry(
+            Class<? extends TargetingPredicate>... types) {
+        final Map<String, Class<? extends TargetingPredicate>> typesById = new HashMap<>();
+        for (Class<? extends TargetingPredicate> type : types) {
+            typesById.put(type.getName(), type);
+        }
+        return Collections.unmodifiableMap(typesById);
+    }
+}
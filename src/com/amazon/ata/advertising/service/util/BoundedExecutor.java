@@ -0,0 +1,114 @@
+package com.amazon.ata.advertising.service.util;
+
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.RejectedExecutionHandler;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A fixed-size thread pool with a bounded queue that reports how much work it is doing. Once every thread is busy and
+ * the queue is full, new tasks are handled by the configured RejectionPolicy, except tasks passed to executeOrReject,
+ * which are always refused.
+ */
+public class BoundedExecutor extends ThreadPoolExecutor {
+
+    /**
+     * What to do with a task when the executor is saturated.
+     */
+    public enum RejectionPolicy {
+        /**
+         * Throw a RejectedExecutionException to the submitter, shedding the load.
+         */
+        ABORT,
+        /**
+         * Run the task on the submitting thread, slowing the submitter down.
+         */
+        CALLER_RUNS
+    }
+
+    private final LongAdder rejectedTasks = new LongAdder();
+
+    /**
+     * Creates a BoundedExecutor whose threads are daemon threads named after the executor.
+     * @param name Prefix of the name of each thread.
+     * @param threads The number of threads in the pool.
+     * @param queueCapacity How many tasks can wait for a thread before new tasks are rejected.
+     * @param rejectionPolicy What to do with tasks submitted while the executor is saturated.
+     */
+    public BoundedExecutor(String name, int threads, int queueCapacity, RejectionPolicy rejectionPolicy) {
+        super(threads, threads, 0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(queueCapacity),
+                new ThreadFactoryBuilder()
+                        .setNameFormat(name + "-%d")
+                        .setDaemon(true)
+                        .build());
+        RejectedExecutionHandler handler = rejectionPolicy == RejectionPolicy.CALLER_RUNS ?
+                new ThreadPoolExecutor.CallerRunsPolicy() : new ThreadPoolExecutor.AbortPolicy();
+        setRejectedExecutionHandler((task, executor) -> {
+            rejectedTasks.increment();
+            if (task instanceof RejectIfSaturated) {
+                throw new RejectedExecutionException("Task " + task + " rejected from " + executor);
+            }
+            handler.rejectedExecution(task, executor);
+        });
+    }
+
+    /**
+     * Executes a task on one of the pool's threads, or throws a RejectedExecutionException if the executor is
+     * saturated, whatever the RejectionPolicy. For callers that must never run the task themselves.
+     * @param task The task to run.
+     */
+    public void executeOrReject(Runnable task) {
+        execute(new RejectIfSaturated(task));
+    }
+
+    /**
+     * The approximate number of tasks being run right now.
+     * @return the active task count
+     */
+    public int getActiveTaskCount() {
+        return getActiveCount();
+    }
+
+    /**
+     * The number of tasks waiting for a thread.
+     * @return the queued task count
+     */
+    public int getQueuedTaskCount() {
+        return getQueue().size();
+    }
+
+    /**
+     * The number of tasks that arrived while the executor was saturated. Depending on the RejectionPolicy they were
+     * either run by the submitter or refused.
+     * @return the rejected task count
+     */
+    public long getRejectedTaskCount() {
+        return rejectedTasks.sum();
+    }
+
+    /**
+     * A task submitted with executeOrReject.
+     */
+    private static final class RejectIfSaturated implements Runnable {
+        private final Runnable task;
+
+        private RejectIfSaturated(Runnable task) {
+            this.task = task;
+        }
+
+        @Override
+        public void run() {
+            task.run();
+        }
+
+        @Override
+        public String toString() {
+            return task.toString();
+        }
+    }
+}
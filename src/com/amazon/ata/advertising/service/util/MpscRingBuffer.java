@@ -0,0 +1,97 @@
+package com.amazon.ata.advertising.service.util;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.function.Consumer;
+
+/**
+ * A bounded, lock-free queue that many threads can offer to and a single thread drains. Producers claim a slot by
+ * advancing the producer index with a compare-and-set, then publish their item into it; the consumer takes items in
+ * the order their slots were claimed, stopping at a claimed slot whose item has not been published yet. Neither side
+ * ever blocks: offering to a full buffer fails straight away.
+ *
+ * <p>Only one thread at a time may call drain.
+ * @param <E> The type of item queued.
+ */
+public class MpscRingBuffer<E> {
+    private final int mask;
+    private final AtomicReferenceArray<E> slots;
+    private final AtomicLong producerIndex = new AtomicLong();
+    private final AtomicLong consumerIndex = new AtomicLong();
+
+    /**
+     * Creates an empty buffer.
+     * @param capacity The most items the buffer holds, rounded up to a power of two.
+     */
+    public MpscRingBuffer(int capacity) {
+        if (capacity <= 0 || capacity > 1 << 30) {
+            throw new IllegalArgumentException("capacity must be between 1 and 2^30, was " + capacity);
+        }
+        final int size = Integer.highestOneBit(capacity) == capacity ? capacity : Integer.highestOneBit(capacity) << 1;
+        this.mask = size - 1;
+        this.slots = new AtomicReferenceArray<>(size);
+    }
+
+    /**
+     * Adds an item to the buffer, unless it is full.
+     * @param item The item to add. Must not be null.
+     * @return true if the item was added, false if the buffer was full.
+     */
+    public boolean offer(E item) {
+        if (item == null) {
+            throw new NullPointerException("item");
+        }
+        long index;
+        do {
+            index = producerIndex.get();
+            if (index - consumerIndex.get() > mask) {
+                return false;
+            }
+        } while (!producerIndex.compareAndSet(index, index + 1));
+        // The consumer cleared this slot before moving past it, so it is empty.
+        slots.lazySet((int) index & mask, item);
+        return true;
+    }
+
+    /**
+     * Removes items from the buffer, oldest first, and passes each to a consumer. Stops early at an item a producer
+     * has claimed a slot for but not yet published.
+     * @param consumer Receives each item removed.
+     * @param limit The most items to remove.
+     * @return The number of items removed.
+     */
+    public int drain(Consumer<? super E> consumer, int limit) {
+        final long start = consumerIndex.get();
+        int drained = 0;
+        while (drained < limit) {
+            final int slot = (int) (start + drained) & mask;
+            final E item = slots.get(slot);
+            if (item == null) {
+                break;
+            }
+            slots.lazySet(slot, null);
+            // Publishes the cleared slot to producers along with the new index.
+            consumerIndex.lazySet(start + drained + 1);
+            drained++;
+            consumer.accept(item);
+        }
+        return drained;
+    }
+
+    /**
+     * The approximate number of items in the buffer, including claimed slots that are not yet published.
+     * @return the size
+     */
+    public int size() {
+        final long size = producerIndex.get() - consumerIndex.get();
+        return (int) Math.max(0, Math.min(size, capacity()));
+    }
+
+    /**
+     * The most items the buffer holds.
+     * @return the capacity
+     */
+    public int capacity() {
+        return mask + 1;
+    }
+}
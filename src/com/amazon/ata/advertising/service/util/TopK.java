@@ -0,0 +1,73 @@
+package com.amazon.ata.advertising.service.util;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.PriorityQueue;
+
+/**
+ * Keeps the k greatest items offered to it, using a min-heap that never holds more than k items. Selecting from n
+ * items takes O(n log k) time and O(k) space, instead of sorting all n.
+ * @param <T> The type of item being selected.
+ */
+public class TopK<T> {
+    private final int k;
+    private final Comparator<? super T> order;
+    private final PriorityQueue<T> heap;
+
+    /**
+     * Creates an empty selection.
+     * @param k The number of items to keep.
+     * @param order Orders the items; the greatest items are kept. Must not consider distinct items equal if the
+     *              result is to be deterministic.
+     */
+    public TopK(int k, Comparator<? super T> order) {
+        if (k < 0) {
+            throw new IllegalArgumentException("k cannot be negative, was " + k);
+        }
+        this.k = k;
+        this.order = order;
+        this.heap = new PriorityQueue<>(Math.max(1, Math.min(k, 64)), order);
+    }
+
+    /**
+     * Selects the k greatest items.
+     * @param items The items to select from.
+     * @param k The number of items to keep.
+     * @param order Orders the items; the greatest items are kept.
+     * @param <T> The type of item being selected.
+     * @return At most k items, greatest first.
+     */
+    public static <T> List<T> greatest(Iterable<T> items, int k, Comparator<? super T> order) {
+        TopK<T> topK = new TopK<>(k, order);
+        for (T item : items) {
+            topK.offer(item);
+        }
+        return topK.toList();
+    }
+
+    /**
+     * Considers an item for the selection, evicting the smallest kept item if this one is greater and the selection
+     * is full.
+     * @param item The item to consider.
+     */
+    public void offer(T item) {
+        if (heap.size() < k) {
+            heap.add(item);
+        } else if (k > 0 && order.compare(item, heap.peek()) > 0) {
+            heap.poll();
+            heap.add(item);
+        }
+    }
+
+    /**
+     * The items kept so far.
+     * @return At most k items, greatest first.
+     */
+    public List<T> toList() {
+        List<T> items = new ArrayList<>(heap);
+        items.sort(Collections.reverseOrder(order));
+        return items;
+    }
+}
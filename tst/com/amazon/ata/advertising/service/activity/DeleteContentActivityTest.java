@@ -5,22 +5,37 @@ import com.amazon.ata.advertising.service.model.requests.DeleteContentRequest;
 import com.amazon.ata.advertising.service.model.responses.DeleteContentResponse;
 import com.amazon.ata.advertising.service.dao.ContentDao;
 import com.amazon.ata.advertising.service.dao.TargetingGroupDao;
+import com.amazon.ata.advertising.service.model.AdvertisementContent;
+import com.amazon.ata.advertising.service.targeting.TargetingGroup;
+import com.amazonaws.services.dynamodbv2.AmazonDynamoDB;
+import com.amazonaws.services.dynamodbv2.datamodeling.DynamoDBMapper;
+import com.amazonaws.services.dynamodbv2.datamodeling.TransactionWriteRequest;
+import com.amazonaws.services.dynamodbv2.model.CancellationReason;
+import com.amazonaws.services.dynamodbv2.model.TransactionCanceledException;
 
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
 
+import java.util.Collections;
+import java.util.List;
 import java.util.UUID;
 
 import static org.junit.jupiter.api.Assertions.assertNotNull;
 import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 import static org.mockito.MockitoAnnotations.initMocks;
 
 public class DeleteContentActivityTest {
     private static final String CONTENT_ID = UUID.randomUUID().toString();
+    private static final List<TargetingGroup> TARGETING_GROUPS = Collections.singletonList(
+            new TargetingGroup(UUID.randomUUID().toString(), CONTENT_ID, 1.0, Collections.emptyList()));
 
     @Mock
     private ContentDao contentDao;
@@ -34,6 +49,7 @@ public class DeleteContentActivityTest {
     @BeforeEach
     public void setup() {
         initMocks(this);
+        when(targetingGroupDao.get(CONTENT_ID)).thenReturn(TARGETING_GROUPS);
     }
 
     @Test
@@ -42,7 +58,7 @@ public class DeleteContentActivityTest {
         DeleteContentRequest request = DeleteContentRequest.builder()
                 .withContentId(CONTENT_ID)
                 .build();
-        when(contentDao.delete(CONTENT_ID)).thenThrow(new AdvertisementClientException("FAIL"));
+        doThrow(new AdvertisementClientException("FAIL")).when(contentDao).delete(CONTENT_ID, TARGETING_GROUPS);
 
         // WHEN && THEN
         assertThrows(AdvertisementClientException.class, () -> deleteContentActivity.deleteContent(request),
@@ -50,6 +66,28 @@ public class DeleteContentActivityTest {
                 "provided contentId: " + CONTENT_ID);
     }
 
+    @Test
+    public void deleteContent_contentDoesNotExist_throwsException() {
+        // GIVEN - a real ContentDao, whose delete transaction fails the check that the content exists
+        DynamoDBMapper mapper = mock(DynamoDBMapper.class);
+        AmazonDynamoDB dynamoDb = mock(AmazonDynamoDB.class);
+        when(mapper.getTableModel(AdvertisementContent.class))
+                .thenReturn(new DynamoDBMapper(dynamoDb).getTableModel(AdvertisementContent.class));
+        doThrow(new TransactionCanceledException("cancelled").withCancellationReasons(
+                new CancellationReason().withCode("ConditionalCheckFailed"), new CancellationReason().withCode("None")))
+                .when(mapper).transactionWrite(any(TransactionWriteRequest.class));
+        DeleteContentActivity activity = new DeleteContentActivity(new ContentDao(mapper, dynamoDb), targetingGroupDao);
+        DeleteContentRequest request = DeleteContentRequest.builder()
+                .withContentId(CONTENT_ID)
+                .build();
+
+        // WHEN && THEN
+        assertThrows(AdvertisementClientException.class, () -> activity.deleteContent(request),
+            "Expected an AdvertisementClientException to be thrown when no content can be found for" +
+                "provided contentId: " + CONTENT_ID);
+        verify(mapper, never()).batchDelete(any(List.class));
+    }
+
     @Test
     public void deleteContent_contentIdExists_contentAndTargetingDeleted() {
         // GIVEN
@@ -62,7 +100,6 @@ public class DeleteContentActivityTest {
 
         // THEN
         assertNotNull(response, "Expected a non-null response from the api.");
-        verify(targetingGroupDao).delete(CONTENT_ID);
-        verify(contentDao).delete(CONTENT_ID);
+        verify(contentDao).delete(CONTENT_ID, TARGETING_GROUPS);
     }
 }
@@ -1,7 +1,10 @@
 package com.amazon.ata.advertising.service.activity;
 
+import com.amazon.ata.advertising.service.exceptions.AdvertisementClientException;
 import com.amazon.ata.advertising.service.model.requests.GenerateAdvertisementRequest;
+import com.amazon.ata.advertising.service.model.requests.GenerateAdvertisementsRequest;
 import com.amazon.ata.advertising.service.model.responses.GenerateAdvertisementResponse;
+import com.amazon.ata.advertising.service.model.responses.GenerateAdvertisementsResponse;
 import com.amazon.ata.advertising.service.businesslogic.AdvertisementSelectionLogic;
 import com.amazon.ata.advertising.service.model.AdvertisementContent;
 import com.amazon.ata.advertising.service.model.EmptyGeneratedAdvertisement;
@@ -11,10 +14,15 @@ import org.junit.jupiter.api.Test;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
 
+import java.time.Duration;
+import java.util.Arrays;
 import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
 import static org.mockito.Mockito.when;
 import static org.mockito.MockitoAnnotations.initMocks;
 
@@ -69,6 +77,32 @@ public class GenerateAdActivityTest {
         assertEquals("", response.getAdvertisement().getContent());
     }
 
+    @Test
+    public void testGenerateAd_withRemainingTime_selectsWithinBudget() {
+        // GIVEN
+        when(adSelectionService.selectAdvertisementAsync(CUSTOMER_ID, MARKETPLACE_ID, Duration.ofMillis(950)))
+            .thenReturn(CompletableFuture.completedFuture(GENERATED_ADVERTISEMENT));
+
+        // WHEN
+        final GenerateAdvertisementResponse response = activity.generateAd(REQUEST, Duration.ofSeconds(1));
+
+        // THEN
+        assertEquals(GENERATED_ADVERTISEMENT.getId(), response.getAdvertisement().getId());
+    }
+
+    @Test
+    public void testGenerateAd_remainingTimeShorterThanReserve_selectsWithNoTimeLeft() {
+        // GIVEN
+        when(adSelectionService.selectAdvertisementAsync(CUSTOMER_ID, MARKETPLACE_ID, Duration.ZERO))
+            .thenReturn(CompletableFuture.completedFuture(EMPTY_GENERATED_ADVERTISEMENT));
+
+        // WHEN
+        final GenerateAdvertisementResponse response = activity.generateAd(REQUEST, Duration.ofMillis(10));
+
+        // THEN
+        assertEquals(EMPTY_GENERATED_ADVERTISEMENT.getId(), response.getAdvertisement().getId());
+    }
+
     @Test
     public void whenExceptionThrown_emptyAdvertisementReturned() {
         when(adSelectionService.selectAdvertisement(CUSTOMER_ID, MARKETPLACE_ID)).thenThrow(new RuntimeException());
@@ -77,4 +111,42 @@ public class GenerateAdActivityTest {
         assertNotNull(response.getAdvertisement());
         assertEquals("", response.getAdvertisement().getContent());
     }
+
+    @Test
+    public void testGenerateAds_advertisementsReturnedInOrder() {
+        GenerateAdvertisementsRequest request = GenerateAdvertisementsRequest.builder()
+                .withCustomerId(CUSTOMER_ID)
+                .withMarketplaceId(MARKETPLACE_ID)
+                .withNumberOfAdvertisements(2)
+                .build();
+        GeneratedAdvertisement secondAd = new GeneratedAdvertisement(AdvertisementContent.builder()
+                .withRenderableContent(RENDERABLE_CONTENT)
+                .withContentId(UUID.randomUUID().toString())
+                .build());
+        when(adSelectionService.selectAdvertisements(CUSTOMER_ID, MARKETPLACE_ID, 2))
+                .thenReturn(Arrays.asList(GENERATED_ADVERTISEMENT, secondAd));
+
+        final GenerateAdvertisementsResponse response = activity.generateAds(request);
+
+        assertEquals(2, response.getAdvertisements().size());
+        assertEquals(GENERATED_ADVERTISEMENT.getId(), response.getAdvertisements().get(0).getId());
+        assertEquals(secondAd.getId(), response.getAdvertisements().get(1).getId());
+    }
+
+    @Test
+    public void testGenerateAds_exceptionThrown_emptyListReturned() {
+        GenerateAdvertisementsRequest request = new GenerateAdvertisementsRequest(CUSTOMER_ID, MARKETPLACE_ID, 3);
+        when(adSelectionService.selectAdvertisements(CUSTOMER_ID, MARKETPLACE_ID, 3)).thenThrow(new RuntimeException());
+
+        final GenerateAdvertisementsResponse response = activity.generateAds(request);
+
+        assertTrue(response.getAdvertisements().isEmpty());
+    }
+
+    @Test
+    public void testGenerateAds_zeroAdvertisementsRequested_throwsClientException() {
+        GenerateAdvertisementsRequest request = new GenerateAdvertisementsRequest(CUSTOMER_ID, MARKETPLACE_ID, 0);
+
+        assertThrows(AdvertisementClientException.class, () -> activity.generateAds(request));
+    }
 }
@@ -0,0 +1,139 @@
+package com.amazon.ata.advertising.service.activity;
+
+import com.amazon.ata.advertising.service.businesslogic.AdvertisementSelectionLogic;
+import com.amazon.ata.advertising.service.exceptions.AdvertisementClientException;
+import com.amazon.ata.advertising.service.model.AdvertisementContent;
+import com.amazon.ata.advertising.service.model.GeneratedAdvertisement;
+import com.amazon.ata.advertising.service.model.RequestContext;
+import com.amazon.ata.advertising.service.model.requests.GenerateAdvertisementBatchRequest;
+import com.amazon.ata.advertising.service.model.requests.GenerateAdvertisementRequest;
+import com.amazon.ata.advertising.service.model.responses.GenerateAdvertisementBatchResponse;
+import com.amazon.ata.advertising.service.model.responses.GenerateAdvertisementBatchResult;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.Mockito.when;
+import static org.mockito.MockitoAnnotations.initMocks;
+
+public class GenerateAdBatchActivityTest {
+
+    private static final String MARKETPLACE_ID = "1";
+    private static final String CONTENT_ID = UUID.randomUUID().toString();
+    private static final GeneratedAdvertisement GENERATED_ADVERTISEMENT = new GeneratedAdvertisement(
+            AdvertisementContent.builder()
+                    .withRenderableContent("<div class=\"ata-ad\"> Click here! </div>")
+                    .withContentId(CONTENT_ID)
+                    .build());
+
+    @Mock
+    private AdvertisementSelectionLogic adSelectionService;
+
+    @InjectMocks
+    private GenerateAdBatchActivity activity;
+
+    @BeforeEach
+    public void setup() {
+        initMocks(this);
+    }
+
+    @Test
+    public void generateAdBatch_oneRequestFails_otherResultsReturned() {
+        // GIVEN
+        CompletableFuture<GeneratedAdvertisement> failed = new CompletableFuture<>();
+        failed.completeExceptionally(new IllegalStateException("content unavailable"));
+        when(adSelectionService.selectAdvertisementsAsync(
+                Arrays.asList(new RequestContext("a", MARKETPLACE_ID), new RequestContext("b", MARKETPLACE_ID)),
+                Duration.ofMillis(950)))
+                .thenReturn(Arrays.asList(CompletableFuture.completedFuture(GENERATED_ADVERTISEMENT), failed));
+        GenerateAdvertisementBatchRequest request = GenerateAdvertisementBatchRequest.builder()
+                .withRequests(Arrays.asList(request("a"), request("b")))
+                .build();
+
+        // WHEN
+        GenerateAdvertisementBatchResponse response = activity.generateAdBatch(request, Duration.ofSeconds(1));
+
+        // THEN
+        List<GenerateAdvertisementBatchResult> results = response.getResults();
+        assertEquals(2, results.size());
+        assertEquals("a", results.get(0).getCustomerId());
+        assertEquals(GENERATED_ADVERTISEMENT.getId(), results.get(0).getAdvertisement().getId());
+        assertNull(results.get(0).getError());
+        assertEquals("b", results.get(1).getCustomerId());
+        assertEquals("", results.get(1).getAdvertisement().getContent());
+        assertEquals("content unavailable", results.get(1).getError());
+    }
+
+    @Test
+    public void generateAdBatch_nullRequest_errorResultForThatRequestOnly() {
+        // GIVEN
+        when(adSelectionService.selectAdvertisementsAsync(
+                Arrays.asList(new RequestContext("a", MARKETPLACE_ID), new RequestContext("b", MARKETPLACE_ID)),
+                Duration.ofMillis(950)))
+                .thenReturn(Arrays.asList(CompletableFuture.completedFuture(GENERATED_ADVERTISEMENT),
+                        CompletableFuture.completedFuture(GENERATED_ADVERTISEMENT)));
+        GenerateAdvertisementBatchRequest request = GenerateAdvertisementBatchRequest.builder()
+                .withRequests(Arrays.asList(request("a"), null, request("b")))
+                .build();
+
+        // WHEN
+        GenerateAdvertisementBatchResponse response = activity.generateAdBatch(request, Duration.ofSeconds(1));
+
+        // THEN
+        List<GenerateAdvertisementBatchResult> results = response.getResults();
+        assertEquals(3, results.size());
+        assertEquals(GENERATED_ADVERTISEMENT.getId(), results.get(0).getAdvertisement().getId());
+        assertEquals("", results.get(1).getAdvertisement().getContent());
+        assertEquals("A batched request must not be null.", results.get(1).getError());
+        assertEquals("b", results.get(2).getCustomerId());
+        assertEquals(GENERATED_ADVERTISEMENT.getId(), results.get(2).getAdvertisement().getId());
+        assertNull(results.get(2).getError());
+    }
+
+    @Test
+    public void generateAdBatch_emptyBatch_emptyResults() {
+        // GIVEN
+        when(adSelectionService.selectAdvertisementsAsync(Collections.emptyList(), Duration.ofMillis(950)))
+                .thenReturn(Collections.emptyList());
+
+        // WHEN
+        GenerateAdvertisementBatchResponse response = activity.generateAdBatch(
+                GenerateAdvertisementBatchRequest.builder().withRequests(Collections.emptyList()).build(),
+                Duration.ofSeconds(1));
+
+        // THEN
+        assertEquals(0, response.getResults().size());
+    }
+
+    @Test
+    public void generateAdBatch_tooManyRequests_throwsClientException() {
+        // GIVEN
+        List<GenerateAdvertisementRequest> requests = new ArrayList<>();
+        for (int i = 0; i < 501; i++) {
+            requests.add(request(String.valueOf(i)));
+        }
+
+        // WHEN + THEN
+        assertThrows(AdvertisementClientException.class, () -> activity.generateAdBatch(
+                GenerateAdvertisementBatchRequest.builder().withRequests(requests).build(), Duration.ofSeconds(1)));
+    }
+
+    private static GenerateAdvertisementRequest request(String customerId) {
+        return GenerateAdvertisementRequest.builder()
+                .withCustomerId(customerId)
+                .withMarketplaceId(MARKETPLACE_ID)
+                .build();
+    }
+}
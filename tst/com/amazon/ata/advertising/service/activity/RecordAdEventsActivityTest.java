@@ -0,0 +1,92 @@
+package com.amazon.ata.advertising.service.activity;
+
+import com.amazon.ata.advertising.service.businesslogic.ClickThroughRateAggregator;
+import com.amazon.ata.advertising.service.exceptions.AdvertisementClientException;
+import com.amazon.ata.advertising.service.model.AdEvent;
+import com.amazon.ata.advertising.service.model.AdEventType;
+import com.amazon.ata.advertising.service.model.requests.RecordAdEventsRequest;
+import com.amazon.ata.advertising.service.model.responses.RecordAdEventsResponse;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+
+import java.util.Arrays;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+import static org.mockito.MockitoAnnotations.initMocks;
+
+public class RecordAdEventsActivityTest {
+    private static final String TARGETING_GROUP_ID = "12345";
+
+    @Mock
+    private ClickThroughRateAggregator clickThroughRateAggregator;
+
+    @InjectMocks
+    private RecordAdEventsActivity recordAdEventsActivity;
+
+    @BeforeEach
+    public void setup() {
+        initMocks(this);
+    }
+
+    @Test
+    public void recordAdEvents_bufferFillsUp_reportsAcceptedAndDroppedEvents() {
+        // GIVEN
+        when(clickThroughRateAggregator.record(TARGETING_GROUP_ID, AdEventType.IMPRESSION)).thenReturn(true);
+        when(clickThroughRateAggregator.record(TARGETING_GROUP_ID, AdEventType.CLICK)).thenReturn(false);
+        RecordAdEventsRequest request = RecordAdEventsRequest.builder()
+                .withEvents(Arrays.asList(event(AdEventType.IMPRESSION), event(AdEventType.IMPRESSION),
+                        event(AdEventType.CLICK)))
+                .build();
+
+        // WHEN
+        RecordAdEventsResponse response = recordAdEventsActivity.recordAdEvents(request);
+
+        // THEN
+        assertEquals(2, response.getAcceptedCount());
+        assertEquals(1, response.getDroppedCount());
+        verify(clickThroughRateAggregator).flushIfDue();
+    }
+
+    @Test
+    public void recordAdEvents_dueFlushFails_stillReportsRecordedEvents() {
+        // GIVEN
+        when(clickThroughRateAggregator.record(TARGETING_GROUP_ID, AdEventType.CLICK)).thenReturn(true);
+        when(clickThroughRateAggregator.flushIfDue()).thenThrow(new IllegalStateException("500"));
+        RecordAdEventsRequest request = RecordAdEventsRequest.builder()
+                .withEvents(Arrays.asList(event(AdEventType.CLICK)))
+                .build();
+
+        // WHEN
+        RecordAdEventsResponse response = recordAdEventsActivity.recordAdEvents(request);
+
+        // THEN
+        assertEquals(1, response.getAcceptedCount());
+        assertEquals(0, response.getDroppedCount());
+    }
+
+    @Test
+    public void recordAdEvents_eventWithoutType_recordsNothing() {
+        // GIVEN
+        RecordAdEventsRequest request = RecordAdEventsRequest.builder()
+                .withEvents(Arrays.asList(event(AdEventType.CLICK), event(null)))
+                .build();
+
+        // WHEN + THEN
+        assertThrows(AdvertisementClientException.class, () -> recordAdEventsActivity.recordAdEvents(request));
+        verify(clickThroughRateAggregator, never()).record(any(), any());
+    }
+
+    private static AdEvent event(AdEventType eventType) {
+        return AdEvent.builder()
+                .withTargetingGroupId(TARGETING_GROUP_ID)
+                .withEventType(eventType)
+                .build();
+    }
+}
@@ -1,22 +1,49 @@
 package com.amazon.ata.advertising.service.businesslogic;
 
+import com.amazon.ata.advertising.service.dao.BulkReadableDao;
 import com.amazon.ata.advertising.service.dao.ReadableDao;
+import com.amazon.ata.advertising.service.index.AdSelectionIndex;
 import com.amazon.ata.advertising.service.model.AdvertisementContent;
 import com.amazon.ata.advertising.service.model.EmptyGeneratedAdvertisement;
 import com.amazon.ata.advertising.service.model.GeneratedAdvertisement;
+import com.amazon.ata.advertising.service.model.RequestContext;
+import com.amazon.ata.advertising.service.targeting.CustomerSignalsFactory;
+import com.amazon.ata.advertising.service.targeting.PredicateResultMemo;
+import com.amazon.ata.advertising.service.targeting.PredicateStatistics;
+import com.amazon.ata.advertising.service.targeting.TargetingEvaluatorFactory;
 import com.amazon.ata.advertising.service.targeting.TargetingGroup;
+import com.amazon.ata.advertising.service.targeting.predicate.RecognizedTargetingPredicate;
+import com.amazon.ata.advertising.service.targeting.predicate.TargetingPredicate;
+import com.amazon.ata.advertising.service.targeting.predicate.TargetingPredicateResult;
+import com.amazon.ata.advertising.service.util.BoundedExecutor;
+import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.mockito.Mock;
 
+import java.time.Duration;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Random;
 import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.stream.Collectors;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
 import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 import static org.mockito.MockitoAnnotations.initMocks;
 
@@ -39,21 +66,40 @@ public class AdvertisementSelectionLogicTest {
     private ReadableDao<String, List<AdvertisementContent>> contentDao;
 
     @Mock
-    private ReadableDao<String, List<TargetingGroup>> targetingGroupDao;
+    private BulkReadableDao<String, List<TargetingGroup>> targetingGroupDao;
+
+    @Mock
+    private CustomerSignalsFactory customerSignalsFactory;
 
     @Mock
     private Random random;
 
-    private AdvertisementSelectionLogic adSelectionService;
+    private ExecutorService evaluationExecutor;
+
+    private ScheduledExecutorService deadlineScheduler;
+
+    private SelectionMetrics selectionMetrics;
 
+    private AdvertisementSelectionLogic adSelectionService;
 
     @BeforeEach
     public void setup() {
         initMocks(this);
-        adSelectionService = new AdvertisementSelectionLogic(contentDao, targetingGroupDao);
+        when(customerSignalsFactory.prefetch(any())).thenAnswer(invocation -> invocation.getArgument(0));
+        when(customerSignalsFactory.prefetchAll(any())).thenAnswer(invocation -> invocation.getArgument(0));
+        evaluationExecutor = Executors.newFixedThreadPool(2);
+        deadlineScheduler = Executors.newSingleThreadScheduledExecutor();
+        selectionMetrics = new SelectionMetrics();
+        adSelectionService = newSelectionLogic(SelectionMode.BEST_FIRST);
         adSelectionService.setRandom(random);
     }
 
+    @AfterEach
+    public void tearDown() {
+        evaluationExecutor.shutdownNow();
+        deadlineScheduler.shutdownNow();
+    }
+
     @Test
     public void selectAdvertisement_nullMarketplaceId_EmptyAdReturned() {
         GeneratedAdvertisement ad = adSelectionService.selectAdvertisement(CUSTOMER_ID, null);
@@ -82,7 +128,8 @@ public class AdvertisementSelectionLogicTest {
         when(contentDao.get(MARKETPLACE_ID)).thenReturn(contents);
         when(random.nextInt(contents.size())).thenReturn(0);
         List<TargetingGroup> groups = Arrays.asList(GROUP1);
-        when(targetingGroupDao.get(CONTENT_ID1)).thenReturn(groups);
+        when(targetingGroupDao.getAll(Collections.singletonList(CONTENT_ID1)))
+                .thenReturn(Collections.singletonMap(CONTENT_ID1, groups));
         GeneratedAdvertisement ad = adSelectionService.selectAdvertisement(CUSTOMER_ID, MARKETPLACE_ID);
 
         assertEquals(CONTENT_ID1, ad.getContent().getContentId());
@@ -98,4 +145,368 @@ public class AdvertisementSelectionLogicTest {
         assertEquals(CONTENT_ID2, ad.getContent().getContentId());
     }
 
+    @Test
+    public void selectAdvertisements_tiedClickThroughRates_returnsTopKBestFirstWithTiesByContentId() {
+        // GIVEN
+        List<AdvertisementContent> contents = Arrays.asList(CONTENT1, CONTENT2, CONTENT3, CONTENT4);
+        when(contentDao.get(MARKETPLACE_ID)).thenReturn(contents);
+        Map<String, List<TargetingGroup>> groups = new HashMap<>();
+        groups.put(CONTENT_ID1, Collections.singletonList(eligibleGroup(CONTENT_ID1, 0.5)));
+        groups.put(CONTENT_ID2, Collections.singletonList(eligibleGroup(CONTENT_ID2, 0.9)));
+        groups.put(CONTENT_ID3, Collections.singletonList(eligibleGroup(CONTENT_ID3, 0.5)));
+        groups.put(CONTENT_ID4, Collections.singletonList(eligibleGroup(CONTENT_ID4, 0.1)));
+        when(targetingGroupDao.getAll(Arrays.asList(CONTENT_ID1, CONTENT_ID2, CONTENT_ID3, CONTENT_ID4)))
+                .thenReturn(groups);
+        String firstTied = CONTENT_ID1.compareTo(CONTENT_ID3) < 0 ? CONTENT_ID1 : CONTENT_ID3;
+
+        // WHEN
+        List<GeneratedAdvertisement> ads = adSelectionService.selectAdvertisements(CUSTOMER_ID, MARKETPLACE_ID, 3);
+
+        // THEN
+        assertEquals(3, ads.size());
+        assertEquals(CONTENT_ID2, ads.get(0).getContent().getContentId());
+        assertEquals(firstTied, ads.get(1).getContent().getContentId());
+        assertNotEquals(CONTENT_ID4, ads.get(2).getContent().getContentId());
+    }
+
+    @Test
+    public void selectAdvertisements_nullMarketplaceId_emptyListReturned() {
+        assertTrue(adSelectionService.selectAdvertisements(CUSTOMER_ID, null, 3).isEmpty());
+    }
+
+    private static TargetingGroup eligibleGroup(String contentId, double clickThroughRate) {
+        return TargetingGroup.builder()
+                .withContentId(contentId)
+                .withClickThroughRate(clickThroughRate)
+                .withTargetingPredicates(Collections.emptyList())
+                .build();
+    }
+
+    @Test
+    public void selectAdvertisement_bestFirst_stopsAtFirstEligibleGroup() {
+        // GIVEN
+        when(contentDao.get(MARKETPLACE_ID)).thenReturn(Arrays.asList(CONTENT1, CONTENT2, CONTENT3));
+        Map<String, List<TargetingGroup>> groups = new HashMap<>();
+        groups.put(CONTENT_ID1, Arrays.asList(eligibleGroup(CONTENT_ID1, 0.2), eligibleGroup(CONTENT_ID1, 0.4)));
+        groups.put(CONTENT_ID2, Collections.singletonList(eligibleGroup(CONTENT_ID2, 0.9)));
+        groups.put(CONTENT_ID3, Collections.singletonList(eligibleGroup(CONTENT_ID3, 0.6)));
+        when(targetingGroupDao.getAll(Arrays.asList(CONTENT_ID1, CONTENT_ID2, CONTENT_ID3))).thenReturn(groups);
+
+        // WHEN
+        GeneratedAdvertisement ad = adSelectionService.selectAdvertisement(CUSTOMER_ID, MARKETPLACE_ID);
+
+        // THEN
+        assertEquals(CONTENT_ID2, ad.getContent().getContentId());
+        assertEquals(1, selectionMetrics.getGroupsEvaluatedCount());
+        assertEquals(4, selectionMetrics.getGroupsAvailableCount());
+    }
+
+    @Test
+    public void selectAdvertisement_severalSelections_recordsGroupsEvaluatedByEach() {
+        // GIVEN - the best group of the first marketplace is not eligible, so its selection evaluates two groups
+        String otherMarketplaceId = "2";
+        when(contentDao.get(MARKETPLACE_ID)).thenReturn(Arrays.asList(CONTENT1, CONTENT2));
+        when(contentDao.get(otherMarketplaceId)).thenReturn(Collections.singletonList(CONTENT3));
+        Map<String, List<TargetingGroup>> groups = new HashMap<>();
+        groups.put(CONTENT_ID1, Collections.singletonList(eligibleGroup(CONTENT_ID1, 0.2)));
+        groups.put(CONTENT_ID2, Collections.singletonList(TargetingGroup.builder()
+                .withContentId(CONTENT_ID2)
+                .withClickThroughRate(0.9)
+                .withTargetingPredicates(Collections.singletonList(new RecognizedTargetingPredicate(true)))
+                .build()));
+        when(targetingGroupDao.getAll(Arrays.asList(CONTENT_ID1, CONTENT_ID2))).thenReturn(groups);
+        when(targetingGroupDao.getAll(Collections.singletonList(CONTENT_ID3)))
+                .thenReturn(Collections.singletonMap(CONTENT_ID3,
+                        Collections.singletonList(eligibleGroup(CONTENT_ID3, 0.5))));
+
+        // WHEN
+        adSelectionService.selectAdvertisement(CUSTOMER_ID, MARKETPLACE_ID);
+        adSelectionService.selectAdvertisement(CUSTOMER_ID, otherMarketplaceId);
+
+        // THEN
+        assertEquals(1, selectionMetrics.getGroupsEvaluatedPercentile(0.5));
+        assertEquals(2, selectionMetrics.getGroupsEvaluatedPercentile(1.0));
+    }
+
+    @Test
+    public void selectAdvertisement_evaluationExecutorSaturated_groupNotEligible() throws InterruptedException {
+        // GIVEN - the executor's only thread and queue slot are taken, and it refuses anything more
+        BoundedExecutor saturated = new BoundedExecutor("saturated", 1, 1, BoundedExecutor.RejectionPolicy.ABORT);
+        CountDownLatch release = new CountDownLatch(1);
+        saturated.execute(() -> {
+            try {
+                release.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        });
+        saturated.execute(() -> { });
+        evaluationExecutor.shutdownNow();
+        evaluationExecutor = saturated;
+        adSelectionService = newSelectionLogic(SelectionMode.EXHAUSTIVE);
+        when(contentDao.get(MARKETPLACE_ID)).thenReturn(Collections.singletonList(CONTENT1));
+        when(targetingGroupDao.getAll(Collections.singletonList(CONTENT_ID1)))
+                .thenReturn(Collections.singletonMap(CONTENT_ID1, Collections.singletonList(TargetingGroup.builder()
+                        .withContentId(CONTENT_ID1)
+                        .withTargetingPredicates(Collections.singletonList(new RecognizedTargetingPredicate(false)))
+                        .build())));
+
+        // WHEN
+        GeneratedAdvertisement ad;
+        try {
+            ad = adSelectionService.selectAdvertisement(CUSTOMER_ID, MARKETPLACE_ID);
+        } finally {
+            release.countDown();
+        }
+
+        // THEN
+        assertTrue(ad instanceof EmptyGeneratedAdvertisement);
+        assertEquals(1, saturated.getRejectedTaskCount());
+    }
+
+    @Test
+    public void selectAdvertisements_randomMarketplaces_everyModeMatchesExhaustive() {
+        AdvertisementSelectionLogic exhaustive = newSelectionLogic(SelectionMode.EXHAUSTIVE);
+        AdvertisementSelectionLogic indexed = newSelectionLogic(SelectionMode.INDEXED);
+        AdvertisementSelectionLogic compiled = newSelectionLogic(SelectionMode.COMPILED);
+        Random seeded = new Random(7);
+        for (int marketplace = 0; marketplace < 50; marketplace++) {
+            // GIVEN - groups pass or fail depending on whether their predicate is inverted
+            String marketplaceId = String.valueOf(marketplace);
+            List<AdvertisementContent> contents = new ArrayList<>();
+            Map<String, List<TargetingGroup>> groups = new HashMap<>();
+            for (int i = seeded.nextInt(8); i > 0; i--) {
+                String contentId = UUID.randomUUID().toString();
+                contents.add(AdvertisementContent.builder().withContentId(contentId).build());
+                List<TargetingGroup> contentGroups = new ArrayList<>();
+                for (int j = seeded.nextInt(4); j > 0; j--) {
+                    contentGroups.add(TargetingGroup.builder()
+                            .withContentId(contentId)
+                            .withClickThroughRate(seeded.nextInt(5) / 4.0)
+                            .withTargetingPredicates(Collections.singletonList(
+                                    new RecognizedTargetingPredicate(seeded.nextBoolean())))
+                            .build());
+                }
+                groups.put(contentId, contentGroups);
+            }
+            when(contentDao.get(marketplaceId)).thenReturn(contents);
+            when(targetingGroupDao.getAll(any())).thenReturn(groups);
+            int k = 1 + seeded.nextInt(4);
+
+            // WHEN
+            List<String> bestFirstIds =
+                    contentIds(adSelectionService.selectAdvertisements(CUSTOMER_ID, marketplaceId, k));
+            List<String> exhaustiveIds = contentIds(exhaustive.selectAdvertisements(CUSTOMER_ID, marketplaceId, k));
+            List<String> indexedIds = contentIds(indexed.selectAdvertisements(CUSTOMER_ID, marketplaceId, k));
+            List<String> compiledIds = contentIds(compiled.selectAdvertisements(CUSTOMER_ID, marketplaceId, k));
+
+            // THEN
+            assertEquals(exhaustiveIds, bestFirstIds, "marketplace " + marketplaceId);
+            assertEquals(exhaustiveIds, indexedIds, "marketplace " + marketplaceId);
+            assertEquals(exhaustiveIds, compiledIds, "marketplace " + marketplaceId);
+        }
+        assertTrue(selectionMetrics.getGroupsEvaluatedCount() <= selectionMetrics.getGroupsAvailableCount());
+    }
+
+    @Test
+    public void selectAdvertisementAsync_randomMarketplaces_everyModeMatchesSynchronousSelection() {
+        Map<SelectionMode, AdvertisementSelectionLogic> selectionLogics = new HashMap<>();
+        for (SelectionMode selectionMode : SelectionMode.values()) {
+            selectionLogics.put(selectionMode, newSelectionLogic(selectionMode));
+        }
+        Random seeded = new Random(11);
+        for (int marketplace = 0; marketplace < 30; marketplace++) {
+            // GIVEN - groups pass or fail depending on whether their predicate is inverted
+            String marketplaceId = String.valueOf(marketplace);
+            List<AdvertisementContent> contents = new ArrayList<>();
+            Map<String, List<TargetingGroup>> groups = new HashMap<>();
+            for (int i = seeded.nextInt(8); i > 0; i--) {
+                String contentId = UUID.randomUUID().toString();
+                contents.add(AdvertisementContent.builder().withContentId(contentId).build());
+                List<TargetingGroup> contentGroups = new ArrayList<>();
+                for (int j = seeded.nextInt(4); j > 0; j--) {
+                    contentGroups.add(TargetingGroup.builder()
+                            .withContentId(contentId)
+                            .withClickThroughRate(seeded.nextInt(5) / 4.0)
+                            .withTargetingPredicates(Collections.singletonList(
+                                    new RecognizedTargetingPredicate(seeded.nextBoolean())))
+                            .build());
+                }
+                groups.put(contentId, contentGroups);
+            }
+            when(contentDao.get(marketplaceId)).thenReturn(contents);
+            when(targetingGroupDao.getAll(any())).thenReturn(groups);
+            List<String> expectedIds = contentIds(selectionLogics.get(SelectionMode.EXHAUSTIVE)
+                    .selectAdvertisements(CUSTOMER_ID, marketplaceId, 1));
+
+            for (SelectionMode selectionMode : SelectionMode.values()) {
+                // WHEN
+                GeneratedAdvertisement ad = selectionLogics.get(selectionMode)
+                        .selectAdvertisementAsync(CUSTOMER_ID, marketplaceId, Duration.ofSeconds(10))
+                        .join();
+
+                // THEN
+                List<String> adIds = ad instanceof EmptyGeneratedAdvertisement ?
+                        Collections.emptyList() : Collections.singletonList(ad.getContent().getContentId());
+                assertEquals(expectedIds, adIds, selectionMode + " marketplace " + marketplaceId);
+            }
+        }
+        assertEquals(0, selectionMetrics.getTruncatedSelectionCount());
+    }
+
+    @Test
+    public void selectAdvertisementAsync_beforeDeadline_returnsBestEligibleAd() {
+        // GIVEN
+        when(contentDao.get(MARKETPLACE_ID)).thenReturn(Arrays.asList(CONTENT1, CONTENT2, CONTENT3));
+        Map<String, List<TargetingGroup>> groups = new HashMap<>();
+        groups.put(CONTENT_ID1, Collections.singletonList(eligibleGroup(CONTENT_ID1, 0.2)));
+        groups.put(CONTENT_ID2, Collections.singletonList(TargetingGroup.builder()
+                .withContentId(CONTENT_ID2)
+                .withClickThroughRate(0.9)
+                .withTargetingPredicates(Collections.singletonList(new RecognizedTargetingPredicate(true)))
+                .build()));
+        groups.put(CONTENT_ID3, Collections.singletonList(eligibleGroup(CONTENT_ID3, 0.6)));
+        when(targetingGroupDao.getAll(Arrays.asList(CONTENT_ID1, CONTENT_ID2, CONTENT_ID3))).thenReturn(groups);
+
+        // WHEN
+        GeneratedAdvertisement ad = adSelectionService
+                .selectAdvertisementAsync(CUSTOMER_ID, MARKETPLACE_ID, Duration.ofSeconds(10))
+                .join();
+
+        // THEN
+        assertEquals(CONTENT_ID3, ad.getContent().getContentId());
+        assertEquals(1, selectionMetrics.getDeadlineSelectionCount());
+        assertEquals(0, selectionMetrics.getTruncatedSelectionCount());
+    }
+
+    @Test
+    public void selectAdvertisementAsync_deadlinePasses_returnsBestConfirmedAd() {
+        // GIVEN - the best group's predicate does not finish until the test releases it
+        CountDownLatch release = new CountDownLatch(1);
+        TargetingPredicate slowPredicate = mock(TargetingPredicate.class);
+        when(slowPredicate.evaluate(any())).thenAnswer(invocation -> {
+            release.await();
+            return TargetingPredicateResult.TRUE;
+        });
+        when(contentDao.get(MARKETPLACE_ID)).thenReturn(Arrays.asList(CONTENT1, CONTENT2));
+        Map<String, List<TargetingGroup>> groups = new HashMap<>();
+        groups.put(CONTENT_ID1, Collections.singletonList(eligibleGroup(CONTENT_ID1, 0.2)));
+        groups.put(CONTENT_ID2, Collections.singletonList(TargetingGroup.builder()
+                .withContentId(CONTENT_ID2)
+                .withClickThroughRate(0.9)
+                .withTargetingPredicates(Collections.singletonList(slowPredicate))
+                .build()));
+        when(targetingGroupDao.getAll(Arrays.asList(CONTENT_ID1, CONTENT_ID2))).thenReturn(groups);
+
+        // WHEN
+        GeneratedAdvertisement ad;
+        try {
+            ad = adSelectionService.selectAdvertisementAsync(CUSTOMER_ID, MARKETPLACE_ID, Duration.ofMillis(100))
+                    .join();
+        } finally {
+            release.countDown();
+        }
+
+        // THEN
+        assertEquals(CONTENT_ID1, ad.getContent().getContentId());
+        assertEquals(1, selectionMetrics.getTruncatedSelectionCount());
+        assertEquals(1.0, selectionMetrics.getTruncationRate());
+    }
+
+    @Test
+    public void selectAdvertisementAsync_evaluationExecutorSaturated_groupRefusedInsteadOfRunOnCaller() {
+        // GIVEN - the executor would run anything more on the submitting thread
+        BoundedExecutor saturated =
+                new BoundedExecutor("saturated", 1, 1, BoundedExecutor.RejectionPolicy.CALLER_RUNS);
+        CountDownLatch release = new CountDownLatch(1);
+        saturated.execute(() -> {
+            try {
+                release.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        });
+        saturated.execute(() -> { });
+        evaluationExecutor.shutdownNow();
+        evaluationExecutor = saturated;
+        adSelectionService = newSelectionLogic(SelectionMode.EXHAUSTIVE);
+        Thread caller = Thread.currentThread();
+        TargetingPredicate predicate = mock(TargetingPredicate.class);
+        when(predicate.evaluate(any())).thenAnswer(invocation -> Thread.currentThread() == caller ?
+                TargetingPredicateResult.TRUE : TargetingPredicateResult.FALSE);
+        when(contentDao.get(MARKETPLACE_ID)).thenReturn(Collections.singletonList(CONTENT1));
+        when(targetingGroupDao.getAll(Collections.singletonList(CONTENT_ID1)))
+                .thenReturn(Collections.singletonMap(CONTENT_ID1, Collections.singletonList(TargetingGroup.builder()
+                        .withContentId(CONTENT_ID1)
+                        .withTargetingPredicates(Collections.singletonList(predicate))
+                        .build())));
+
+        // WHEN
+        GeneratedAdvertisement ad;
+        try {
+            ad = adSelectionService.selectAdvertisementAsync(CUSTOMER_ID, MARKETPLACE_ID, Duration.ofSeconds(10))
+                    .join();
+        } finally {
+            release.countDown();
+        }
+
+        // THEN
+        assertTrue(ad instanceof EmptyGeneratedAdvertisement);
+        assertEquals(1, saturated.getRejectedTaskCount());
+        assertEquals(0, selectionMetrics.getTruncatedSelectionCount());
+    }
+
+    @Test
+    public void selectAdvertisementAsync_nullMarketplaceId_emptyAdReturned() {
+        GeneratedAdvertisement ad = adSelectionService
+                .selectAdvertisementAsync(CUSTOMER_ID, null, Duration.ofSeconds(1))
+                .join();
+        assertTrue(ad instanceof EmptyGeneratedAdvertisement);
+    }
+
+    @Test
+    public void selectAdvertisementsAsync_batch_loadsEachMarketplaceOnceAndSelectsPerRequest() {
+        // GIVEN
+        String otherMarketplaceId = "2";
+        when(contentDao.get(MARKETPLACE_ID)).thenReturn(Collections.singletonList(CONTENT1));
+        when(contentDao.get(otherMarketplaceId)).thenReturn(Collections.singletonList(CONTENT2));
+        when(targetingGroupDao.getAll(Collections.singletonList(CONTENT_ID1)))
+                .thenReturn(Collections.singletonMap(CONTENT_ID1,
+                        Collections.singletonList(eligibleGroup(CONTENT_ID1, 0.5))));
+        when(targetingGroupDao.getAll(Collections.singletonList(CONTENT_ID2)))
+                .thenReturn(Collections.singletonMap(CONTENT_ID2,
+                        Collections.singletonList(eligibleGroup(CONTENT_ID2, 0.5))));
+        List<RequestContext> batch = Arrays.asList(
+                new RequestContext(CUSTOMER_ID, MARKETPLACE_ID),
+                new RequestContext("C789D012", MARKETPLACE_ID),
+                new RequestContext(CUSTOMER_ID, otherMarketplaceId),
+                new RequestContext(CUSTOMER_ID, null));
+
+        // WHEN
+        List<GeneratedAdvertisement> ads = adSelectionService
+                .selectAdvertisementsAsync(batch, Duration.ofSeconds(10)).stream()
+                .map(CompletableFuture::join)
+                .collect(Collectors.toList());
+
+        // THEN
+        assertEquals(CONTENT_ID1, ads.get(0).getContent().getContentId());
+        assertEquals(CONTENT_ID1, ads.get(1).getContent().getContentId());
+        assertEquals(CONTENT_ID2, ads.get(2).getContent().getContentId());
+        assertTrue(ads.get(3) instanceof EmptyGeneratedAdvertisement);
+        verify(contentDao, times(1)).get(MARKETPLACE_ID);
+        verify(contentDao, times(1)).get(otherMarketplaceId);
+    }
+
+    private AdvertisementSelectionLogic newSelectionLogic(SelectionMode selectionMode) {
+        return new AdvertisementSelectionLogic(new AdSelectionIndex(contentDao, targetingGroupDao),
+                new TargetingEvaluatorFactory(customerSignalsFactory, evaluationExecutor, new PredicateStatistics(),
+                        new PredicateResultMemo(0, Duration.ZERO)),
+                selectionMode, selectionMetrics, deadlineScheduler);
+    }
+
+    private static List<String> contentIds(List<GeneratedAdvertisement> ads) {
+        return ads.stream()
+                .map(ad -> ad.getContent().getContentId())
+                .collect(Collectors.toList());
+    }
 }
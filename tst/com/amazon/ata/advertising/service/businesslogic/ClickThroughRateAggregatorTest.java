@@ -0,0 +1,200 @@
+package com.amazon.ata.advertising.service.businesslogic;
+
+import com.amazon.ata.advertising.service.dao.TargetingGroupDao;
+import com.amazon.ata.advertising.service.exceptions.AdvertisementClientException;
+import com.amazon.ata.advertising.service.model.AdEventType;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mock;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.anyDouble;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+import static org.mockito.MockitoAnnotations.initMocks;
+
+public class ClickThroughRateAggregatorTest {
+    private static final long MINIMUM_IMPRESSIONS = 100;
+    private static final Clock CLOCK = Clock.fixed(Instant.EPOCH, ZoneOffset.UTC);
+    private static final Duration FLUSH_INTERVAL = Duration.ofSeconds(10);
+
+    @Mock
+    private TargetingGroupDao targetingGroupDao;
+
+    private ClickThroughRateAggregator aggregator;
+
+    @BeforeEach
+    public void setup() {
+        initMocks(this);
+        aggregator = new ClickThroughRateAggregator(targetingGroupDao, Runnable::run, 1024, MINIMUM_IMPRESSIONS,
+                FLUSH_INTERVAL, CLOCK);
+    }
+
+    @Test
+    public void flush_eventsForSeveralGroups_writesEachGroupsTotalsOnce() {
+        // GIVEN
+        when(targetingGroupDao.addEvents("A", 3, 1, MINIMUM_IMPRESSIONS)).thenReturn(true);
+        record("A", AdEventType.IMPRESSION, 3);
+        record("A", AdEventType.CLICK, 1);
+        record("B", AdEventType.IMPRESSION, 2);
+        aggregator.drain();
+
+        // WHEN
+        aggregator.flush();
+
+        // THEN
+        verify(targetingGroupDao).addEvents("A", 3, 1, MINIMUM_IMPRESSIONS);
+        verify(targetingGroupDao).addEvents("B", 2, 0, MINIMUM_IMPRESSIONS);
+        assertEquals(6, aggregator.getAcceptedEventCount());
+        assertEquals(0, aggregator.getPendingEventCount());
+        assertEquals(1, aggregator.getFlushCount());
+        assertEquals(2, aggregator.getGroupsWrittenCount());
+        assertEquals(1, aggregator.getClickThroughRateUpdateCount());
+    }
+
+    @Test
+    public void flush_writeFails_retriesItsEventsWithTheNextFlush() {
+        // GIVEN
+        when(targetingGroupDao.addEvents("A", 2, 0, MINIMUM_IMPRESSIONS)).thenThrow(new IllegalStateException("500"));
+        record("A", AdEventType.IMPRESSION, 2);
+        aggregator.flush();
+        record("A", AdEventType.CLICK, 1);
+
+        // WHEN
+        aggregator.flush();
+
+        // THEN
+        verify(targetingGroupDao).addEvents("A", 2, 1, MINIMUM_IMPRESSIONS);
+        assertEquals(1, aggregator.getFailedWriteCount());
+        assertEquals(0, aggregator.getPendingEventCount());
+    }
+
+    @Test
+    public void flush_lastFlushStillWriting_leavesEventsForTheFlushAfter() {
+        // GIVEN
+        List<Runnable> writes = new ArrayList<>();
+        aggregator = new ClickThroughRateAggregator(targetingGroupDao, writes::add, 1024, MINIMUM_IMPRESSIONS,
+                FLUSH_INTERVAL, CLOCK);
+        record("A", AdEventType.IMPRESSION, 1);
+        aggregator.flush();
+        record("A", AdEventType.IMPRESSION, 4);
+
+        // WHEN
+        aggregator.flush();
+        writes.forEach(Runnable::run);
+        writes.clear();
+        aggregator.flush();
+        writes.forEach(Runnable::run);
+
+        // THEN
+        verify(targetingGroupDao).addEvents("A", 1, 0, MINIMUM_IMPRESSIONS);
+        verify(targetingGroupDao).addEvents("A", 4, 0, MINIMUM_IMPRESSIONS);
+        assertEquals(2, aggregator.getFlushCount());
+    }
+
+    @Test
+    public void flushIfDue_flushIntervalPassed_startsFlushWithoutWaitingForItsWrites() {
+        // GIVEN
+        Clock clock = mock(Clock.class);
+        when(clock.millis()).thenReturn(0L);
+        List<Runnable> writes = new ArrayList<>();
+        aggregator = new ClickThroughRateAggregator(targetingGroupDao, writes::add, 1024, MINIMUM_IMPRESSIONS,
+                FLUSH_INTERVAL, clock);
+        record("A", AdEventType.IMPRESSION, 2);
+        when(clock.millis()).thenReturn(FLUSH_INTERVAL.toMillis());
+
+        // WHEN
+        boolean flushed = aggregator.flushIfDue();
+
+        // THEN
+        assertTrue(flushed);
+        assertEquals(1, writes.size());
+        verify(targetingGroupDao, never()).addEvents(anyString(), anyLong(), anyLong(), anyLong());
+        writes.forEach(Runnable::run);
+        verify(targetingGroupDao).addEvents("A", 2, 0, MINIMUM_IMPRESSIONS);
+        assertEquals(0, aggregator.getPendingEventCount());
+        assertEquals(1, aggregator.getFlushCount());
+        assertEquals(1, aggregator.getRequestFlushCount());
+    }
+
+    @Test
+    public void flushIfDue_dueFlushAlreadyStarted_returnsWithoutStartingAnother() {
+        // GIVEN
+        Clock clock = mock(Clock.class);
+        when(clock.millis()).thenReturn(0L);
+        List<Runnable> writes = new ArrayList<>();
+        aggregator = new ClickThroughRateAggregator(targetingGroupDao, writes::add, 1024, MINIMUM_IMPRESSIONS,
+                FLUSH_INTERVAL, clock);
+        record("A", AdEventType.IMPRESSION, 2);
+        when(clock.millis()).thenReturn(FLUSH_INTERVAL.toMillis());
+        aggregator.flushIfDue();
+        record("A", AdEventType.CLICK, 1);
+
+        // WHEN
+        boolean flushed = aggregator.flushIfDue();
+
+        // THEN
+        assertFalse(flushed);
+        assertEquals(1, writes.size());
+        assertEquals(1, aggregator.getBufferedEventCount());
+        assertEquals(1, aggregator.getRequestFlushCount());
+    }
+
+    @Test
+    public void flushIfDue_flushNotDue_leavesEventsForALaterFlush() {
+        // GIVEN
+        record("A", AdEventType.CLICK, 1);
+
+        // WHEN
+        boolean flushed = aggregator.flushIfDue();
+
+        // THEN
+        assertFalse(flushed);
+        assertEquals(1, aggregator.getBufferedEventCount());
+        assertEquals(0, aggregator.getRequestFlushCount());
+        verify(targetingGroupDao, never()).addEvents(anyString(), anyLong(), anyLong(), anyLong());
+    }
+
+    @Test
+    public void record_bufferFullOrGroupDeleted_dropsEvents() {
+        // GIVEN
+        aggregator = new ClickThroughRateAggregator(targetingGroupDao, Runnable::run, 2, MINIMUM_IMPRESSIONS,
+                FLUSH_INTERVAL, CLOCK);
+        when(targetingGroupDao.addEvents(anyString(), anyLong(), anyLong(), anyLong()))
+                .thenThrow(new AdvertisementClientException("gone"));
+        record("A", AdEventType.IMPRESSION, 2);
+
+        // WHEN
+        boolean recorded = aggregator.record("A", AdEventType.CLICK);
+        aggregator.flush();
+        aggregator.flush();
+
+        // THEN
+        assertFalse(recorded);
+        assertEquals(1, aggregator.getDroppedEventCount());
+        assertEquals(2, aggregator.getDiscardedEventCount());
+        assertEquals(0, aggregator.getPendingEventCount());
+        verify(targetingGroupDao, times(1)).addEvents(anyString(), anyLong(), anyLong(), anyLong());
+        verify(targetingGroupDao, never()).update(anyString(), anyDouble());
+    }
+
+    private void record(String targetingGroupId, AdEventType eventType, int times) {
+        for (int i = 0; i < times; i++) {
+            aggregator.record(targetingGroupId, eventType);
+        }
+    }
+}
@@ -0,0 +1,347 @@
+package com.amazon.ata.advertising.service.dao;
+
+import com.github.benmanes.caffeine.cache.stats.CacheStats;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+public class CachingReadableDaoTest {
+    private static final String CACHE = "test";
+    private static final CacheSettings SETTINGS = new CacheSettings(100, Duration.ofMinutes(10), Duration.ofMinutes(1));
+
+    private ExecutorService executor;
+    private CacheStatistics cacheStatistics;
+    private AtomicLong nanos;
+    private Map<String, AtomicInteger> loads;
+    private AtomicInteger version;
+
+    @BeforeEach
+    public void setup() {
+        executor = Executors.newCachedThreadPool();
+        cacheStatistics = new CacheStatistics();
+        nanos = new AtomicLong();
+        loads = new ConcurrentHashMap<>();
+        version = new AtomicInteger(1);
+    }
+
+    @AfterEach
+    public void tearDown() {
+        executor.shutdownNow();
+    }
+
+    @Test
+    public void get_repeatedQuery_loadsOnceAndRecordsHits() {
+        // GIVEN
+        CachingReadableDao<String, String> dao = caching(SETTINGS, this::load);
+
+        // WHEN
+        dao.get("a");
+        dao.get("a");
+        dao.get("a");
+
+        // THEN
+        assertEquals(1, loads("a"));
+        CacheStats stats = cacheStatistics.getStatistics().get(CACHE);
+        assertEquals(2, stats.hitCount());
+        assertEquals(1, stats.missCount());
+        assertEquals(1, stats.loadSuccessCount());
+    }
+
+    @Test
+    public void get_concurrentLoads_shareOneLoad() throws Exception {
+        // GIVEN
+        CountDownLatch release = new CountDownLatch(1);
+        CachingReadableDao<String, String> dao = caching(SETTINGS, input -> {
+            await(release);
+            return load(input);
+        });
+
+        // WHEN
+        List<Future<String>> results = new ArrayList<>();
+        for (int i = 0; i < 8; i++) {
+            results.add(executor.submit(() -> dao.get("a")));
+        }
+        release.countDown();
+
+        // THEN
+        for (Future<String> result : results) {
+            assertEquals("a1", result.get(5, TimeUnit.SECONDS));
+        }
+        assertEquals(1, loads("a"));
+    }
+
+    @Test
+    public void invalidate_cachedQuery_nextGetReloads() {
+        // GIVEN
+        CachingReadableDao<String, String> dao = caching(SETTINGS, this::load);
+        dao.get("a");
+        dao.get("b");
+        version.set(2);
+
+        // WHEN
+        dao.invalidate("a");
+
+        // THEN
+        assertEquals("a2", dao.get("a"));
+        assertEquals("b1", dao.get("b"));
+        assertEquals(2, loads("a"));
+        assertEquals(1, loads("b"));
+    }
+
+    @Test
+    public void invalidateAll_cachedQueries_nextGetsReload() {
+        // GIVEN
+        CachingReadableDao<String, String> dao = caching(SETTINGS, this::load);
+        dao.get("a");
+        dao.get("b");
+        version.set(2);
+
+        // WHEN
+        dao.invalidateAll();
+
+        // THEN
+        assertEquals("a2", dao.get("a"));
+        assertEquals("b2", dao.get("b"));
+    }
+
+    @Test
+    public void get_afterExpiry_reloads() {
+        // GIVEN
+        CachingReadableDao<String, String> dao = caching(
+                new CacheSettings(100, Duration.ofMinutes(10), Duration.ZERO), this::load);
+        dao.get("a");
+        version.set(2);
+
+        // WHEN
+        nanos.addAndGet(Duration.ofMinutes(11).toNanos());
+
+        // THEN
+        assertEquals("a2", dao.get("a"));
+        assertEquals(2, loads("a"));
+    }
+
+    @Test
+    public void get_afterRefreshInterval_servesCachedValueWhileRefreshing() {
+        // GIVEN
+        CachingReadableDao<String, String> dao = caching(SETTINGS, this::load);
+        dao.get("a");
+        version.set(2);
+        nanos.addAndGet(Duration.ofMinutes(2).toNanos());
+
+        // WHEN
+        String refreshing = dao.get("a");
+
+        // THEN
+        assertEquals("a1", refreshing);
+        assertEquals("a2", dao.get("a"));
+        assertEquals(2, loads("a"));
+        CacheRefreshStatistics statistics = cacheStatistics.getRefreshStatistics().get(CACHE);
+        assertEquals(1, statistics.getStaleServeCount());
+        assertEquals(1, statistics.getRefreshCount());
+    }
+
+    @Test
+    public void get_refreshSlow_staleValueServedWithoutWaiting() throws Exception {
+        // GIVEN
+        CountDownLatch release = new CountDownLatch(1);
+        CachingReadableDao<String, String> dao = new CachingReadableDao<>(CACHE, input -> {
+            if (version.get() > 1) {
+                await(release);
+            }
+            return load(input);
+        }, SETTINGS, executor, cacheStatistics, nanos::get);
+        dao.get("a");
+        version.set(2);
+        nanos.addAndGet(Duration.ofMinutes(2).toNanos());
+
+        // WHEN - the refresh cannot finish until released
+        String first = dao.get("a");
+        String second = dao.get("a");
+        release.countDown();
+
+        // THEN
+        assertEquals("a1", first);
+        assertEquals("a1", second);
+        CacheRefreshStatistics statistics = cacheStatistics.getRefreshStatistics().get(CACHE);
+        assertEquals(2, statistics.getStaleServeCount());
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (!dao.get("a").equals("a2") && System.nanoTime() < deadline) {
+            Thread.sleep(1);
+        }
+        assertEquals("a2", dao.get("a"));
+        assertEquals(1, statistics.getRefreshCount());
+    }
+
+    @Test
+    public void get_pastMaximumStaleness_waitsForFreshValue() {
+        // GIVEN
+        CachingReadableDao<String, String> dao = caching(SETTINGS, this::load);
+        dao.get("a");
+        version.set(2);
+
+        // WHEN
+        nanos.addAndGet(Duration.ofMinutes(11).toNanos());
+
+        // THEN
+        assertEquals("a2", dao.get("a"));
+        assertEquals(0, cacheStatistics.getRefreshStatistics().get(CACHE).getStaleServeCount());
+    }
+
+    @Test
+    public void get_refreshFails_keepsServingStaleValue() {
+        // GIVEN
+        CachingReadableDao<String, String> dao = caching(SETTINGS, input -> {
+            if (version.get() > 1) {
+                throw new IllegalStateException("content unavailable");
+            }
+            return load(input);
+        });
+        dao.get("a");
+        version.set(2);
+        nanos.addAndGet(Duration.ofMinutes(2).toNanos());
+
+        // WHEN
+        String refreshing = dao.get("a");
+
+        // THEN - the next stale read tries to refresh again
+        assertEquals("a1", refreshing);
+        assertEquals("a1", dao.get("a"));
+        assertEquals(2, cacheStatistics.getRefreshStatistics().get(CACHE).getRefreshFailureCount());
+    }
+
+    @Test
+    public void get_scanOfOneOffQueries_doesNotEvictFrequentQuery() {
+        // GIVEN
+        CachingReadableDao<String, String> dao = caching(
+                new CacheSettings(10, Duration.ofMinutes(10), Duration.ZERO), this::load);
+        for (int i = 0; i < 10; i++) {
+            dao.get("warm" + i);
+        }
+
+        // WHEN - a hot customer is read once every 20 reads, each of the rest reads a different anonymous query
+        for (int i = 0; i < 1_000; i++) {
+            if (i % 20 == 0) {
+                dao.get("hot");
+            }
+            dao.get("anonymous" + i);
+        }
+        dao.cache.cleanUp();
+
+        // THEN - a least recently used cache of 10 entries would have evicted it between reads
+        assertEquals(1, loads("hot"));
+        assertEquals(10, dao.cache.estimatedSize());
+    }
+
+    @Test
+    public void get_negativeResults_cachedForNegativeExpiry() {
+        // GIVEN
+        CachingReadableDao<String, String> dao = caching(new CacheSettings(100, Duration.ofMinutes(10), Duration.ZERO,
+                Duration.ofHours(1)), input -> {
+                    load(input);
+                    return input.equals("unknown") ? null : input;
+                });
+        dao.get("unknown");
+        dao.get("known");
+
+        // WHEN
+        nanos.addAndGet(Duration.ofMinutes(11).toNanos());
+        assertNull(dao.get("unknown"));
+        dao.get("known");
+
+        // THEN
+        assertEquals(1, loads("unknown"));
+        assertEquals(2, loads("known"));
+    }
+
+    @Test
+    public void get_negativeExpiryZero_negativeResultsNotCached() {
+        // GIVEN
+        CachingReadableDao<String, Map<String, String>> dao = new CachingReadableDao<>(CACHE, input -> {
+            load(input);
+            return Collections.emptyMap();
+        }, new CacheSettings(100, Duration.ofMinutes(10), Duration.ZERO, Duration.ZERO),
+                Runnable::run, cacheStatistics, nanos::get);
+
+        // WHEN
+        dao.get("noSpend");
+        dao.get("noSpend");
+
+        // THEN
+        assertEquals(2, loads("noSpend"));
+    }
+
+    @Test
+    public void getAll_someQueriesCached_loadsOnlyTheRestInOneCall() {
+        // GIVEN
+        List<Collection<String>> bulkLoads = new ArrayList<>();
+        CachingBulkReadableDao<String, String> dao = new CachingBulkReadableDao<>(CACHE,
+                new BulkReadableDao<String, String>() {
+                    @Override
+                    public String get(String inputQuery) {
+                        return load(inputQuery);
+                    }
+
+                    @Override
+                    public Map<String, String> getAll(Collection<String> inputQueries) {
+                        bulkLoads.add(new ArrayList<>(inputQueries));
+                        Map<String, String> results = new HashMap<>();
+                        inputQueries.forEach(input -> results.put(input, load(input)));
+                        return results;
+                    }
+                }, SETTINGS, Runnable::run, cacheStatistics, nanos::get);
+        dao.get("a");
+
+        // WHEN
+        Map<String, String> results = dao.getAll(Arrays.asList("a", "b", "c"));
+
+        // THEN
+        assertEquals(3, results.size());
+        assertEquals("b1", results.get("b"));
+        assertEquals(1, bulkLoads.size());
+        assertEquals(Arrays.asList("b", "c"), bulkLoads.get(0));
+        assertEquals(1, loads("a"));
+    }
+
+    private CachingReadableDao<String, String> caching(CacheSettings settings, ReadableDao<String, String> delegate) {
+        return new CachingReadableDao<>(CACHE, delegate, settings, Runnable::run, cacheStatistics, nanos::get);
+    }
+
+    private String load(String input) {
+        loads.computeIfAbsent(input, key -> new AtomicInteger()).incrementAndGet();
+        return input + version.get();
+    }
+
+    private int loads(String input) {
+        AtomicInteger count = loads.get(input);
+        return count == null ? 0 : count.get();
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            latch.await(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException(e);
+        }
+    }
+}
@@ -0,0 +1,171 @@
+package com.amazon.ata.advertising.service.dao;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class CoalescingReadableDaoTest {
+    private static final String DEPENDENCY = "TestService.get";
+
+    private ExecutorService executor;
+    private DependencyStatistics dependencyStatistics;
+    private CountDownLatch started;
+    private CountDownLatch release;
+    private AtomicInteger calls;
+
+    @BeforeEach
+    public void setup() {
+        executor = Executors.newCachedThreadPool();
+        dependencyStatistics = new DependencyStatistics();
+        started = new CountDownLatch(1);
+        release = new CountDownLatch(1);
+        calls = new AtomicInteger();
+    }
+
+    @AfterEach
+    public void tearDown() {
+        release.countDown();
+        executor.shutdownNow();
+    }
+
+    @Test
+    public void get_concurrentEqualQueries_callsDelegateOnce() throws Exception {
+        // GIVEN
+        CoalescingReadableDao<String, String> dao = new CoalescingReadableDao<>(DEPENDENCY,
+                blocking(input -> input + "!"), dependencyStatistics);
+        Future<String> first = executor.submit(() -> dao.get("a"));
+        assertTrue(started.await(5, TimeUnit.SECONDS));
+
+        // WHEN
+        Future<String> second = executor.submit(() -> dao.get("a"));
+        awaitCoalesced(1);
+        release.countDown();
+
+        // THEN
+        assertEquals("a!", first.get(5, TimeUnit.SECONDS));
+        assertEquals("a!", second.get(5, TimeUnit.SECONDS));
+        assertEquals(1, calls.get());
+        assertTrue(dao.inFlight.isEmpty());
+    }
+
+    @Test
+    public void get_delegateFails_everyWaiterGetsException() throws Exception {
+        // GIVEN
+        CoalescingReadableDao<String, String> dao = new CoalescingReadableDao<>(DEPENDENCY, blocking(input -> {
+            throw new IllegalStateException("service unavailable");
+        }), dependencyStatistics);
+        Future<String> first = executor.submit(() -> dao.get("a"));
+        assertTrue(started.await(5, TimeUnit.SECONDS));
+        Future<String> second = executor.submit(() -> dao.get("a"));
+        awaitCoalesced(1);
+
+        // WHEN
+        release.countDown();
+
+        // THEN
+        assertCause(IllegalStateException.class, first);
+        assertCause(IllegalStateException.class, second);
+        assertEquals(1, calls.get());
+    }
+
+    @Test
+    public void get_sequentialQueries_callsDelegateEachTime() {
+        // GIVEN
+        release.countDown();
+        CoalescingReadableDao<String, String> dao = new CoalescingReadableDao<>(DEPENDENCY,
+                blocking(input -> input + "!"), dependencyStatistics);
+
+        // WHEN
+        dao.get("a");
+        dao.get("a");
+
+        // THEN
+        assertEquals(2, calls.get());
+        assertEquals(0, coalescedCount());
+    }
+
+    @Test
+    public void getAll_queryAlreadyInFlight_joinsItAndFetchesTheRest() throws Exception {
+        // GIVEN
+        AtomicInteger bulkCalls = new AtomicInteger();
+        ReadableDao<String, String> single = blocking(input -> input + "!");
+        CoalescingBulkReadableDao<String, String> dao = new CoalescingBulkReadableDao<>(DEPENDENCY,
+                new BulkReadableDao<String, String>() {
+                    @Override
+                    public String get(String inputQuery) {
+                        return single.get(inputQuery);
+                    }
+
+                    @Override
+                    public Map<String, String> getAll(Collection<String> inputQueries) {
+                        bulkCalls.incrementAndGet();
+                        Map<String, String> results = new HashMap<>();
+                        inputQueries.forEach(input -> results.put(input, input + "?"));
+                        return results;
+                    }
+                }, dependencyStatistics);
+        Future<String> inFlight = executor.submit(() -> dao.get("a"));
+        assertTrue(started.await(5, TimeUnit.SECONDS));
+
+        // WHEN
+        Future<Map<String, String>> all = executor.submit(() -> dao.getAll(Arrays.asList("a", "b", "b")));
+        awaitCoalesced(1);
+        release.countDown();
+
+        // THEN
+        Map<String, String> results = all.get(5, TimeUnit.SECONDS);
+        assertEquals("a!", inFlight.get(5, TimeUnit.SECONDS));
+        assertEquals("a!", results.get("a"));
+        assertEquals("b?", results.get("b"));
+        assertEquals(1, calls.get());
+        assertEquals(1, bulkCalls.get());
+    }
+
+    private ReadableDao<String, String> blocking(ReadableDao<String, String> dao) {
+        return input -> {
+            calls.incrementAndGet();
+            started.countDown();
+            try {
+                release.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IllegalStateException(e);
+            }
+            return dao.get(input);
+        };
+    }
+
+    private long coalescedCount() {
+        DependencyCallStatistics statistics = dependencyStatistics.getStatistics().get(DEPENDENCY);
+        return statistics == null ? 0 : statistics.getCoalescedCallCount();
+    }
+
+    private void awaitCoalesced(long expected) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (coalescedCount() < expected && System.nanoTime() < deadline) {
+            Thread.sleep(1);
+        }
+        assertEquals(expected, coalescedCount());
+    }
+
+    private static void assertCause(Class<? extends Throwable> expected, Future<?> future) {
+        ExecutionException e = assertThrows(ExecutionException.class, () -> future.get(5, TimeUnit.SECONDS));
+        assertEquals(expected, e.getCause().getClass());
+    }
+}
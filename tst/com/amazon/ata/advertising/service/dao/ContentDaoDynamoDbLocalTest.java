@@ -0,0 +1,163 @@
+package com.amazon.ata.advertising.service.dao;
+
+import com.amazon.ata.advertising.service.exceptions.AdvertisementClientException;
+import com.amazon.ata.advertising.service.model.AdvertisementContent;
+import com.amazon.ata.advertising.service.targeting.TargetingGroup;
+import com.amazon.ata.advertising.service.util.EncryptionUtil;
+import com.amazonaws.auth.AWSStaticCredentialsProvider;
+import com.amazonaws.auth.BasicAWSCredentials;
+import com.amazonaws.client.builder.AwsClientBuilder;
+import com.amazonaws.services.dynamodbv2.AmazonDynamoDB;
+import com.amazonaws.services.dynamodbv2.AmazonDynamoDBClientBuilder;
+import com.amazonaws.services.dynamodbv2.datamodeling.DynamoDBMapper;
+import com.amazonaws.services.dynamodbv2.datamodeling.DynamoDBMapperConfig;
+import com.amazonaws.services.dynamodbv2.model.CreateTableRequest;
+import com.amazonaws.services.dynamodbv2.model.GlobalSecondaryIndex;
+import com.amazonaws.services.dynamodbv2.model.Projection;
+import com.amazonaws.services.dynamodbv2.model.ProjectionType;
+import com.amazonaws.services.dynamodbv2.model.ProvisionedThroughput;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.TestInstance;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+/**
+ * Runs ContentDao's conditional writes and transactions against DynamoDB Local, which the mocked mapper in
+ * ContentDaoTest cannot check. Only runs when ata.advertising.service.test.dynamoDbLocalEndpoint is set, for example
+ * to http://localhost:8000 after starting the amazon/dynamodb-local image. Each run creates its own tables.
+ */
+@TestInstance(TestInstance.Lifecycle.PER_CLASS)
+@EnabledIfSystemProperty(named = ContentDaoDynamoDbLocalTest.ENDPOINT, matches = ".+")
+public class ContentDaoDynamoDbLocalTest {
+    static final String ENDPOINT = "ata.advertising.service.test.dynamoDbLocalEndpoint";
+    private static final String MARKETPLACE_ID = "1";
+    private static final ProvisionedThroughput THROUGHPUT = new ProvisionedThroughput(5L, 5L);
+
+    private AmazonDynamoDB dynamoDb;
+    private DynamoDBMapper mapper;
+    private ContentDao contentDao;
+
+    @BeforeAll
+    public void createTables() {
+        dynamoDb = AmazonDynamoDBClientBuilder.standard()
+                .withEndpointConfiguration(new AwsClientBuilder.EndpointConfiguration(System.getProperty(ENDPOINT),
+                        "us-west-2"))
+                .withCredentials(new AWSStaticCredentialsProvider(new BasicAWSCredentials("local", "local")))
+                .build();
+        mapper = new DynamoDBMapper(dynamoDb, DynamoDBMapperConfig.builder()
+                .withTableNameOverride(DynamoDBMapperConfig.TableNameOverride.withTableNamePrefix(
+                        "ContentDaoTest-" + UUID.randomUUID() + "-"))
+                .build());
+        createTable(AdvertisementContent.class);
+        createTable(TargetingGroup.class);
+    }
+
+    @BeforeEach
+    public void setup() {
+        contentDao = new ContentDao(mapper, dynamoDb);
+    }
+
+    @AfterAll
+    public void deleteTables() {
+        dynamoDb.deleteTable(mapper.generateDeleteTableRequest(AdvertisementContent.class));
+        dynamoDb.deleteTable(mapper.generateDeleteTableRequest(TargetingGroup.class));
+        dynamoDb.shutdown();
+    }
+
+    @Test
+    public void update_existingContent_updatesItInPlace() {
+        // GIVEN
+        AdvertisementContent created = contentDao.create(MARKETPLACE_ID, "Buy this now!");
+        AdvertisementContent changed = AdvertisementContent.builder()
+                .withContentId(created.getContentId())
+                .withRenderableContent("Buy this later!")
+                .build();
+
+        // WHEN
+        contentDao.update("2", changed);
+
+        // THEN
+        AdvertisementContent stored = mapper.load(AdvertisementContent.class, created.getContentId());
+        assertEquals("Buy this later!", stored.getRenderableContent());
+        assertEquals(EncryptionUtil.encryptMarketplaceId("2"), stored.getMarketplaceId());
+    }
+
+    @Test
+    public void update_contentDoesNotExist_throwsExceptionWithoutCreatingIt() {
+        // GIVEN
+        String contentId = UUID.randomUUID().toString();
+        AdvertisementContent content = AdvertisementContent.builder()
+                .withContentId(contentId)
+                .withRenderableContent("Buy this now!")
+                .build();
+
+        // WHEN + THEN
+        assertThrows(AdvertisementClientException.class, () -> contentDao.update(MARKETPLACE_ID, content));
+        assertNull(mapper.load(AdvertisementContent.class, contentId));
+    }
+
+    @Test
+    public void delete_moreGroupsThanFitInOneTransaction_deletesContentAndEveryGroup() {
+        // GIVEN
+        AdvertisementContent content = contentDao.create(MARKETPLACE_ID, "Buy this now!");
+        List<TargetingGroup> targetingGroups = saveTargetingGroups(content.getContentId(),
+                2 * ContentDao.MAXIMUM_TRANSACTION_ITEMS + 1);
+
+        // WHEN
+        contentDao.delete(content.getContentId(), targetingGroups);
+
+        // THEN
+        assertNull(mapper.load(AdvertisementContent.class, content.getContentId()));
+        for (TargetingGroup targetingGroup : targetingGroups) {
+            assertNull(mapper.load(TargetingGroup.class, targetingGroup.getTargetingGroupId()));
+        }
+    }
+
+    @Test
+    public void delete_contentDoesNotExist_throwsExceptionAndDeletesNoGroups() {
+        // GIVEN
+        String contentId = UUID.randomUUID().toString();
+        List<TargetingGroup> targetingGroups = saveTargetingGroups(contentId,
+                ContentDao.MAXIMUM_TRANSACTION_ITEMS + 1);
+
+        // WHEN + THEN
+        assertThrows(AdvertisementClientException.class, () -> contentDao.delete(contentId, targetingGroups));
+        for (TargetingGroup targetingGroup : targetingGroups) {
+            assertNotNull(mapper.load(TargetingGroup.class, targetingGroup.getTargetingGroupId()));
+        }
+    }
+
+    private void createTable(Class<?> itemClass) {
+        CreateTableRequest request = mapper.generateCreateTableRequest(itemClass)
+                .withProvisionedThroughput(THROUGHPUT);
+        if (request.getGlobalSecondaryIndexes() != null) {
+            for (GlobalSecondaryIndex index : request.getGlobalSecondaryIndexes()) {
+                index.withProvisionedThroughput(THROUGHPUT)
+                        .withProjection(new Projection().withProjectionType(ProjectionType.ALL));
+            }
+        }
+        dynamoDb.createTable(request);
+    }
+
+    private List<TargetingGroup> saveTargetingGroups(String contentId, int count) {
+        List<TargetingGroup> targetingGroups = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            targetingGroups.add(new TargetingGroup(UUID.randomUUID().toString(), contentId, 1.0,
+                    Collections.emptyList()));
+        }
+        mapper.batchSave(targetingGroups);
+        return targetingGroups;
+    }
+}
@@ -2,16 +2,26 @@ package com.amazon.ata.advertising.service.dao;
 
 import com.amazon.ata.advertising.service.exceptions.AdvertisementClientException;
 import com.amazon.ata.advertising.service.model.AdvertisementContent;
+import com.amazon.ata.advertising.service.targeting.TargetingGroup;
 import com.amazon.ata.advertising.service.util.EncryptionUtil;
+import com.amazonaws.services.dynamodbv2.AmazonDynamoDB;
 import com.amazonaws.services.dynamodbv2.datamodeling.DynamoDBMapper;
 import com.amazonaws.services.dynamodbv2.datamodeling.DynamoDBQueryExpression;
 import com.amazonaws.services.dynamodbv2.datamodeling.PaginatedQueryList;
+import com.amazonaws.services.dynamodbv2.datamodeling.TransactionWriteRequest;
+import com.amazonaws.services.dynamodbv2.model.AttributeValue;
+import com.amazonaws.services.dynamodbv2.model.CancellationReason;
+import com.amazonaws.services.dynamodbv2.model.ConditionalCheckFailedException;
+import com.amazonaws.services.dynamodbv2.model.TransactionCanceledException;
+import com.amazonaws.services.dynamodbv2.model.UpdateItemRequest;
+import com.amazonaws.services.dynamodbv2.model.UpdateItemResult;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.mockito.ArgumentCaptor;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
 
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
 import java.util.List;
@@ -22,7 +32,11 @@ import static org.junit.jupiter.api.Assertions.assertFalse;
 import static org.junit.jupiter.api.Assertions.assertNotNull;
 import static org.junit.jupiter.api.Assertions.assertThrows;
 import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 import static org.mockito.MockitoAnnotations.initMocks;
@@ -42,6 +56,9 @@ public class ContentDaoTest {
     @Mock
     private DynamoDBMapper mapper;
 
+    @Mock
+    private AmazonDynamoDB dynamoDb;
+
     @Mock
     private PaginatedQueryList<AdvertisementContent> paginatedQueryList;
 
@@ -54,7 +71,11 @@ public class ContentDaoTest {
 
         captor = ArgumentCaptor.forClass(DynamoDBQueryExpression.class);
         when(mapper.query(eq(AdvertisementContent.class), captor.capture())).thenReturn(paginatedQueryList);
-        when(mapper.load(ADVERTISEMENT_CONTENT)).thenReturn(ADVERTISEMENT_CONTENT);
+        DynamoDBMapper modelMapper = new DynamoDBMapper(dynamoDb);
+        when(mapper.getTableModel(AdvertisementContent.class))
+                .thenReturn(modelMapper.getTableModel(AdvertisementContent.class));
+        when(mapper.generateCreateTableRequest(AdvertisementContent.class))
+                .thenReturn(modelMapper.generateCreateTableRequest(AdvertisementContent.class));
     }
 
     @Test
@@ -110,33 +131,51 @@ public class ContentDaoTest {
     }
 
     @Test
-    public void update_existingContent_updatesValues() {
+    public void update_existingContent_updatesValuesInOneConditionalWrite() {
+        // GIVEN
+        ArgumentCaptor<UpdateItemRequest> update = ArgumentCaptor.forClass(UpdateItemRequest.class);
+        when(dynamoDb.updateItem(update.capture())).thenReturn(new UpdateItemResult());
+
         // WHEN
         AdvertisementContent content = contentDao.update(MARKETPLACE_ID, ADVERTISEMENT_CONTENT);
 
         // THEN
         assertEquals(ADVERTISEMENT_CONTENT, content);
-        verify(mapper).save(ADVERTISEMENT_CONTENT);
+        assertEquals("Content", update.getValue().getTableName());
+        assertEquals(new AttributeValue(CONTENT_ID), update.getValue().getKey().get("ContentId"));
+        assertEquals("attribute_exists(#contentId)", update.getValue().getConditionExpression());
+        assertEquals(new AttributeValue(RENDERABLE_CONTENT),
+                update.getValue().getExpressionAttributeValues().get(":renderableContent"));
+        verify(mapper, never()).load(any());
+        verify(mapper, never()).save(any());
     }
 
     @Test
     public void update_unEncryptedMarketplaceId_updatesValues() {
         // GIVEN
         String marketplaceId = "1";
+        AdvertisementContent advertisementContent = AdvertisementContent.builder()
+                .withContentId(CONTENT_ID)
+                .build();
+        ArgumentCaptor<UpdateItemRequest> update = ArgumentCaptor.forClass(UpdateItemRequest.class);
+        when(dynamoDb.updateItem(update.capture())).thenReturn(new UpdateItemResult());
 
         // WHEN
-        AdvertisementContent content = contentDao.update(marketplaceId, ADVERTISEMENT_CONTENT);
+        AdvertisementContent content = contentDao.update(marketplaceId, advertisementContent);
 
         // THEN
         assertEquals(EncryptionUtil.encryptMarketplaceId(marketplaceId), content.getMarketplaceId());
-        verify(mapper).save(ADVERTISEMENT_CONTENT);
+        assertEquals(new AttributeValue(EncryptionUtil.encryptMarketplaceId(marketplaceId)),
+                update.getValue().getExpressionAttributeValues().get(":marketplaceId"));
+        assertEquals("SET #marketplaceId = :marketplaceId REMOVE #renderableContent",
+                update.getValue().getUpdateExpression());
     }
 
     @Test
     public void update_contentDoesNotExist_throwsException() {
         // GIVEN
         String marketplaceId = "1";
-        when(mapper.load(ADVERTISEMENT_CONTENT)).thenReturn(null);
+        when(dynamoDb.updateItem(any(UpdateItemRequest.class))).thenThrow(new ConditionalCheckFailedException("gone"));
 
         // WHEN && THEN
         assertThrows(AdvertisementClientException.class, () -> contentDao.update(marketplaceId, ADVERTISEMENT_CONTENT),
@@ -145,25 +184,75 @@ public class ContentDaoTest {
     }
 
     @Test
-    public void delete_contentExists_contentDeletedAndReturned() {
+    public void deleteWithTargetingGroups_contentExists_deletesAllInOneTransaction() {
         // GIVEN
+        List<TargetingGroup> targetingGroups = targetingGroups(3);
+        ArgumentCaptor<TransactionWriteRequest> transaction = ArgumentCaptor.forClass(TransactionWriteRequest.class);
 
         // WHEN
-        AdvertisementContent content = contentDao.delete(CONTENT_ID);
+        contentDao.delete(CONTENT_ID, targetingGroups);
 
         // THEN
-        assertEquals(ADVERTISEMENT_CONTENT, content);
-        verify(mapper).delete(ADVERTISEMENT_CONTENT);
+        verify(mapper).transactionWrite(transaction.capture());
+        List<TransactionWriteRequest.TransactionWriteOperation> operations =
+                transaction.getValue().getTransactionWriteOperations();
+        assertEquals(4, operations.size());
+        assertEquals(CONTENT_ID, ((AdvertisementContent) operations.get(0).getObject()).getContentId());
+        assertEquals("attribute_exists(#contentId)",
+                operations.get(0).getDynamoDBTransactionWriteExpression().getConditionExpression());
+        assertEquals(targetingGroups.get(2), operations.get(3).getObject());
+        verify(mapper, never()).batchDelete(any(List.class));
     }
 
     @Test
-    public void delete_contentDoesNotExist_throwsException() {
+    public void deleteWithTargetingGroups_moreGroupsThanFitInTransaction_deletesExtraGroupsBeforeTheContent() {
         // GIVEN
-        when(mapper.load(ADVERTISEMENT_CONTENT)).thenReturn(null);
+        List<TargetingGroup> targetingGroups = targetingGroups(ContentDao.MAXIMUM_TRANSACTION_ITEMS + 1);
+        ArgumentCaptor<TransactionWriteRequest> transaction = ArgumentCaptor.forClass(TransactionWriteRequest.class);
+
+        // WHEN
+        contentDao.delete(CONTENT_ID, targetingGroups);
+
+        // THEN
+        verify(mapper, times(2)).transactionWrite(transaction.capture());
+        List<TransactionWriteRequest.TransactionWriteOperation> first =
+                transaction.getAllValues().get(0).getTransactionWriteOperations();
+        assertEquals(ContentDao.MAXIMUM_TRANSACTION_ITEMS, first.size());
+        assertEquals(TransactionWriteRequest.TransactionWriteOperationType.ConditionCheck,
+                first.get(0).getTransactionWriteOperationType());
+        assertEquals("attribute_exists(#contentId)",
+                first.get(0).getDynamoDBTransactionWriteExpression().getConditionExpression());
+        assertEquals(targetingGroups.get(0), first.get(1).getObject());
+        List<TransactionWriteRequest.TransactionWriteOperation> last =
+                transaction.getAllValues().get(1).getTransactionWriteOperations();
+        assertEquals(3, last.size());
+        assertEquals(TransactionWriteRequest.TransactionWriteOperationType.Delete,
+                last.get(0).getTransactionWriteOperationType());
+        assertEquals(CONTENT_ID, ((AdvertisementContent) last.get(0).getObject()).getContentId());
+        assertEquals(targetingGroups.get(targetingGroups.size() - 1), last.get(2).getObject());
+        verify(mapper, never()).batchDelete(any(List.class));
+    }
+
+    @Test
+    public void deleteWithTargetingGroups_contentDoesNotExist_throwsExceptionAndDeletesNothingElse() {
+        // GIVEN
+        List<TargetingGroup> targetingGroups = targetingGroups(ContentDao.MAXIMUM_TRANSACTION_ITEMS + 1);
+        doThrow(new TransactionCanceledException("cancelled").withCancellationReasons(
+                new CancellationReason().withCode("ConditionalCheckFailed"), new CancellationReason().withCode("None")))
+                .when(mapper).transactionWrite(any(TransactionWriteRequest.class));
 
         // WHEN && THEN
-        assertThrows(AdvertisementClientException.class, () -> contentDao.delete(CONTENT_ID),
-            "Expected an AdvertisementClientException to be thrown when no content can be found for" +
-                "provided contentId: " + CONTENT_ID);
+        assertThrows(AdvertisementClientException.class, () -> contentDao.delete(CONTENT_ID, targetingGroups));
+        verify(mapper, times(1)).transactionWrite(any(TransactionWriteRequest.class));
+        verify(mapper, never()).batchDelete(any(List.class));
+    }
+
+    private static List<TargetingGroup> targetingGroups(int count) {
+        List<TargetingGroup> targetingGroups = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            targetingGroups.add(new TargetingGroup(UUID.randomUUID().toString(), CONTENT_ID, 1.0,
+                    Collections.emptyList()));
+        }
+        return targetingGroups;
     }
 }
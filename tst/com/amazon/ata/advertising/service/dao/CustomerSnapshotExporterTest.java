@@ -0,0 +1,79 @@
+package com.amazon.ata.advertising.service.dao;
+
+import com.amazon.ata.advertising.service.model.RequestContext;
+import com.amazon.ata.customerservice.AgeRange;
+import com.amazon.ata.customerservice.Category;
+import com.amazon.ata.customerservice.CustomerProfile;
+import com.amazon.ata.customerservice.Spend;
+import com.amazon.ata.primeclubservice.Benefit;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.time.Clock;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+public class CustomerSnapshotExporterTest {
+    private static final String US = "ATVPDKIKX0DER";
+    private static final String CA = "A2EUQ1WTGCTBG2";
+    private static final CustomerProfile PROFILE = CustomerProfile.builder().withAgeRange(AgeRange.OVER_60).build();
+    private static final Map<String, Spend> SPEND = Collections.singletonMap(Category.PET,
+            Spend.builder().withNumberOfPurchases(1).withUsdSpent(20).build());
+
+    @TempDir
+    public Path directory;
+
+    private ExecutorService executor;
+
+    @BeforeEach
+    public void setup() {
+        executor = Executors.newFixedThreadPool(4);
+    }
+
+    @AfterEach
+    public void tearDown() {
+        executor.shutdownNow();
+    }
+
+    @Test
+    public void export_customers_writesEveryCustomerInEveryMarketplace() throws IOException {
+        // GIVEN
+        CustomerSnapshotExporter exporter = new CustomerSnapshotExporter(
+                customerId -> PROFILE,
+                requestContext -> requestContext.getMarketplaceId().equals(US) ? SPEND : Collections.emptyMap(),
+                requestContext -> {
+                    if (requestContext.getCustomerId().equals("failing")) {
+                        throw new IllegalStateException("prime club service unavailable");
+                    }
+                    return Collections.singletonList(Benefit.AMZN4KIDS);
+                },
+                executor, Clock.systemUTC());
+        Path file = directory.resolve("customers.snapshot");
+
+        // WHEN
+        long records = exporter.export(Arrays.asList("zoe", "failing", "adam", "zoe", "\u00e9lodie"),
+                Arrays.asList(US, CA), file);
+
+        // THEN
+        assertEquals(6, records);
+        CustomerSnapshot snapshot = CustomerSnapshot.open(file);
+        assertEquals(PROFILE, snapshot.getCustomerProfile("adam"));
+        assertEquals(SPEND, snapshot.getCustomerSpend(new RequestContext("zoe", US)));
+        assertEquals(Collections.emptyMap(), snapshot.getCustomerSpend(new RequestContext("zoe", CA)));
+        assertEquals(Collections.singletonList(Benefit.AMZN4KIDS),
+                snapshot.getPrimeBenefits(new RequestContext("adam", CA)));
+        assertNull(snapshot.getPrimeBenefits(new RequestContext("failing", US)));
+        assertNull(snapshot.getCustomerProfile("\u00e9lodie"));
+    }
+}
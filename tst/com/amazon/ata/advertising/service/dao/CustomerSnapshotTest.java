@@ -0,0 +1,214 @@
+package com.amazon.ata.advertising.service.dao;
+
+import com.amazon.ata.advertising.service.model.RequestContext;
+import com.amazon.ata.customerservice.AgeRange;
+import com.amazon.ata.customerservice.Category;
+import com.amazon.ata.customerservice.CustomerProfile;
+import com.amazon.ata.customerservice.Spend;
+import com.amazon.ata.customerservice.State;
+import com.amazon.ata.primeclubservice.Benefit;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Clock;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.TreeMap;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class CustomerSnapshotTest {
+    private static final String US = "ATVPDKIKX0DER";
+    private static final String CA = "A2EUQ1WTGCTBG2";
+    private static final Instant CREATED_AT = Instant.parse("2021-06-01T00:00:00Z");
+    private static final Clock CLOCK = Clock.fixed(CREATED_AT, ZoneOffset.UTC);
+    private static final CustomerProfile PROFILE = CustomerProfile.builder()
+            .withHomeState(State.WA)
+            .withAgeRange(AgeRange.AGE_26_TO_30)
+            .withParent(true)
+            .build();
+    private static final Map<String, Spend> SPEND = Collections.singletonMap(Category.KINDLE,
+            Spend.builder().withNumberOfPurchases(3).withUsdSpent(42).build());
+    private static final List<String> BENEFITS = Arrays.asList(Benefit.MOM_LITE, Benefit.DIM_SUM);
+
+    @TempDir
+    public Path directory;
+
+    @Test
+    public void get_customerInSnapshot_returnsSignals() throws IOException {
+        // GIVEN
+        Path file = directory.resolve("customers.snapshot");
+        try (CustomerSnapshotWriter writer = new CustomerSnapshotWriter(file, 8, Arrays.asList(US, CA), CLOCK)) {
+            writer.write("alice", CA, PROFILE, Collections.emptyMap(), Collections.emptyList());
+            writer.write("alice", US, PROFILE, SPEND, BENEFITS);
+            writer.write("bob", US, null, SPEND, null);
+        }
+
+        // WHEN
+        CustomerSnapshot snapshot = CustomerSnapshot.open(file);
+
+        // THEN
+        assertEquals(3, snapshot.getRecordCount());
+        assertEquals(CREATED_AT, snapshot.getCreatedAt());
+        assertEquals(PROFILE, snapshot.getCustomerProfile("alice"));
+        assertEquals(SPEND, snapshot.getCustomerSpend(new RequestContext("alice", US)));
+        assertEquals(BENEFITS, snapshot.getPrimeBenefits(new RequestContext("alice", US)));
+        assertEquals(Collections.emptyMap(), snapshot.getCustomerSpend(new RequestContext("alice", CA)));
+        assertEquals(Collections.emptyList(), snapshot.getPrimeBenefits(new RequestContext("alice", CA)));
+        assertNull(snapshot.getCustomerProfile("bob"));
+        assertNull(snapshot.getPrimeBenefits(new RequestContext("bob", US)));
+        assertEquals(SPEND, snapshot.getCustomerSpend(new RequestContext("bob", US)));
+    }
+
+    @Test
+    public void get_customerNotInSnapshot_returnsNull() throws IOException {
+        // GIVEN
+        Path file = directory.resolve("customers.snapshot");
+        try (CustomerSnapshotWriter writer = new CustomerSnapshotWriter(file, 5, Collections.singleton(US), CLOCK)) {
+            writer.write("alice", US, PROFILE, SPEND, BENEFITS);
+            writer.write("carol", US, PROFILE, SPEND, BENEFITS);
+        }
+
+        // WHEN
+        CustomerSnapshot snapshot = CustomerSnapshot.open(file);
+
+        // THEN
+        assertNull(snapshot.getCustomerProfile("bob"));
+        assertNull(snapshot.getCustomerProfile("alic"));
+        assertNull(snapshot.getCustomerProfile("alice2"));
+        assertNull(snapshot.getCustomerProfile("zed"));
+        assertNull(snapshot.getCustomerProfile(null));
+        assertNull(snapshot.getCustomerSpend(new RequestContext("alice", CA)));
+        assertNull(snapshot.getCustomerSpend(new RequestContext(null, US)));
+        assertNull(snapshot.getPrimeBenefits(null));
+    }
+
+    @Test
+    public void get_manySegments_matchesWrittenCustomers() throws IOException {
+        // GIVEN - a random population, mapped in segments of a few records each
+        Random random = new Random(17);
+        List<String> categories = Arrays.asList(Category.values());
+        List<String> benefits = new ArrayList<>(Arrays.asList(Benefit.values()));
+        TreeMap<String, Map<String, Spend>> spendByCustomer = new TreeMap<>();
+        Map<String, List<String>> benefitsByCustomer = new HashMap<>();
+        Map<String, CustomerProfile> profileByCustomer = new HashMap<>();
+        while (spendByCustomer.size() < 5_000) {
+            String customerId = Long.toString(random.nextLong() & Long.MAX_VALUE, 36);
+            Map<String, Spend> spend = new HashMap<>();
+            for (String category : categories) {
+                if (random.nextInt(4) == 0) {
+                    spend.put(category, Spend.builder()
+                            .withNumberOfPurchases(random.nextInt(100))
+                            .withUsdSpent(random.nextInt(10_000))
+                            .build());
+                }
+            }
+            spendByCustomer.put(customerId, spend);
+            Collections.shuffle(benefits, random);
+            benefitsByCustomer.put(customerId, benefits.stream()
+                    .limit(random.nextInt(benefits.size()))
+                    .sorted()
+                    .collect(Collectors.toList()));
+            profileByCustomer.put(customerId, CustomerProfile.builder()
+                    .withHomeState(State.values()[random.nextInt(State.values().length)])
+                    .withAgeRange(random.nextBoolean() ? null : AgeRange.values()[random.nextInt(8)])
+                    .withParent(random.nextBoolean())
+                    .build());
+        }
+        Path file = directory.resolve("customers.snapshot");
+        try (CustomerSnapshotWriter writer = new CustomerSnapshotWriter(file, 13, Collections.singleton(US), CLOCK)) {
+            for (Map.Entry<String, Map<String, Spend>> customer : spendByCustomer.entrySet()) {
+                assertTrue(writer.write(customer.getKey(), US, profileByCustomer.get(customer.getKey()),
+                        customer.getValue(), benefitsByCustomer.get(customer.getKey())));
+            }
+        }
+
+        // WHEN
+        CustomerSnapshot snapshot = CustomerSnapshot.open(file, 1_000);
+
+        // THEN
+        for (String customerId : spendByCustomer.keySet()) {
+            RequestContext requestContext = new RequestContext(customerId, US);
+            assertEquals(profileByCustomer.get(customerId), snapshot.getCustomerProfile(customerId));
+            assertEquals(spendByCustomer.get(customerId), snapshot.getCustomerSpend(requestContext));
+            assertEquals(benefitsByCustomer.get(customerId), snapshot.getPrimeBenefits(requestContext).stream()
+                    .sorted()
+                    .collect(Collectors.toList()));
+            assertNull(snapshot.getCustomerProfile(customerId + "0"));
+        }
+    }
+
+    @Test
+    public void getCustomerProfile_sameValues_sharesProfile() throws IOException {
+        // GIVEN
+        Path file = directory.resolve("customers.snapshot");
+        try (CustomerSnapshotWriter writer = new CustomerSnapshotWriter(file, 5, Collections.singleton(US), CLOCK)) {
+            writer.write("alice", US, PROFILE, null, null);
+            writer.write("bob", US, PROFILE, null, null);
+        }
+        CustomerSnapshot snapshot = CustomerSnapshot.open(file);
+
+        // WHEN + THEN
+        assertSame(snapshot.getCustomerProfile("alice"), snapshot.getCustomerProfile("bob"));
+    }
+
+    @Test
+    public void write_unknownValue_skipsCustomer() throws IOException {
+        // GIVEN
+        Path file = directory.resolve("customers.snapshot");
+        try (CustomerSnapshotWriter writer = new CustomerSnapshotWriter(file, 5, Collections.singleton(US), CLOCK)) {
+            // WHEN
+            boolean written = writer.write("alice", US, PROFILE, SPEND, Collections.singletonList("FREE_PIZZA"));
+
+            // THEN
+            assertFalse(written);
+            assertEquals(0, writer.getRecordCount());
+        }
+    }
+
+    @Test
+    public void write_outOfOrder_throwsAndLeavesTargetInPlace() throws IOException {
+        // GIVEN
+        Path file = directory.resolve("customers.snapshot");
+        Files.write(file, new byte[] {1, 2, 3});
+        CustomerSnapshotWriter writer = new CustomerSnapshotWriter(file, 5, Collections.singleton(US), CLOCK);
+        writer.write("bob", US, PROFILE, SPEND, BENEFITS);
+
+        // WHEN
+        assertThrows(IllegalArgumentException.class, () -> writer.write("alice", US, PROFILE, SPEND, BENEFITS));
+        writer.abort();
+
+        // THEN
+        assertEquals(3, Files.size(file));
+        try (Stream<Path> files = Files.list(directory)) {
+            assertEquals(1, files.count());
+        }
+    }
+
+    @Test
+    public void open_notASnapshot_throws() throws IOException {
+        // GIVEN
+        Path file = directory.resolve("customers.snapshot");
+        Files.write(file, new byte[64]);
+
+        // WHEN + THEN
+        assertThrows(IOException.class, () -> CustomerSnapshot.open(file));
+    }
+}
@@ -0,0 +1,71 @@
+package com.amazon.ata.advertising.service.dao;
+
+import com.google.common.hash.Funnel;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+public class NegativeFilteringReadableDaoTest {
+    private static final Funnel<String> FUNNEL = (input, into) -> into.putString(input, StandardCharsets.UTF_8);
+    private static final String FILTER = "test";
+
+    private Map<String, AtomicInteger> calls;
+    private CacheStatistics cacheStatistics;
+    private NegativeFilteringReadableDao<String, List<String>> dao;
+
+    @BeforeEach
+    public void setup() {
+        calls = new ConcurrentHashMap<>();
+        cacheStatistics = new CacheStatistics();
+        dao = new NegativeFilteringReadableDao<>(FILTER, input -> {
+            calls.computeIfAbsent(input, key -> new AtomicInteger()).incrementAndGet();
+            if (input.equals("failed")) {
+                return null;
+            }
+            return input.equals("prime") ? Collections.singletonList("FREE_SHIPPING") : Collections.emptyList();
+        }, new NegativeResultFilter<>(FUNNEL, 1_000, 0.001), Collections.emptyList(), cacheStatistics);
+    }
+
+    @Test
+    public void get_customerWithNoData_laterCallsAnsweredByFilter() {
+        // WHEN
+        dao.get("notPrime");
+        List<String> benefits = dao.get("notPrime");
+
+        // THEN
+        assertEquals(Collections.emptyList(), benefits);
+        assertEquals(1, calls.get("notPrime").get());
+        assertEquals(1, cacheStatistics.getNegativeResultFilters().get(FILTER).getHitCount());
+    }
+
+    @Test
+    public void get_customerWithData_alwaysCallsDao() {
+        // WHEN
+        dao.get("prime");
+        List<String> benefits = dao.get("prime");
+
+        // THEN
+        assertEquals(Collections.singletonList("FREE_SHIPPING"), benefits);
+        assertEquals(2, calls.get("prime").get());
+    }
+
+    @Test
+    public void get_nullResult_notRecorded() {
+        // WHEN
+        dao.get("failed");
+        List<String> benefits = dao.get("failed");
+
+        // THEN
+        assertNull(benefits);
+        assertEquals(2, calls.get("failed").get());
+    }
+}
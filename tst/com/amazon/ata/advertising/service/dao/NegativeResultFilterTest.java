@@ -0,0 +1,81 @@
+package com.amazon.ata.advertising.service.dao;
+
+import com.google.common.hash.Funnel;
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class NegativeResultFilterTest {
+    private static final Funnel<String> FUNNEL = (input, into) -> into.putString(input, StandardCharsets.UTF_8);
+
+    @Test
+    public void mightHaveNoData_recordedQuery_true() {
+        // GIVEN
+        NegativeResultFilter<String> filter = new NegativeResultFilter<>(FUNNEL, 1_000, 0.001);
+
+        // WHEN
+        filter.recordNoData("noSpend");
+
+        // THEN
+        assertTrue(filter.mightHaveNoData("noSpend"));
+        assertEquals(1, filter.getHitCount());
+    }
+
+    @Test
+    public void mightHaveNoData_unrecordedQueries_falsePositivesNearConfiguredRate() {
+        // GIVEN
+        NegativeResultFilter<String> filter = new NegativeResultFilter<>(FUNNEL, 10_000, 0.01);
+        for (int i = 0; i < 10_000; i++) {
+            filter.recordNoData("noSpend" + i);
+        }
+
+        // WHEN
+        int falsePositives = 0;
+        for (int i = 0; i < 10_000; i++) {
+            if (filter.mightHaveNoData("spend" + i)) {
+                falsePositives++;
+            }
+        }
+
+        // THEN
+        assertTrue(falsePositives < 200, falsePositives + " false positives");
+        assertTrue(filter.getExpectedFalsePositiveRate() < 0.02);
+    }
+
+    @Test
+    public void rebuild_queryNotRecordedAgain_forgottenAfterTwoRebuilds() {
+        // GIVEN
+        NegativeResultFilter<String> filter = new NegativeResultFilter<>(FUNNEL, 1_000, 0.001);
+        filter.recordNoData("noSpend");
+        filter.recordNoData("startsSpending");
+
+        // WHEN
+        filter.rebuild();
+        filter.recordNoData("noSpend");
+        filter.rebuild();
+
+        // THEN
+        assertTrue(filter.mightHaveNoData("noSpend"));
+        assertFalse(filter.mightHaveNoData("startsSpending"));
+        assertEquals(2, filter.getRebuildCount());
+    }
+
+    @Test
+    public void recordNoData_moreQueriesThanExpected_falsePositiveRateStaysBounded() {
+        // GIVEN
+        NegativeResultFilter<String> filter = new NegativeResultFilter<>(FUNNEL, 100, 0.01);
+
+        // WHEN
+        for (int i = 0; i < 10_000; i++) {
+            filter.recordNoData("noSpend" + i);
+        }
+
+        // THEN
+        assertTrue(filter.getApproximateElementCount() <= 110);
+        assertTrue(filter.getExpectedFalsePositiveRate() < 0.02);
+    }
+}
@@ -0,0 +1,194 @@
+package com.amazon.ata.advertising.service.dao;
+
+import com.amazon.ata.advertising.service.exceptions.DependencyTimeoutException;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class ResilientReadableDaoTest {
+    private static final String DEPENDENCY = "TestService.get";
+    private static final Duration TIMEOUT = Duration.ofMillis(200);
+
+    private ExecutorService executor;
+    private DependencyStatistics dependencyStatistics;
+    private CountDownLatch release;
+
+    @BeforeEach
+    public void setup() {
+        executor = Executors.newCachedThreadPool();
+        dependencyStatistics = new DependencyStatistics();
+        release = new CountDownLatch(1);
+    }
+
+    @AfterEach
+    public void tearDown() {
+        release.countDown();
+        executor.shutdownNow();
+    }
+
+    @Test
+    public void get_fastDependency_returnsValue() {
+        // GIVEN
+        ResilientReadableDao<String, String> dao = resilient(input -> input + "!", true);
+
+        // WHEN
+        for (int i = 0; i < 30; i++) {
+            assertEquals("a!", dao.get("a"));
+        }
+
+        // THEN
+        DependencyCallStatistics statistics = dependencyStatistics.getStatistics().get(DEPENDENCY);
+        assertEquals(30, statistics.getCallCount());
+        assertEquals(0, statistics.getTimeoutCount());
+    }
+
+    @Test
+    public void get_noResponseBeforeTimeout_throwsDependencyTimeoutException() {
+        // GIVEN
+        ResilientReadableDao<String, String> dao = resilient(this::awaitRelease, true);
+
+        // WHEN + THEN
+        assertThrows(DependencyTimeoutException.class, () -> dao.get("a"));
+        assertEquals(1, dependencyStatistics.getStatistics().get(DEPENDENCY).getTimeoutCount());
+    }
+
+    @Test
+    public void get_slowCall_hedgeWins() {
+        // GIVEN - enough fast calls to estimate the p95, then a call that hangs until released
+        ResilientReadableDao<String, String> dao = resilient(hangsOnFirstCall("a"), true);
+        for (int i = 0; i < 20; i++) {
+            dao.get("warm");
+        }
+        DependencyCallStatistics statistics = dependencyStatistics.getStatistics().get(DEPENDENCY);
+        long hedgesIssued = statistics.getHedgesIssuedCount();
+        long hedgesWon = statistics.getHedgesWonCount();
+
+        // WHEN
+        String result = dao.get("a");
+
+        // THEN
+        assertEquals("a", result);
+        assertEquals(1, statistics.getHedgesIssuedCount() - hedgesIssued);
+        assertEquals(1, statistics.getHedgesWonCount() - hedgesWon);
+        assertEquals(0, statistics.getTimeoutCount());
+    }
+
+    @Test
+    public void get_hedgeWins_cancelsSlowCall() throws Exception {
+        // GIVEN - the slow call records being interrupted instead of waiting for the release
+        CountDownLatch interrupted = new CountDownLatch(1);
+        ReadableDao<String, String> hangs = hangsOnFirstCall("a");
+        ResilientReadableDao<String, String> dao = resilient(input -> {
+            try {
+                return hangs.get(input);
+            } catch (IllegalStateException e) {
+                interrupted.countDown();
+                throw e;
+            }
+        }, true);
+        for (int i = 0; i < 20; i++) {
+            dao.get("warm");
+        }
+
+        // WHEN
+        String result = dao.get("a");
+
+        // THEN
+        assertEquals("a", result);
+        assertTrue(interrupted.await(5, TimeUnit.SECONDS));
+    }
+
+    @Test
+    public void get_hedgingDisabled_slowCallTimesOut() {
+        // GIVEN
+        ResilientReadableDao<String, String> dao = resilient(hangsOnFirstCall("a"), false);
+        for (int i = 0; i < 20; i++) {
+            dao.get("warm");
+        }
+
+        // WHEN + THEN
+        assertThrows(DependencyTimeoutException.class, () -> dao.get("a"));
+        assertEquals(0, dependencyStatistics.getStatistics().get(DEPENDENCY).getHedgesIssuedCount());
+    }
+
+    @Test
+    public void get_dependencyFails_rethrowsDependencyException() {
+        // GIVEN
+        ResilientReadableDao<String, String> dao = resilient(input -> {
+            throw new IllegalStateException("service unavailable");
+        }, true);
+
+        // WHEN + THEN
+        assertThrows(IllegalStateException.class, () -> dao.get("a"));
+    }
+
+    @Test
+    public void get_everyCallThreadBusy_throwsDependencyTimeoutExceptionWithoutCallingOnCaller() throws Exception {
+        // GIVEN - the executor's only thread is taken, and it refuses anything more
+        executor.shutdownNow();
+        executor = new ThreadPoolExecutor(1, 1, 0L, TimeUnit.MILLISECONDS, new SynchronousQueue<>(),
+                new ThreadPoolExecutor.AbortPolicy());
+        CountDownLatch started = new CountDownLatch(1);
+        executor.submit(() -> {
+            started.countDown();
+            return awaitRelease("busy");
+        });
+        assertTrue(started.await(5, TimeUnit.SECONDS));
+        AtomicInteger calls = new AtomicInteger();
+        ResilientReadableDao<String, String> dao = resilient(input -> {
+            calls.incrementAndGet();
+            return input;
+        }, true);
+
+        // WHEN + THEN
+        assertThrows(DependencyTimeoutException.class, () -> dao.get("a"));
+        assertEquals(0, calls.get());
+        assertEquals(1, dependencyStatistics.getStatistics().get(DEPENDENCY).getRejectionCount());
+    }
+
+    private ResilientReadableDao<String, String> resilient(ReadableDao<String, String> delegate, boolean hedging) {
+        return new ResilientReadableDao<>(DEPENDENCY, delegate, executor, TIMEOUT, hedging, dependencyStatistics);
+    }
+
+    /**
+     * A dependency whose first call for the slow query hangs until released. Any other call takes a couple of
+     * milliseconds, so the hedge delay is long enough for the first call to start before its hedge.
+     */
+    private ReadableDao<String, String> hangsOnFirstCall(String slowQuery) {
+        AtomicInteger slowCalls = new AtomicInteger();
+        return input -> {
+            if (input.equals(slowQuery) && slowCalls.incrementAndGet() == 1) {
+                return awaitRelease(input);
+            }
+            try {
+                Thread.sleep(2);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            return input;
+        };
+    }
+
+    private String awaitRelease(String input) {
+        try {
+            release.await();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException(e);
+        }
+        return input;
+    }
+}
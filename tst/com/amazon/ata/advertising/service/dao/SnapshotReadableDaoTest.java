@@ -0,0 +1,131 @@
+package com.amazon.ata.advertising.service.dao;
+
+import com.amazon.ata.advertising.service.model.RequestContext;
+import com.amazon.ata.primeclubservice.Benefit;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class SnapshotReadableDaoTest {
+    private static final String US = "ATVPDKIKX0DER";
+    private static final String DAO = "primeBenefits";
+    private static final Instant CREATED_AT = Instant.parse("2021-06-01T00:00:00Z");
+    private static final List<String> SNAPSHOT_BENEFITS = Collections.singletonList(Benefit.DIM_SUM);
+    private static final List<String> REMOTE_BENEFITS = Collections.singletonList(Benefit.MOM_LITE);
+
+    @TempDir
+    public Path directory;
+
+    private Path file;
+    private AtomicInteger remoteCalls;
+    private CacheStatistics cacheStatistics;
+
+    @BeforeEach
+    public void setup() throws IOException {
+        file = directory.resolve("customers.snapshot");
+        writeSnapshot(CREATED_AT);
+        remoteCalls = new AtomicInteger();
+        cacheStatistics = new CacheStatistics();
+    }
+
+    @Test
+    public void get_customerInSnapshot_doesNotCallDao() {
+        // GIVEN
+        ReadableDao<RequestContext, List<String>> dao = dao(loader(CREATED_AT.plus(Duration.ofHours(1))));
+
+        // WHEN
+        List<String> benefits = dao.get(new RequestContext("alice", US));
+
+        // THEN
+        assertEquals(SNAPSHOT_BENEFITS, benefits);
+        assertEquals(0, remoteCalls.get());
+        assertEquals(1, cacheStatistics.getSnapshotStatistics().get(DAO).getHitCount());
+    }
+
+    @Test
+    public void get_customerNotInSnapshot_callsDao() {
+        // GIVEN
+        ReadableDao<RequestContext, List<String>> dao = dao(loader(CREATED_AT.plus(Duration.ofHours(1))));
+
+        // WHEN
+        List<String> benefits = dao.get(new RequestContext("bob", US));
+
+        // THEN
+        assertEquals(REMOTE_BENEFITS, benefits);
+        assertEquals(1, remoteCalls.get());
+        assertEquals(1, cacheStatistics.getSnapshotStatistics().get(DAO).getFallbackCount());
+    }
+
+    @Test
+    public void get_snapshotTooOld_callsDao() {
+        // GIVEN
+        ReadableDao<RequestContext, List<String>> dao = dao(loader(CREATED_AT.plus(Duration.ofDays(3))));
+
+        // WHEN
+        List<String> benefits = dao.get(new RequestContext("alice", US));
+
+        // THEN
+        assertEquals(REMOTE_BENEFITS, benefits);
+        assertEquals(1, remoteCalls.get());
+    }
+
+    @Test
+    public void get_noSnapshot_callsDao() {
+        // GIVEN
+        ReadableDao<RequestContext, List<String>> dao = dao(new CustomerSnapshotLoader(null, Duration.ofDays(2),
+                Clock.fixed(CREATED_AT, ZoneOffset.UTC)));
+
+        // WHEN
+        List<String> benefits = dao.get(new RequestContext("alice", US));
+
+        // THEN
+        assertEquals(REMOTE_BENEFITS, benefits);
+    }
+
+    @Test
+    public void reload_snapshotReplaced_mapsNewSnapshot() throws IOException {
+        // GIVEN
+        CustomerSnapshotLoader loader = loader(CREATED_AT.plus(Duration.ofDays(1)));
+        assertFalse(loader.reload());
+
+        // WHEN
+        writeSnapshot(CREATED_AT.plus(Duration.ofDays(1)));
+        file.toFile().setLastModified(System.currentTimeMillis() + 10_000);
+
+        // THEN
+        assertTrue(loader.reload());
+        assertEquals(CREATED_AT.plus(Duration.ofDays(1)), loader.get().getCreatedAt());
+    }
+
+    private ReadableDao<RequestContext, List<String>> dao(CustomerSnapshotLoader loader) {
+        return new SnapshotReadableDao<>(DAO, loader, CustomerSnapshot::getPrimeBenefits, requestContext -> {
+            remoteCalls.incrementAndGet();
+            return REMOTE_BENEFITS;
+        }, cacheStatistics);
+    }
+
+    private CustomerSnapshotLoader loader(Instant now) {
+        return new CustomerSnapshotLoader(file, Duration.ofDays(2), Clock.fixed(now, ZoneOffset.UTC));
+    }
+
+    private void writeSnapshot(Instant createdAt) throws IOException {
+        try (CustomerSnapshotWriter writer = new CustomerSnapshotWriter(file, 5, Collections.singleton(US),
+                Clock.fixed(createdAt, ZoneOffset.UTC))) {
+            writer.write("alice", US, null, null, SNAPSHOT_BENEFITS);
+        }
+    }
+}
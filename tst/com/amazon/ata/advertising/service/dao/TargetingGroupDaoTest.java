@@ -6,24 +6,40 @@ import com.amazon.ata.advertising.service.dependency.TargetingPredicateInjector;
 import com.amazon.ata.advertising.service.targeting.TargetingGroup;
 import com.amazon.ata.advertising.service.targeting.predicate.ParentPredicate;
 import com.amazon.ata.advertising.service.targeting.predicate.TargetingPredicate;
+import com.amazonaws.services.dynamodbv2.AmazonDynamoDB;
 import com.amazonaws.services.dynamodbv2.datamodeling.DynamoDBMapper;
+import com.amazonaws.services.dynamodbv2.datamodeling.DynamoDBMapperConfig;
 import com.amazonaws.services.dynamodbv2.datamodeling.DynamoDBQueryExpression;
 import com.amazonaws.services.dynamodbv2.datamodeling.PaginatedQueryList;
+import com.amazonaws.services.dynamodbv2.model.AttributeValue;
+import com.amazonaws.services.dynamodbv2.model.ConditionalCheckFailedException;
+import com.amazonaws.services.dynamodbv2.model.ReturnValue;
+import com.amazonaws.services.dynamodbv2.model.UpdateItemRequest;
+import com.amazonaws.services.dynamodbv2.model.UpdateItemResult;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.mockito.ArgumentCaptor;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
 
+import java.util.Arrays;
 import java.util.Collections;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.UUID;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
 import static org.junit.jupiter.api.Assertions.assertNotNull;
 import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
 import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 import static org.mockito.MockitoAnnotations.initMocks;
@@ -37,6 +53,9 @@ class TargetingGroupDaoTest {
     @Mock
     private DynamoDBMapper mapper;
 
+    @Mock
+    private AmazonDynamoDB dynamoDb;
+
     @Mock
     private PaginatedQueryList<TargetingGroup> paginatedQueryList;
 
@@ -49,6 +68,7 @@ class TargetingGroupDaoTest {
 
         argumentCaptor = ArgumentCaptor.forClass(DynamoDBQueryExpression.class);
         when(mapper.query(eq(TargetingGroup.class), argumentCaptor.capture())).thenReturn(paginatedQueryList);
+        useTableModelOf(new DynamoDBMapper(dynamoDb));
     }
 
     @Test
@@ -66,6 +86,32 @@ class TargetingGroupDaoTest {
         assertEquals(paginatedQueryList, targetingGroups);
     }
 
+    @Test
+    public void getAll_multipleContentIds_returnsTargetingGroupsForEachContentId() {
+        // GIVEN
+        String contentId1 = UUID.randomUUID().toString();
+        String contentId2 = UUID.randomUUID().toString();
+        TargetingGroup group1 = new TargetingGroup(UUID.randomUUID().toString(), contentId1, 0.1, Collections.emptyList());
+        TargetingGroup group2 = new TargetingGroup(UUID.randomUUID().toString(), contentId2, 0.2, Collections.emptyList());
+        PaginatedQueryList<TargetingGroup> groups1 = mockQueryList(group1);
+        PaginatedQueryList<TargetingGroup> groups2 = mockQueryList(group2);
+        when(mapper.query(eq(TargetingGroup.class), any())).thenAnswer(invocation -> {
+            DynamoDBQueryExpression<TargetingGroup> expression = invocation.getArgument(1);
+            return contentId1.equals(expression.getHashKeyValues().getContentId()) ? groups1 : groups2;
+        });
+        ExecutorService executor = Executors.newFixedThreadPool(2);
+        TargetingGroupDao bulkDao = new TargetingGroupDao(injector, mapper, dynamoDb, executor);
+
+        // WHEN
+        Map<String, List<TargetingGroup>> targetingGroups = bulkDao.getAll(Arrays.asList(contentId1, contentId2, contentId1));
+        executor.shutdown();
+
+        // THEN
+        assertEquals(2, targetingGroups.size());
+        assertEquals(Collections.singletonList(group1), targetingGroups.get(contentId1));
+        assertEquals(Collections.singletonList(group2), targetingGroups.get(contentId2));
+    }
+
     @Test
     public void create_newTargetingGroup_saves() {
         // GIVEN
@@ -88,39 +134,118 @@ class TargetingGroupDaoTest {
         // GIVEN
         String targetingGroupId = UUID.randomUUID().toString();
         double clickThroughRate = 0.314;
-        when(mapper.load(any(TargetingGroup.class))).thenReturn(null);
+        when(dynamoDb.updateItem(any(UpdateItemRequest.class))).thenThrow(new ConditionalCheckFailedException("gone"));
 
         // WHEN + THEN
         assertThrows(AdvertisementClientException.class, () -> targetingGroupDao.update(targetingGroupId, clickThroughRate));
+        verify(mapper, never()).save(any());
     }
 
     @Test
-    public void update_targetingGroupExists_saveChanges() {
+    public void update_targetingGroupExists_updatesClickThroughRateInOneConditionalWrite() {
         // GIVEN
         String targetingGroupId = UUID.randomUUID().toString();
         double clickThroughRate = 0.314;
-        TargetingGroup targetingGroup = new TargetingGroup(targetingGroupId, "1", 1.0, Collections.emptyList());
-        when(mapper.load(any(TargetingGroup.class))).thenReturn(targetingGroup);
+        Map<String, AttributeValue> item = Collections.singletonMap("TargetingGroupId",
+                new AttributeValue(targetingGroupId));
+        TargetingGroup targetingGroup = new TargetingGroup(targetingGroupId, "1", clickThroughRate,
+                Collections.emptyList());
+        ArgumentCaptor<UpdateItemRequest> update = ArgumentCaptor.forClass(UpdateItemRequest.class);
+        when(dynamoDb.updateItem(update.capture())).thenReturn(new UpdateItemResult().withAttributes(item));
+        when(mapper.marshallIntoObject(TargetingGroup.class, item)).thenReturn(targetingGroup);
 
         // WHEN
         TargetingGroup actualTargetingGroup = targetingGroupDao.update(targetingGroupId, clickThroughRate);
 
         // THEN
-        verify(mapper).save(actualTargetingGroup);
-        assertEquals(clickThroughRate, actualTargetingGroup.getClickThroughRate());
+        assertEquals(targetingGroup, actualTargetingGroup);
+        assertEquals("TargetingGroups", update.getValue().getTableName());
+        assertEquals(new AttributeValue(targetingGroupId), update.getValue().getKey().get("TargetingGroupId"));
+        assertEquals("attribute_exists(#id)", update.getValue().getConditionExpression());
+        assertEquals(new AttributeValue().withN("0.314"),
+                update.getValue().getExpressionAttributeValues().get(":clickThroughRate"));
+        assertEquals(ReturnValue.ALL_NEW.toString(), update.getValue().getReturnValues());
+        verify(mapper, never()).load(any());
     }
 
     @Test
-    public void delete_contentIdExists_deletesAndReturnsTargetingGroups() {
+    public void addEvents_enoughImpressions_addsTotalsThenSetsClickThroughRateIfUnchanged() {
         // GIVEN
-        String contentId = "0b63284a-9c16-11e8-98d0-529269fb1459";
+        String targetingGroupId = UUID.randomUUID().toString();
+        Map<String, AttributeValue> totals = new HashMap<>();
+        totals.put("Impressions", new AttributeValue().withN("200"));
+        totals.put("Clicks", new AttributeValue().withN("5"));
+        ArgumentCaptor<UpdateItemRequest> update = ArgumentCaptor.forClass(UpdateItemRequest.class);
+        when(dynamoDb.updateItem(update.capture())).thenReturn(new UpdateItemResult().withAttributes(totals));
 
         // WHEN
-        List<TargetingGroup> targetingGroups = targetingGroupDao.delete(contentId);
+        boolean updated = targetingGroupDao.addEvents(targetingGroupId, 40, 2, 100);
 
         // THEN
-        assertEquals(paginatedQueryList, targetingGroups);
-        verify(mapper).batchDelete(targetingGroups);
+        assertTrue(updated);
+        UpdateItemRequest add = update.getAllValues().get(0);
+        assertEquals("ADD #impressions :impressions, #clicks :clicks", add.getUpdateExpression());
+        assertEquals("attribute_exists(#id)", add.getConditionExpression());
+        assertEquals(new AttributeValue().withN("40"), add.getExpressionAttributeValues().get(":impressions"));
+        assertEquals(new AttributeValue().withN("2"), add.getExpressionAttributeValues().get(":clicks"));
+        UpdateItemRequest set = update.getAllValues().get(1);
+        assertEquals("#impressions = :impressions", set.getConditionExpression());
+        assertEquals(new AttributeValue().withN("200"), set.getExpressionAttributeValues().get(":impressions"));
+        assertEquals(new AttributeValue().withN("0.025"),
+                set.getExpressionAttributeValues().get(":clickThroughRate"));
     }
 
+    @Test
+    public void addEvents_tooFewImpressionsOrNewerTotals_doesNotSetClickThroughRate() {
+        // GIVEN
+        Map<String, AttributeValue> few = new HashMap<>();
+        few.put("Impressions", new AttributeValue().withN("50"));
+        few.put("Clicks", new AttributeValue().withN("1"));
+        Map<String, AttributeValue> enough = new HashMap<>();
+        enough.put("Impressions", new AttributeValue().withN("500"));
+        enough.put("Clicks", new AttributeValue().withN("1"));
+        when(dynamoDb.updateItem(any(UpdateItemRequest.class)))
+                .thenReturn(new UpdateItemResult().withAttributes(few))
+                .thenReturn(new UpdateItemResult().withAttributes(enough))
+                .thenThrow(new ConditionalCheckFailedException("newer totals"))
+                .thenThrow(new ConditionalCheckFailedException("gone"));
+
+        // WHEN + THEN
+        assertFalse(targetingGroupDao.addEvents("1", 50, 1, 100));
+        assertFalse(targetingGroupDao.addEvents("1", 450, 0, 100));
+        assertThrows(AdvertisementClientException.class, () -> targetingGroupDao.addEvents("2", 1, 0, 100));
+    }
+
+    @Test
+    public void update_mapperOverridesTableName_writesToOverriddenTable() {
+        // GIVEN
+        useTableModelOf(new DynamoDBMapper(dynamoDb, DynamoDBMapperConfig.builder()
+                .withTableNameOverride(DynamoDBMapperConfig.TableNameOverride.withTableNamePrefix("Beta-"))
+                .build()));
+        ArgumentCaptor<UpdateItemRequest> update = ArgumentCaptor.forClass(UpdateItemRequest.class);
+        when(dynamoDb.updateItem(update.capture())).thenReturn(new UpdateItemResult()
+                .withAttributes(Collections.singletonMap("TargetingGroupId", new AttributeValue("1"))));
+
+        // WHEN
+        targetingGroupDao.update("1", 0.5);
+
+        // THEN
+        assertEquals("Beta-TargetingGroups", update.getValue().getTableName());
+    }
+
+    private void useTableModelOf(DynamoDBMapper modelMapper) {
+        when(mapper.getTableModel(TargetingGroup.class)).thenReturn(modelMapper.getTableModel(TargetingGroup.class));
+        when(mapper.generateCreateTableRequest(TargetingGroup.class))
+                .thenReturn(modelMapper.generateCreateTableRequest(TargetingGroup.class));
+    }
+
+    @SuppressWarnings("unchecked")
+    private PaginatedQueryList<TargetingGroup> mockQueryList(TargetingGroup targetingGroup) {
+        PaginatedQueryList<TargetingGroup> queryList = mock(PaginatedQueryList.class);
+        List<TargetingGroup> groups = Collections.singletonList(targetingGroup);
+        when(queryList.size()).thenReturn(groups.size());
+        when(queryList.toArray()).thenReturn(groups.toArray());
+        when(queryList.iterator()).thenAnswer(invocation -> groups.iterator());
+        return queryList;
+    }
 }
@@ -0,0 +1,109 @@
+package com.amazon.ata.advertising.service.dao;
+
+import com.amazon.ata.advertising.service.targeting.predicate.ParentPredicate;
+import com.amazon.ata.advertising.service.targeting.predicate.TargetingPredicate;
+import com.amazon.ata.advertising.service.targeting.predicate.TargetingPredicateCodec;
+import com.amazonaws.services.dynamodbv2.AmazonDynamoDB;
+import com.amazonaws.services.dynamodbv2.model.AttributeValue;
+import com.amazonaws.services.dynamodbv2.model.ConditionalCheckFailedException;
+import com.amazonaws.services.dynamodbv2.model.ScanRequest;
+import com.amazonaws.services.dynamodbv2.model.ScanResult;
+import com.amazonaws.services.dynamodbv2.model.UpdateItemRequest;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+import static org.mockito.MockitoAnnotations.initMocks;
+
+public class TargetingPredicateMigratorTest {
+    private static final List<TargetingPredicate> PREDICATES = Collections.singletonList(new ParentPredicate(true));
+    private static final String JSON = "[{\"@class\":\"com.amazon.ata.advertising.service.targeting.predicate." +
+            "ParentPredicate\",\"inverse\":true}]";
+
+    @Mock
+    private AmazonDynamoDB dynamoDb;
+
+    private TargetingPredicateMigrator migrator;
+
+    @BeforeEach
+    public void setup() {
+        initMocks(this);
+        migrator = new TargetingPredicateMigrator(dynamoDb);
+
+        Map<String, AttributeValue> lastKey = Collections.singletonMap("TargetingGroupId", new AttributeValue("2"));
+        when(dynamoDb.scan(any(ScanRequest.class))).thenAnswer(invocation -> {
+            ScanRequest request = invocation.getArgument(0);
+            if (request.getExclusiveStartKey() == null) {
+                return new ScanResult()
+                        .withItems(item("1", new AttributeValue(JSON)), item("2", new AttributeValue("[{]")))
+                        .withLastEvaluatedKey(lastKey);
+            }
+            return new ScanResult().withItems(
+                    item("3", new AttributeValue().withB(ByteBuffer.wrap(TargetingPredicateCodec.encode(PREDICATES)))),
+                    item("4", null),
+                    item("5", new AttributeValue(JSON)));
+        });
+    }
+
+    @Test
+    public void migrate_jsonRows_rewritesThemAsBinaryIfUnchanged() {
+        // GIVEN
+        ArgumentCaptor<UpdateItemRequest> updates = ArgumentCaptor.forClass(UpdateItemRequest.class);
+        when(dynamoDb.updateItem(updates.capture()))
+                .thenReturn(null)
+                .thenThrow(new ConditionalCheckFailedException("changed"));
+
+        // WHEN
+        TargetingPredicateMigrator.Result result = migrator.migrate(false);
+
+        // THEN
+        assertEquals(1, result.getMigrated());
+        assertEquals(2, result.getSkipped());
+        assertEquals(1, result.getConflicts());
+        assertEquals(1, result.getFailed());
+        UpdateItemRequest update = updates.getAllValues().get(0);
+        assertEquals(new AttributeValue("1"), update.getKey().get("TargetingGroupId"));
+        assertEquals("#predicates = :json", update.getConditionExpression());
+        assertEquals(new AttributeValue(JSON), update.getExpressionAttributeValues().get(":json"));
+        assertEquals(PREDICATES, TargetingPredicateCodec.decode(
+                update.getExpressionAttributeValues().get(":binary").getB()));
+        assertEquals(Arrays.asList("1", "5"), Arrays.asList(
+                updates.getAllValues().get(0).getKey().get("TargetingGroupId").getS(),
+                updates.getAllValues().get(1).getKey().get("TargetingGroupId").getS()));
+    }
+
+    @Test
+    public void migrate_dryRun_writesNothing() {
+        // WHEN
+        TargetingPredicateMigrator.Result result = migrator.migrate(true);
+
+        // THEN
+        assertEquals(2, result.getMigrated());
+        assertEquals(1, result.getFailed());
+        verify(dynamoDb, times(2)).scan(any(ScanRequest.class));
+        verify(dynamoDb, never()).updateItem(any(UpdateItemRequest.class));
+    }
+
+    private static Map<String, AttributeValue> item(String id, AttributeValue predicates) {
+        Map<String, AttributeValue> item = new HashMap<>();
+        item.put("TargetingGroupId", new AttributeValue(id));
+        if (predicates != null) {
+            item.put("TargetingPredicates", predicates);
+        }
+        return item;
+    }
+}
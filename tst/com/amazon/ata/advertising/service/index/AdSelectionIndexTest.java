@@ -0,0 +1,292 @@
+package com.amazon.ata.advertising.service.index;
+
+import com.amazon.ata.advertising.service.dao.BulkReadableDao;
+import com.amazon.ata.advertising.service.dao.ReadableDao;
+import com.amazon.ata.advertising.service.model.AdvertisementContent;
+import com.amazon.ata.advertising.service.targeting.TargetingGroup;
+import com.amazon.ata.advertising.service.targeting.predicate.AgeTargetingPredicate;
+import com.amazon.ata.advertising.service.targeting.predicate.PrimeBenefitTargetingPredicate;
+import com.amazon.ata.advertising.service.targeting.predicate.TargetingPredicate;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mock;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+import static org.mockito.MockitoAnnotations.initMocks;
+
+public class AdSelectionIndexTest {
+    private static final String MARKETPLACE_ID = "1";
+    private static final Instant NOW = Instant.parse("2020-01-01T00:00:00Z");
+
+    private static final String CONTENT_ID = UUID.randomUUID().toString();
+    private static final AdvertisementContent CONTENT = AdvertisementContent.builder().withContentId(CONTENT_ID).build();
+    private static final TargetingGroup GROUP = TargetingGroup.builder()
+            .withContentId(CONTENT_ID)
+            .withClickThroughRate(0.5)
+            .withTargetingPredicates(Collections.emptyList())
+            .build();
+
+    @Mock
+    private ReadableDao<String, List<AdvertisementContent>> contentDao;
+
+    @Mock
+    private BulkReadableDao<String, List<TargetingGroup>> targetingGroupDao;
+
+    private AdSelectionIndex index;
+
+    @BeforeEach
+    public void setup() {
+        initMocks(this);
+        index = new AdSelectionIndex(contentDao, targetingGroupDao, AdSelectionIndex.DEFAULT_MAXIMUM_MARKETPLACES,
+                AdSelectionIndex.DEFAULT_IDLE_EXPIRY, AdSelectionIndex.DEFAULT_MAXIMUM_AGE,
+                Clock.fixed(NOW, ZoneOffset.UTC));
+        when(contentDao.get(MARKETPLACE_ID)).thenReturn(Collections.singletonList(CONTENT));
+        when(targetingGroupDao.getAll(Collections.singletonList(CONTENT_ID)))
+                .thenReturn(Collections.singletonMap(CONTENT_ID, Collections.singletonList(GROUP)));
+    }
+
+    @Test
+    public void getSnapshot_firstRequest_buildsSnapshotAndRecordsMiss() {
+        // WHEN
+        MarketplaceSnapshot snapshot = index.getSnapshot(MARKETPLACE_ID);
+
+        // THEN
+        assertEquals(Collections.singletonList(CONTENT), snapshot.getContents());
+        assertEquals(Collections.singletonList(GROUP), snapshot.getTargetingGroups(CONTENT_ID));
+        assertEquals(1, index.getMetrics().getMissCount());
+        assertEquals(0, index.getMetrics().getHitCount());
+    }
+
+    @Test
+    public void getSnapshot_repeatedRequests_servedWithoutReadingDaos() {
+        // GIVEN
+        MarketplaceSnapshot first = index.getSnapshot(MARKETPLACE_ID);
+
+        // WHEN
+        MarketplaceSnapshot second = index.getSnapshot(MARKETPLACE_ID);
+
+        // THEN
+        assertSame(first, second);
+        verify(contentDao, times(1)).get(MARKETPLACE_ID);
+        verify(targetingGroupDao, times(1)).getAll(Collections.singletonList(CONTENT_ID));
+        assertEquals(1, index.getMetrics().getHitCount());
+    }
+
+    @Test
+    public void refresh_contentChanged_swapsInNewSnapshot() {
+        // GIVEN
+        index.getSnapshot(MARKETPLACE_ID);
+        String newContentId = UUID.randomUUID().toString();
+        AdvertisementContent newContent = AdvertisementContent.builder().withContentId(newContentId).build();
+        when(contentDao.get(MARKETPLACE_ID)).thenReturn(Arrays.asList(CONTENT, newContent));
+
+        // WHEN
+        index.refresh();
+
+        // THEN
+        assertEquals(Arrays.asList(CONTENT, newContent), index.getSnapshot(MARKETPLACE_ID).getContents());
+        assertEquals(1, index.getMetrics().getRefreshCount());
+    }
+
+    @Test
+    public void refresh_daoFails_keepsPreviousSnapshot() {
+        // GIVEN
+        MarketplaceSnapshot original = index.getSnapshot(MARKETPLACE_ID);
+        when(contentDao.get(MARKETPLACE_ID)).thenThrow(new RuntimeException("DynamoDB unavailable"));
+
+        // WHEN
+        index.refresh();
+
+        // THEN
+        assertSame(original, index.getSnapshot(MARKETPLACE_ID));
+        assertEquals(1, index.getMetrics().getRefreshFailureCount());
+    }
+
+    @Test
+    public void getSnapshot_indexFull_evictsLeastRecentlyRequestedMarketplace() {
+        // GIVEN
+        Clock clock = mock(Clock.class);
+        when(clock.instant()).thenReturn(NOW);
+        when(clock.millis()).thenReturn(NOW.toEpochMilli(), NOW.toEpochMilli() + 1_000, NOW.toEpochMilli() + 2_000,
+                NOW.toEpochMilli() + 3_000);
+        index = new AdSelectionIndex(contentDao, targetingGroupDao, 2, AdSelectionIndex.DEFAULT_IDLE_EXPIRY,
+                AdSelectionIndex.DEFAULT_MAXIMUM_AGE, clock);
+        when(contentDao.get("2")).thenReturn(Collections.singletonList(CONTENT));
+        when(contentDao.get("3")).thenReturn(Collections.singletonList(CONTENT));
+        index.getSnapshot(MARKETPLACE_ID);
+        index.getSnapshot("2");
+        index.getSnapshot(MARKETPLACE_ID);
+
+        // WHEN
+        MarketplaceSnapshot third = index.getSnapshot("3");
+
+        // THEN
+        assertSame(third, index.getSnapshot("3"));
+        assertEquals(2, index.getMarketplaceCount());
+        assertNull(index.getRefreshAge("2"));
+        assertEquals(Duration.ZERO, index.getRefreshAge(MARKETPLACE_ID));
+        assertEquals(1, index.getMetrics().getEvictionCount());
+    }
+
+    @Test
+    public void getSnapshot_marketplaceWithoutContent_servesSnapshotWithoutIndexingIt() {
+        // GIVEN
+        when(contentDao.get("unknown")).thenReturn(Collections.emptyList());
+
+        // WHEN
+        MarketplaceSnapshot first = index.getSnapshot("unknown");
+        MarketplaceSnapshot second = index.getSnapshot("unknown");
+
+        // THEN
+        assertEquals(Collections.emptyList(), first.getContents());
+        assertNotSame(first, second);
+        assertEquals(0, index.getMarketplaceCount());
+        assertEquals(2, index.getMetrics().getRejectionCount());
+    }
+
+    @Test
+    public void getSnapshot_snapshotOlderThanMaximumAge_rebuildsBeforeServing() {
+        // GIVEN
+        Instant expired = NOW.plus(AdSelectionIndex.DEFAULT_MAXIMUM_AGE).plusSeconds(1);
+        Clock clock = mock(Clock.class);
+        when(clock.instant()).thenReturn(NOW, expired);
+        when(clock.millis()).thenReturn(NOW.toEpochMilli(), expired.toEpochMilli());
+        index = new AdSelectionIndex(contentDao, targetingGroupDao, AdSelectionIndex.DEFAULT_MAXIMUM_MARKETPLACES,
+                AdSelectionIndex.DEFAULT_IDLE_EXPIRY, AdSelectionIndex.DEFAULT_MAXIMUM_AGE, clock);
+        MarketplaceSnapshot original = index.getSnapshot(MARKETPLACE_ID);
+
+        // WHEN
+        MarketplaceSnapshot served = index.getSnapshot(MARKETPLACE_ID);
+
+        // THEN
+        assertNotSame(original, served);
+        assertEquals(expired, served.getBuiltAt());
+        assertSame(served, index.getSnapshot(MARKETPLACE_ID));
+        verify(contentDao, times(2)).get(MARKETPLACE_ID);
+        assertEquals(1, index.getMetrics().getExpiredRebuildCount());
+    }
+
+    @Test
+    public void getSnapshot_expiredSnapshotCannotBeRebuilt_failsInsteadOfServingIt() {
+        // GIVEN
+        Instant expired = NOW.plus(AdSelectionIndex.DEFAULT_MAXIMUM_AGE).plusSeconds(1);
+        Clock clock = mock(Clock.class);
+        when(clock.instant()).thenReturn(NOW);
+        when(clock.millis()).thenReturn(NOW.toEpochMilli(), expired.toEpochMilli());
+        index = new AdSelectionIndex(contentDao, targetingGroupDao, AdSelectionIndex.DEFAULT_MAXIMUM_MARKETPLACES,
+                AdSelectionIndex.DEFAULT_IDLE_EXPIRY, AdSelectionIndex.DEFAULT_MAXIMUM_AGE, clock);
+        index.getSnapshot(MARKETPLACE_ID);
+        when(contentDao.get(MARKETPLACE_ID)).thenThrow(new RuntimeException("DynamoDB unavailable"));
+
+        // WHEN + THEN
+        assertThrows(RuntimeException.class, () -> index.getSnapshot(MARKETPLACE_ID));
+        assertEquals(1, index.getMetrics().getRefreshFailureCount());
+    }
+
+    @Test
+    public void getSnapshot_indexedSnapshot_recordsItsAgeWhenServed() {
+        // GIVEN
+        Clock clock = mock(Clock.class);
+        when(clock.instant()).thenReturn(NOW);
+        when(clock.millis()).thenReturn(NOW.toEpochMilli(), NOW.toEpochMilli() + 60_000);
+        index = new AdSelectionIndex(contentDao, targetingGroupDao, AdSelectionIndex.DEFAULT_MAXIMUM_MARKETPLACES,
+                AdSelectionIndex.DEFAULT_IDLE_EXPIRY, AdSelectionIndex.DEFAULT_MAXIMUM_AGE, clock);
+        index.getSnapshot(MARKETPLACE_ID);
+
+        // WHEN
+        index.getSnapshot(MARKETPLACE_ID);
+
+        // THEN
+        assertEquals(2, index.getMetrics().getServedAgeSampleCount());
+        assertEquals(0, index.getMetrics().getServedAgePercentileMillis(0.5));
+        assertEquals(60_000, index.getMetrics().getServedAgePercentileMillis(1.0));
+    }
+
+    @Test
+    public void refresh_marketplaceContentDeleted_dropsIt() {
+        // GIVEN
+        index.getSnapshot(MARKETPLACE_ID);
+        when(contentDao.get(MARKETPLACE_ID)).thenReturn(Collections.emptyList());
+
+        // WHEN
+        index.refresh();
+
+        // THEN
+        assertEquals(0, index.getMarketplaceCount());
+        assertEquals(1, index.getMetrics().getEvictionCount());
+    }
+
+    @Test
+    public void refresh_marketplaceNotRequestedWithinIdleExpiry_dropsItWithoutRebuilding() {
+        // GIVEN
+        Clock clock = mock(Clock.class);
+        when(clock.instant()).thenReturn(NOW);
+        when(clock.millis()).thenReturn(NOW.toEpochMilli(),
+                NOW.plus(AdSelectionIndex.DEFAULT_IDLE_EXPIRY).toEpochMilli() + 1);
+        index = new AdSelectionIndex(contentDao, targetingGroupDao, AdSelectionIndex.DEFAULT_MAXIMUM_MARKETPLACES,
+                AdSelectionIndex.DEFAULT_IDLE_EXPIRY, AdSelectionIndex.DEFAULT_MAXIMUM_AGE, clock);
+        index.getSnapshot(MARKETPLACE_ID);
+
+        // WHEN
+        index.refresh();
+
+        // THEN
+        verify(contentDao, times(1)).get(MARKETPLACE_ID);
+        assertEquals(0, index.getMarketplaceCount());
+        assertEquals(1, index.getMetrics().getEvictionCount());
+        assertEquals(0, index.getMetrics().getRefreshCount());
+    }
+
+    @Test
+    public void getRefreshAge_indexedMarketplace_returnsAgeOfSnapshot() {
+        // GIVEN
+        index.getSnapshot(MARKETPLACE_ID);
+
+        // WHEN + THEN
+        assertEquals(Duration.ZERO, index.getRefreshAge(MARKETPLACE_ID));
+        assertNull(index.getRefreshAge("2"));
+    }
+
+    @Test
+    public void getSnapshot_groupsWithEqualPredicates_shareOnePredicateInstance() {
+        // GIVEN
+        TargetingGroup freeShippingAdults = TargetingGroup.builder()
+                .withContentId(CONTENT_ID)
+                .withTargetingPredicates(Arrays.asList(
+                        new PrimeBenefitTargetingPredicate("FREE_SHIPPING"), new AgeTargetingPredicate("AGE_22_TO_25")))
+                .build();
+        TargetingGroup freeShipping = TargetingGroup.builder()
+                .withContentId(CONTENT_ID)
+                .withTargetingPredicates(Collections.singletonList(new PrimeBenefitTargetingPredicate("FREE_SHIPPING")))
+                .build();
+        when(targetingGroupDao.getAll(Collections.singletonList(CONTENT_ID)))
+                .thenReturn(Collections.singletonMap(CONTENT_ID, Arrays.asList(freeShippingAdults, freeShipping)));
+
+        // WHEN
+        MarketplaceSnapshot snapshot = index.getSnapshot(MARKETPLACE_ID);
+
+        // THEN
+        List<TargetingGroup> groups = snapshot.getTargetingGroups(CONTENT_ID);
+        TargetingPredicate first = groups.get(0).getTargetingPredicates().get(0);
+        TargetingPredicate second = groups.get(1).getTargetingPredicates().get(0);
+        assertSame(first, second);
+        assertEquals(2, snapshot.getDistinctPredicateCount());
+    }
+}
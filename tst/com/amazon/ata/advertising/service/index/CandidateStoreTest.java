@@ -0,0 +1,114 @@
+package com.amazon.ata.advertising.service.index;
+
+import com.amazon.ata.advertising.service.model.AdvertisementContent;
+import com.amazon.ata.advertising.service.targeting.TargetingGroup;
+import org.junit.jupiter.api.Test;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+public class CandidateStoreTest {
+    private static final AdvertisementContent CONTENT1 = AdvertisementContent.builder().withContentId("1").build();
+    private static final AdvertisementContent CONTENT2 = AdvertisementContent.builder().withContentId("2").build();
+    private static final AdvertisementContent CONTENT3 = AdvertisementContent.builder().withContentId("3").build();
+
+    @Test
+    public void selectTop_eligibleGroups_returnsDistinctContentBestFirst() {
+        // GIVEN
+        CandidateStore store = new CandidateStore(Arrays.asList(
+                group(CONTENT2, 0.9), group(CONTENT1, 0.5), group(CONTENT2, 0.4), group(CONTENT3, 0.1)));
+
+        // WHEN
+        List<AdvertisementContent> top = store.selectTop(bits(0, 2, 3), 3);
+
+        // THEN
+        assertEquals(Arrays.asList(CONTENT2, CONTENT3), top);
+        assertEquals(2, store.bestEligible(bits(2, 3)));
+        assertEquals(Collections.singletonList(CONTENT1), store.selectTop(bits(1, 3), 1));
+    }
+
+    @Test
+    public void bestEligible_noneEligible_returnsNegative() {
+        // GIVEN
+        CandidateStore store = new CandidateStore(Arrays.asList(group(CONTENT1, 0.5), group(CONTENT2, 0.4)));
+
+        // WHEN + THEN
+        assertEquals(-1, store.bestEligible(new long[0]));
+        assertEquals(-1, store.bestEligible(new long[] {0L, 0L}));
+        assertEquals(-1, store.bestEligible(new long[] {1L << 2}));
+        assertEquals(Collections.emptyList(), store.selectTop(new long[] {1L << 2}, 2));
+    }
+
+    @Test
+    public void new_unorderedGroups_throws() {
+        assertThrows(IllegalArgumentException.class,
+                () -> new CandidateStore(Arrays.asList(group(CONTENT1, 0.1), group(CONTENT2, 0.2))));
+    }
+
+    @Test
+    public void selectTop_randomSnapshots_matchesWalkingGroups() {
+        Random random = new Random(19);
+        for (int trial = 0; trial < 100; trial++) {
+            // GIVEN
+            List<AdvertisementContent> contents = new ArrayList<>();
+            Map<String, List<TargetingGroup>> groups = new HashMap<>();
+            for (int i = random.nextInt(200); i > 0; i--) {
+                AdvertisementContent content = AdvertisementContent.builder()
+                        .withContentId(String.valueOf(contents.size()))
+                        .build();
+                contents.add(content);
+                List<TargetingGroup> contentGroups = new ArrayList<>();
+                for (int j = random.nextInt(4); j > 0; j--) {
+                    contentGroups.add(TargetingGroup.builder()
+                            .withContentId(content.getContentId())
+                            .withClickThroughRate(random.nextInt(10) / 10.0)
+                            .build());
+                }
+                groups.put(content.getContentId(), contentGroups);
+            }
+            MarketplaceSnapshot snapshot = new MarketplaceSnapshot("1", contents, groups, Instant.EPOCH);
+            List<ContentTargetingGroup> ranked = snapshot.getTargetingGroupsByClickThroughRate();
+            BitSet eligible = new BitSet();
+            for (int ordinal = 0; ordinal < ranked.size(); ordinal++) {
+                if (random.nextInt(5) == 0) {
+                    eligible.set(ordinal);
+                }
+            }
+            int k = 1 + random.nextInt(20);
+
+            // WHEN
+            List<AdvertisementContent> top = snapshot.getCandidateStore().selectTop(eligible.toLongArray(), k);
+
+            // THEN
+            Set<AdvertisementContent> expected = new LinkedHashSet<>();
+            eligible.stream().forEach(ordinal -> expected.add(ranked.get(ordinal).getContent()));
+            assertEquals(expected.stream().limit(k).collect(Collectors.toList()), top, "trial " + trial);
+        }
+    }
+
+    private static ContentTargetingGroup group(AdvertisementContent content, double clickThroughRate) {
+        return new ContentTargetingGroup(content, TargetingGroup.builder()
+                .withContentId(content.getContentId())
+                .withClickThroughRate(clickThroughRate)
+                .build());
+    }
+
+    private static long[] bits(int... ordinals) {
+        BitSet bits = new BitSet();
+        Arrays.stream(ordinals).forEach(bits::set);
+        return bits.toLongArray();
+    }
+}
@@ -0,0 +1,100 @@
+package com.amazon.ata.advertising.service.targeting;
+
+import com.amazon.ata.advertising.service.dao.ReadableDao;
+import com.amazon.ata.advertising.service.model.RequestContext;
+import com.amazon.ata.customerservice.AgeRange;
+import com.amazon.ata.customerservice.CustomerProfile;
+import com.amazon.ata.customerservice.Spend;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mock;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+import static org.mockito.MockitoAnnotations.initMocks;
+
+public class CustomerSignalsFactoryTest {
+    private static final String CUSTOMER_ID = "A123B456";
+    private static final String OTHER_CUSTOMER_ID = "C789D012";
+    private static final CustomerProfile PROFILE = CustomerProfile.builder().withAgeRange(AgeRange.AGE_18_TO_21).build();
+
+    @Mock
+    private ReadableDao<String, CustomerProfile> customerProfileDao;
+
+    @Mock
+    private ReadableDao<RequestContext, Map<String, Spend>> customerSpendDao;
+
+    @Mock
+    private ReadableDao<RequestContext, List<String>> primeDao;
+
+    private ExecutorService executor;
+
+    private CustomerSignalsFactory customerSignalsFactory;
+
+    @BeforeEach
+    public void setup() {
+        initMocks(this);
+        when(customerProfileDao.get(any())).thenReturn(PROFILE);
+        when(customerSpendDao.get(any())).thenReturn(Collections.emptyMap());
+        when(primeDao.get(any())).thenReturn(Collections.emptyList());
+        executor = Executors.newCachedThreadPool();
+        customerSignalsFactory = new CustomerSignalsFactory(customerProfileDao, customerSpendDao, primeDao, executor);
+    }
+
+    @AfterEach
+    public void tearDown() {
+        executor.shutdownNow();
+    }
+
+    @Test
+    public void prefetchAll_repeatedCustomers_coalescesCalls() {
+        // GIVEN
+        RequestContext first = new RequestContext(CUSTOMER_ID, "1");
+        RequestContext firstAgain = new RequestContext(CUSTOMER_ID, "1");
+        RequestContext otherMarketplace = new RequestContext(CUSTOMER_ID, "2");
+        RequestContext otherCustomer = new RequestContext(OTHER_CUSTOMER_ID, "1");
+
+        // WHEN
+        List<RequestContext> contexts = customerSignalsFactory.prefetchAll(
+                Arrays.asList(first, firstAgain, otherMarketplace, otherCustomer));
+        contexts.forEach(context -> {
+            context.getCustomerSignals().getCustomerProfile();
+            context.getCustomerSignals().getCustomerSpend();
+            context.getCustomerSignals().getPrimeBenefits();
+        });
+
+        // THEN
+        assertEquals(4, contexts.size());
+        assertSame(contexts.get(0), contexts.get(1));
+        assertEquals(PROFILE, contexts.get(2).getCustomerSignals().getCustomerProfile());
+        verify(customerProfileDao, times(1)).get(CUSTOMER_ID);
+        verify(customerProfileDao, times(1)).get(OTHER_CUSTOMER_ID);
+        verify(customerSpendDao, times(1)).get(first);
+        verify(customerSpendDao, times(1)).get(otherMarketplace);
+        verify(primeDao, times(3)).get(any());
+    }
+
+    @Test
+    public void prefetchAll_unrecognizedCustomer_contextUnchanged() {
+        // GIVEN
+        RequestContext unrecognized = new RequestContext(null, "1");
+
+        // WHEN
+        List<RequestContext> contexts = customerSignalsFactory.prefetchAll(Collections.singletonList(unrecognized));
+
+        // THEN
+        assertSame(unrecognized, contexts.get(0));
+    }
+}
@@ -0,0 +1,111 @@
+package com.amazon.ata.advertising.service.targeting;
+
+import com.amazon.ata.customerservice.AgeRange;
+import com.amazon.ata.customerservice.CustomerProfile;
+import com.amazon.ata.customerservice.Spend;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+public class CustomerSignalsTest {
+    private static final CustomerProfile PROFILE = CustomerProfile.builder().withAgeRange(AgeRange.AGE_18_TO_21).build();
+    private static final Map<String, Spend> SPEND = Collections.emptyMap();
+    private static final List<String> BENEFITS = Collections.singletonList("FREE_SHIPPING");
+
+    private ExecutorService executor;
+
+    @BeforeEach
+    public void setup() {
+        executor = Executors.newFixedThreadPool(3);
+    }
+
+    @AfterEach
+    public void tearDown() {
+        executor.shutdownNow();
+    }
+
+    @Test
+    public void get_readManyTimes_loadsEachSignalOnce() {
+        // GIVEN
+        AtomicInteger profileLoads = new AtomicInteger();
+        AtomicInteger spendLoads = new AtomicInteger();
+        AtomicInteger primeLoads = new AtomicInteger();
+        CustomerSignals signals = new CustomerSignals(
+                counting(profileLoads, PROFILE), counting(spendLoads, SPEND), counting(primeLoads, BENEFITS), executor);
+
+        // WHEN
+        for (int i = 0; i < 10; i++) {
+            assertEquals(PROFILE, signals.getCustomerProfile());
+            assertEquals(SPEND, signals.getCustomerSpend());
+            assertEquals(BENEFITS, signals.getPrimeBenefits());
+        }
+
+        // THEN
+        assertEquals(1, profileLoads.get());
+        assertEquals(1, spendLoads.get());
+        assertEquals(1, primeLoads.get());
+    }
+
+    @Test
+    public void prefetch_allSignals_loadsInParallel() {
+        // GIVEN - each loader only returns once all three have started
+        CountDownLatch allStarted = new CountDownLatch(3);
+        CustomerSignals signals = new CustomerSignals(
+                awaiting(allStarted, PROFILE), awaiting(allStarted, SPEND), awaiting(allStarted, BENEFITS), executor);
+
+        // WHEN
+        signals.prefetch();
+
+        // THEN
+        assertEquals(PROFILE, signals.getCustomerProfile());
+        assertEquals(SPEND, signals.getCustomerSpend());
+        assertEquals(BENEFITS, signals.getPrimeBenefits());
+    }
+
+    @Test
+    public void get_loaderFails_rethrowsLoaderException() {
+        // GIVEN
+        CustomerSignals signals = new CustomerSignals(() -> {
+            throw new IllegalStateException("customer service unavailable");
+        }, () -> SPEND, () -> BENEFITS, executor);
+
+        // WHEN + THEN
+        assertThrows(IllegalStateException.class, signals::getCustomerProfile);
+        assertEquals(BENEFITS, signals.getPrimeBenefits());
+    }
+
+    private static <T> Supplier<T> counting(AtomicInteger loads, T value) {
+        return () -> {
+            loads.incrementAndGet();
+            return value;
+        };
+    }
+
+    private static <T> Supplier<T> awaiting(CountDownLatch allStarted, T value) {
+        return () -> {
+            allStarted.countDown();
+            try {
+                if (!allStarted.await(5, TimeUnit.SECONDS)) {
+                    throw new IllegalStateException("Signals were not loaded in parallel");
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IllegalStateException(e);
+            }
+            return value;
+        };
+    }
+}
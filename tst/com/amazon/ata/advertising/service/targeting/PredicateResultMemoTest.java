@@ -0,0 +1,174 @@
+package com.amazon.ata.advertising.service.targeting;
+
+import com.amazon.ata.advertising.service.exceptions.DependencyTimeoutException;
+import com.amazon.ata.advertising.service.model.RequestContext;
+import com.amazon.ata.advertising.service.targeting.predicate.ParentPredicate;
+import com.amazon.ata.advertising.service.targeting.predicate.PrimeBenefitTargetingPredicate;
+import com.amazon.ata.advertising.service.targeting.predicate.TargetingPredicate;
+import com.amazon.ata.advertising.service.targeting.predicate.TargetingPredicateResult;
+import com.amazon.ata.customerservice.CustomerProfile;
+import com.amazon.ata.primeclubservice.Benefit;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.Collections;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class PredicateResultMemoTest {
+    private static final String MARKETPLACE_ID = "1";
+    private static final TargetingPredicate PARENT = new ParentPredicate();
+    private static final TargetingPredicate PRIME = new PrimeBenefitTargetingPredicate(Benefit.MOM_DISCOUNT, false);
+
+    private AtomicLong nanos;
+    private PredicateResultMemo memo;
+
+    @BeforeEach
+    public void setup() {
+        nanos = new AtomicLong();
+        memo = new PredicateResultMemo(1_000_000, Duration.ofMinutes(1), Runnable::run, nanos::get);
+    }
+
+    @Test
+    public void forRequest_sameSignalsInLaterRequest_remembersResults() {
+        // GIVEN
+        memo.forRequest(request("A1", true)).put(PARENT, TargetingPredicateResult.TRUE);
+        memo.forRequest(request("A1", true)).put(PRIME, TargetingPredicateResult.INDETERMINATE);
+
+        // WHEN
+        PredicateResultMemo.CustomerResults results = memo.forRequest(request("A1", true));
+
+        // THEN
+        assertEquals(TargetingPredicateResult.TRUE, results.get(new ParentPredicate()));
+        assertEquals(TargetingPredicateResult.INDETERMINATE, results.get(PRIME));
+        assertNull(memo.forRequest(request("B2", true)).get(PARENT));
+        assertEquals(2, memo.getHitCount());
+        assertEquals(1, memo.getMissCount());
+        assertEquals(2.0 / 3, memo.getHitRate());
+        assertEquals(2, memo.getCustomerCount());
+        assertEquals(2, memo.getPredicateCount());
+    }
+
+    @Test
+    public void forRequest_signalsChanged_dropsResults() {
+        // GIVEN
+        memo.forRequest(request("A1", true)).put(PARENT, TargetingPredicateResult.TRUE);
+
+        // WHEN
+        PredicateResultMemo.CustomerResults results = memo.forRequest(request("A1", false));
+
+        // THEN
+        assertNull(results.get(PARENT));
+        assertEquals(1, memo.getInvalidationCount());
+    }
+
+    @Test
+    public void forRequest_afterExpiry_dropsResultsEvenIfStillRead() {
+        // GIVEN
+        memo.forRequest(request("A1", true)).put(PARENT, TargetingPredicateResult.TRUE);
+        nanos.addAndGet(TimeUnit.SECONDS.toNanos(50));
+        memo.forRequest(request("A1", true)).put(PRIME, TargetingPredicateResult.FALSE);
+
+        // WHEN
+        nanos.addAndGet(TimeUnit.SECONDS.toNanos(20));
+        PredicateResultMemo.CustomerResults results = memo.forRequest(request("A1", true));
+
+        // THEN
+        assertNull(results.get(PARENT));
+        assertNull(results.get(PRIME));
+        assertEquals(0, memo.getInvalidationCount());
+    }
+
+    @Test
+    public void forRequest_moreCustomersThanFit_staysWithinMaximumBytes() {
+        // GIVEN
+        memo = new PredicateResultMemo(10_000, Duration.ofMinutes(1), Runnable::run, nanos::get);
+
+        // WHEN
+        for (int customer = 0; customer < 1_000; customer++) {
+            memo.forRequest(request("A" + customer, true)).put(PARENT, TargetingPredicateResult.TRUE);
+        }
+
+        // THEN
+        assertTrue(memo.getEstimatedBytes() <= 10_000, "estimated bytes " + memo.getEstimatedBytes());
+        assertTrue(memo.getEvictionCount() > 0);
+    }
+
+    @Test
+    public void forRequest_otherSignalChanged_keepsResults() {
+        // GIVEN
+        memo.forRequest(request("A1", true)).put(PRIME, TargetingPredicateResult.TRUE);
+
+        // WHEN
+        PredicateResultMemo.CustomerResults results = memo.forRequest(request("A1", false));
+
+        // THEN
+        assertEquals(TargetingPredicateResult.TRUE, results.get(PRIME));
+        assertNull(results.get(PARENT));
+        assertEquals(0, memo.getInvalidationCount());
+    }
+
+    @Test
+    public void forRequest_predicateOfOneSignal_neverLoadsTheOthers() {
+        // GIVEN
+        AtomicInteger otherLoads = new AtomicInteger();
+        memo.forRequest(request("A1", true)).put(PRIME, TargetingPredicateResult.FALSE);
+        CustomerSignals signals = new CustomerSignals(() -> {
+            otherLoads.incrementAndGet();
+            return CustomerProfile.builder().build();
+        }, () -> {
+            otherLoads.incrementAndGet();
+            return Collections.emptyMap();
+        }, () -> Collections.singletonList(Benefit.FREE_EXPEDITED_SHIPPING), Runnable::run);
+
+        // WHEN
+        PredicateResultMemo.CustomerResults results = memo.forRequest(
+                new RequestContext("A1", MARKETPLACE_ID).withCustomerSignals(signals));
+
+        // THEN
+        assertEquals(TargetingPredicateResult.FALSE, results.get(PRIME));
+        assertEquals(0, otherLoads.get());
+    }
+
+    @Test
+    public void forRequest_signalFailedToLoad_onlyItsPredicatesAreNotMemoized() {
+        // GIVEN
+        CustomerSignals failing = new CustomerSignals(() -> {
+            throw new DependencyTimeoutException("Timed out", null);
+        }, Collections::emptyMap, () -> Collections.singletonList(Benefit.FREE_EXPEDITED_SHIPPING), Runnable::run);
+        PredicateResultMemo.CustomerResults failed = memo.forRequest(
+                new RequestContext("A1", MARKETPLACE_ID).withCustomerSignals(failing));
+        failed.put(PARENT, TargetingPredicateResult.INDETERMINATE);
+        failed.put(PRIME, TargetingPredicateResult.TRUE);
+
+        // WHEN
+        PredicateResultMemo.CustomerResults results = memo.forRequest(request("A1", true));
+
+        // THEN
+        assertNull(failed.get(PARENT));
+        assertNull(results.get(PARENT));
+        assertEquals(TargetingPredicateResult.TRUE, results.get(PRIME));
+    }
+
+    @Test
+    public void forRequest_notMemoizable_returnsNull() {
+        // WHEN - THEN
+        assertNull(memo.forRequest(new RequestContext(null, MARKETPLACE_ID)));
+        assertNull(memo.forRequest(new RequestContext("A1", MARKETPLACE_ID)));
+        assertNull(new PredicateResultMemo(0, Duration.ofMinutes(1)).forRequest(request("A1", true)));
+    }
+
+    private static RequestContext request(String customerId, boolean parent) {
+        return new RequestContext(customerId, MARKETPLACE_ID).withCustomerSignals(new CustomerSignals(
+                () -> CustomerProfile.builder().withParent(parent).build(),
+                Collections::emptyMap,
+                () -> Collections.singletonList(Benefit.FREE_EXPEDITED_SHIPPING),
+                Runnable::run));
+    }
+}
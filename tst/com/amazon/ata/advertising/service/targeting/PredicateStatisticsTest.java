@@ -0,0 +1,64 @@
+package com.amazon.ata.advertising.service.targeting;
+
+import com.amazon.ata.advertising.service.targeting.predicate.AgeTargetingPredicate;
+import com.amazon.ata.advertising.service.targeting.predicate.ParentPredicate;
+import com.amazon.ata.advertising.service.targeting.predicate.TargetingPredicate;
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+public class PredicateStatisticsTest {
+    private final PredicateStatistics predicateStatistics = new PredicateStatistics();
+
+    @Test
+    public void order_sameCostDifferentPassRate_likelierToFailFirst() {
+        // GIVEN
+        TargetingPredicate usuallyPasses = new AgeTargetingPredicate("AGE_18_TO_21");
+        TargetingPredicate usuallyFails = new ParentPredicate();
+        for (int i = 0; i < 10; i++) {
+            predicateStatistics.record(usuallyPasses, 1_000L, i > 0);
+            predicateStatistics.record(usuallyFails, 1_000L, i == 0);
+        }
+
+        // WHEN
+        List<TargetingPredicate> ordered = predicateStatistics.order(Arrays.asList(usuallyPasses, usuallyFails));
+
+        // THEN
+        assertEquals(Arrays.asList(usuallyFails, usuallyPasses), ordered);
+    }
+
+    @Test
+    public void order_inversePredicate_rankedSeparatelyFromNonInverse() {
+        // GIVEN - parents are rare, so "is a parent" fails and "is not a parent" passes
+        TargetingPredicate isParent = new ParentPredicate(false);
+        TargetingPredicate isNotParent = new ParentPredicate(true);
+        for (int i = 0; i < 10; i++) {
+            predicateStatistics.record(isParent, 1_000L, false);
+            predicateStatistics.record(isNotParent, 1_000L, true);
+        }
+
+        // WHEN
+        List<TargetingPredicate> ordered = predicateStatistics.order(Arrays.asList(isNotParent, isParent));
+
+        // THEN
+        assertEquals(Arrays.asList(isParent, isNotParent), ordered);
+        assertEquals(0.0, predicateStatistics.getStatistics().get("ParentPredicate").getPassRate());
+        assertEquals(1.0, predicateStatistics.getStatistics().get("!ParentPredicate").getPassRate());
+    }
+
+    @Test
+    public void order_noStatistics_keepsStoredOrder() {
+        // GIVEN
+        TargetingPredicate first = new AgeTargetingPredicate("AGE_18_TO_21");
+        TargetingPredicate second = new ParentPredicate();
+
+        // WHEN
+        List<TargetingPredicate> ordered = predicateStatistics.order(Arrays.asList(first, second));
+
+        // THEN
+        assertEquals(Arrays.asList(first, second), ordered);
+    }
+}
@@ -0,0 +1,109 @@
+package com.amazon.ata.advertising.service.targeting;
+
+import com.amazon.ata.advertising.service.model.RequestContext;
+import com.amazon.ata.advertising.service.targeting.predicate.TargetingPredicate;
+import com.amazon.ata.advertising.service.targeting.predicate.TargetingPredicateResult;
+import com.amazon.ata.advertising.service.util.BoundedExecutor;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mock;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.when;
+import static org.mockito.MockitoAnnotations.initMocks;
+
+public class TargetingEvaluatorLoadTest {
+    private static final String THREAD_NAME = "evaluation-load-test";
+    private static final int EVALUATION_THREADS = 4;
+    private static final int CLIENTS = 32;
+    private static final long RUN_MILLIS = 1000;
+
+    @Mock
+    private TargetingPredicate slowPredicate;
+
+    @Mock
+    private RequestContext requestContext;
+
+    private final PredicateStatistics predicateStatistics = new PredicateStatistics();
+    private BoundedExecutor evaluationExecutor;
+    private ExecutorService clients;
+
+    @BeforeEach
+    public void setup() {
+        initMocks(this);
+        when(slowPredicate.evaluate(any())).thenAnswer(invocation -> {
+            Thread.sleep(1);
+            return TargetingPredicateResult.TRUE;
+        });
+        evaluationExecutor = new BoundedExecutor(THREAD_NAME, EVALUATION_THREADS, 64,
+                BoundedExecutor.RejectionPolicy.CALLER_RUNS);
+        clients = Executors.newFixedThreadPool(CLIENTS);
+    }
+
+    @AfterEach
+    public void tearDown() {
+        clients.shutdownNow();
+        evaluationExecutor.shutdownNow();
+    }
+
+    @Test
+    public void evaluate_sustainedTraffic_threadCountStaysFlat() throws Exception {
+        // GIVEN
+        TargetingGroup targetingGroup = new TargetingGroup(UUID.randomUUID().toString(), UUID.randomUUID().toString(),
+                0, Collections.singletonList(slowPredicate));
+        long stopAt = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(RUN_MILLIS);
+        AtomicInteger evaluations = new AtomicInteger();
+
+        // WHEN - every client creates a new evaluator per request, like AdvertisementSelectionLogic does
+        List<Future<?>> requests = new ArrayList<>();
+        for (int i = 0; i < CLIENTS; i++) {
+            requests.add(clients.submit(() -> {
+                while (System.nanoTime() < stopAt) {
+                    TargetingEvaluator evaluator = new TargetingEvaluator(requestContext, evaluationExecutor,
+                            predicateStatistics);
+                    assertEquals(TargetingPredicateResult.TRUE, evaluator.evaluate(targetingGroup));
+                    evaluations.incrementAndGet();
+                }
+                return null;
+            }));
+        }
+        int maxEvaluationThreads = 0;
+        while (System.nanoTime() < stopAt) {
+            maxEvaluationThreads = Math.max(maxEvaluationThreads, countEvaluationThreads());
+            Thread.sleep(10);
+        }
+        for (Future<?> request : requests) {
+            request.get();
+        }
+
+        // THEN
+        assertTrue(evaluations.get() > CLIENTS, "Expected sustained traffic, got " + evaluations.get());
+        assertTrue(maxEvaluationThreads <= EVALUATION_THREADS,
+                "Evaluation threads grew to " + maxEvaluationThreads);
+        assertTrue(evaluationExecutor.getLargestPoolSize() <= EVALUATION_THREADS);
+        assertTrue(evaluationExecutor.getCompletedTaskCount() > 0);
+    }
+
+    private static int countEvaluationThreads() {
+        int count = 0;
+        for (Thread thread : Thread.getAllStackTraces().keySet()) {
+            if (thread.getName().startsWith(THREAD_NAME)) {
+                count++;
+            }
+        }
+        return count;
+    }
+}
@@ -1,19 +1,30 @@
 package com.amazon.ata.advertising.service.targeting;
 
 import com.amazon.ata.advertising.service.model.RequestContext;
+import com.amazon.ata.advertising.service.targeting.predicate.CategorySpendValueTargetingPredicate;
+import com.amazon.ata.advertising.service.targeting.predicate.RecognizedTargetingPredicate;
 import com.amazon.ata.advertising.service.targeting.predicate.TargetingPredicate;
 import com.amazon.ata.advertising.service.targeting.predicate.TargetingPredicateResult;
+import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
-import org.mockito.InjectMocks;
 import org.mockito.Mock;
 
 import java.util.ArrayList;
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.List;
 import java.util.UUID;
 import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 import static org.mockito.MockitoAnnotations.initMocks;
 
@@ -30,16 +41,27 @@ public class TargetingEvaluatorTest {
     @Mock
     private RequestContext requestContext;
 
-    @InjectMocks
+    private ExecutorService executor;
+
+    private PredicateStatistics predicateStatistics;
+
     private TargetingEvaluator targetingEvaluator;
 
     @BeforeEach
     public void setup() {
         initMocks(this);
+        executor = Executors.newSingleThreadExecutor();
+        predicateStatistics = new PredicateStatistics();
+        targetingEvaluator = new TargetingEvaluator(requestContext, executor, predicateStatistics);
         targetingPredicates = new ArrayList<>();
         targetingGroup = new TargetingGroup(UUID.randomUUID().toString(), UUID.randomUUID().toString(), 0, targetingPredicates);
     }
 
+    @AfterEach
+    public void tearDown() {
+        executor.shutdownNow();
+    }
+
     @Test
     public void evaluateNoPredicates() throws ExecutionException, InterruptedException {
         TargetingPredicateResult result = targetingEvaluator.evaluate(targetingGroup);
@@ -117,4 +139,97 @@ public class TargetingEvaluatorTest {
         assertEquals(TargetingPredicateResult.TRUE, result);
     }
 
+    @Test
+    public void evaluate_cheapPredicateUsuallyFails_evaluatesItFirstAndSkipsExpensivePredicate() throws Exception {
+        // GIVEN - spend lookups are slow and usually pass, the recognized check is fast and usually fails
+        TargetingPredicate expensive = mock(CategorySpendValueTargetingPredicate.class);
+        TargetingPredicate cheap = mock(RecognizedTargetingPredicate.class);
+        for (int i = 0; i < 10; i++) {
+            predicateStatistics.record(expensive, 200_000_000L, true);
+            predicateStatistics.record(cheap, 1_000L, i == 0);
+        }
+        when(cheap.evaluate(requestContext)).thenReturn(TargetingPredicateResult.FALSE);
+        targetingPredicates.add(expensive);
+        targetingPredicates.add(cheap);
+
+        // WHEN
+        TargetingPredicateResult result = targetingEvaluator.evaluate(targetingGroup);
+
+        // THEN
+        assertEquals(TargetingPredicateResult.FALSE, result);
+        verify(expensive, never()).evaluate(requestContext);
+    }
+
+    @Test
+    public void evaluate_predicatesEvaluated_recordsStatisticsPerType() throws Exception {
+        // GIVEN
+        when(predicate1.evaluate(requestContext)).thenReturn(TargetingPredicateResult.TRUE);
+        targetingPredicates.add(predicate1);
+
+        // WHEN - predicates are only evaluated once per request, so evaluate for two requests
+        targetingEvaluator.evaluate(targetingGroup);
+        new TargetingEvaluator(requestContext, executor, predicateStatistics).evaluate(targetingGroup);
+
+        // THEN
+        PredicateTypeStatistics statistics = predicateStatistics.getStatistics().values().iterator().next();
+        assertEquals(2, statistics.getEvaluationCount());
+        assertEquals(1.0, statistics.getPassRate());
+    }
+
+    @Test
+    public void evaluate_predicateSharedByGroups_evaluatedOncePerRequest() throws Exception {
+        // GIVEN
+        when(predicate1.evaluate(requestContext)).thenReturn(TargetingPredicateResult.TRUE);
+        when(predicate2.evaluate(requestContext)).thenReturn(TargetingPredicateResult.TRUE);
+        targetingPredicates.add(predicate1);
+        TargetingGroup otherGroup = new TargetingGroup(UUID.randomUUID().toString(), UUID.randomUUID().toString(), 0,
+                Arrays.asList(predicate1, predicate2));
+
+        // WHEN
+        TargetingPredicateResult first = targetingEvaluator.evaluate(targetingGroup);
+        TargetingPredicateResult second = targetingEvaluator.evaluate(otherGroup);
+
+        // THEN
+        assertEquals(TargetingPredicateResult.TRUE, first);
+        assertEquals(TargetingPredicateResult.TRUE, second);
+        verify(predicate1, times(1)).evaluate(requestContext);
+        assertEquals(1, predicateStatistics.getReusedResultCount());
+    }
+
+    @Test
+    public void evaluate_groupWithPredicateKnownFalse_rejectedWithoutEvaluating() throws Exception {
+        // GIVEN
+        when(predicate1.evaluate(requestContext)).thenReturn(TargetingPredicateResult.FALSE);
+        targetingPredicates.add(predicate1);
+        TargetingGroup otherGroup = new TargetingGroup(UUID.randomUUID().toString(), UUID.randomUUID().toString(), 0,
+                Arrays.asList(predicate2, predicate1));
+        targetingEvaluator.evaluate(targetingGroup);
+
+        // WHEN
+        TargetingPredicateResult result = targetingEvaluator.evaluate(otherGroup);
+
+        // THEN
+        assertEquals(TargetingPredicateResult.FALSE, result);
+        verify(predicate2, never()).evaluate(requestContext);
+    }
+
+    @Test
+    public void evaluate_sameCustomerInLaterRequest_reusesMemoizedResult() throws Exception {
+        // GIVEN
+        PredicateResultMemo memo = new PredicateResultMemo(1_000_000, Duration.ofMinutes(1));
+        RequestContext customer = new RequestContext("A123B456", "1").withCustomerSignals(
+                new CustomerSignals(() -> null, Collections::emptyMap, Collections::emptyList, Runnable::run));
+        when(predicate1.evaluate(customer)).thenReturn(TargetingPredicateResult.TRUE);
+        targetingPredicates.add(predicate1);
+        new TargetingEvaluator(customer, executor, predicateStatistics, memo).evaluate(targetingGroup);
+
+        // WHEN
+        TargetingPredicateResult result =
+                new TargetingEvaluator(customer, executor, predicateStatistics, memo).evaluate(targetingGroup);
+
+        // THEN
+        assertEquals(TargetingPredicateResult.TRUE, result);
+        verify(predicate1, times(1)).evaluate(customer);
+        assertEquals(1, memo.getHitCount());
+    }
 }
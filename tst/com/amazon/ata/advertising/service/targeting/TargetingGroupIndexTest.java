@@ -0,0 +1,284 @@
+package com.amazon.ata.advertising.service.targeting;
+
+import com.amazon.ata.advertising.service.exceptions.DependencyTimeoutException;
+import com.amazon.ata.advertising.service.model.RequestContext;
+import com.amazon.ata.advertising.service.targeting.predicate.AgeTargetingPredicate;
+import com.amazon.ata.advertising.service.targeting.predicate.CategorySpendFrequencyTargetingPredicate;
+import com.amazon.ata.advertising.service.targeting.predicate.CategorySpendValueTargetingPredicate;
+import com.amazon.ata.advertising.service.targeting.predicate.ParentPredicate;
+import com.amazon.ata.advertising.service.targeting.predicate.PrimeBenefitTargetingPredicate;
+import com.amazon.ata.advertising.service.targeting.predicate.RecognizedTargetingPredicate;
+import com.amazon.ata.advertising.service.targeting.predicate.TargetingPredicate;
+import com.amazon.ata.advertising.service.targeting.predicate.TargetingPredicateResult;
+import com.amazon.ata.customerservice.AgeRange;
+import com.amazon.ata.customerservice.Category;
+import com.amazon.ata.customerservice.CustomerProfile;
+import com.amazon.ata.customerservice.Spend;
+import com.amazon.ata.primeclubservice.Benefit;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.function.Supplier;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+public class TargetingGroupIndexTest {
+    private static final String CUSTOMER_ID = "A123B456";
+    private static final String MARKETPLACE_ID = "1";
+    private static final String[] CATEGORIES = {Category.KINDLE, Category.ECHO, Category.FRESH};
+    private static final int[] THRESHOLDS = {0, 1, 5, 10, 100};
+
+    private ExecutorService executor;
+
+    @BeforeEach
+    public void setup() {
+        executor = Executors.newSingleThreadExecutor();
+    }
+
+    @AfterEach
+    public void tearDown() {
+        executor.shutdownNow();
+    }
+
+    @Test
+    public void getCandidates_unrecognizedCustomer_onlyInverseRecognizedPasses() {
+        // GIVEN
+        TargetingGroupIndex index = new TargetingGroupIndex(Arrays.asList(
+                group(new RecognizedTargetingPredicate(true)),
+                group(new RecognizedTargetingPredicate(false)),
+                group(new ParentPredicate(true)),
+                group()));
+
+        // WHEN
+        BitSet candidates = index.getCandidates(new RequestContext(null, MARKETPLACE_ID));
+
+        // THEN
+        assertEquals(bits(0, 3), candidates);
+    }
+
+    @Test
+    public void getCandidates_spendBuckets_matchComparisons() {
+        // GIVEN
+        TargetingGroupIndex index = new TargetingGroupIndex(Arrays.asList(
+                group(new CategorySpendValueTargetingPredicate(Category.KINDLE, Comparison.LT, 10)),
+                group(new CategorySpendValueTargetingPredicate(Category.KINDLE, Comparison.EQ, 10)),
+                group(new CategorySpendValueTargetingPredicate(Category.KINDLE, Comparison.GT, 10)),
+                group(new CategorySpendValueTargetingPredicate(Category.KINDLE, Comparison.GT, 10, true)),
+                group(new CategorySpendFrequencyTargetingPredicate(Category.KINDLE, Comparison.GT, 2))));
+
+        // WHEN + THEN
+        assertEquals(bits(0, 3), index.getCandidates(context(Collections.emptyMap())));
+        assertEquals(bits(1, 3, 4), index.getCandidates(context(spend(Category.KINDLE, 3, 10))));
+        assertEquals(bits(2), index.getCandidates(context(spend(Category.KINDLE, 1, 11))));
+    }
+
+    @Test
+    public void getCandidates_signalUnavailable_rejectsGroupsUsingIt() {
+        // GIVEN
+        TargetingGroupIndex index = new TargetingGroupIndex(Arrays.asList(
+                group(new ParentPredicate(false)),
+                group(new ParentPredicate(true)),
+                group(new PrimeBenefitTargetingPredicate(Benefit.MOM_LITE, true)),
+                group(new RecognizedTargetingPredicate(false))));
+        RequestContext requestContext = new RequestContext(CUSTOMER_ID, MARKETPLACE_ID)
+                .withCustomerSignals(new CustomerSignals(
+                        () -> {
+                            throw new DependencyTimeoutException("Timed out", null);
+                        },
+                        Collections::emptyMap,
+                        () -> {
+                            throw new IllegalStateException("Prime club service unavailable");
+                        },
+                        Runnable::run));
+
+        // WHEN
+        BitSet candidates = index.getCandidates(requestContext);
+
+        // THEN
+        assertEquals(bits(3), candidates);
+    }
+
+    @Test
+    public void getCandidates_recognizedCustomerWithoutSignals_throws() {
+        // GIVEN
+        TargetingGroupIndex index =
+                new TargetingGroupIndex(Collections.singletonList(group(new ParentPredicate(false))));
+
+        // WHEN + THEN
+        assertThrows(IllegalArgumentException.class,
+                () -> index.getCandidates(new RequestContext(CUSTOMER_ID, MARKETPLACE_ID)));
+    }
+
+    @Test
+    public void evaluateAll_unindexedPredicates_areEvaluated() {
+        // GIVEN
+        TargetingPredicate passing = mock(TargetingPredicate.class);
+        when(passing.evaluate(any())).thenReturn(TargetingPredicateResult.TRUE);
+        TargetingPredicate failing = mock(TargetingPredicate.class);
+        when(failing.evaluate(any())).thenReturn(TargetingPredicateResult.FALSE);
+        TargetingGroupIndex index = new TargetingGroupIndex(Arrays.asList(
+                group(passing, new RecognizedTargetingPredicate(false)),
+                group(failing),
+                group(passing, new RecognizedTargetingPredicate(true)),
+                TargetingGroup.builder().withTargetingGroupId("null predicates").build()));
+        TargetingEvaluator evaluator =
+                new TargetingEvaluator(context(Collections.emptyMap()), executor, new PredicateStatistics());
+
+        // WHEN
+        BitSet eligible = evaluator.evaluateAll(index);
+
+        // THEN
+        assertEquals(index.getUnindexedGroups(), bits(0, 1, 2, 3));
+        assertEquals(bits(0), eligible);
+    }
+
+    @Test
+    public void evaluateAll_randomGroupsAndCustomers_matchesEvaluatingEachGroup() throws InterruptedException {
+        Random random = new Random(18);
+        for (int trial = 0; trial < 200; trial++) {
+            // GIVEN
+            List<TargetingGroup> groups = new ArrayList<>();
+            for (int i = random.nextInt(60); i > 0; i--) {
+                List<TargetingPredicate> predicates = new ArrayList<>();
+                for (int j = random.nextInt(4); j > 0; j--) {
+                    predicates.add(randomPredicate(random));
+                }
+                groups.add(group(predicates.toArray(new TargetingPredicate[0])));
+            }
+            TargetingGroupIndex index = new TargetingGroupIndex(groups);
+            RequestContext requestContext = randomContext(random);
+
+            // WHEN
+            BitSet eligible =
+                    new TargetingEvaluator(requestContext, executor, new PredicateStatistics()).evaluateAll(index);
+
+            // THEN
+            TargetingEvaluator evaluator = new TargetingEvaluator(requestContext, executor, new PredicateStatistics());
+            BitSet expected = new BitSet();
+            for (int ordinal = 0; ordinal < groups.size(); ordinal++) {
+                try {
+                    if (evaluator.evaluate(groups.get(ordinal)).isTrue()) {
+                        expected.set(ordinal);
+                    }
+                } catch (ExecutionException e) {
+                    // A group that cannot be evaluated is not eligible
+                }
+            }
+            assertEquals(expected, eligible, "trial " + trial);
+        }
+    }
+
+    private static TargetingPredicate randomPredicate(Random random) {
+        boolean inverse = random.nextInt(4) == 0;
+        switch (random.nextInt(6)) {
+            case 0:
+                return new RecognizedTargetingPredicate(inverse);
+            case 1:
+                String ageRange = pick(random, AgeRange.values());
+                return new AgeTargetingPredicate(random.nextBoolean() ? ageRange : ageRange.toLowerCase(Locale.ROOT),
+                        inverse);
+            case 2:
+                return new ParentPredicate(inverse);
+            case 3:
+                return new PrimeBenefitTargetingPredicate(pick(random, Benefit.values()), inverse);
+            case 4:
+                return new CategorySpendValueTargetingPredicate(pick(random, CATEGORIES),
+                        pick(random, Comparison.values()), THRESHOLDS[random.nextInt(THRESHOLDS.length)], inverse);
+            default:
+                return new CategorySpendFrequencyTargetingPredicate(pick(random, CATEGORIES),
+                        pick(random, Comparison.values()), THRESHOLDS[random.nextInt(THRESHOLDS.length)], inverse);
+        }
+    }
+
+    private static RequestContext randomContext(Random random) {
+        if (random.nextInt(10) == 0) {
+            return new RequestContext(null, MARKETPLACE_ID);
+        }
+        CustomerProfile profile = CustomerProfile.builder()
+                .withAgeRange(random.nextInt(5) == 0 ? null : pick(random, AgeRange.values()))
+                .withParent(random.nextInt(5) == 0 ? null : random.nextBoolean())
+                .build();
+        Map<String, Spend> spend = new HashMap<>();
+        for (String category : CATEGORIES) {
+            int kind = random.nextInt(8);
+            if (kind == 0) {
+                spend.put(category, null);
+            } else if (kind > 3) {
+                spend.put(category, Spend.builder()
+                        .withNumberOfPurchases(THRESHOLDS[random.nextInt(THRESHOLDS.length)] + random.nextInt(3) - 1)
+                        .withUsdSpent(THRESHOLDS[random.nextInt(THRESHOLDS.length)] + random.nextInt(3) - 1)
+                        .build());
+            }
+        }
+        List<String> benefits = new ArrayList<>();
+        for (String benefit : Benefit.values()) {
+            if (random.nextInt(3) == 0) {
+                benefits.add(benefit);
+            }
+        }
+        return new RequestContext(CUSTOMER_ID, MARKETPLACE_ID).withCustomerSignals(new CustomerSignals(
+                randomFailure(random, profile), randomFailure(random, spend), randomFailure(random, benefits),
+                Runnable::run));
+    }
+
+    private static <T> Supplier<T> randomFailure(Random random, T value) {
+        switch (random.nextInt(10)) {
+            case 0:
+                return () -> {
+                    throw new DependencyTimeoutException("Timed out", null);
+                };
+            case 1:
+                return () -> {
+                    throw new IllegalStateException("Service unavailable");
+                };
+            case 2:
+                return () -> null;
+            default:
+                return () -> value;
+        }
+    }
+
+    private static <T> T pick(Random random, T[] values) {
+        return values[random.nextInt(values.length)];
+    }
+
+    private static RequestContext context(Map<String, Spend> spend) {
+        return new RequestContext(CUSTOMER_ID, MARKETPLACE_ID).withCustomerSignals(new CustomerSignals(
+                () -> CustomerProfile.builder().build(), () -> spend, Collections::emptyList, Runnable::run));
+    }
+
+    private static Map<String, Spend> spend(String category, int numberOfPurchases, int usdSpent) {
+        return Collections.singletonMap(category,
+                Spend.builder().withNumberOfPurchases(numberOfPurchases).withUsdSpent(usdSpent).build());
+    }
+
+    private static TargetingGroup group(TargetingPredicate... predicates) {
+        return TargetingGroup.builder()
+                .withTargetingGroupId(Arrays.toString(predicates))
+                .withTargetingPredicates(Arrays.asList(predicates))
+                .build();
+    }
+
+    private static BitSet bits(int... ordinals) {
+        BitSet bits = new BitSet();
+        Arrays.stream(ordinals).forEach(bits::set);
+        return bits;
+    }
+}
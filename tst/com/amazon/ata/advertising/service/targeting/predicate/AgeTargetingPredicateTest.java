@@ -1,14 +1,20 @@
 package com.amazon.ata.advertising.service.targeting.predicate;
 
 import com.amazon.ata.advertising.service.dao.ReadableDao;
+import com.amazon.ata.advertising.service.exceptions.DependencyTimeoutException;
 import com.amazon.ata.advertising.service.model.RequestContext;
+import com.amazon.ata.advertising.service.targeting.CustomerSignals;
 import com.amazon.ata.customerservice.AgeRange;
 import com.amazon.ata.customerservice.CustomerProfile;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.mockito.Mock;
 
+import java.util.Collections;
+
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.mockito.Mockito.verifyZeroInteractions;
 import static org.mockito.Mockito.when;
 import static org.mockito.MockitoAnnotations.initMocks;
 
@@ -52,6 +58,16 @@ public class AgeTargetingPredicateTest {
         assertEquals(TargetingPredicateResult.FALSE, result);
     }
 
+    @Test
+    public void customerServiceTimesOut_indeterminate() {
+        when(customerProfileDao.get(CUSTOMER_ID)).thenThrow(new DependencyTimeoutException("timed out", null));
+        predicate.setInverse(true);
+
+        TargetingPredicateResult result = predicate.evaluate(REQUEST_CONTEXT);
+
+        assertEquals(TargetingPredicateResult.INDETERMINATE, result);
+    }
+
     @Test
     public void doesNotMatchAgeRange() {
         when(customerProfileDao.get(CUSTOMER_ID)).thenReturn(CustomerProfile.builder()
@@ -82,4 +98,25 @@ public class AgeTargetingPredicateTest {
         assertEquals(TargetingPredicateResult.INDETERMINATE, result);
     }
 
+    @Test
+    public void customerSignalsAttached_readsProfileFromSignals() {
+        CustomerSignals signals = new CustomerSignals(() -> CustomerProfile.builder()
+                .withAgeRange(AgeRange.AGE_18_TO_21)
+                .build(), Collections::emptyMap, Collections::emptyList, Runnable::run);
+
+        TargetingPredicateResult result = predicate.evaluate(REQUEST_CONTEXT.withCustomerSignals(signals));
+
+        assertEquals(TargetingPredicateResult.TRUE, result);
+        verifyZeroInteractions(customerProfileDao);
+    }
+
+    @Test
+    public void equals_sameAgeRangeAndInverse_equalRegardlessOfDao() {
+        AgeTargetingPredicate same = new AgeTargetingPredicate(AgeRange.AGE_18_TO_21);
+
+        assertEquals(predicate, same);
+        assertEquals(predicate.hashCode(), same.hashCode());
+        assertNotEquals(predicate, new AgeTargetingPredicate(AgeRange.AGE_18_TO_21, true));
+        assertNotEquals(predicate, new AgeTargetingPredicate(AgeRange.AGE_22_TO_25));
+    }
 }
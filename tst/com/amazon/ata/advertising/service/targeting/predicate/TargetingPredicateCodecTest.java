@@ -0,0 +1,130 @@
+package com.amazon.ata.advertising.service.targeting.predicate;
+
+import com.amazon.ata.advertising.service.targeting.Comparison;
+import com.amazon.ata.customerservice.AgeRange;
+import com.amazon.ata.customerservice.Category;
+import com.amazon.ata.primeclubservice.Benefit;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class TargetingPredicateCodecTest {
+
+    @Test
+    public void decode_randomPredicates_matchesWhatWasEncodedAndJson() throws IOException {
+        Random random = new Random(21);
+        for (int trial = 0; trial < 200; trial++) {
+            // GIVEN
+            List<TargetingPredicate> predicates = new ArrayList<>();
+            for (int i = random.nextInt(30); i > 0; i--) {
+                predicates.add(randomPredicate(random));
+            }
+
+            // WHEN
+            byte[] encoded = TargetingPredicateCodec.encode(predicates);
+
+            // THEN
+            assertEquals(predicates, TargetingPredicateCodec.decode(encoded), "trial " + trial);
+            assertEquals(predicates, TargetingPredicateCodec.fromJson(TargetingPredicateCodec.toJson(predicates)),
+                    "trial " + trial);
+        }
+    }
+
+    @Test
+    public void decode_knownStrings_sharesConstantsAndIsSmallerThanJson() throws IOException {
+        // GIVEN
+        List<TargetingPredicate> predicates = Arrays.asList(
+                new CategorySpendValueTargetingPredicate(Category.KINDLE, Comparison.GT, 100),
+                new CategorySpendFrequencyTargetingPredicate(Category.KINDLE, Comparison.LT, -2, true),
+                new PrimeBenefitTargetingPredicate(new String(Benefit.MOM_DISCOUNT.toCharArray())),
+                new RecognizedTargetingPredicate());
+
+        // WHEN
+        byte[] encoded = TargetingPredicateCodec.encode(predicates);
+        List<TargetingPredicate> decoded = TargetingPredicateCodec.decode(encoded);
+
+        // THEN
+        assertEquals(predicates, decoded);
+        assertSame(Category.KINDLE, ((CategorySpendValueTargetingPredicate) decoded.get(0)).getTargetedCategory());
+        assertSame(Category.KINDLE,
+                ((CategorySpendFrequencyTargetingPredicate) decoded.get(1)).getTargetedCategory());
+        assertSame(Benefit.MOM_DISCOUNT, ((PrimeBenefitTargetingPredicate) decoded.get(2)).getBenefitToHave());
+        assertTrue(encoded.length * 10 < TargetingPredicateCodec.toJson(predicates).length(),
+                encoded.length + " bytes");
+    }
+
+    @Test
+    public void decode_emptyList_roundTrips() {
+        assertEquals(Collections.emptyList(), TargetingPredicateCodec.decode(
+                TargetingPredicateCodec.encode(Collections.emptyList())));
+    }
+
+    @Test
+    public void decode_malformedBytes_throws() {
+        byte[] valid = TargetingPredicateCodec.encode(Collections.singletonList(
+                new AgeTargetingPredicate(AgeRange.OVER_60)));
+        byte[] trailing = Arrays.copyOf(valid, valid.length + 1);
+        byte[] otherVersion = valid.clone();
+        otherVersion[0] = 2;
+
+        assertThrows(IllegalArgumentException.class, () -> TargetingPredicateCodec.decode(new byte[0]));
+        assertThrows(IllegalArgumentException.class, () -> TargetingPredicateCodec.decode(otherVersion));
+        assertThrows(IllegalArgumentException.class, () -> TargetingPredicateCodec.decode(trailing));
+        assertThrows(IllegalArgumentException.class,
+                () -> TargetingPredicateCodec.decode(Arrays.copyOf(valid, valid.length - 1)));
+        assertThrows(IllegalArgumentException.class, () -> TargetingPredicateCodec.decode(new byte[] {1, 0, 1, 7}));
+    }
+
+    @Test
+    public void encode_unknownPredicateType_throws() {
+        TargetingPredicate unknown = new RecognizedTargetingPredicate() { };
+
+        assertThrows(IllegalArgumentException.class,
+                () -> TargetingPredicateCodec.encode(Collections.singletonList(unknown)));
+    }
+
+    private static TargetingPredicate randomPredicate(Random random) {
+        boolean inverse = random.nextBoolean();
+        Comparison comparison = Comparison.values()[random.nextInt(3)];
+        int value = random.nextBoolean() ? random.nextInt(1000) : random.nextInt();
+        switch (random.nextInt(8)) {
+            case 0:
+                return new AgeTargetingPredicate(pick(random, AgeRange.values()), inverse);
+            case 1:
+                return new ParentPredicate(inverse);
+            case 2:
+                return new PrimeBenefitTargetingPredicate(pick(random, Benefit.values()), inverse);
+            case 3:
+                return new RecognizedTargetingPredicate(inverse);
+            case 4:
+                return new CategorySpendValueTargetingPredicate(pick(random, Category.values()), comparison, value,
+                        inverse);
+            case 5:
+                return new CategorySpendFrequencyTargetingPredicate(pick(random, Category.values()), comparison,
+                        value, inverse);
+            case 6:
+                return new AgeTargetingPredicate();
+            default:
+                return random.nextBoolean() ? new CategorySpendValueTargetingPredicate()
+                        : new CategorySpendFrequencyTargetingPredicate();
+        }
+    }
+
+    /**
+     * A known value, or an unknown one with characters outside ASCII.
+     */
+    private static String pick(Random random, String[] values) {
+        return random.nextInt(8) == 0 ? "CUSTOM_\u00e9\u4e2d_" + random.nextInt(3)
+                : values[random.nextInt(values.length)];
+    }
+}
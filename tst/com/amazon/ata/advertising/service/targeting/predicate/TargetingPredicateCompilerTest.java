@@ -0,0 +1,246 @@
+package com.amazon.ata.advertising.service.targeting.predicate;
+
+import com.amazon.ata.advertising.service.exceptions.DependencyTimeoutException;
+import com.amazon.ata.advertising.service.model.RequestContext;
+import com.amazon.ata.advertising.service.targeting.Comparison;
+import com.amazon.ata.advertising.service.targeting.CustomerSignals;
+import com.amazon.ata.customerservice.AgeRange;
+import com.amazon.ata.customerservice.Category;
+import com.amazon.ata.customerservice.CustomerProfile;
+import com.amazon.ata.customerservice.Spend;
+import com.amazon.ata.primeclubservice.Benefit;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Random;
+import java.util.function.Predicate;
+import java.util.function.Supplier;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class TargetingPredicateCompilerTest {
+    private static final String CUSTOMER_ID = "A123B456";
+    private static final String MARKETPLACE_ID = "1";
+    private static final String[] CATEGORIES = {Category.KINDLE, Category.ECHO, Category.FRESH};
+    private static final int[] THRESHOLDS = {-1, 0, 1, 5, 100};
+
+    @Test
+    public void compile_randomGroupsAndCustomers_matchesEvaluatingEachPredicate() {
+        Random random = new Random(22);
+        for (int trial = 0; trial < 5000; trial++) {
+            // GIVEN
+            CustomerData data = randomCustomerData(random);
+            List<TargetingPredicate> predicates = new ArrayList<>();
+            for (int i = random.nextInt(5); i > 0; i--) {
+                predicates.add(randomPredicate(random, data));
+            }
+            RequestContext context = randomContext(random, data);
+
+            // WHEN
+            boolean compiled = passes(() -> TargetingPredicateCompiler.compile(predicates).test(context));
+
+            // THEN
+            boolean interpreted = passes(() -> predicates.stream()
+                    .allMatch(predicate -> predicate.evaluate(context).isTrue()));
+            assertEquals(interpreted, compiled, "trial " + trial + ": " + predicates);
+        }
+    }
+
+    @Test
+    public void compile_foldsRecognitionAndInverse() {
+        // GIVEN
+        RequestContext unrecognized = new RequestContext(null, MARKETPLACE_ID);
+        RequestContext recognized = new RequestContext(CUSTOMER_ID, MARKETPLACE_ID).withCustomerSignals(
+                new CustomerSignals(() -> CustomerProfile.builder().withParent(false).build(),
+                        Collections::emptyMap, Collections::emptyList, Runnable::run));
+
+        // WHEN
+        Predicate<RequestContext> anyone = TargetingPredicateCompiler.compile(Collections.emptyList());
+        Predicate<RequestContext> anonymous = TargetingPredicateCompiler.compile(Arrays.asList(
+                new RecognizedTargetingPredicate(true), new RecognizedTargetingPredicate(true)));
+        Predicate<RequestContext> notParent = TargetingPredicateCompiler.compile(Arrays.asList(
+                new RecognizedTargetingPredicate(), new ParentPredicate(true),
+                new CategorySpendValueTargetingPredicate(Category.KINDLE, Comparison.LT, 0, true)));
+
+        // THEN
+        assertTrue(anyone.test(unrecognized));
+        assertTrue(anyone.test(recognized));
+        assertTrue(anonymous.test(unrecognized));
+        assertFalse(anonymous.test(recognized));
+        assertFalse(notParent.test(unrecognized));
+        assertTrue(notParent.test(recognized));
+        assertFalse(TargetingPredicateCompiler.compile(null).test(recognized));
+    }
+
+    @Test
+    public void compile_beforeDaosAreInjected_readsSignalsFromTheInjectedDaos() {
+        // GIVEN
+        ParentPredicate parent = new ParentPredicate();
+        CategorySpendValueTargetingPredicate value =
+                new CategorySpendValueTargetingPredicate(Category.KINDLE, Comparison.GT, 10, false);
+        CategorySpendFrequencyTargetingPredicate frequency =
+                new CategorySpendFrequencyTargetingPredicate(Category.KINDLE, Comparison.GT, 1, false);
+        Predicate<RequestContext> group = TargetingPredicateCompiler.compile(Arrays.asList(parent, value, frequency));
+        parent.setCustomerProfileDao(customerId -> CustomerProfile.builder().withParent(true).build());
+        Spend kindleSpend = new Spend.Builder().withNumberOfPurchases(2).withUsdSpent(20).build();
+        value.setSpendDao(context -> Collections.singletonMap(Category.KINDLE, kindleSpend));
+        frequency.setSpendDao(context -> Collections.singletonMap(Category.KINDLE, kindleSpend));
+
+        // WHEN
+        boolean eligible = group.test(new RequestContext(CUSTOMER_ID, MARKETPLACE_ID));
+
+        // THEN
+        assertTrue(eligible);
+    }
+
+    private static boolean passes(Supplier<Boolean> evaluation) {
+        try {
+            return evaluation.get();
+        } catch (RuntimeException e) {
+            // A group that cannot be evaluated is not eligible
+            return false;
+        }
+    }
+
+    private static TargetingPredicate randomPredicate(Random random, CustomerData data) {
+        boolean inverse = random.nextInt(4) == 0;
+        String category = pick(random, CATEGORIES);
+        Comparison comparison = pick(random, Comparison.values());
+        int threshold = THRESHOLDS[random.nextInt(THRESHOLDS.length)];
+        TargetingPredicate predicate;
+        switch (random.nextInt(8)) {
+            case 0:
+                predicate = new RecognizedTargetingPredicate(inverse);
+                break;
+            case 1:
+                String ageRange = pick(random, AgeRange.values());
+                AgeTargetingPredicate age = new AgeTargetingPredicate(
+                        random.nextBoolean() ? ageRange : ageRange.toLowerCase(Locale.ROOT), inverse);
+                age.setCustomerProfileDao(customerId -> data.profile.get());
+                predicate = age;
+                break;
+            case 2:
+                ParentPredicate parent = new ParentPredicate(inverse);
+                parent.setCustomerProfileDao(customerId -> data.profile.get());
+                predicate = parent;
+                break;
+            case 3:
+                PrimeBenefitTargetingPredicate prime =
+                        new PrimeBenefitTargetingPredicate(pick(random, Benefit.values()), inverse);
+                prime.setDao(context -> data.benefits.get());
+                predicate = prime;
+                break;
+            case 4:
+                CategorySpendValueTargetingPredicate value =
+                        new CategorySpendValueTargetingPredicate(category, comparison, threshold, inverse);
+                value.setSpendDao(context -> data.spend.get());
+                predicate = value;
+                break;
+            case 5:
+                CategorySpendFrequencyTargetingPredicate frequency =
+                        new CategorySpendFrequencyTargetingPredicate(category, comparison, threshold, inverse);
+                frequency.setSpendDao(context -> data.spend.get());
+                predicate = frequency;
+                break;
+            case 6:
+                // Missing the parameters it needs
+                predicate = random.nextBoolean() ?
+                        new AgeTargetingPredicate() : new CategorySpendValueTargetingPredicate();
+                predicate.setInverse(inverse);
+                break;
+            default:
+                // Not a predicate type the compiler knows
+                predicate = new RecognizedTargetingPredicate(inverse) {
+                    @Override
+                    TargetingPredicateResult evaluateUnrecognizedCustomer(RequestContext context) {
+                        return TargetingPredicateResult.TRUE;
+                    }
+                };
+        }
+        return predicate;
+    }
+
+    private static RequestContext randomContext(Random random, CustomerData data) {
+        switch (random.nextInt(4)) {
+            case 0:
+                return new RequestContext(null, MARKETPLACE_ID);
+            case 1:
+                return new RequestContext(CUSTOMER_ID, MARKETPLACE_ID);
+            default:
+                return new RequestContext(CUSTOMER_ID, MARKETPLACE_ID).withCustomerSignals(
+                        new CustomerSignals(data.profile, data.spend, data.benefits, Runnable::run));
+        }
+    }
+
+    private static CustomerData randomCustomerData(Random random) {
+        CustomerProfile profile = CustomerProfile.builder()
+                .withAgeRange(random.nextInt(5) == 0 ? null : pick(random, AgeRange.values()))
+                .withParent(random.nextInt(5) == 0 ? null : random.nextBoolean())
+                .build();
+        Map<String, Spend> spend = new HashMap<>();
+        for (String category : CATEGORIES) {
+            int kind = random.nextInt(8);
+            if (kind == 0) {
+                spend.put(category, null);
+            } else if (kind > 3) {
+                spend.put(category, Spend.builder()
+                        .withNumberOfPurchases(THRESHOLDS[random.nextInt(THRESHOLDS.length)] + random.nextInt(3) - 1)
+                        .withUsdSpent(THRESHOLDS[random.nextInt(THRESHOLDS.length)] + random.nextInt(3) - 1)
+                        .build());
+            }
+        }
+        List<String> benefits = new ArrayList<>();
+        for (String benefit : Benefit.values()) {
+            if (random.nextInt(3) == 0) {
+                benefits.add(benefit);
+            }
+        }
+        return new CustomerData(randomFailure(random, profile), randomFailure(random, spend),
+                randomFailure(random, benefits));
+    }
+
+    private static <T> Supplier<T> randomFailure(Random random, T value) {
+        switch (random.nextInt(10)) {
+            case 0:
+                return () -> {
+                    throw new DependencyTimeoutException("Timed out", null);
+                };
+            case 1:
+                return () -> {
+                    throw new IllegalStateException("Service unavailable");
+                };
+            case 2:
+                return () -> null;
+            default:
+                return () -> value;
+        }
+    }
+
+    private static <T> T pick(Random random, T[] values) {
+        return values[random.nextInt(values.length)];
+    }
+
+    /**
+     * Where a customer's data comes from, whether it is read through customer signals or the predicates' DAOs.
+     */
+    private static final class CustomerData {
+        private final Supplier<CustomerProfile> profile;
+        private final Supplier<Map<String, Spend>> spend;
+        private final Supplier<List<String>> benefits;
+
+        private CustomerData(Supplier<CustomerProfile> profile, Supplier<Map<String, Spend>> spend,
+                             Supplier<List<String>> benefits) {
+            this.profile = profile;
+            this.spend = spend;
+            this.benefits = benefits;
+        }
+    }
+}
@@ -1,14 +1,23 @@
 package com.amazon.ata.advertising.service.targeting.predicate;
 
+import com.amazon.ata.advertising.service.exceptions.AdvertisementServiceException;
+import com.amazon.ata.advertising.service.targeting.Comparison;
+import com.amazon.ata.customerservice.AgeRange;
+import com.amazon.ata.customerservice.Category;
 import com.amazon.ata.primeclubservice.Benefit;
+import com.amazonaws.services.dynamodbv2.model.AttributeValue;
 import com.google.common.collect.Lists;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 
+import java.nio.ByteBuffer;
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.List;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 
 public class TargetingPredicateTypeConverterTest {
@@ -38,33 +47,33 @@ public class TargetingPredicateTypeConverterTest {
 
     @Test
     public void convertList_emptyList() {
-        String convertedString = converter.convert(EMPTY_PREDICATE_LIST);
+        String convertedString = converter.convert(EMPTY_PREDICATE_LIST).getS();
         assertEquals(EMPTY_LIST_STRING, convertedString);
     }
 
     @Test
     public void convertList_sizeOne() {
-        String convertedString = converter.convert(PREDICATE_LIST_1);
+        String convertedString = converter.convert(PREDICATE_LIST_1).getS();
         assertEquals(PREDICATE_LIST_1_STRING, convertedString);
     }
 
     @Test
     public void convertList_sizeTwo() {
-        String convertedString = converter.convert(PREDICATE_LIST_2);
+        String convertedString = converter.convert(PREDICATE_LIST_2).getS();
 
         assertEquals(PREDICATE_LIST_2_STRING, convertedString);
     }
 
     @Test
     public void unconvert_emptyList() {
-        List<TargetingPredicate> predicates = converter.unconvert(EMPTY_LIST_STRING);
+        List<TargetingPredicate> predicates = converter.unconvert(new AttributeValue(EMPTY_LIST_STRING));
 
         assertEquals(EMPTY_PREDICATE_LIST, predicates);
     }
 
     @Test
     public void unconvert_sizeOne() {
-        List<TargetingPredicate> predicates = converter.unconvert(PREDICATE_LIST_1_STRING);
+        List<TargetingPredicate> predicates = converter.unconvert(new AttributeValue(PREDICATE_LIST_1_STRING));
 
         assertEquals(1, predicates.size());
         assertPrimeBenefit(Benefit.FREE_EXPEDITED_SHIPPING, false, predicates.get(0));
@@ -72,13 +81,64 @@ public class TargetingPredicateTypeConverterTest {
 
     @Test
     public void unconvert_sizeTwo() {
-        List<TargetingPredicate> predicates = converter.unconvert(PREDICATE_LIST_2_STRING);
+        List<TargetingPredicate> predicates = converter.unconvert(new AttributeValue(PREDICATE_LIST_2_STRING));
 
         assertEquals(2, predicates.size());
         assertPrimeBenefit(Benefit.FREE_EXPEDITED_SHIPPING, false, predicates.get(0));
         assertPrimeBenefit(Benefit.MOM_DISCOUNT, true, predicates.get(1));
     }
 
+    @Test
+    public void unconvert_everyPredicateType_roundTrips() {
+        // GIVEN
+        List<TargetingPredicate> predicates = Arrays.asList(
+                new AgeTargetingPredicate(AgeRange.AGE_26_TO_30, true),
+                new CategorySpendFrequencyTargetingPredicate(Category.KINDLE, Comparison.GT, 3),
+                new CategorySpendValueTargetingPredicate(Category.ECHO, Comparison.LT, 100, true),
+                new ParentPredicate(false),
+                PREDICATE2,
+                new RecognizedTargetingPredicate(true));
+
+        // WHEN
+        List<TargetingPredicate> unconverted = converter.unconvert(converter.convert(predicates));
+
+        // THEN
+        assertEquals(predicates, unconverted);
+    }
+
+    @Test
+    public void unconvert_unregisteredType_throws() {
+        // GIVEN
+        String value = "[{\"@class\":\"java.util.ArrayList\",\"inverse\":false}]";
+
+        // WHEN + THEN
+        assertThrows(AdvertisementServiceException.class, () -> converter.unconvert(new AttributeValue(value)));
+    }
+
+    @Test
+    public void convert_binaryFormat_readsBackWithJsonRowsAlongside() {
+        // GIVEN
+        TargetingPredicateTypeConverter binaryConverter =
+                new TargetingPredicateTypeConverter(TargetingPredicateTypeConverter.StorageFormat.BINARY);
+
+        // WHEN
+        AttributeValue converted = binaryConverter.convert(PREDICATE_LIST_2);
+
+        // THEN
+        assertNull(converted.getS());
+        assertEquals(PREDICATE_LIST_2, binaryConverter.unconvert(converted));
+        assertEquals(PREDICATE_LIST_2, binaryConverter.unconvert(new AttributeValue(PREDICATE_LIST_2_STRING)));
+    }
+
+    @Test
+    public void unconvert_malformedBinary_throws() {
+        // GIVEN
+        AttributeValue value = new AttributeValue().withB(ByteBuffer.wrap(new byte[] {1, 0, 2, 3}));
+
+        // WHEN + THEN
+        assertThrows(AdvertisementServiceException.class, () -> converter.unconvert(value));
+    }
+
     private void assertPrimeBenefit(String benefit, boolean isInverse, TargetingPredicate targetingPredicate) {
         assertTrue(targetingPredicate instanceof PrimeBenefitTargetingPredicate);
         assertEquals(isInverse, targetingPredicate.isInverse());
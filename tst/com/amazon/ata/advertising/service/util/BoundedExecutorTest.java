@@ -0,0 +1,84 @@
+package com.amazon.ata.advertising.service.util;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class BoundedExecutorTest {
+    private final CountDownLatch release = new CountDownLatch(1);
+    private BoundedExecutor executor;
+
+    @AfterEach
+    public void tearDown() {
+        release.countDown();
+        executor.shutdownNow();
+    }
+
+    @Test
+    public void submit_saturatedWithAbortPolicy_rejectsAndCountsTask() throws Exception {
+        // GIVEN
+        executor = new BoundedExecutor("abort-test", 1, 1, BoundedExecutor.RejectionPolicy.ABORT);
+        CountDownLatch started = new CountDownLatch(1);
+        executor.submit(() -> block(started));
+        assertTrue(started.await(5, TimeUnit.SECONDS));
+        executor.submit(() -> block(null));
+
+        // WHEN + THEN
+        assertThrows(RejectedExecutionException.class, () -> executor.submit(() -> block(null)));
+        assertEquals(1, executor.getActiveTaskCount());
+        assertEquals(1, executor.getQueuedTaskCount());
+        assertEquals(1, executor.getRejectedTaskCount());
+    }
+
+    @Test
+    public void submit_saturatedWithCallerRunsPolicy_runsTaskOnCaller() throws Exception {
+        // GIVEN
+        executor = new BoundedExecutor("caller-runs-test", 1, 1, BoundedExecutor.RejectionPolicy.CALLER_RUNS);
+        CountDownLatch started = new CountDownLatch(1);
+        executor.submit(() -> block(started));
+        assertTrue(started.await(5, TimeUnit.SECONDS));
+        executor.submit(() -> block(null));
+        Thread caller = Thread.currentThread();
+
+        // WHEN
+        Future<Boolean> ranOnCaller = executor.submit(() -> Thread.currentThread() == caller);
+
+        // THEN
+        assertTrue(ranOnCaller.get());
+        assertEquals(1, executor.getRejectedTaskCount());
+    }
+
+    @Test
+    public void executeOrReject_saturatedWithCallerRunsPolicy_rejectsTask() throws Exception {
+        // GIVEN
+        executor = new BoundedExecutor("execute-or-reject-test", 1, 1, BoundedExecutor.RejectionPolicy.CALLER_RUNS);
+        CountDownLatch started = new CountDownLatch(1);
+        executor.submit(() -> block(started));
+        assertTrue(started.await(5, TimeUnit.SECONDS));
+        executor.submit(() -> block(null));
+        AtomicBoolean ran = new AtomicBoolean();
+
+        // WHEN + THEN
+        assertThrows(RejectedExecutionException.class, () -> executor.executeOrReject(() -> ran.set(true)));
+        assertFalse(ran.get());
+        assertEquals(1, executor.getRejectedTaskCount());
+    }
+
+    private Void block(CountDownLatch started) throws InterruptedException {
+        if (started != null) {
+            started.countDown();
+        }
+        release.await();
+        return null;
+    }
+}
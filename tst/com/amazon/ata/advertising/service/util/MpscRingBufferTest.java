@@ -0,0 +1,74 @@
+package com.amazon.ata.advertising.service.util;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class MpscRingBufferTest {
+
+    @Test
+    public void offer_fullBuffer_failsUntilDrained() {
+        // GIVEN
+        MpscRingBuffer<Integer> buffer = new MpscRingBuffer<>(3);
+        for (int i = 0; i < 4; i++) {
+            assertTrue(buffer.offer(i));
+        }
+
+        // WHEN
+        boolean offeredWhenFull = buffer.offer(4);
+        List<Integer> drained = new ArrayList<>();
+        buffer.drain(drained::add, 2);
+
+        // THEN
+        assertFalse(offeredWhenFull);
+        assertEquals(4, buffer.capacity());
+        assertTrue(buffer.offer(5));
+        buffer.drain(drained::add, Integer.MAX_VALUE);
+        assertEquals(Arrays.asList(0, 1, 2, 3, 5), drained);
+        assertEquals(0, buffer.size());
+    }
+
+    @Test
+    public void drain_concurrentProducers_receivesEveryAcceptedItemOnce() throws Exception {
+        // GIVEN
+        int producers = 4;
+        int itemsPerProducer = 200_000;
+        MpscRingBuffer<Integer> buffer = new MpscRingBuffer<>(1024);
+        ExecutorService executor = Executors.newFixedThreadPool(producers);
+        CountDownLatch done = new CountDownLatch(producers);
+        AtomicInteger accepted = new AtomicInteger();
+        for (int producer = 0; producer < producers; producer++) {
+            executor.execute(() -> {
+                for (int i = 0; i < itemsPerProducer; i++) {
+                    if (buffer.offer(1)) {
+                        accepted.incrementAndGet();
+                    }
+                }
+                done.countDown();
+            });
+        }
+
+        // WHEN
+        long[] sum = new long[1];
+        while (done.getCount() > 0 || buffer.size() > 0) {
+            buffer.drain(item -> sum[0] += item, Integer.MAX_VALUE);
+        }
+        executor.shutdown();
+
+        // THEN
+        assertTrue(executor.awaitTermination(5, TimeUnit.SECONDS));
+        assertEquals(accepted.get(), sum[0]);
+        assertTrue(accepted.get() > 0);
+    }
+}
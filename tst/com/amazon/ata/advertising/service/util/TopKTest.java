@@ -0,0 +1,35 @@
+package com.amazon.ata.advertising.service.util;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+public class TopKTest {
+    private static final List<Integer> ITEMS = Arrays.asList(5, 1, 9, 3, 7, 9, 2);
+
+    @Test
+    public void greatest_fewerThanItems_returnsGreatestFirst() {
+        assertEquals(Arrays.asList(9, 9, 7), TopK.greatest(ITEMS, 3, Comparator.<Integer>naturalOrder()));
+    }
+
+    @Test
+    public void greatest_moreThanItems_returnsAllItemsSorted() {
+        assertEquals(Arrays.asList(9, 9, 7, 5, 3, 2, 1), TopK.greatest(ITEMS, 10, Comparator.<Integer>naturalOrder()));
+    }
+
+    @Test
+    public void greatest_zero_returnsEmptyList() {
+        assertEquals(Collections.emptyList(), TopK.greatest(ITEMS, 0, Comparator.<Integer>naturalOrder()));
+    }
+
+    @Test
+    public void constructor_negativeK_throwsIllegalArgumentException() {
+        assertThrows(IllegalArgumentException.class, () -> new TopK<>(-1, Comparator.<Integer>naturalOrder()));
+    }
+}
@@ -0,0 +1,37 @@
+package com.amazon.ata.advertising.service.util;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.ExecutorService;
+
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.junit.jupiter.api.Assumptions.assumeFalse;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+public class VirtualThreadsTest {
+
+    @Test
+    public void newVirtualThreadPerTaskExecutor_supported_runsTasksOnNamedThreads() throws Exception {
+        // GIVEN
+        assumeTrue(VirtualThreads.isSupported());
+        ExecutorService executor = VirtualThreads.newVirtualThreadPerTaskExecutor("virtual-test");
+
+        // WHEN
+        String threadName = executor.submit(() -> Thread.currentThread().getName()).get();
+        executor.shutdown();
+
+        // THEN
+        assertTrue(threadName.startsWith("virtual-test-"), threadName);
+    }
+
+    @Test
+    public void newVirtualThreadPerTaskExecutor_unsupported_throwsUnsupportedOperationException() {
+        // GIVEN
+        assumeFalse(VirtualThreads.isSupported());
+
+        // WHEN + THEN
+        assertThrows(UnsupportedOperationException.class,
+                () -> VirtualThreads.newVirtualThreadPerTaskExecutor("virtual-test"));
+    }
+}